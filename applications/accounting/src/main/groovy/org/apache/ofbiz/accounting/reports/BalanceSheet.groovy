@@ -18,6 +18,7 @@
 */
 package org.apache.ofbiz.accounting.reports
 
+import org.apache.ofbiz.accounting.ledger.GlAccountBalanceWorker
 import org.apache.ofbiz.accounting.util.UtilAccounting
 import org.apache.ofbiz.base.util.UtilDateTime
 import org.apache.ofbiz.base.util.UtilMisc
@@ -145,53 +146,27 @@ class AccountEntrySum {
 }
 
 /**
- * Retrieve a collection of AccountEntrySum objects corresponding to the AcctgTransEntrySums entities query controlled
- * by the given conditions.
+ * Retrieve a collection of AccountEntrySum objects corresponding to the organization's posted transaction entries of
+ * the current period which match the given collection of Account Class IDs. The sums of the whole days are read from
+ * the GL account daily balances, the entries are only read for the partial days at the bounds of the period.
  *
- * @param conditions The list of conditions to be ANDed together and form the WHERE clause for the query of
- * AcctgTransEntrySums.
+ * @param accountClassIds The collection of Account Class IDs to filter by.
  *
- * @return A collection of AccountEntrySum objects for the conditions.
+ * @return A collection of AccountEntrySum objects corresponding to the given accountClassIds.
  */
-Closure<List<AccountEntrySum>> getAccountEntrySumsForCondition = { Collection<EntityExpr> conditions ->
-    from('AcctgTransEntrySums')
-            .where(conditions)
-            .orderBy('glAccountId')
-            .select('glAccountId', 'accountName', 'accountCode', 'debitCreditFlag', 'amount')
-            .queryList()
+Closure<List<AccountEntrySum>> getAccountEntrySumsForClassIds = { Collection<String> accountClassIds ->
+    GlAccountBalanceWorker.getAccountEntrySums(delegator, partyIds, glFiscalTypeId, accountClassIds, fromDate, thruDate)
             .collect { entrySum ->
                 new AccountEntrySum(
                         glAccountId: entrySum.glAccountId,
                         accountName: entrySum.accountName,
                         accountCode: entrySum.accountCode,
                         debitCreditFlag: entrySum.debitCreditFlag,
-                        amount: entrySum.getBigDecimal('amount')
+                        amount: entrySum.amount
                 )
             }
 }
 
-/**
- * Retrieve a collection of AccountEntrySum objects corresponding to the organization's AcctgTransEntrySums entities
- * which match the given collection of Account Class IDs.
- *
- * @param accountClassIds The collection of Account Class IDs to filter by.
- *
- * @return A collection of AccountEntrySum objects corresponding to the given accountClassIds.
- */
-Closure<List<AccountEntrySum>> getAccountEntrySumsForClassIds = { Collection<String> accountClassIds ->
-    List conditions = [
-            EntityCondition.makeCondition('glAccountClassId', EntityOperator.IN, accountClassIds),
-            EntityCondition.makeCondition('organizationPartyId', EntityOperator.IN, partyIds),
-            EntityCondition.makeCondition('isPosted', EntityOperator.EQUALS, 'Y'),
-            EntityCondition.makeCondition('glFiscalTypeId', EntityOperator.EQUALS, glFiscalTypeId),
-            EntityCondition.makeCondition('acctgTransTypeId', EntityOperator.NOT_EQUAL, 'PERIOD_CLOSING'),
-            EntityCondition.makeCondition('transactionDate', EntityOperator.GREATER_THAN_EQUAL_TO, fromDate),
-            EntityCondition.makeCondition('transactionDate', EntityOperator.LESS_THAN, thruDate)
-    ]
-
-    getAccountEntrySumsForCondition(conditions)
-}
-
 enum RootClass { DEBIT, CREDIT }
 
 /**
@@ -310,10 +285,7 @@ BigDecimal currentLiabilityBalanceTotal = sumAccountBalances(currentLiabilityAcc
 Map<String, AccountBalance> equityAccountBalances = calculateBalances(equityOpeningBalances, equityAccountClassIds, RootClass.CREDIT)
 
 // Add the "retained earnings" account
-Map netIncomeResult = runService('prepareIncomeStatement',
-        [organizationPartyId: organizationPartyId, glFiscalTypeId: glFiscalTypeId,
-         fromDate: fromDate, 'thruDate': thruDate, userLogin: userLogin])
-BigDecimal netIncome = (BigDecimal)netIncomeResult.totalNetIncome
+BigDecimal netIncome = GlAccountBalanceWorker.getNetIncome(delegator, partyIds, glFiscalTypeId, fromDate, thruDate)
 GenericValue retainedEarningsAccount = from('GlAccountTypeDefault')
         .where('glAccountTypeId', 'RETAINED_EARNINGS', 'organizationPartyId', organizationPartyId).cache(true).queryOne()
 if (retainedEarningsAccount) {
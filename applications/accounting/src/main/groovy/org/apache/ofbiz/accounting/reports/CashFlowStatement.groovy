@@ -18,6 +18,7 @@
 */
 package org.apache.ofbiz.accounting.reports
 
+import org.apache.ofbiz.accounting.ledger.GlAccountBalanceWorker
 import org.apache.ofbiz.accounting.util.UtilAccounting
 import org.apache.ofbiz.base.util.UtilDateTime
 import org.apache.ofbiz.base.util.UtilMisc
@@ -73,21 +74,13 @@ if (lastClosedTimePeriod) {
         openingCashBalances.(lastTimePeriodHistory.glAccountId) = accountMap
     }
 }
-List mainAndExprs = []
-mainAndExprs.add(EntityCondition.makeCondition('organizationPartyId', EntityOperator.IN, partyIds))
-mainAndExprs.add(EntityCondition.makeCondition('isPosted', EntityOperator.EQUALS, 'Y'))
-mainAndExprs.add(EntityCondition.makeCondition('glFiscalTypeId', EntityOperator.EQUALS, parameters.glFiscalTypeId))
-mainAndExprs.add(EntityCondition.makeCondition('glAccountClassId', EntityOperator.IN, glAccountClassIds))
 
 // All GlAccount's transactions (from last closing period to parameter's fromDate)
 accountBalanceList = []
 transactionTotals = []
 balanceTotal = BigDecimal.ZERO
-List openingCashBalanceAndExprs = mainAndExprs as LinkedList
-openingCashBalanceAndExprs.add(EntityCondition.makeCondition('transactionDate', EntityOperator.GREATER_THAN_EQUAL_TO, periodClosingFromDate))
-openingCashBalanceAndExprs.add(EntityCondition.makeCondition('transactionDate', EntityOperator.LESS_THAN, parametersFromDate))
-transactionTotals = select('glAccountId', 'accountName', 'accountCode', 'debitCreditFlag', 'amount')
-        .from('AcctgTransEntrySums').where(openingCashBalanceAndExprs).orderBy('glAccountId').queryList()
+transactionTotals = GlAccountBalanceWorker.getAccountEntrySums(delegator, partyIds, parameters.glFiscalTypeId, glAccountClassIds,
+        periodClosingFromDate, parametersFromDate, true)
 transactionTotalsMap = [:]
 transactionTotalsMap.putAll(openingCashBalances)
 transactionTotals.each { transactionTotal ->
@@ -129,11 +122,8 @@ openingTransactionKeySet = transactionTotalsMap.keySet()
 accountBalanceList = []
 transactionTotals = []
 balanceTotal = BigDecimal.ZERO
-List periodCashBalanceAndExprs = mainAndExprs as LinkedList
-periodCashBalanceAndExprs.add(EntityCondition.makeCondition('transactionDate', EntityOperator.GREATER_THAN_EQUAL_TO, parametersFromDate))
-periodCashBalanceAndExprs.add(EntityCondition.makeCondition('transactionDate', EntityOperator.LESS_THAN, thruDate))
-transactionTotals = select('glAccountId', 'accountName', 'accountCode', 'debitCreditFlag', 'amount')
-        .from('AcctgTransEntrySums').where(periodCashBalanceAndExprs).orderBy('glAccountId').queryList()
+transactionTotals = GlAccountBalanceWorker.getAccountEntrySums(delegator, partyIds, parameters.glFiscalTypeId, glAccountClassIds,
+        parametersFromDate, thruDate, true)
 if (transactionTotals) {
     Map transactionTotalsMap = [:]
     balanceTotalCredit = BigDecimal.ZERO
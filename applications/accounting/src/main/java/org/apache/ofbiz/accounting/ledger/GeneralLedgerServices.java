@@ -19,13 +19,18 @@
 package org.apache.ofbiz.accounting.ledger;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.Map;
 
+import org.apache.ofbiz.accounting.util.UtilAccounting;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.service.DispatchContext;
 import org.apache.ofbiz.service.GenericServiceException;
 import org.apache.ofbiz.service.LocalDispatcher;
@@ -77,4 +82,101 @@ public class GeneralLedgerServices {
         }
         return totalAmountPercentage;
     }
+
+    /**
+     * Adds the entries of a posted AcctgTrans to the GlAccountDailyBalance of their accounts.
+     */
+    public static Map<String, Object> updateGlAccountDailyBalances(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String acctgTransId = (String) context.get("acctgTransId");
+        try {
+            GenericValue acctgTrans = EntityQuery.use(delegator).from("AcctgTrans").where("acctgTransId", acctgTransId).queryOne();
+            if (acctgTrans == null || !"Y".equals(acctgTrans.getString("isPosted"))) {
+                return ServiceUtil.returnError("The accounting transaction [" + acctgTransId + "] is not posted");
+            }
+            GlAccountBalanceWorker.addPostedAcctgTrans(delegator, acctgTrans);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Adds an AcctgTransEntry created in a posted AcctgTrans to the GlAccountDailyBalance of its account.
+     */
+    public static Map<String, Object> updateGlAccountDailyBalanceFromEntry(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        try {
+            GenericValue acctgTransEntry = EntityQuery.use(delegator).from("AcctgTransEntry")
+                    .where("acctgTransId", context.get("acctgTransId"), "acctgTransEntrySeqId", context.get("acctgTransEntrySeqId"))
+                    .queryOne();
+            if (acctgTransEntry != null) {
+                GlAccountBalanceWorker.addPostedAcctgTransEntry(delegator, acctgTransEntry);
+            }
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Recomputes the GlAccountDailyBalance records from the posted accounting transaction entries.
+     */
+    public static Map<String, Object> rebuildGlAccountDailyBalances(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String organizationPartyId = (String) context.get("organizationPartyId");
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        try {
+            result.put("balanceCount", GlAccountBalanceWorker.rebuildDailyBalances(delegator, organizationPartyId));
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Computes the total debits, total credits, opening and ending balances of an account in a financial period from
+     * the GL account daily balances.
+     */
+    public static Map<String, Object> computeGlAccountBalanceForTimePeriod(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String organizationPartyId = (String) context.get("organizationPartyId");
+        String customTimePeriodId = (String) context.get("customTimePeriodId");
+        String glAccountId = (String) context.get("glAccountId");
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        try {
+            GenericValue customTimePeriod = EntityQuery.use(delegator).from("CustomTimePeriod")
+                    .where("customTimePeriodId", customTimePeriodId).queryOne();
+            GenericValue glAccount = EntityQuery.use(delegator).from("GlAccount").where("glAccountId", glAccountId).queryOne();
+            if (customTimePeriod == null || glAccount == null) {
+                return ServiceUtil.returnError("Unable to find the CustomTimePeriod [" + customTimePeriodId + "] or the GlAccount ["
+                        + glAccountId + "]");
+            }
+            Timestamp openingDate = new Timestamp(customTimePeriod.getDate("fromDate").getTime());
+            Timestamp endingDate = new Timestamp(customTimePeriod.getDate("thruDate").getTime());
+            Map<String, BigDecimal> totalsToOpeningDate = GlAccountBalanceWorker.getPostedTotals(delegator, organizationPartyId,
+                    glAccountId, "ACTUAL", openingDate);
+            Map<String, BigDecimal> totalsToEndingDate = GlAccountBalanceWorker.getPostedTotals(delegator, organizationPartyId,
+                    glAccountId, "ACTUAL", endingDate);
+
+            BigDecimal openingBalance = totalsToOpeningDate.get("D").subtract(totalsToOpeningDate.get("C"));
+            BigDecimal endingBalance = totalsToEndingDate.get("D").subtract(totalsToEndingDate.get("C"));
+            if (!UtilAccounting.isDebitAccount(glAccount)) {
+                // "Credit balance" account
+                openingBalance = openingBalance.negate();
+                endingBalance = endingBalance.negate();
+            }
+            result.put("openingBalance", openingBalance);
+            result.put("endingBalance", endingBalance);
+            result.put("postedDebits", totalsToEndingDate.get("D").subtract(totalsToOpeningDate.get("D")));
+            result.put("postedCredits", totalsToEndingDate.get("C").subtract(totalsToOpeningDate.get("C")));
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,517 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.accounting.ledger;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.ofbiz.accounting.util.UtilAccounting;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilDateTime;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityListIterator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityUtil;
+
+/**
+ * Maintains and reads the GlAccountDailyBalance entity.
+ * <p>A GlAccountDailyBalance holds the posted debits and credits of a GL account of an organization for one day
+ * (the start of the day of the transaction date, in the server time zone). It is updated in the transaction which
+ * posts an AcctgTrans, so that the sums of the posted entries of a date range are read from one row per account and
+ * day, the entries themselves being only read for the partial days at the bounds of the range.</p>
+ * <p>The entries loaded as data in an already posted transaction, as the seed and demo data, are added to the daily
+ * balances when they are created. The transactions of a ledger created before the daily balances have no daily
+ * balance until rebuildDailyBalances is run: the GlAccountDailyBalanceStatus of an organization records when its
+ * balances were rebuilt, and the sums of the organizations having no such date are read from the entries.</p>
+ * <p>The GlAccountDailyBalanceStatus is also the row locked to create the daily balances of an organization, as two
+ * postings cannot lock a balance which does not exist yet.</p>
+ */
+public final class GlAccountBalanceWorker {
+
+    private static final String MODULE = GlAccountBalanceWorker.class.getName();
+    private static final String PERIOD_CLOSING = "PERIOD_CLOSING";
+
+    private GlAccountBalanceWorker() { }
+
+    /**
+     * Adds the entries of a posted accounting transaction to the daily balances of their accounts. The balance rows
+     * are locked in the order of their organization and account, after the GlAccountDailyBalanceStatus of the
+     * organization when some of them must be created, so concurrent postings wait for each other instead of dead locking
+     * or creating the same balance.
+     * @param delegator the delegator
+     * @param acctgTrans the AcctgTrans which has just been posted
+     * @throws GenericEntityException if the balances cannot be read or stored
+     */
+    public static void addPostedAcctgTrans(Delegator delegator, GenericValue acctgTrans) throws GenericEntityException {
+        Timestamp transactionDate = acctgTrans.getTimestamp("transactionDate");
+        if (transactionDate == null) {
+            // the transaction is not in any date range of the reports
+            return;
+        }
+        Timestamp balanceDate = UtilDateTime.getDayStart(transactionDate);
+        boolean periodClosing = PERIOD_CLOSING.equals(acctgTrans.getString("acctgTransTypeId"));
+        String glFiscalTypeId = acctgTrans.getString("glFiscalTypeId");
+
+        Map<String, Map<String, BigDecimal[]>> amountsByOrganization = new TreeMap<>();
+        List<GenericValue> entries = EntityQuery.use(delegator).from("AcctgTransEntry")
+                .where("acctgTransId", acctgTrans.get("acctgTransId")).queryList();
+        for (GenericValue entry : entries) {
+            BigDecimal amount = entry.getBigDecimal("amount");
+            if (amount == null || entry.get("glAccountId") == null || entry.get("organizationPartyId") == null) {
+                continue;
+            }
+            BigDecimal[] amounts = amountsByOrganization.computeIfAbsent(entry.getString("organizationPartyId"), k -> new TreeMap<>())
+                    .computeIfAbsent(entry.getString("glAccountId"), k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO});
+            if ("D".equals(entry.getString("debitCreditFlag"))) {
+                amounts[0] = amounts[0].add(amount);
+            } else if ("C".equals(entry.getString("debitCreditFlag"))) {
+                amounts[1] = amounts[1].add(amount);
+            }
+        }
+
+        for (Map.Entry<String, Map<String, BigDecimal[]>> organizationAmounts : amountsByOrganization.entrySet()) {
+            String organizationPartyId = organizationAmounts.getKey();
+            Map<String, BigDecimal[]> amountsByAccount = organizationAmounts.getValue();
+            long existingCount = EntityQuery.use(delegator).from("GlAccountDailyBalance")
+                    .where(EntityCondition.makeCondition("organizationPartyId", organizationPartyId),
+                            EntityCondition.makeCondition("glAccountId", EntityOperator.IN, amountsByAccount.keySet()),
+                            EntityCondition.makeCondition("glFiscalTypeId", glFiscalTypeId),
+                            EntityCondition.makeCondition("balanceDate", balanceDate))
+                    .queryCount();
+            if (existingCount < amountsByAccount.size()) {
+                lockDailyBalances(delegator, organizationPartyId);
+            }
+            for (Map.Entry<String, BigDecimal[]> accountAmounts : amountsByAccount.entrySet()) {
+                Map<String, Object> pk = UtilMisc.toMap("organizationPartyId", organizationPartyId,
+                        "glAccountId", accountAmounts.getKey(), "glFiscalTypeId", glFiscalTypeId, "balanceDate", balanceDate);
+                addToDailyBalance(delegator, pk, periodClosing, accountAmounts.getValue());
+            }
+        }
+    }
+
+    /**
+     * Adds an entry created in an already posted accounting transaction, as the entries loaded as data, to the daily
+     * balance of its account. The entries of the transactions which are not posted yet are added when they are posted.
+     * @param delegator the delegator
+     * @param acctgTransEntry the AcctgTransEntry which has just been created
+     * @return whether the entry was added to a daily balance
+     * @throws GenericEntityException if the balance cannot be read or stored
+     */
+    public static boolean addPostedAcctgTransEntry(Delegator delegator, GenericValue acctgTransEntry) throws GenericEntityException {
+        BigDecimal amount = acctgTransEntry.getBigDecimal("amount");
+        String debitCreditFlag = acctgTransEntry.getString("debitCreditFlag");
+        if (amount == null || acctgTransEntry.get("glAccountId") == null || acctgTransEntry.get("organizationPartyId") == null
+                || !("D".equals(debitCreditFlag) || "C".equals(debitCreditFlag))) {
+            return false;
+        }
+        GenericValue acctgTrans = EntityQuery.use(delegator).from("AcctgTrans")
+                .where("acctgTransId", acctgTransEntry.get("acctgTransId")).queryOne();
+        if (acctgTrans == null || !"Y".equals(acctgTrans.getString("isPosted")) || acctgTrans.get("transactionDate") == null) {
+            return false;
+        }
+        Map<String, Object> pk = UtilMisc.toMap("organizationPartyId", acctgTransEntry.get("organizationPartyId"),
+                "glAccountId", acctgTransEntry.get("glAccountId"), "glFiscalTypeId", acctgTrans.get("glFiscalTypeId"),
+                "balanceDate", UtilDateTime.getDayStart(acctgTrans.getTimestamp("transactionDate")));
+        BigDecimal[] amounts = "D".equals(debitCreditFlag) ? new BigDecimal[] {amount, BigDecimal.ZERO}
+                : new BigDecimal[] {BigDecimal.ZERO, amount};
+        addToDailyBalance(delegator, pk, PERIOD_CLOSING.equals(acctgTrans.getString("acctgTransTypeId")), amounts);
+        return true;
+    }
+
+    private static void addToDailyBalance(Delegator delegator, Map<String, Object> pk, boolean periodClosing, BigDecimal[] amounts)
+            throws GenericEntityException {
+        String debitField = periodClosing ? "closingDebits" : "postedDebits";
+        String creditField = periodClosing ? "closingCredits" : "postedCredits";
+        GenericValue balance = EntityQuery.use(delegator).from("GlAccountDailyBalance").where(pk).forUpdate().queryOne();
+        if (balance == null) {
+            // nothing was locked, read the balance again once the creations of the organization wait for this one
+            lockDailyBalances(delegator, (String) pk.get("organizationPartyId"));
+            balance = EntityQuery.use(delegator).from("GlAccountDailyBalance").where(pk).forUpdate().queryOne();
+        }
+        if (balance == null) {
+            balance = makeDailyBalance(delegator, pk);
+            balance.set(debitField, amounts[0]);
+            balance.set(creditField, amounts[1]);
+            balance.create();
+        } else {
+            balance.set(debitField, balance.getBigDecimal(debitField).add(amounts[0]));
+            balance.set(creditField, balance.getBigDecimal(creditField).add(amounts[1]));
+            balance.store();
+        }
+    }
+
+    /**
+     * Locks the GlAccountDailyBalanceStatus of an organization, creating it when missing. The status is created in its
+     * own transaction, so that the failure of a concurrent creation does not roll back the posting.
+     */
+    private static GenericValue lockDailyBalances(Delegator delegator, String organizationPartyId) throws GenericEntityException {
+        GenericValue status = EntityQuery.use(delegator).from("GlAccountDailyBalanceStatus")
+                .where("organizationPartyId", organizationPartyId).forUpdate().queryOne();
+        if (status == null) {
+            try {
+                TransactionUtil.doNewTransaction(() -> delegator.create("GlAccountDailyBalanceStatus",
+                        "organizationPartyId", organizationPartyId), "creating the daily balance status of " + organizationPartyId, 0, false);
+            } catch (GenericEntityException e) {
+                Debug.logInfo("The daily balance status of organization [" + organizationPartyId + "] was created by another transaction: "
+                        + e.getMessage(), MODULE);
+            }
+            status = EntityQuery.use(delegator).from("GlAccountDailyBalanceStatus")
+                    .where("organizationPartyId", organizationPartyId).forUpdate().queryOne();
+            if (status == null) {
+                throw new GenericEntityException("Could not lock the daily balances of organization [" + organizationPartyId + "]");
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Recomputes the daily balances from the posted accounting transaction entries, replacing the existing ones, and
+     * records the date of the rebuild in the GlAccountDailyBalanceStatus of the organizations, from which the reports
+     * read their balances.
+     * @param delegator the delegator
+     * @param organizationPartyId the organization of the balances to rebuild, all the organizations when empty
+     * @return the number of daily balances created
+     * @throws GenericEntityException if the entries cannot be read or the balances cannot be stored
+     */
+    public static int rebuildDailyBalances(Delegator delegator, String organizationPartyId) throws GenericEntityException {
+        List<EntityCondition> conditions = new LinkedList<>();
+        conditions.add(EntityCondition.makeCondition("isPosted", "Y"));
+        conditions.add(EntityCondition.makeCondition("transactionDate", EntityOperator.NOT_EQUAL, null));
+        if (UtilValidate.isNotEmpty(organizationPartyId)) {
+            conditions.add(EntityCondition.makeCondition("organizationPartyId", organizationPartyId));
+        }
+
+        Set<String> organizationPartyIds = new TreeSet<>();
+        if (UtilValidate.isNotEmpty(organizationPartyId)) {
+            organizationPartyIds.add(organizationPartyId);
+        } else {
+            organizationPartyIds.addAll(EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator).select("organizationPartyId")
+                    .from("AcctgTransEntry").where(EntityCondition.makeCondition("organizationPartyId", EntityOperator.NOT_EQUAL, null))
+                    .distinct().queryList(), "organizationPartyId", true));
+        }
+        List<GenericValue> statuses = new ArrayList<>(organizationPartyIds.size());
+        for (String statusPartyId : organizationPartyIds) {
+            statuses.add(lockDailyBalances(delegator, statusPartyId));
+        }
+
+        Map<List<Object>, GenericValue> balances = new HashMap<>();
+        try (EntityListIterator dateSums = EntityQuery.use(delegator).from("AcctgTransEntryDateSums")
+                .where(conditions).queryIterator()) {
+            GenericValue dateSum;
+            while ((dateSum = dateSums.next()) != null) {
+                BigDecimal amount = dateSum.getBigDecimal("amount");
+                String debitCreditFlag = dateSum.getString("debitCreditFlag");
+                if (amount == null || dateSum.get("glAccountId") == null || dateSum.get("organizationPartyId") == null
+                        || !("D".equals(debitCreditFlag) || "C".equals(debitCreditFlag))) {
+                    continue;
+                }
+                Timestamp balanceDate = UtilDateTime.getDayStart(dateSum.getTimestamp("transactionDate"));
+                List<Object> key = UtilMisc.toList(dateSum.get("organizationPartyId"), dateSum.get("glAccountId"),
+                        dateSum.get("glFiscalTypeId"), balanceDate);
+                GenericValue balance = balances.computeIfAbsent(key, k -> makeDailyBalance(delegator, UtilMisc.toMap(
+                        "organizationPartyId", k.get(0), "glAccountId", k.get(1), "glFiscalTypeId", k.get(2), "balanceDate", k.get(3))));
+                String field = (PERIOD_CLOSING.equals(dateSum.getString("acctgTransTypeId")) ? "closing" : "posted")
+                        + ("D".equals(debitCreditFlag) ? "Debits" : "Credits");
+                balance.set(field, balance.getBigDecimal(field).add(amount));
+            }
+        }
+
+        if (UtilValidate.isNotEmpty(organizationPartyId)) {
+            delegator.removeByAnd("GlAccountDailyBalance", "organizationPartyId", organizationPartyId);
+        } else {
+            delegator.removeAll("GlAccountDailyBalance");
+        }
+        delegator.createAllByBatchProcess(new ArrayList<>(balances.values()));
+        Timestamp builtDate = UtilDateTime.nowTimestamp();
+        for (GenericValue status : statuses) {
+            status.set("balancesBuiltDate", builtDate);
+        }
+        delegator.storeAll(statuses);
+        Debug.logInfo("Rebuilt " + balances.size() + " GL account daily balances"
+                + (UtilValidate.isNotEmpty(organizationPartyId) ? " of organization [" + organizationPartyId + "]" : ""), MODULE);
+        return balances.size();
+    }
+
+    /**
+     * Returns the sums of the amounts of the posted accounting transaction entries, excluding the period closing
+     * transactions, with a transaction date in a range. The result holds the same rows as the AcctgTransEntrySums
+     * view selected with the same conditions: one map per GL account and debit/credit flag with the
+     * <code>glAccountId</code>, <code>accountName</code>, <code>accountCode</code>, <code>debitCreditFlag</code> and
+     * <code>amount</code> keys, ordered by GL account.
+     * @param delegator the delegator
+     * @param organizationPartyIds the organizations of the entries
+     * @param glFiscalTypeId the fiscal type of the transactions
+     * @param glAccountClassIds the classes of the GL accounts
+     * @param fromDate the start of the range, inclusive
+     * @param thruDate the end of the range, exclusive
+     * @return the list of sums
+     * @throws GenericEntityException if the balances or entries cannot be read
+     */
+    public static List<Map<String, Object>> getAccountEntrySums(Delegator delegator, Collection<String> organizationPartyIds,
+            String glFiscalTypeId, Collection<String> glAccountClassIds, Timestamp fromDate, Timestamp thruDate) throws GenericEntityException {
+        return getAccountEntrySums(delegator, organizationPartyIds, glFiscalTypeId, glAccountClassIds, fromDate, thruDate, false);
+    }
+
+    /**
+     * Returns the sums of the amounts of the posted accounting transaction entries with a transaction date in a range,
+     * as {@link #getAccountEntrySums(Delegator, Collection, String, Collection, Timestamp, Timestamp)}.
+     * @param delegator the delegator
+     * @param organizationPartyIds the organizations of the entries
+     * @param glFiscalTypeId the fiscal type of the transactions
+     * @param glAccountClassIds the classes of the GL accounts
+     * @param fromDate the start of the range, inclusive
+     * @param thruDate the end of the range, exclusive
+     * @param includePeriodClosing whether the entries of the period closing transactions are included
+     * @return the list of sums
+     * @throws GenericEntityException if the balances or entries cannot be read
+     */
+    public static List<Map<String, Object>> getAccountEntrySums(Delegator delegator, Collection<String> organizationPartyIds,
+            String glFiscalTypeId, Collection<String> glAccountClassIds, Timestamp fromDate, Timestamp thruDate,
+            boolean includePeriodClosing) throws GenericEntityException {
+        List<EntityCondition> conditions = UtilMisc.toList(
+                EntityCondition.makeCondition("glFiscalTypeId", glFiscalTypeId),
+                EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, glAccountClassIds));
+        Map<String, AccountSums> sums = sumPosted(delegator, organizationPartyIds, conditions, fromDate, thruDate, includePeriodClosing);
+
+        List<Map<String, Object>> entrySums = new LinkedList<>();
+        for (AccountSums accountSums : sums.values()) {
+            boolean hasDebits = accountSums.debits.signum() != 0;
+            boolean hasCredits = accountSums.credits.signum() != 0;
+            if (hasDebits || !hasCredits) {
+                entrySums.add(accountSums.toMap("D", accountSums.debits));
+            }
+            if (hasCredits) {
+                entrySums.add(accountSums.toMap("C", accountSums.credits));
+            }
+        }
+        return entrySums;
+    }
+
+    /**
+     * Returns the net income of a date range, computed as the <code>totalNetIncome</code> of the prepareIncomeStatement
+     * service: the sum of the balances of the revenue and income accounts minus the balances of the expense accounts.
+     * @param delegator the delegator
+     * @param organizationPartyIds the organizations of the entries
+     * @param glFiscalTypeId the fiscal type of the transactions
+     * @param fromDate the start of the range, inclusive
+     * @param thruDate the end of the range, exclusive
+     * @return the net income
+     * @throws GenericEntityException if the balances or entries cannot be read
+     */
+    public static BigDecimal getNetIncome(Delegator delegator, Collection<String> organizationPartyIds, String glFiscalTypeId,
+            Timestamp fromDate, Timestamp thruDate) throws GenericEntityException {
+        List<String> glAccountClassIds = new LinkedList<>();
+        for (String glAccountClassId : UtilMisc.toList("EXPENSE", "REVENUE", "INCOME")) {
+            GenericValue glAccountClass = EntityQuery.use(delegator).from("GlAccountClass")
+                    .where("glAccountClassId", glAccountClassId).cache().queryOne();
+            glAccountClassIds.addAll(UtilAccounting.getDescendantGlAccountClassIds(glAccountClass));
+        }
+        List<EntityCondition> conditions = UtilMisc.toList(
+                EntityCondition.makeCondition("glFiscalTypeId", glFiscalTypeId),
+                EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, glAccountClassIds));
+
+        BigDecimal netIncome = BigDecimal.ZERO;
+        for (AccountSums accountSums : sumPosted(delegator, organizationPartyIds, conditions, fromDate, thruDate, false).values()) {
+            GenericValue glAccount = EntityQuery.use(delegator).from("GlAccount")
+                    .where("glAccountId", accountSums.glAccountId).cache().queryOne();
+            // debits of credit accounts and credits of debit accounts decrease the balance
+            BigDecimal debits = UtilAccounting.isCreditAccount(glAccount) ? accountSums.debits.negate() : accountSums.debits;
+            BigDecimal credits = UtilAccounting.isDebitAccount(glAccount) ? accountSums.credits.negate() : accountSums.credits;
+            BigDecimal balance = debits.add(credits);
+            netIncome = netIncome.add(UtilAccounting.isExpenseAccount(glAccount) ? balance.negate() : balance);
+        }
+        return netIncome;
+    }
+
+    /**
+     * Returns the total posted debits and credits of a GL account before a date, including the period closing
+     * transactions.
+     * @param delegator the delegator
+     * @param organizationPartyId the organization of the entries
+     * @param glAccountId the GL account of the entries
+     * @param glFiscalTypeId the fiscal type of the transactions
+     * @param thruDate the end of the range, exclusive
+     * @return a map with the total debits under the <code>D</code> key and the total credits under the <code>C</code> key
+     * @throws GenericEntityException if the balances or entries cannot be read
+     */
+    public static Map<String, BigDecimal> getPostedTotals(Delegator delegator, String organizationPartyId, String glAccountId,
+            String glFiscalTypeId, Timestamp thruDate) throws GenericEntityException {
+        List<EntityCondition> conditions = UtilMisc.toList(
+                EntityCondition.makeCondition("glAccountId", glAccountId),
+                EntityCondition.makeCondition("glFiscalTypeId", glFiscalTypeId));
+        AccountSums accountSums = sumPosted(delegator, UtilMisc.toList(organizationPartyId), conditions, null, thruDate, true).get(glAccountId);
+        if (accountSums == null) {
+            return UtilMisc.toMap("D", BigDecimal.ZERO, "C", BigDecimal.ZERO);
+        }
+        return UtilMisc.toMap("D", accountSums.debits, "C", accountSums.credits);
+    }
+
+    /**
+     * Sums the posted amounts of a date range by GL account: the whole days of the range are read from the daily
+     * balances of the organizations whose balances were rebuilt, and from the entries for the other organizations and
+     * for the partial days at the bounds of the range.
+     */
+    private static Map<String, AccountSums> sumPosted(Delegator delegator, Collection<String> organizationPartyIds,
+            List<EntityCondition> conditions, Timestamp fromDate, Timestamp thruDate, boolean includePeriodClosing) throws GenericEntityException {
+        Map<String, AccountSums> sums = new TreeMap<>();
+        List<EntityCondition> allConditions = withOrganizations(conditions, organizationPartyIds);
+        Timestamp firstDayStart = fromDate;
+        if (fromDate != null && !fromDate.equals(UtilDateTime.getDayStart(fromDate))) {
+            firstDayStart = UtilDateTime.getNextDayStart(fromDate);
+        }
+        Timestamp lastDayStart = UtilDateTime.getDayStart(thruDate);
+        if (firstDayStart != null && !firstDayStart.before(lastDayStart)) {
+            addEntrySums(delegator, sums, allConditions, fromDate, thruDate, includePeriodClosing);
+            return sums;
+        }
+        if (fromDate != null && fromDate.before(firstDayStart)) {
+            addEntrySums(delegator, sums, allConditions, fromDate, firstDayStart, includePeriodClosing);
+        }
+        List<String> builtPartyIds = EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator).from("GlAccountDailyBalanceStatus")
+                .where(EntityCondition.makeCondition("organizationPartyId", EntityOperator.IN, organizationPartyIds),
+                        EntityCondition.makeCondition("balancesBuiltDate", EntityOperator.NOT_EQUAL, null))
+                .queryList(), "organizationPartyId", true);
+        List<String> unbuiltPartyIds = new LinkedList<>(organizationPartyIds);
+        unbuiltPartyIds.removeAll(builtPartyIds);
+        if (!builtPartyIds.isEmpty()) {
+            addDailyBalanceSums(delegator, sums, withOrganizations(conditions, builtPartyIds), firstDayStart, lastDayStart,
+                    includePeriodClosing);
+        }
+        if (!unbuiltPartyIds.isEmpty()) {
+            addEntrySums(delegator, sums, withOrganizations(conditions, unbuiltPartyIds), firstDayStart, lastDayStart,
+                    includePeriodClosing);
+        }
+        if (lastDayStart.before(thruDate)) {
+            addEntrySums(delegator, sums, allConditions, lastDayStart, thruDate, includePeriodClosing);
+        }
+        return sums;
+    }
+
+    private static List<EntityCondition> withOrganizations(List<EntityCondition> conditions, Collection<String> organizationPartyIds) {
+        List<EntityCondition> organizationConditions = new LinkedList<>(conditions);
+        organizationConditions.add(EntityCondition.makeCondition("organizationPartyId", EntityOperator.IN, organizationPartyIds));
+        return organizationConditions;
+    }
+
+    /**
+     * Adds the sums of the daily balances of a range of whole days.
+     */
+    private static void addDailyBalanceSums(Delegator delegator, Map<String, AccountSums> sums, List<EntityCondition> conditions,
+            Timestamp fromDate, Timestamp thruDate, boolean includePeriodClosing) throws GenericEntityException {
+        List<EntityCondition> balanceConditions = new LinkedList<>(conditions);
+        if (fromDate != null) {
+            balanceConditions.add(EntityCondition.makeCondition("balanceDate", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
+        }
+        balanceConditions.add(EntityCondition.makeCondition("balanceDate", EntityOperator.LESS_THAN, thruDate));
+        List<GenericValue> balanceSums = EntityQuery.use(delegator)
+                .select("glAccountId", "accountName", "accountCode", "postedDebits", "postedCredits", "closingDebits", "closingCredits")
+                .from("GlAccountDailyBalanceSums").where(balanceConditions).queryList();
+        for (GenericValue balanceSum : balanceSums) {
+            AccountSums accountSums = getAccountSums(sums, balanceSum);
+            accountSums.add("D", balanceSum.getBigDecimal("postedDebits"));
+            accountSums.add("C", balanceSum.getBigDecimal("postedCredits"));
+            if (includePeriodClosing) {
+                accountSums.add("D", balanceSum.getBigDecimal("closingDebits"));
+                accountSums.add("C", balanceSum.getBigDecimal("closingCredits"));
+            }
+        }
+    }
+
+    private static void addEntrySums(Delegator delegator, Map<String, AccountSums> sums, List<EntityCondition> conditions,
+            Timestamp fromDate, Timestamp thruDate, boolean includePeriodClosing) throws GenericEntityException {
+        List<EntityCondition> entryConditions = new LinkedList<>(conditions);
+        entryConditions.add(EntityCondition.makeCondition("isPosted", "Y"));
+        if (!includePeriodClosing) {
+            entryConditions.add(EntityCondition.makeCondition(
+                    EntityCondition.makeCondition("acctgTransTypeId", EntityOperator.NOT_EQUAL, PERIOD_CLOSING),
+                    EntityOperator.OR,
+                    EntityCondition.makeCondition("acctgTransTypeId", null)));
+        }
+        if (fromDate != null) {
+            entryConditions.add(EntityCondition.makeCondition("transactionDate", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
+        }
+        entryConditions.add(EntityCondition.makeCondition("transactionDate", EntityOperator.LESS_THAN, thruDate));
+        List<GenericValue> entrySums = EntityQuery.use(delegator)
+                .select("glAccountId", "accountName", "accountCode", "debitCreditFlag", "amount")
+                .from("AcctgTransEntrySums").where(entryConditions).queryList();
+        for (GenericValue entrySum : entrySums) {
+            getAccountSums(sums, entrySum).add(entrySum.getString("debitCreditFlag"), entrySum.getBigDecimal("amount"));
+        }
+    }
+
+    private static AccountSums getAccountSums(Map<String, AccountSums> sums, GenericValue value) {
+        return sums.computeIfAbsent(value.getString("glAccountId"),
+                k -> new AccountSums(k, value.getString("accountName"), value.getString("accountCode")));
+    }
+
+    private static GenericValue makeDailyBalance(Delegator delegator, Map<String, Object> pk) {
+        GenericValue balance = delegator.makeValue("GlAccountDailyBalance", pk);
+        balance.set("postedDebits", BigDecimal.ZERO);
+        balance.set("postedCredits", BigDecimal.ZERO);
+        balance.set("closingDebits", BigDecimal.ZERO);
+        balance.set("closingCredits", BigDecimal.ZERO);
+        return balance;
+    }
+
+    private static final class AccountSums {
+        private final String glAccountId;
+        private final String accountName;
+        private final String accountCode;
+        private BigDecimal debits = BigDecimal.ZERO;
+        private BigDecimal credits = BigDecimal.ZERO;
+
+        AccountSums(String glAccountId, String accountName, String accountCode) {
+            this.glAccountId = glAccountId;
+            this.accountName = accountName;
+            this.accountCode = accountCode;
+        }
+
+        void add(String debitCreditFlag, BigDecimal amount) {
+            if (amount == null) {
+                return;
+            }
+            if ("D".equals(debitCreditFlag)) {
+                debits = debits.add(amount);
+            } else if ("C".equals(debitCreditFlag)) {
+                credits = credits.add(amount);
+            }
+        }
+
+        Map<String, Object> toMap(String debitCreditFlag, BigDecimal amount) {
+            return UtilMisc.toMap("glAccountId", glAccountId, "accountName", accountName, "accountCode", accountCode,
+                    "debitCreditFlag", debitCreditFlag, "amount", amount);
+        }
+    }
+}
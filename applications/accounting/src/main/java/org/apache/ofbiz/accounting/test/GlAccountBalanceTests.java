@@ -0,0 +1,307 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+
+package org.apache.ofbiz.accounting.test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.accounting.ledger.GlAccountBalanceWorker;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityUtil;
+import org.apache.ofbiz.service.ServiceUtil;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Compares the sums of the financial reports read from the GL account daily balances with the sums of the entries
+ * read by the reports before, on the demo data.
+ */
+public class GlAccountBalanceTests extends OFBizTestCase {
+
+    private static final String ORGANIZATION = "Company";
+    private static final List<String> ORGANIZATIONS = UtilMisc.toList(ORGANIZATION);
+    private static final String FISCAL_TYPE = "ACTUAL";
+    /** Date ranges of the demo transactions, with whole and partial days at their bounds. */
+    private static final Timestamp[][] RANGES = {
+        {Timestamp.valueOf("2009-01-01 00:00:00"), Timestamp.valueOf("2010-01-01 00:00:00")},
+        {Timestamp.valueOf("2009-01-01 10:40:00"), Timestamp.valueOf("2009-09-17 12:00:00")},
+        {Timestamp.valueOf("2009-01-02 11:00:00"), Timestamp.valueOf("2009-01-03 12:00:00")},
+        {Timestamp.valueOf("2009-01-02 11:00:00"), Timestamp.valueOf("2009-01-02 12:00:00")},
+        {Timestamp.valueOf("2000-01-01 00:00:00"), Timestamp.valueOf("2100-01-01 00:00:00")}
+    };
+
+    public GlAccountBalanceTests(String name) {
+        super(name);
+    }
+
+    /**
+     * Test the sums of the demo data, whose entries are added to the daily balances when they are loaded.
+     * @throws Exception the exception
+     */
+    public void testLoadedDailyBalances() throws Exception {
+        assertFalse("The demo entries are in the daily balances",
+                from("GlAccountDailyBalance").where("organizationPartyId", ORGANIZATION).queryList().isEmpty());
+        assertNotNull("The reports read the daily balances", getBalancesBuiltDate());
+        assertSameSums();
+    }
+
+    /**
+     * Test the sums read from the entries when the ledger has no daily balance, as a ledger created before them.
+     * @throws Exception the exception
+     */
+    public void testSumsWithoutDailyBalances() throws Exception {
+        removeDailyBalances();
+        try {
+            assertSameSums();
+        } finally {
+            rebuildDailyBalances();
+        }
+    }
+
+    /**
+     * Test the sums read from the entries when only the transactions posted since the upgrade of a ledger created before
+     * the daily balances are in the daily balances, then from the rebuilt balances.
+     * @throws Exception the exception
+     */
+    public void testSumsWithPartialDailyBalances() throws Exception {
+        removeDailyBalances();
+        try {
+            createPostedTransaction("GLDB_PARTIAL", Timestamp.valueOf("2009-01-02 09:00:00"), new BigDecimal("45.67"));
+            assertFalse("The posted transaction is in the daily balances",
+                    from("GlAccountDailyBalance").where("organizationPartyId", ORGANIZATION).queryList().isEmpty());
+            assertNull("The reports do not read the daily balances before they are rebuilt", getBalancesBuiltDate());
+            assertSameSums();
+        } finally {
+            rebuildDailyBalances();
+        }
+        assertNotNull("The reports read the rebuilt daily balances", getBalancesBuiltDate());
+        assertSameSums();
+    }
+
+    /**
+     * Test two transactions posted at the same time on a day having no daily balance yet are both added to the balance
+     * created by the first one.
+     * @throws Exception the exception
+     */
+    public void testConcurrentFirstPostings() throws Exception {
+        Timestamp transactionDate = Timestamp.valueOf("2011-03-15 10:00:00");
+        Map<String, Object> pk = UtilMisc.toMap("organizationPartyId", ORGANIZATION, "glAccountId", "111100",
+                "glFiscalTypeId", FISCAL_TYPE, "balanceDate", Timestamp.valueOf("2011-03-15 00:00:00"));
+        assertNull("The day has no daily balance", from("GlAccountDailyBalance").where(pk).queryOne());
+        List<String> acctgTransIds = UtilMisc.toList("GLDB_CONC1", "GLDB_CONC2");
+        for (String acctgTransId : acctgTransIds) {
+            createTransaction(acctgTransId, transactionDate, new BigDecimal("10.00"), "N");
+        }
+
+        CyclicBarrier barrier = new CyclicBarrier(acctgTransIds.size());
+        ExecutorService executor = Executors.newFixedThreadPool(acctgTransIds.size());
+        try {
+            List<Future<Void>> postings = new LinkedList<>();
+            for (String acctgTransId : acctgTransIds) {
+                postings.add(executor.submit(() -> {
+                    boolean beganTransaction = TransactionUtil.begin();
+                    try {
+                        GenericValue acctgTrans = from("AcctgTrans").where("acctgTransId", acctgTransId).queryOne();
+                        acctgTrans.set("isPosted", "Y");
+                        acctgTrans.store();
+                        barrier.await(30, TimeUnit.SECONDS);
+                        GlAccountBalanceWorker.addPostedAcctgTrans(getDelegator(), acctgTrans);
+                        // keep the lock, so the other posting has to wait for it
+                        Thread.sleep(500);
+                        TransactionUtil.commit(beganTransaction);
+                    } catch (Exception e) {
+                        TransactionUtil.rollback(beganTransaction, "Posting " + acctgTransId + " failed", e);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> posting : postings) {
+                posting.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        GenericValue balance = from("GlAccountDailyBalance").where(pk).queryOne();
+        assertNotNull("The daily balance is created", balance);
+        assertSameAmount("Debits of both postings", new BigDecimal("20.00"), balance.getBigDecimal("postedDebits"));
+        assertSameSums();
+    }
+
+    /**
+     * Test the sums of the rebuilt daily balances and the balances of computeGlAccountBalanceForTimePeriod.
+     * @throws Exception the exception
+     */
+    public void testRebuiltDailyBalances() throws Exception {
+        assertTrue("Daily balances are rebuilt", rebuildDailyBalances() > 0);
+        assertSameSums();
+
+        for (String glAccountId : UtilMisc.toList("111100", "310000", "174000")) {
+            Map<String, Object> result = getDispatcher().runSync("computeGlAccountBalanceForTimePeriod", UtilMisc.toMap(
+                    "organizationPartyId", ORGANIZATION, "customTimePeriodId", "4900", "glAccountId", glAccountId,
+                    "userLogin", getUserLogin()));
+            assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+            Map<String, BigDecimal> entrySums = getEntrySums(UtilMisc.toList(glAccountId), null,
+                    Timestamp.valueOf("2009-01-01 00:00:00"), Timestamp.valueOf("2010-01-01 00:00:00"), true);
+            assertSameAmount(glAccountId + " debits", entrySums.get(glAccountId + ":D"), (BigDecimal) result.get("postedDebits"));
+            assertSameAmount(glAccountId + " credits", entrySums.get(glAccountId + ":C"), (BigDecimal) result.get("postedCredits"));
+        }
+    }
+
+    /**
+     * Test the entries created in a posted transaction are added to the daily balances.
+     * @throws Exception the exception
+     */
+    public void testEntryOfPostedTransaction() throws Exception {
+        Timestamp fromDate = Timestamp.valueOf("2009-06-15 00:00:00");
+        Timestamp thruDate = Timestamp.valueOf("2009-06-16 00:00:00");
+        Map<String, BigDecimal> totalsBefore = GlAccountBalanceWorker.getPostedTotals(getDelegator(), ORGANIZATION, "111100",
+                FISCAL_TYPE, thruDate);
+
+        createPostedTransaction("GLDB_TEST", Timestamp.valueOf("2009-06-15 10:00:00"), new BigDecimal("12.34"));
+
+        GenericValue balance = from("GlAccountDailyBalance").where("organizationPartyId", ORGANIZATION, "glAccountId", "111100",
+                "glFiscalTypeId", FISCAL_TYPE, "balanceDate", fromDate).queryOne();
+        assertNotNull("The daily balance of the entry is created", balance);
+        Map<String, BigDecimal> totalsAfter = GlAccountBalanceWorker.getPostedTotals(getDelegator(), ORGANIZATION, "111100",
+                FISCAL_TYPE, thruDate);
+        assertSameAmount("111100 debits", totalsBefore.get("D").add(new BigDecimal("12.34")), totalsAfter.get("D"));
+        assertSameAmount("111100 credits", totalsBefore.get("C"), totalsAfter.get("C"));
+        assertSameSums();
+    }
+
+    private void createPostedTransaction(String acctgTransId, Timestamp transactionDate, BigDecimal amount) throws Exception {
+        createTransaction(acctgTransId, transactionDate, amount, "Y");
+    }
+
+    /**
+     * Creates a disbursement transaction debiting the account 111100 and crediting the account 174000.
+     */
+    private void createTransaction(String acctgTransId, Timestamp transactionDate, BigDecimal amount, String isPosted) throws Exception {
+        GenericValue acctgTrans = getDelegator().makeValue("AcctgTrans", UtilMisc.toMap("acctgTransId", acctgTransId,
+                "acctgTransTypeId", "DISBURSEMENT", "transactionDate", transactionDate, "isPosted", isPosted,
+                "postedDate", "Y".equals(isPosted) ? transactionDate : null, "glFiscalTypeId", FISCAL_TYPE));
+        acctgTrans.create();
+        getDelegator().create("AcctgTransEntry", UtilMisc.toMap("acctgTransId", acctgTransId, "acctgTransEntrySeqId", "00001",
+                "glAccountId", "111100", "organizationPartyId", ORGANIZATION, "amount", amount,
+                "currencyUomId", "USD", "debitCreditFlag", "D"));
+        getDelegator().create("AcctgTransEntry", UtilMisc.toMap("acctgTransId", acctgTransId, "acctgTransEntrySeqId", "00002",
+                "glAccountId", "174000", "organizationPartyId", ORGANIZATION, "amount", amount,
+                "currencyUomId", "USD", "debitCreditFlag", "C"));
+    }
+
+    /**
+     * Removes the daily balances of the organization and their status, as in a ledger created before them.
+     */
+    private void removeDailyBalances() throws Exception {
+        getDelegator().removeByAnd("GlAccountDailyBalance", "organizationPartyId", ORGANIZATION);
+        getDelegator().removeByAnd("GlAccountDailyBalanceStatus", "organizationPartyId", ORGANIZATION);
+    }
+
+    private Timestamp getBalancesBuiltDate() throws Exception {
+        GenericValue status = from("GlAccountDailyBalanceStatus").where("organizationPartyId", ORGANIZATION).queryOne();
+        return status == null ? null : status.getTimestamp("balancesBuiltDate");
+    }
+
+    private int rebuildDailyBalances() throws Exception {
+        Map<String, Object> result = getDispatcher().runSync("rebuildGlAccountDailyBalances",
+                UtilMisc.toMap("organizationPartyId", ORGANIZATION, "userLogin", getUserLogin()));
+        assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+        return (Integer) result.get("balanceCount");
+    }
+
+    /**
+     * Asserts the report sums and net income of the ranges are the sums of the entries the reports read before.
+     */
+    private void assertSameSums() throws Exception {
+        List<String> glAccountClassIds = EntityUtil.getFieldListFromEntityList(from("GlAccountClass").queryList(),
+                "glAccountClassId", true);
+        for (Timestamp[] range : RANGES) {
+            String message = "From " + range[0] + " to " + range[1];
+            Map<String, BigDecimal> reportSums = new TreeMap<>();
+            for (Map<String, Object> sum : GlAccountBalanceWorker.getAccountEntrySums(getDelegator(), ORGANIZATIONS, FISCAL_TYPE,
+                    glAccountClassIds, range[0], range[1])) {
+                BigDecimal amount = (BigDecimal) sum.get("amount");
+                if (amount != null && amount.signum() != 0) {
+                    reportSums.put(sum.get("glAccountId") + ":" + sum.get("debitCreditFlag"), amount.stripTrailingZeros());
+                }
+            }
+            assertEquals(message, getEntrySums(null, glAccountClassIds, range[0], range[1], false), reportSums);
+
+            Map<String, Object> result = getDispatcher().runSync("prepareIncomeStatement", UtilMisc.toMap("organizationPartyId",
+                    ORGANIZATION, "glFiscalTypeId", FISCAL_TYPE, "fromDate", range[0], "thruDate", range[1], "userLogin", getUserLogin()));
+            assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+            assertSameAmount(message + ", net income", (BigDecimal) result.get("totalNetIncome"),
+                    GlAccountBalanceWorker.getNetIncome(getDelegator(), ORGANIZATIONS, FISCAL_TYPE, range[0], range[1]));
+        }
+    }
+
+    /**
+     * Returns the non zero sums of the posted entries by GL account and debit/credit flag, read as the financial reports
+     * did before the daily balances.
+     */
+    private Map<String, BigDecimal> getEntrySums(Collection<String> glAccountIds, Collection<String> glAccountClassIds,
+            Timestamp fromDate, Timestamp thruDate, boolean includePeriodClosing) throws Exception {
+        List<EntityCondition> conditions = UtilMisc.toList(
+                EntityCondition.makeCondition("organizationPartyId", EntityOperator.IN, ORGANIZATIONS),
+                EntityCondition.makeCondition("isPosted", "Y"),
+                EntityCondition.makeCondition("glFiscalTypeId", FISCAL_TYPE),
+                EntityCondition.makeCondition("transactionDate", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate),
+                EntityCondition.makeCondition("transactionDate", EntityOperator.LESS_THAN, thruDate));
+        if (glAccountIds != null) {
+            conditions.add(EntityCondition.makeCondition("glAccountId", EntityOperator.IN, glAccountIds));
+        }
+        if (glAccountClassIds != null) {
+            conditions.add(EntityCondition.makeCondition("glAccountClassId", EntityOperator.IN, glAccountClassIds));
+        }
+        if (!includePeriodClosing) {
+            conditions.add(EntityCondition.makeCondition("acctgTransTypeId", EntityOperator.NOT_EQUAL, "PERIOD_CLOSING"));
+        }
+        Map<String, BigDecimal> sums = new TreeMap<>();
+        for (GenericValue entrySum : from("AcctgTransEntrySums").where(conditions).queryList()) {
+            BigDecimal amount = entrySum.getBigDecimal("amount");
+            if (amount != null && amount.signum() != 0) {
+                sums.merge(entrySum.getString("glAccountId") + ":" + entrySum.getString("debitCreditFlag"),
+                        amount.stripTrailingZeros(), (a, b) -> a.add(b).stripTrailingZeros());
+            }
+        }
+        return sums;
+    }
+
+    private static void assertSameAmount(String message, BigDecimal expected, BigDecimal actual) {
+        BigDecimal expectedAmount = expected == null ? BigDecimal.ZERO : expected;
+        BigDecimal actualAmount = actual == null ? BigDecimal.ZERO : actual;
+        assertEquals(message + ": expected " + expectedAmount + " but was " + actualAmount, 0, expectedAmount.compareTo(actualAmount));
+    }
+}
@@ -200,43 +200,16 @@ public class DataEvents {
             https = "true";
         }
 
-        // get the data RESOURCE stream and content length
-        Map<String, Object> resourceData;
+        // stream the data RESOURCE to the browser, answering the conditional and range requests
         try {
-            resourceData = DataResourceWorker.getDataResourceStream(dataResource, https, webSiteId, locale, contextRoot, false);
+            DataResourceStreamer.streamDataResource(request, response, dataResource, mimeType, dataName, https, webSiteId, locale,
+                    contextRoot);
         } catch (IOException | GeneralException e) {
-            Debug.logError(e, "Error getting DataResource stream", MODULE);
+            Debug.logError(e, "Unable to write content to browser", MODULE);
             request.setAttribute("_ERROR_MESSAGE_", e.getMessage());
-            return "error";
-        }
-
-        // get the stream data
-        InputStream stream = null;
-        Long length = null;
-
-        if (resourceData != null) {
-            stream = (InputStream) resourceData.get("stream");
-            length = (Long) resourceData.get("length");
-        }
-        Debug.logInfo("Got RESOURCE data stream: " + length + " bytes", MODULE);
-
-        // stream the content to the browser
-        if (stream != null && length != null) {
-            try {
-                UtilHttp.streamContentToBrowser(response, stream, length.intValue(), mimeType, dataName);
-            } catch (IOException e) {
-                Debug.logError(e, "Unable to write content to browser", MODULE);
-                request.setAttribute("_ERROR_MESSAGE_", e.getMessage());
-                // this must be handled with a special error string because the output stream has been already used and we will not be able
-                // to return the error page;
-                // the "io-error" should be associated to a response of type "none"
-                return "io-error";
-            }
-        } else {
-            String errorMsg = "No data is available.";
-            Debug.logError(errorMsg, MODULE);
-            request.setAttribute("_ERROR_MESSAGE_", errorMsg);
-            return "error";
+            // once the output stream has been used we will not be able to return the error page;
+            // the "io-error" should be associated to a response of type "none"
+            return response.isCommitted() ? "io-error" : "error";
         }
 
         return "success";
@@ -307,7 +280,9 @@ public class DataEvents {
             OutputStream os = response.getOutputStream();
             Map<String, Object> resourceData = DataResourceWorker.getDataResourceStream(dataResource, "",
                     application.getInitParameter("webSiteId"), UtilHttp.getLocale(request), application.getRealPath("/"), false);
-            os.write(IOUtils.toByteArray((InputStream) resourceData.get("stream")));
+            try (InputStream stream = (InputStream) resourceData.get("stream")) {
+                IOUtils.copy(stream, os);
+            }
             os.flush();
         } catch (GeneralException | IOException e) {
             String errMsg = "Error downloading digital product content: " + e.toString();
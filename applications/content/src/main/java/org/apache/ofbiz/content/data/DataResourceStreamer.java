@@ -0,0 +1,515 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.content.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.UtilHttp;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.datasource.GenericHelperInfo;
+import org.apache.ofbiz.entity.jdbc.SQLProcessor;
+import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.util.EntityQuery;
+
+/**
+ * Streams the data of a DataResource to an HTTP response.
+ * <p>The binary data of the *_OBJECT data resources is read through a JDBC stream instead of being loaded in a
+ * <code>byte[]</code>, and the files are copied with <code>FileChannel.transferTo</code>. The responses carry an
+ * ETag made of the last update stamps of the DataResource and of its data, so that conditional requests
+ * (<code>If-None-Match</code>) are answered with a 304 without reading the data, and single byte range requests
+ * (<code>Range</code>, <code>If-Range</code>) are answered with a 206.</p>
+ * <p>The binary data up to <code>stream.cache.maxentrysize</code> bytes is kept in a cache limited to
+ * <code>stream.cache.maxsize</code> bytes in total (content.properties), the least recently used data being evicted
+ * first. The cached data is only served while the ETag is unchanged.</p>
+ * <p>The JDBC stream of an object data resource holds a pooled database connection until the stream is closed, so a
+ * slow client keeps a connection for the whole duration of its download: the size of the connection pool bounds the
+ * number of concurrent downloads of uncached object data. The callers of
+ * {@link DataResourceWorker#getDataResourceStream} must close the stream it returns in a <code>finally</code> block or
+ * a try-with-resources statement.</p>
+ */
+public final class DataResourceStreamer {
+
+    private static final String MODULE = DataResourceStreamer.class.getName();
+    private static final String PROPERTY_RESOURCE = "content";
+    private static final int BUFFER_SIZE = UtilProperties.getPropertyAsInteger(PROPERTY_RESOURCE, "stream.buffersize", 8192);
+    /** The entity and field holding the data of each *_OBJECT data resource type */
+    private static final Map<String, String[]> OBJECT_FIELDS = UtilMisc.toMap(
+            "IMAGE_OBJECT", new String[] {"ImageDataResource", "imageData"},
+            "VIDEO_OBJECT", new String[] {"VideoDataResource", "videoData"},
+            "AUDIO_OBJECT", new String[] {"AudioDataResource", "audioData"},
+            "OTHER_OBJECT", new String[] {"OtherDataResource", "dataResourceContent"});
+    private static final BytesCache CACHE = new BytesCache(
+            UtilProperties.getPropertyAsLong(PROPERTY_RESOURCE, "stream.cache.maxsize", 16L * 1024 * 1024),
+            UtilProperties.getPropertyAsLong(PROPERTY_RESOURCE, "stream.cache.maxentrysize", 256L * 1024));
+
+    private DataResourceStreamer() { }
+
+    /**
+     * Writes the data of a DataResource to a response, honoring the conditional and range headers of the request.
+     * The caller has checked the permissions of the user on the data resource.
+     * @param request the request
+     * @param response the response
+     * @param dataResource the DataResource to stream
+     * @param contentType the content type of the response, not set when empty
+     * @param fileName the name of the downloaded file, no Content-Disposition header is set when empty
+     * @param https "true" to build the URL of a relative URL_RESOURCE with HTTPS
+     * @param webSiteId the web site of a relative URL_RESOURCE
+     * @param locale the locale
+     * @param contextRoot the root directory of the CONTEXT_FILE data resources
+     * @throws IOException if the data cannot be read or written
+     * @throws GeneralException if the data resource has no data or is of a type which cannot be streamed
+     */
+    public static void streamDataResource(HttpServletRequest request, HttpServletResponse response, GenericValue dataResource,
+            String contentType, String fileName, String https, String webSiteId, Locale locale, String contextRoot)
+            throws IOException, GeneralException {
+        Delegator delegator = dataResource.getDelegator();
+        String dataResourceId = dataResource.getString("dataResourceId");
+        String dataResourceTypeId = dataResource.getString("dataResourceTypeId");
+        String[] objectField = OBJECT_FIELDS.get(dataResourceTypeId);
+
+        // the ETag changes with the DataResource and with its data
+        File file = null;
+        String eTag = null;
+        if (objectField != null) {
+            GenericValue data = EntityQuery.use(delegator).select("lastUpdatedStamp").from(objectField[0])
+                    .where("dataResourceId", dataResourceId).queryOne();
+            if (data == null) {
+                throw new GeneralException("No " + objectField[0] + " found for the DataResource [" + dataResourceId + "]");
+            }
+            eTag = makeETag(dataResource, getTime(data.getTimestamp("lastUpdatedStamp")));
+        } else if (dataResourceTypeId.endsWith("_FILE") || dataResourceTypeId.endsWith("_FILE_BIN")) {
+            String objectInfo = dataResource.getString("objectInfo");
+            if (UtilValidate.isEmpty(objectInfo)) {
+                throw new GeneralException("No objectInfo found for FILE type [" + dataResourceTypeId + "]; cannot stream");
+            }
+            file = DataResourceWorker.getContentFile(dataResourceTypeId, objectInfo, contextRoot);
+            if (!file.isFile()) {
+                throw new FileNotFoundException("No file found: " + file.getAbsolutePath());
+            }
+            eTag = makeETag(dataResource, file.lastModified(), file.length());
+        } else if ("ELECTRONIC_TEXT".equals(dataResourceTypeId)) {
+            GenericValue data = EntityQuery.use(delegator).select("lastUpdatedStamp").from("ElectronicText")
+                    .where("dataResourceId", dataResourceId).queryOne();
+            eTag = makeETag(dataResource, data == null ? 0 : getTime(data.getTimestamp("lastUpdatedStamp")));
+        } else if (!"URL_RESOURCE".equals(dataResourceTypeId)) {
+            eTag = makeETag(dataResource, 0);
+        }
+
+        if ("Y".equals(dataResource.getString("isPublic"))) {
+            // may be stored by the browsers and the proxies, but revalidated with the ETag on each use
+            response.setHeader("Cache-Control", "public, no-cache");
+        } else {
+            UtilHttp.setResponseBrowserProxyNoCache(response);
+        }
+        if (eTag != null) {
+            response.setHeader("ETag", eTag);
+            if (matchesETag(request.getHeader("If-None-Match"), eTag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        if (UtilValidate.isNotEmpty(contentType)) {
+            response.setContentType(contentType);
+        }
+        if (UtilValidate.isNotEmpty(fileName)) {
+            UtilHttp.setContentDisposition(response, fileName);
+        }
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (objectField != null) {
+            String cacheKey = delegator.getDelegatorName() + "::" + dataResourceId;
+            byte[] bytes = CACHE.get(cacheKey, eTag);
+            if (bytes != null) {
+                writeBytes(request, response, eTag, bytes, head);
+                return;
+            }
+            try (ObjectData data = openObjectData(delegator, objectField[0], objectField[1], dataResourceId)) {
+                if (data == null) {
+                    throw new GeneralException("No " + objectField[0] + " found for the DataResource [" + dataResourceId + "]");
+                }
+                long length = data.getLength();
+                if (CACHE.accepts(length)) {
+                    try (InputStream stream = data.getStream(0, length)) {
+                        bytes = IOUtils.toByteArray(stream, length);
+                    }
+                    CACHE.put(cacheKey, eTag, bytes);
+                    writeBytes(request, response, eTag, bytes, head);
+                    return;
+                }
+                long[] range = startResponse(request, response, eTag, length);
+                if (range != null && !head) {
+                    try (InputStream stream = data.getStream(range[0], range[1] - range[0] + 1)) {
+                        copy(stream, response.getOutputStream(), range[1] - range[0] + 1);
+                    }
+                }
+            }
+        } else if (file != null) {
+            long[] range = startResponse(request, response, eTag, file.length());
+            if (range != null && !head) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                    long position = range[0];
+                    long end = range[1] + 1;
+                    while (position < end) {
+                        long transferred = channel.transferTo(position, end - position, out);
+                        if (transferred <= 0) {
+                            throw new IOException("Unexpected end of the file " + file.getAbsolutePath());
+                        }
+                        position += transferred;
+                    }
+                }
+            }
+        } else {
+            Map<String, Object> resourceData = DataResourceWorker.getDataResourceStream(dataResource, https, webSiteId, locale,
+                    contextRoot, false);
+            try (InputStream stream = (InputStream) resourceData.get("stream")) {
+                long length = (Long) resourceData.get("length");
+                if (length < 0) {
+                    // unknown length of a URL_RESOURCE, sent without range support
+                    if (!head) {
+                        IOUtils.copy(stream, response.getOutputStream(), BUFFER_SIZE);
+                    }
+                    return;
+                }
+                long[] range = startResponse(request, response, eTag, length);
+                if (range != null && !head) {
+                    IOUtils.skipFully(stream, range[0]);
+                    copy(stream, response.getOutputStream(), range[1] - range[0] + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the binary data of a *_OBJECT data resource for streaming. The stream returned holds a database connection
+     * until it is closed.
+     * @param delegator the delegator
+     * @param dataResourceTypeId the type of the data resource
+     * @param dataResourceId the ID of the data resource
+     * @return a map with the <code>stream</code> and its <code>length</code>, the stream being empty if the data
+     *         resource has no data, or <code>null</code> if the type is not an object type
+     * @throws GenericEntityException if the data cannot be read
+     */
+    static Map<String, Object> getObjectStream(Delegator delegator, String dataResourceTypeId, String dataResourceId)
+            throws GenericEntityException {
+        String[] objectField = OBJECT_FIELDS.get(dataResourceTypeId);
+        if (objectField == null) {
+            return null;
+        }
+        ObjectData data = openObjectData(delegator, objectField[0], objectField[1], dataResourceId);
+        if (data == null) {
+            return UtilMisc.toMap("stream", new ByteArrayInputStream(new byte[0]), "length", 0L);
+        }
+        boolean opened = false;
+        try {
+            long length = data.getLength();
+            InputStream stream = new FilterInputStream(data.getStream(0, length)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        data.close();
+                    }
+                }
+            };
+            opened = true;
+            return UtilMisc.toMap("stream", stream, "length", length);
+        } finally {
+            if (!opened) {
+                data.close();
+            }
+        }
+    }
+
+    /**
+     * Parses the <code>Range</code> header of a request, only a single byte range being supported.
+     * @param rangeHeader the value of the header
+     * @param length the length of the data
+     * @return the first and last positions of the range, an empty array if the range cannot be satisfied, or
+     *         <code>null</code> if the header is absent, invalid or asks for several ranges and the whole data is sent
+     */
+    static long[] parseRange(String rangeHeader, long length) {
+        if (rangeHeader == null || !rangeHeader.startsWith("bytes=") || rangeHeader.indexOf(',') >= 0) {
+            return null;
+        }
+        String range = rangeHeader.substring("bytes=".length()).trim();
+        int dash = range.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = range.substring(0, dash).trim();
+            String last = range.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // suffix range: the last bytes of the data
+                long suffixLength = Long.parseLong(last);
+                if (suffixLength <= 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[] {Math.max(0, length - suffixLength), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return new long[0];
+            }
+            return new long[] {start, Math.min(end, length - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the value of an <code>If-None-Match</code> or <code>If-Range</code> header matches an ETag.
+     */
+    static boolean matchesETag(String header, String eTag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the status and the length headers of a response from the range requested.
+     * @return the first and last positions of the data to send, or <code>null</code> if no data must be sent
+     */
+    private static long[] startResponse(HttpServletRequest request, HttpServletResponse response, String eTag, long length) {
+        response.setHeader("Accept-Ranges", "bytes");
+        long[] range = null;
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null || (eTag != null && ifRange.trim().equals(eTag))) {
+            range = parseRange(request.getHeader("Range"), length);
+        }
+        if (range == null) {
+            response.setContentLengthLong(length);
+            return length == 0 ? null : new long[] {0, length - 1};
+        }
+        if (range.length == 0) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+        response.setContentLengthLong(range[1] - range[0] + 1);
+        return range;
+    }
+
+    private static void writeBytes(HttpServletRequest request, HttpServletResponse response, String eTag, byte[] bytes, boolean head)
+            throws IOException {
+        long[] range = startResponse(request, response, eTag, bytes.length);
+        if (range != null && !head) {
+            response.getOutputStream().write(bytes, (int) range[0], (int) (range[1] - range[0] + 1));
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        long copied = IOUtils.copyLarge(in, out, 0, length, new byte[BUFFER_SIZE]);
+        if (copied < length) {
+            throw new IOException("Unexpected end of the data, " + copied + " bytes read instead of " + length);
+        }
+    }
+
+    private static String makeETag(GenericValue dataResource, long... dataVersions) {
+        StringBuilder eTag = new StringBuilder("\"").append(Long.toHexString(getTime(dataResource.getTimestamp("lastUpdatedStamp"))));
+        for (long dataVersion : dataVersions) {
+            eTag.append('-').append(Long.toHexString(dataVersion));
+        }
+        return eTag.append('"').toString();
+    }
+
+    private static long getTime(Timestamp timestamp) {
+        return timestamp == null ? 0 : timestamp.getTime();
+    }
+
+    /**
+     * Selects the binary data of a data resource with JDBC, the row being kept open until the data is closed.
+     * @return the data, or <code>null</code> if the data resource has no data
+     */
+    private static ObjectData openObjectData(Delegator delegator, String entityName, String fieldName, String dataResourceId)
+            throws GenericEntityException {
+        ModelEntity modelEntity = delegator.getModelEntity(entityName);
+        GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName(entityName));
+        String sql = "SELECT " + modelEntity.getField(fieldName).getColName() + " FROM " + modelEntity.getTableName(helperInfo.getHelperBaseName())
+                + " WHERE " + modelEntity.getField("dataResourceId").getColName() + " = ?";
+        SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo);
+        boolean opened = false;
+        try {
+            sqlP.prepareStatement(sql);
+            sqlP.setValue(dataResourceId);
+            ResultSet resultSet = sqlP.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
+            ObjectData data;
+            try {
+                data = new ObjectData(sqlP, resultSet.getBlob(1), null);
+            } catch (SQLException e) {
+                // the driver does not map the column to a Blob (e.g. a PostgreSQL BYTEA), which it already fetched anyway
+                data = new ObjectData(sqlP, null, resultSet.getBytes(1));
+            }
+            opened = true;
+            return data;
+        } catch (SQLException e) {
+            throw new GenericEntityException("Unable to read the " + entityName + " of the DataResource [" + dataResourceId + "]", e);
+        } finally {
+            if (!opened) {
+                sqlP.close();
+            }
+        }
+    }
+
+    /**
+     * The binary data of a data resource, read from an open JDBC result set.
+     */
+    private static final class ObjectData implements AutoCloseable {
+        private final SQLProcessor sqlP;
+        private final Blob blob;
+        private final byte[] bytes;
+
+        ObjectData(SQLProcessor sqlP, Blob blob, byte[] bytes) {
+            this.sqlP = sqlP;
+            this.blob = blob;
+            this.bytes = bytes;
+        }
+
+        long getLength() throws GenericEntityException {
+            if (blob == null) {
+                return bytes == null ? 0 : bytes.length;
+            }
+            try {
+                return blob.length();
+            } catch (SQLException e) {
+                throw new GenericEntityException("Unable to read the length of the data", e);
+            }
+        }
+
+        InputStream getStream(long start, long length) throws GenericEntityException {
+            if (blob == null) {
+                return bytes == null ? new ByteArrayInputStream(new byte[0]) : new ByteArrayInputStream(bytes, (int) start, (int) length);
+            }
+            if (length == 0) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            try {
+                return blob.getBinaryStream(start + 1, length);
+            } catch (SQLException e) {
+                throw new GenericEntityException("Unable to read the data", e);
+            }
+        }
+
+        @Override
+        public void close() throws GenericEntityException {
+            if (blob != null) {
+                try {
+                    blob.free();
+                } catch (SQLException e) {
+                    Debug.logWarning("Unable to free a Blob: " + e.getMessage(), MODULE);
+                }
+            }
+            sqlP.close();
+        }
+    }
+
+    /**
+     * A least recently used cache of the binary data of data resources, limited by the total number of bytes held.
+     */
+    private static final class BytesCache {
+        private final long maxSize;
+        private final long maxEntrySize;
+        private final LinkedHashMap<String, CachedBytes> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long size;
+
+        BytesCache(long maxSize, long maxEntrySize) {
+            this.maxSize = maxSize;
+            this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        }
+
+        boolean accepts(long length) {
+            return length > 0 && length <= maxEntrySize;
+        }
+
+        synchronized byte[] get(String key, String eTag) {
+            CachedBytes cached = entries.get(key);
+            return cached != null && cached.eTag.equals(eTag) ? cached.bytes : null;
+        }
+
+        synchronized void put(String key, String eTag, byte[] bytes) {
+            CachedBytes previous = entries.put(key, new CachedBytes(eTag, bytes));
+            size += bytes.length - (previous == null ? 0 : previous.bytes.length);
+            Iterator<CachedBytes> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().bytes.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class CachedBytes {
+        private final String eTag;
+        private final byte[] bytes;
+
+        CachedBytes(String eTag, byte[] bytes) {
+            this.eTag = eTag;
+            this.bytes = bytes;
+        }
+    }
+}
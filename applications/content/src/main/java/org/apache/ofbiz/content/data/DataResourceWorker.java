@@ -1088,7 +1088,8 @@ public class DataResourceWorker implements org.apache.ofbiz.widget.content.DataR
      * @param webSiteId
      * @param locale
      * @param contextRoot
-     * @return Map containing 'stream': the InputStream and 'length' a Long containing the content-length
+     * @return Map containing 'stream': the InputStream and 'length' a Long containing the content-length. The stream must
+     *         be closed: without cache, the stream of an object data resource holds a database connection until then.
      * @throws IOException
      * @throws GeneralException
      */
@@ -1125,6 +1126,13 @@ public class DataResourceWorker implements org.apache.ofbiz.widget.content.DataR
         // object (binary) data
         }
         if (dataResourceTypeId.endsWith("_OBJECT")) {
+            if (!cache) {
+                // read through a JDBC stream instead of loading the data in memory
+                Map<String, Object> objectStream = DataResourceStreamer.getObjectStream(delegator, dataResourceTypeId, dataResourceId);
+                if (objectStream != null) {
+                    return objectStream;
+                }
+            }
             byte[] bytes = new byte[0];
             GenericValue valObj;
 
@@ -1194,9 +1202,16 @@ public class DataResourceWorker implements org.apache.ofbiz.widget.content.DataR
                                                     String rootDir) throws IOException, GeneralException {
         GenericValue dataResource = EntityQuery.use(delegator).from("DataResource").where("dataResourceId", dataResourceId).queryOne();
         Map<String, Object> resourceData = DataResourceWorker.getDataResourceStream(dataResource, https, webSiteId, locale, rootDir, false);
-        InputStream stream = (InputStream) resourceData.get("stream");
-        ByteBuffer byteBuffer = ByteBuffer.wrap(IOUtils.toByteArray(stream));
-        return byteBuffer;
+        try (InputStream stream = (InputStream) resourceData.get("stream")) {
+            long length = (Long) resourceData.get("length");
+            if (length >= 0 && length <= Integer.MAX_VALUE) {
+                // read in a buffer of the right size, instead of growing one and copying it
+                byte[] bytes = new byte[(int) length];
+                IOUtils.readFully(stream, bytes);
+                return ByteBuffer.wrap(bytes);
+            }
+            return ByteBuffer.wrap(IOUtils.toByteArray(stream));
+        }
     }
 
     @Override
@@ -146,30 +146,29 @@ public class FtpServices {
 
             GenericValue dataResource = delegator.findOne("DataResource", true, "dataResourceId", content.getString("dataResourceId"));
             Map<String, Object> resultStream = DataResourceWorker.getDataResourceStream(dataResource, null, null, locale, null, true);
-            InputStream contentStream = (InputStream) resultStream.get("stream");
-            if (contentStream == null) {
-                return ServiceUtil.returnError("DataResource " + content.getString("dataResourceId") + " return an empty stream");
-            }
-
             String path = ftpAddress.getString("filePath");
-            if (Debug.infoOn()) {
-                Debug.logInfo("storing local file remotely as: " + (UtilValidate.isNotEmpty(path) ? path + "/" : "")
-                        + content.getString("contentName"), MODULE);
-            }
             String fileName = content.getString("contentName");
             String remoteFileName = fileName;
-            boolean zipFile = "Y".equalsIgnoreCase(ftpAddress.getString("zipFile"));
-            if (zipFile) {
-                //Create zip file from content input stream
-                ByteArrayInputStream zipStream = FileUtil.zipFileStream(contentStream, fileName);
-                remoteFileName = fileName + (fileName.endsWith("zip") ? "" : ".zip");
-                ftpClient.copy(path, remoteFileName, zipStream);
-
-                zipStream.close();
-            } else {
-                ftpClient.copy(path, remoteFileName, contentStream);
+            try (InputStream contentStream = (InputStream) resultStream.get("stream")) {
+                if (contentStream == null) {
+                    return ServiceUtil.returnError("DataResource " + content.getString("dataResourceId") + " return an empty stream");
+                }
+
+                if (Debug.infoOn()) {
+                    Debug.logInfo("storing local file remotely as: " + (UtilValidate.isNotEmpty(path) ? path + "/" : "")
+                            + content.getString("contentName"), MODULE);
+                }
+                boolean zipFile = "Y".equalsIgnoreCase(ftpAddress.getString("zipFile"));
+                if (zipFile) {
+                    //Create zip file from content input stream
+                    remoteFileName = fileName + (fileName.endsWith("zip") ? "" : ".zip");
+                    try (ByteArrayInputStream zipStream = FileUtil.zipFileStream(contentStream, fileName)) {
+                        ftpClient.copy(path, remoteFileName, zipStream);
+                    }
+                } else {
+                    ftpClient.copy(path, remoteFileName, contentStream);
+                }
             }
-            contentStream.close();
 
             //test if the file is correctly sent
             if (forceTransferControlSuccess) {
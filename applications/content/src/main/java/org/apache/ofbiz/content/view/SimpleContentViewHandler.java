@@ -18,9 +18,7 @@
  *******************************************************************************/
 package org.apache.ofbiz.content.view;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.HashMap;
@@ -40,6 +38,7 @@ import org.apache.ofbiz.base.util.UtilHttp;
 import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.content.content.ContentWorker;
+import org.apache.ofbiz.content.data.DataResourceStreamer;
 import org.apache.ofbiz.content.data.DataResourceWorker;
 import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericValue;
@@ -159,8 +158,6 @@ public class SimpleContentViewHandler extends AbstractViewHandler {
                 GenericValue dataResource = EntityQuery.use(delegator).from("DataResource").where("dataResourceId",
                         dataResourceId).cache().queryOne();
                 // DEJ20080717: why are we rendering the DataResource directly instead of rendering the content?
-                ByteBuffer byteBuffer = DataResourceWorker.getContentAsByteBuffer(delegator, dataResourceId, https, webSiteId, locale, rootDir);
-                ByteArrayInputStream bais = new ByteArrayInputStream(byteBuffer.array());
                 // setup character encoding and content type
                 String charset = dataResource.getString("characterSetId");
                 if (UtilValidate.isEmpty(charset)) {
@@ -217,7 +214,7 @@ public class SimpleContentViewHandler extends AbstractViewHandler {
                         throw new ViewHandlerException(errorMsg);
                     }
                 }
-                UtilHttp.streamContentToBrowser(response, bais, byteBuffer.limit(), contentType2, fileName);
+                DataResourceStreamer.streamDataResource(request, response, dataResource, contentType2, fileName, https, webSiteId, locale, rootDir);
             }
         } catch (IOException | GeneralException e) {
             throw new ViewHandlerException(e.getMessage());
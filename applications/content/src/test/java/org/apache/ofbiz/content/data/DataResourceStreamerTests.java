@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.content.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DataResourceStreamerTests {
+
+    @Test
+    public void parseRangeWithFirstAndLastPositions() {
+        assertArrayEquals(new long[] {0, 99}, DataResourceStreamer.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] {500, 999}, DataResourceStreamer.parseRange("bytes=500-1500", 1000));
+        assertArrayEquals(new long[] {10, 10}, DataResourceStreamer.parseRange("bytes= 10 - 10", 1000));
+    }
+
+    @Test
+    public void parseOpenEndedRange() {
+        assertArrayEquals(new long[] {500, 999}, DataResourceStreamer.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] {0, 0}, DataResourceStreamer.parseRange("bytes=0-", 1));
+    }
+
+    @Test
+    public void parseSuffixRange() {
+        assertArrayEquals(new long[] {900, 999}, DataResourceStreamer.parseRange("bytes=-100", 1000));
+        // a suffix longer than the data asks for the whole data
+        assertArrayEquals(new long[] {0, 999}, DataResourceStreamer.parseRange("bytes=-5000", 1000));
+    }
+
+    @Test
+    public void parseUnsatisfiableRange() {
+        assertEquals(0, DataResourceStreamer.parseRange("bytes=1000-", 1000).length);
+        assertEquals(0, DataResourceStreamer.parseRange("bytes=2000-3000", 1000).length);
+        assertEquals(0, DataResourceStreamer.parseRange("bytes=-0", 1000).length);
+        assertEquals(0, DataResourceStreamer.parseRange("bytes=-100", 0).length);
+    }
+
+    @Test
+    public void parseMultipleRangesSendsTheWholeData() {
+        assertNull(DataResourceStreamer.parseRange("bytes=0-99,200-299", 1000));
+        assertNull(DataResourceStreamer.parseRange("bytes=0-99, -100", 1000));
+    }
+
+    @Test
+    public void parseInvalidRange() {
+        assertNull(DataResourceStreamer.parseRange(null, 1000));
+        assertNull(DataResourceStreamer.parseRange("items=0-99", 1000));
+        assertNull(DataResourceStreamer.parseRange("bytes=99-0", 1000));
+        assertNull(DataResourceStreamer.parseRange("bytes=100", 1000));
+        assertNull(DataResourceStreamer.parseRange("bytes=a-b", 1000));
+    }
+
+    @Test
+    public void matchesStrongETag() {
+        assertTrue(DataResourceStreamer.matchesETag("\"abc\"", "\"abc\""));
+        assertTrue(DataResourceStreamer.matchesETag("\"xyz\", \"abc\"", "\"abc\""));
+        assertFalse(DataResourceStreamer.matchesETag("\"xyz\"", "\"abc\""));
+        assertFalse(DataResourceStreamer.matchesETag(null, "\"abc\""));
+    }
+
+    @Test
+    public void matchesWeakETag() {
+        assertTrue(DataResourceStreamer.matchesETag("W/\"abc\"", "\"abc\""));
+        assertTrue(DataResourceStreamer.matchesETag("\"xyz\", W/\"abc\"", "\"abc\""));
+        assertFalse(DataResourceStreamer.matchesETag("W/\"xyz\"", "\"abc\""));
+    }
+
+    @Test
+    public void matchesAnyETag() {
+        assertTrue(DataResourceStreamer.matchesETag("*", "\"abc\""));
+        assertTrue(DataResourceStreamer.matchesETag("\"xyz\", *", "\"abc\""));
+    }
+}
@@ -0,0 +1,508 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+
+package org.apache.ofbiz.manufacturing.mrp;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericPK;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityUtil;
+import org.apache.ofbiz.manufacturing.bom.BOMNode;
+import org.apache.ofbiz.manufacturing.bom.BOMTree;
+import org.apache.ofbiz.service.DispatchContext;
+import org.apache.ofbiz.service.GenericServiceException;
+import org.apache.ofbiz.service.LocalDispatcher;
+import org.apache.ofbiz.service.ServiceUtil;
+
+/**
+ * In-memory MRP run used by {@link MrpServices#executeMrp}.
+ * <p>The MrpEvent records prepared by initMrpEvents and the ProductFacility records of the facility are loaded once.
+ * The products of a bill of materials level only create events for the components of the lower levels, so they are
+ * netted in parallel; their results are then merged in productId order, which gives the same events as netting them one by one.
+ * The proposed requirements and the MrpEvent records are written when the whole run has been planned.</p>
+ * <p>Netting a product reads its inventory, bill of materials and routing, so the products are netted by a pool of
+ * <code>mrp.planner.threads</code> threads (manufacturing.properties) of its own, each thread using a database connection.</p>
+ */
+final class MrpPlanner {
+
+    private static final String MODULE = MrpPlanner.class.getName();
+    private static final String RESOURCE = "ManufacturingUiLabels";
+
+    private final Delegator delegator;
+    private final LocalDispatcher dispatcher;
+    private final GenericValue userLogin;
+    private final Locale locale;
+    private final String mrpId;
+    private final String mrpName;
+    private final String facilityId;
+    private final String manufacturingFacilityId;
+    private final Timestamp now;
+
+    /** The MrpEvent records of the run, by primary key. */
+    private final Map<GenericPK, GenericValue> events = new LinkedHashMap<>();
+    /** The primary keys of the events read from the database. */
+    private final Set<GenericPK> storedEvents = new HashSet<>();
+    /** The primary keys of the events read from the database and modified by the run. */
+    private final Set<GenericPK> updatedEvents = new HashSet<>();
+    private final Map<String, List<GenericValue>> eventsByProduct = new HashMap<>();
+    private final Map<Long, Set<String>> productsByLevel = new HashMap<>();
+    private final Map<String, GenericValue> productFacilities = new HashMap<>();
+    private final List<Proposal> proposals = new LinkedList<>();
+
+    MrpPlanner(DispatchContext dctx, String mrpId, String mrpName, String facilityId, String manufacturingFacilityId, GenericValue userLogin,
+            Locale locale, Timestamp now) {
+        this.delegator = dctx.getDelegator();
+        this.dispatcher = dctx.getDispatcher();
+        this.userLogin = userLogin;
+        this.locale = locale;
+        this.mrpId = mrpId;
+        this.mrpName = mrpName;
+        this.facilityId = facilityId;
+        this.manufacturingFacilityId = manufacturingFacilityId;
+        this.now = now;
+    }
+
+    /**
+     * Plans the run and writes the proposed requirements and the MrpEvent records.
+     * @throws GeneralException if the run cannot be planned, the message is the service error message
+     */
+    void run() throws GeneralException {
+        load();
+        int threads = Math.max(1, UtilProperties.getPropertyAsInteger("manufacturing", "mrp.planner.threads", 4));
+        ExecutorService executor = ExecutionPool.getScheduledExecutor(null, "OFBiz-mrp-planner", threads, 0, false);
+        try {
+            long bomLevel = 0;
+            int bomLevelWithNoEvent = 0;
+            do {
+                Set<String> productIds = productsByLevel.get(bomLevel);
+                if (UtilValidate.isNotEmpty(productIds)) {
+                    bomLevelWithNoEvent = 0;
+                    planLevel(executor, bomLevel, new ArrayList<>(productIds));
+                } else {
+                    bomLevelWithNoEvent += 1;
+                }
+                bomLevel += 1;
+                // if there are 3 levels with no inventoryEvenPanned we stop
+            } while (bomLevelWithNoEvent < 3);
+        } finally {
+            executor.shutdownNow();
+        }
+        write();
+    }
+
+    private void load() throws GeneralException {
+        try {
+            List<GenericValue> eventViews = EntityQuery.use(delegator).from("MrpEventView").orderBy("productId", "eventDate").queryList();
+            for (GenericValue eventView : eventViews) {
+                GenericValue mrpEvent = delegator.makeValue("MrpEvent");
+                mrpEvent.setAllFields(eventView, true, null, null);
+                GenericPK key = mrpEvent.getPrimaryKey();
+                storedEvents.add(key);
+                addEvent(key, mrpEvent, eventView.getLong("billOfMaterialLevel"));
+            }
+            List<GenericValue> facilityProducts = EntityQuery.use(delegator).from("ProductFacility").where("facilityId", facilityId).queryList();
+            for (GenericValue productFacility : facilityProducts) {
+                productFacilities.put(productFacility.getString("productId"), productFacility);
+            }
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error loading the MRP data of facility [" + facilityId + "]", MODULE);
+            throw new GeneralException(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpEventFindError", locale), e);
+        }
+    }
+
+    private void planLevel(ExecutorService executor, long bomLevel, List<String> productIds) throws GeneralException {
+        Map<String, GenericValue> products = new HashMap<>();
+        try {
+            List<GenericValue> productList = EntityQuery.use(delegator).from("Product")
+                    .where(EntityCondition.makeCondition("productId", EntityOperator.IN, productIds))
+                    .queryList();
+            for (GenericValue product : productList) {
+                products.put(product.getString("productId"), product);
+            }
+        } catch (GenericEntityException e) {
+            throw new GeneralException(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpErrorForBomLevel", UtilMisc.toMap("bomLevel",
+                    Long.toString(bomLevel), "errorString", e.getMessage()), locale), e);
+        }
+        List<Future<ProductPlan>> futures = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            GenericValue product = products.get(productId);
+            if (product == null) {
+                throw new GeneralException(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpCannotFindProductForEvent", locale));
+            }
+            // the events are copied here: the plans of this level may add events to products of the same level
+            // which, as with the MrpEventView list read once per level, are not netted
+            List<GenericValue> productEvents = new ArrayList<>(eventsByProduct.get(productId));
+            productEvents.sort(Comparator.comparing(mrpEvent -> mrpEvent.getTimestamp("eventDate")));
+            List<PlannedEvent> plannedEvents = new ArrayList<>(productEvents.size());
+            for (GenericValue mrpEvent : productEvents) {
+                BigDecimal quantity = mrpEvent.getBigDecimal("quantity");
+                plannedEvents.add(new PlannedEvent(mrpEvent.getTimestamp("eventDate"), mrpEvent.getString("mrpEventTypeId"),
+                        quantity != null ? quantity : BigDecimal.ZERO));
+            }
+            futures.add(executor.submit(() -> planProduct(product, plannedEvents)));
+        }
+        for (Future<ProductPlan> future : futures) {
+            ProductPlan plan;
+            try {
+                plan = future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new GeneralException(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpErrorForBomLevel", UtilMisc.toMap("bomLevel",
+                        Long.toString(bomLevel), "errorString", e.getMessage()), locale), e);
+            }
+            if (plan.errorMessage != null) {
+                throw new GeneralException(plan.errorMessage);
+            }
+            mergeEvent(plan.productId, now, "INITIAL_QOH", plan.initialQoh, facilityId, null, false, bomLevel);
+            for (Proposal proposal : plan.proposals) {
+                for (ComponentRequirement component : proposal.components) {
+                    mergeEvent(component.productId, component.eventDate, "MRP_REQUIREMENT", component.quantity, null,
+                            plan.productId + ": " + component.eventDate, false, component.bomLevel);
+                }
+                if (proposal.missingProductFacility) {
+                    logError(plan.productId, now, "No ProductFacility record for [" + facilityId + "]; no requirement created.", bomLevel);
+                }
+                proposals.add(proposal);
+            }
+        }
+    }
+
+    /**
+     * Nets the events of a product, this is called in parallel for the products of a level and must not modify the planner.
+     * The quantity on hand is read with the getInventoryAvailableByFacility service, as the one by one netting does.
+     */
+    private ProductPlan planProduct(GenericValue product, List<PlannedEvent> plannedEvents) {
+        String productId = product.getString("productId");
+        ProductPlan plan = new ProductPlan(productId);
+        GenericValue productFacility = productFacilities.get(productId);
+        BigDecimal stockTmp = MrpServices.findProductMrpQoh(mrpId, productId, facilityId, dispatcher, delegator);
+        if (stockTmp == null) {
+            stockTmp = BigDecimal.ZERO;
+        }
+        plan.initialQoh = stockTmp;
+
+        // days to ship is only relevant for sales order to plan for preparatory days to ship.  Otherwise MRP will push event dates
+        // for manufacturing parts as well and cause problems
+        PlannedEvent firstEvent = plannedEvents.get(0);
+        int daysToShip = 0;
+        BigDecimal reorderQuantity = BigDecimal.ONE.negate();
+        BigDecimal minimumStock = BigDecimal.ZERO;
+        if (productFacility != null) {
+            if (productFacility.getBigDecimal("reorderQuantity") != null) {
+                reorderQuantity = productFacility.getBigDecimal("reorderQuantity");
+            }
+            if (productFacility.getBigDecimal("minimumStock") != null) {
+                minimumStock = productFacility.getBigDecimal("minimumStock");
+            }
+            if ("SALES_ORDER_SHIP".equals(firstEvent.mrpEventTypeId) && productFacility.getLong("daysToShip") != null) {
+                daysToShip = productFacility.getLong("daysToShip").intValue();
+            }
+        }
+
+        // the bill of materials is read once and exploded again for each proposed quantity,
+        // as the getManufacturingComponents service does
+        BOMTree tree;
+        try {
+            tree = new BOMTree(productId, "MANUF_COMPONENT", now, BOMTree.EXPLOSION_SINGLE_LEVEL, delegator, dispatcher, userLogin);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error exploding the bill of materials of product [" + productId + "]", MODULE);
+            plan.errorMessage = UtilProperties.getMessage(RESOURCE, "ManufacturingMrpErrorExplodingProduct", UtilMisc.toMap("productId",
+                    productId), locale);
+            return plan;
+        }
+        boolean isBuilt = isBuilt(explode(tree, firstEvent.quantity.abs()));
+        boolean routingLoaded = false;
+        GenericValue routing = null;
+
+        int eventCount = 0;
+        for (PlannedEvent plannedEvent : plannedEvents) {
+            eventCount++;
+            boolean isLastEvent = eventCount == plannedEvents.size();
+            BigDecimal eventQuantity = plannedEvent.quantity;
+            stockTmp = stockTmp.add(eventQuantity);
+            if (stockTmp.compareTo(minimumStock) >= 0 || (eventQuantity.compareTo(BigDecimal.ZERO) >= 0 && !isLastEvent)) {
+                // No need to create a supply event/requirement if the current event is not a demand and there are other events to process
+                continue;
+            }
+            BigDecimal qtyToStock = minimumStock.subtract(stockTmp);
+            // to be just before the requirement
+            Timestamp eventDate = new Timestamp(plannedEvent.eventDate.getTime() - 1);
+            ProposedOrder proposedOrder = new ProposedOrder(product, facilityId, manufacturingFacilityId, isBuilt, eventDate, qtyToStock);
+            proposedOrder.setMrpName(mrpName);
+            proposedOrder.calculateQuantityToSupply(reorderQuantity, minimumStock, null);
+
+            List<BOMNode> components = explode(tree, proposedOrder.getQuantity());
+            isBuilt = isBuilt(components);
+            if (!routingLoaded) {
+                try {
+                    routing = findRouting(productId, tree);
+                } catch (GeneralException e) {
+                    plan.errorMessage = e.getMessage();
+                    return plan;
+                }
+                routingLoaded = true;
+            }
+            Map<String, Object> routingTaskStartDate = proposedOrder.calculateStartDate(daysToShip, routing, delegator, dispatcher, userLogin);
+
+            Proposal proposal = new Proposal(productId, eventDate, proposedOrder.getQuantity(), isBuilt);
+            if (isBuilt) {
+                // same component events as MrpServices.processBomComponent
+                Timestamp startDate = proposedOrder.getRequirementStartDate();
+                for (BOMNode node : components) {
+                    GenericValue productAssoc = node.getProductAssoc();
+                    String routingTask = productAssoc.getString("routingWorkEffortId");
+                    Timestamp componentEventDate = (routingTask == null || !routingTaskStartDate.containsKey(routingTask)) ? startDate
+                            : (Timestamp) routingTaskStartDate.get(routingTask);
+                    if (EntityUtil.isValueActive(productAssoc, componentEventDate)) {
+                        proposal.components.add(new ComponentRequirement(node.getProduct(), componentEventDate, node.getQuantity().negate()));
+                    }
+                }
+            }
+            // the requirement is only proposed if the product is warehouse managed
+            if (productFacility != null) {
+                proposal.requirement = proposedOrder.prepareRequirement(delegator, dispatcher, userLogin);
+            } else if (!isBuilt) {
+                proposal.missingProductFacility = true;
+            }
+            proposal.requirementStartDate = proposedOrder.getRequirementStartDate();
+            proposal.isLate = proposal.requirementStartDate.compareTo(now) < 0;
+            plan.proposals.add(proposal);
+            stockTmp = stockTmp.add(proposedOrder.getQuantity());
+        }
+        return plan;
+    }
+
+    /**
+     * Finds the routing of a product as the getManufacturingComponents service does.
+     */
+    private GenericValue findRouting(String productId, BOMTree tree) throws GeneralException {
+        try {
+            Map<String, Object> routingOutMap = dispatcher.runSync("getProductRouting", UtilMisc.toMap("productId", productId,
+                    "ignoreDefaultRouting", "Y", "userLogin", userLogin));
+            if (ServiceUtil.isError(routingOutMap)) {
+                throw new GeneralException(ServiceUtil.getErrorMessage(routingOutMap));
+            }
+            GenericValue routing = (GenericValue) routingOutMap.get("routing");
+            if (routing == null && tree.getRoot() != null) {
+                // try to find a routing linked to the virtual product
+                routingOutMap = dispatcher.runSync("getProductRouting", UtilMisc.toMap("productId",
+                        tree.getRoot().getProduct().getString("productId"), "userLogin", userLogin));
+                if (ServiceUtil.isError(routingOutMap)) {
+                    throw new GeneralException(ServiceUtil.getErrorMessage(routingOutMap));
+                }
+                routing = (GenericValue) routingOutMap.get("routing");
+            }
+            return routing;
+        } catch (GenericServiceException e) {
+            Debug.logWarning(e.getMessage(), MODULE);
+            return null;
+        }
+    }
+
+    private void write() throws GeneralException {
+        for (Proposal proposal : proposals) {
+            String requirementId = null;
+            if (proposal.requirement != null) {
+                requirementId = ProposedOrder.createRequirement(dispatcher, proposal.requirement);
+            }
+            String eventName = null;
+            if (UtilValidate.isNotEmpty(requirementId)) {
+                eventName = "*" + requirementId + " (" + proposal.requirementStartDate + ")*";
+            }
+            mergeEvent(proposal.productId, proposal.eventDate, (proposal.isBuilt ? "PROP_MANUF_O_RECP" : "PROP_PUR_O_RECP"), proposal.quantity,
+                    null, eventName, proposal.isLate, null);
+        }
+        List<GenericValue> createdEvents = new ArrayList<>();
+        List<GenericValue> modifiedEvents = new ArrayList<>();
+        for (Map.Entry<GenericPK, GenericValue> entry : events.entrySet()) {
+            if (!storedEvents.contains(entry.getKey())) {
+                createdEvents.add(entry.getValue());
+            } else if (updatedEvents.contains(entry.getKey())) {
+                modifiedEvents.add(entry.getValue());
+            }
+        }
+        try {
+            delegator.createAllByBatchProcess(createdEvents);
+            delegator.storeAll(modifiedEvents);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error writing the MrpEvent records of MRP run [" + mrpId + "]", MODULE);
+            throw new GeneralException(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpCreateOrUpdateEvent", UtilMisc.toMap("parameters",
+                    UtilMisc.toMap("mrpId", mrpId)), locale), e);
+        }
+        Debug.logInfo("MRP run [" + mrpId + "] created " + proposals.size() + " proposed orders, " + createdEvents.size()
+                + " events and updated " + modifiedEvents.size() + " events", MODULE);
+    }
+
+    /**
+     * Same as {@link InventoryEventPlannedServices#createOrUpdateMrpEvent} on the events of the run.
+     */
+    private void mergeEvent(String productId, Timestamp eventDate, String mrpEventTypeId, BigDecimal newQuantity, String eventFacilityId,
+            String eventName, boolean isLate, Long bomLevel) {
+        GenericValue newEvent = delegator.makeValue("MrpEvent", UtilMisc.toMap("mrpId", mrpId, "productId", productId,
+                "eventDate", eventDate, "mrpEventTypeId", mrpEventTypeId));
+        GenericPK key = newEvent.getPrimaryKey();
+        GenericValue mrpEvent = events.get(key);
+        if (mrpEvent == null) {
+            newEvent.put("quantity", newQuantity.doubleValue());
+            newEvent.put("eventName", eventName);
+            newEvent.put("facilityId", eventFacilityId);
+            newEvent.put("isLate", (isLate ? "Y" : "N"));
+            addEvent(key, newEvent, bomLevel);
+        } else {
+            BigDecimal qties = newQuantity.add(mrpEvent.getBigDecimal("quantity"));
+            mrpEvent.put("quantity", qties.doubleValue());
+            if (UtilValidate.isNotEmpty(eventName)) {
+                String existingEventName = mrpEvent.getString("eventName");
+                mrpEvent.put("eventName", (UtilValidate.isEmpty(existingEventName) ? eventName : existingEventName + ", " + eventName));
+            }
+            if (isLate) {
+                mrpEvent.put("isLate", "Y");
+            }
+            if (storedEvents.contains(key)) {
+                updatedEvents.add(key);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link MrpServices#logMrpError} on the events of the run.
+     */
+    private void logError(String productId, Timestamp eventDate, String errorMessage, long bomLevel) {
+        GenericValue errorEvent = delegator.makeValue("MrpEvent", UtilMisc.toMap("productId", productId, "mrpId", mrpId,
+                "eventDate", eventDate, "mrpEventTypeId", "ERROR", "eventName", errorMessage));
+        GenericPK key = errorEvent.getPrimaryKey();
+        GenericValue mrpEvent = events.get(key);
+        if (mrpEvent == null) {
+            addEvent(key, errorEvent, bomLevel);
+        } else {
+            mrpEvent.setNonPKFields(errorEvent);
+            if (storedEvents.contains(key)) {
+                updatedEvents.add(key);
+            }
+        }
+    }
+
+    private void addEvent(GenericPK key, GenericValue mrpEvent, Long bomLevel) {
+        String productId = mrpEvent.getString("productId");
+        events.put(key, mrpEvent);
+        eventsByProduct.computeIfAbsent(productId, k -> new ArrayList<>()).add(mrpEvent);
+        productsByLevel.computeIfAbsent(bomLevel != null ? bomLevel : 0L, k -> new TreeSet<>()).add(productId);
+    }
+
+    private static List<BOMNode> explode(BOMTree tree, BigDecimal quantity) {
+        List<BOMNode> components = new LinkedList<>();
+        tree.setRootQuantity(quantity);
+        tree.setRootAmount(BigDecimal.ZERO);
+        tree.print(components, false);
+        if (!components.isEmpty()) {
+            components.remove(0);
+        }
+        return components;
+    }
+
+    private static boolean isBuilt(List<BOMNode> components) {
+        return !components.isEmpty() && components.get(0).getParentNode().isManufactured();
+    }
+
+    /** An event of a product as it was when its level was netted. */
+    private static final class PlannedEvent {
+        private final Timestamp eventDate;
+        private final String mrpEventTypeId;
+        private final BigDecimal quantity;
+
+        private PlannedEvent(Timestamp eventDate, String mrpEventTypeId, BigDecimal quantity) {
+            this.eventDate = eventDate;
+            this.mrpEventTypeId = mrpEventTypeId;
+            this.quantity = quantity;
+        }
+    }
+
+    /** The result of netting the events of a product. */
+    private static final class ProductPlan {
+        private final String productId;
+        private final List<Proposal> proposals = new ArrayList<>();
+        private BigDecimal initialQoh;
+        private String errorMessage;
+
+        private ProductPlan(String productId) {
+            this.productId = productId;
+        }
+    }
+
+    /** A proposed order, its requirement is created and its event merged when the run is written. */
+    private static final class Proposal {
+        private final String productId;
+        private final Timestamp eventDate;
+        private final BigDecimal quantity;
+        private final boolean isBuilt;
+        private final List<ComponentRequirement> components = new ArrayList<>();
+        private Map<String, Object> requirement;
+        private Timestamp requirementStartDate;
+        private boolean isLate;
+        private boolean missingProductFacility;
+
+        private Proposal(String productId, Timestamp eventDate, BigDecimal quantity, boolean isBuilt) {
+            this.productId = productId;
+            this.eventDate = eventDate;
+            this.quantity = quantity;
+            this.isBuilt = isBuilt;
+        }
+    }
+
+    /** The quantity of a component needed by a proposed order, with the bill of materials level of the component. */
+    private static final class ComponentRequirement {
+        private final String productId;
+        private final Long bomLevel;
+        private final Timestamp eventDate;
+        private final BigDecimal quantity;
+
+        private ComponentRequirement(GenericValue product, Timestamp eventDate, BigDecimal quantity) {
+            this.productId = product.getString("productId");
+            this.bomLevel = product.getLong("billOfMaterialLevel");
+            this.eventDate = eventDate;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.GeneralException;
 import org.apache.ofbiz.base.util.UtilDateTime;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
@@ -664,27 +665,10 @@ public class MrpServices {
                     locale));
         }
 
-        int bomLevelWithNoEvent = 0;
-        BigDecimal stockTmp = BigDecimal.ZERO;
-        String oldProductId = null;
-        String productId = null;
-        GenericValue product = null;
-        GenericValue productFacility = null;
-        BigDecimal eventQuantity = BigDecimal.ZERO;
-        Timestamp eventDate = null;
-        BigDecimal reorderQuantity = BigDecimal.ZERO;
-        BigDecimal minimumStock = BigDecimal.ZERO;
-        int daysToShip = 0;
-        List<BOMNode> components = null;
-        boolean isBuilt = false;
-        GenericValue routing = null;
-
         String mrpId = delegator.getNextSeqId("MrpEvent");
 
         Map<String, Object> result = null;
         Map<String, Object> parameters = null;
-        List<GenericValue> listInventoryEventForMRP = null;
-        ListIterator<GenericValue> iteratorListInventoryEventForMRP = null;
 
         // Initialization of the MrpEvent table, This table will contain the products we want to buy or build.
         parameters = UtilMisc.<String, Object>toMap("mrpId", mrpId, "reInitialize", Boolean.TRUE, "defaultYearsOffset", defaultYearsOffset,
@@ -700,6 +684,55 @@ public class MrpServices {
             return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpErrorRunningInitMrpEvents", UtilMisc.toMap(
                     "errorString", e.getMessage()), locale));
         }
+        if (Boolean.FALSE.equals(context.get("inMemory"))) {
+            Map<String, Object> errorResult = netMrpEventsOneByOne(ctx, mrpId, mrpName, facilityId, manufacturingFacilityId, userLogin, locale,
+                    now);
+            if (errorResult != null) {
+                return errorResult;
+            }
+        } else {
+            // The events are netted level by level in memory, see MrpPlanner
+            try {
+                new MrpPlanner(ctx, mrpId, mrpName, facilityId, manufacturingFacilityId, userLogin, locale, now).run();
+            } catch (GeneralException e) {
+                return ServiceUtil.returnError(e.getMessage());
+            }
+        }
+
+        result = new HashMap<>();
+        List<Object> msgResult = new LinkedList<>();
+        result.put("msgResult", msgResult);
+        result.put(ModelService.RESPONSE_MESSAGE, ModelService.RESPOND_SUCCESS);
+        Debug.logInfo("return from executeMrp", MODULE);
+        return result;
+    }
+
+    /**
+     * Nets the MrpEvent records of a run one event at a time, reading and writing them in the database.
+     * This is the original executeMrp algorithm, kept to check the plans of {@link MrpPlanner}: executeMrp uses it
+     * when its <code>inMemory</code> parameter is false.
+     * @return <code>null</code> on success, the service error otherwise
+     */
+    private static Map<String, Object> netMrpEventsOneByOne(DispatchContext ctx, String mrpId, String mrpName, String facilityId,
+            String manufacturingFacilityId, GenericValue userLogin, Locale locale, Timestamp now) {
+        Delegator delegator = ctx.getDelegator();
+        LocalDispatcher dispatcher = ctx.getDispatcher();
+        int bomLevelWithNoEvent = 0;
+        BigDecimal stockTmp = BigDecimal.ZERO;
+        String oldProductId = null;
+        String productId = null;
+        GenericValue product = null;
+        GenericValue productFacility = null;
+        BigDecimal eventQuantity = BigDecimal.ZERO;
+        Timestamp eventDate = null;
+        BigDecimal reorderQuantity = BigDecimal.ZERO;
+        BigDecimal minimumStock = BigDecimal.ZERO;
+        int daysToShip = 0;
+        List<BOMNode> components = null;
+        boolean isBuilt = false;
+        GenericValue routing = null;
+        List<GenericValue> listInventoryEventForMRP = null;
+        ListIterator<GenericValue> iteratorListInventoryEventForMRP = null;
         long bomLevel = 0;
         do {
             // Find all products in MrpEventView, ordered by bom and eventDate
@@ -753,7 +786,7 @@ public class MrpServices {
                                     stockTmp, facilityId, null, false, delegator);
                         } catch (GenericEntityException e) {
                             return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpCreateOrUpdateEvent",
-                                    UtilMisc.toMap("parameters", parameters), locale));
+                                    UtilMisc.toMap("parameters", UtilMisc.toMap("mrpId", mrpId)), locale));
                         }
                         // days to ship is only relevant for sales order to plan for preparatory days to ship.  Otherwise MRP will push event dates
                         // for manufacturing parts
@@ -874,7 +907,7 @@ public class MrpServices {
                                     eventName, (proposedOrder.getRequirementStartDate().compareTo(now) < 0), delegator);
                         } catch (GenericEntityException e) {
                             return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "ManufacturingMrpCreateOrUpdateEvent",
-                                    UtilMisc.toMap("parameters", parameters), locale));
+                                    UtilMisc.toMap("parameters", UtilMisc.toMap("mrpId", mrpId)), locale));
                         }
                         //
                         stockTmp = stockTmp.add(proposedOrder.getQuantity());
@@ -887,12 +920,6 @@ public class MrpServices {
             bomLevel += 1;
             // if there are 3 levels with no inventoryEvenPanned we stop
         } while (bomLevelWithNoEvent < 3);
-
-        result = new HashMap<>();
-        List<Object> msgResult = new LinkedList<>();
-        result.put("msgResult", msgResult);
-        result.put(ModelService.RESPONSE_MESSAGE, ModelService.RESPOND_SUCCESS);
-        Debug.logInfo("return from executeMrp", MODULE);
-        return result;
+        return null;
     }
 }
@@ -233,12 +233,23 @@ public class ProposedOrder {
      * @return String the requirementId
      **/
     public String create(DispatchContext ctx, GenericValue userLogin) {
+        Map<String, Object> parameters = prepareRequirement(ctx.getDelegator(), ctx.getDispatcher(), userLogin);
+        if (parameters == null) {
+            return null;
+        }
+        return createRequirement(ctx.getDispatcher(), parameters);
+    }
+
+    /**
+     * prepare the parameters of the createRequirement service for this ProposedOrder.
+     * For a built product the requirementStartDate property is updated from the manufacturing bill of materials.
+     * @return the createRequirement parameters, null for Work In Process products
+     **/
+    public Map<String, Object> prepareRequirement(Delegator delegator, LocalDispatcher dispatcher, GenericValue userLogin) {
         if ("WIP".equals(product.getString("productTypeId"))) {
             // No requirements for Work In Process products
             return null;
         }
-        LocalDispatcher dispatcher = ctx.getDispatcher();
-        Delegator delegator = ctx.getDelegator();
         Map<String, Object> parameters = UtilMisc.<String, Object>toMap("userLogin", userLogin);
         if (isBuilt) {
             try {
@@ -264,6 +275,14 @@ public class ProposedOrder {
         } else {
             parameters.put("description", "Automatically generated by MRP");
         }
+        return parameters;
+    }
+
+    /**
+     * create a Requirement calling the createRequirement service with parameters returned by {@link #prepareRequirement}.
+     * @return String the requirementId, null if the service failed
+     **/
+    static String createRequirement(LocalDispatcher dispatcher, Map<String, Object> parameters) {
         try {
             Map<String, Object> result = dispatcher.runSync("createRequirement", parameters);
             if (ServiceUtil.isError(result)) {
@@ -0,0 +1,93 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+package org.apache.ofbiz.manufacturing.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.service.ServiceUtil;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Tests that the in memory MRP run plans the same requirements and events as the one by one netting, on the demo data.
+ */
+public class MrpTests extends OFBizTestCase {
+
+    private static final String FACILITY_ID = "WebStoreWarehouse";
+
+    public MrpTests(String name) {
+        super(name);
+    }
+
+    /**
+     * Test that both MRP implementations propose the same requirements and events.
+     * The dates of the events depend on the time of the run, so they are not compared.
+     * @throws Exception the exception
+     */
+    public void testInMemoryMrpMatchesOneByOneMrp() throws Exception {
+        Map<String, List<String>> oneByOne = runMrp("ONE_BY_ONE_TEST", false);
+        Map<String, List<String>> inMemory = runMrp("IN_MEMORY_TEST", true);
+        assertFalse("The demo data gives no requirement", oneByOne.get("requirements").isEmpty());
+        assertEquals(oneByOne.get("requirements"), inMemory.get("requirements"));
+        assertEquals(oneByOne.get("events"), inMemory.get("events"));
+    }
+
+    /**
+     * Runs the MRP of the demo warehouse, and returns the requirements it proposed and the events it planned.
+     * The next run deletes the proposed product requirements, so they are read right away.
+     */
+    private Map<String, List<String>> runMrp(String mrpName, boolean inMemory) throws Exception {
+        Map<String, Object> context = new HashMap<>();
+        context.put("facilityId", FACILITY_ID);
+        context.put("mrpName", mrpName);
+        context.put("inMemory", inMemory);
+        context.put("userLogin", getUserLogin("system"));
+        Map<String, Object> result = getDispatcher().runSync("executeMrp", context);
+        assertTrue(ServiceUtil.getErrorMessage(result), ServiceUtil.isSuccess(result));
+
+        List<String> requirements = new ArrayList<>();
+        for (GenericValue requirement : EntityQuery.use(getDelegator()).from("Requirement").where("description", "MRP_" + mrpName).queryList()) {
+            requirements.add(requirement.getString("productId") + " " + requirement.getString("facilityId") + " "
+                    + requirement.getString("requirementTypeId") + " " + format(requirement.getBigDecimal("quantity")));
+        }
+        Collections.sort(requirements);
+
+        List<String> events = new ArrayList<>();
+        for (GenericValue mrpEvent : EntityQuery.use(getDelegator()).from("MrpEvent").queryList()) {
+            events.add(mrpEvent.getString("productId") + " " + mrpEvent.getString("mrpEventTypeId") + " "
+                    + format(mrpEvent.getBigDecimal("quantity")) + " " + mrpEvent.getString("isLate"));
+        }
+        Collections.sort(events);
+
+        Map<String, List<String>> plan = new HashMap<>();
+        plan.put("requirements", requirements);
+        plan.put("events", events);
+        return plan;
+    }
+
+    private static String format(BigDecimal quantity) {
+        return quantity == null ? "null" : quantity.stripTrailingZeros().toPlainString();
+    }
+}
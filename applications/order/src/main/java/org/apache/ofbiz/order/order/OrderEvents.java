@@ -82,7 +82,9 @@ public class OrderEvents {
             GenericValue dataResource = EntityQuery.use(delegator).from("DataResource").where("dataResourceId", dataResourceId).cache().queryOne();
             Map<String, Object> resourceData = DataResourceWorker.getDataResourceStream(dataResource, "", application.getInitParameter("webSiteId"),
                     UtilHttp.getLocale(request), application.getRealPath("/"), false);
-            os.write(IOUtils.toByteArray((InputStream) resourceData.get("stream")));
+            try (InputStream stream = (InputStream) resourceData.get("stream")) {
+                IOUtils.copy(stream, os);
+            }
             os.flush();
         } catch (GeneralException | IOException e) {
             String errMsg = "Error downloading digital product content: " + e.toString();
@@ -2383,6 +2383,7 @@ public class OrderServices {
         }
 
         if (UtilValidate.isNotEmpty(orderItems)) {
+            List<GenericValue> itemsToUpdate = new ArrayList<>();
             List<GenericValue> toBeStored = new ArrayList<>();
             for (GenericValue orderItem : orderItems) {
                 if (orderItem == null) {
@@ -2420,7 +2421,7 @@ public class OrderServices {
                 }
 
                 orderItem.set("statusId", statusId);
-                toBeStored.add(orderItem);
+                itemsToUpdate.add(orderItem);
                 if (statusDateTime == null) {
                     statusDateTime = UtilDateTime.nowTimestamp();
                 }
@@ -2438,8 +2439,9 @@ public class OrderServices {
             }
 
             // store the changes
-            if (!toBeStored.isEmpty()) {
+            if (!itemsToUpdate.isEmpty()) {
                 try {
+                    delegator.updateAll(itemsToUpdate);
                     delegator.storeAll(toBeStored);
                 } catch (GenericEntityException e) {
                     return ServiceUtil.returnError(UtilProperties.getMessage(RES_ERROR,
@@ -4264,15 +4266,15 @@ public class OrderServices {
             Debug.logError(e, MODULE);
             throw new GeneralException(e.getMessage());
         }
-        if (paymentPrefsToCancel != null) {
+        if (UtilValidate.isNotEmpty(paymentPrefsToCancel)) {
             for (GenericValue opp : paymentPrefsToCancel) {
-                try {
-                    opp.set("statusId", "PAYMENT_CANCELLED");
-                    opp.store();
-                } catch (GenericEntityException e) {
-                    Debug.logError(e, MODULE);
-                    throw new GeneralException(e.getMessage());
-                }
+                opp.set("statusId", "PAYMENT_CANCELLED");
+            }
+            try {
+                delegator.updateAll(paymentPrefsToCancel);
+            } catch (GenericEntityException e) {
+                Debug.logError(e, MODULE);
+                throw new GeneralException(e.getMessage());
             }
         }
 
@@ -4313,7 +4315,7 @@ public class OrderServices {
                 for (GenericValue orderAdjustment : orderAdjustmentsToStore) {
                     orderAdjustment.set("amount", BigDecimal.ZERO);
                 }
-                delegator.storeAll(orderAdjustmentsToStore);
+                delegator.updateAll(orderAdjustmentsToStore);
             }
         } catch (GenericEntityException e) {
             Debug.logError(e, MODULE);
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.product.price;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.DelegatorFactory;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityUtil;
+import org.apache.ofbiz.service.GenericServiceException;
+import org.apache.ofbiz.service.LocalDispatcher;
+import org.apache.ofbiz.service.ServiceContainer;
+import org.apache.ofbiz.service.ServiceUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the price calculation of a page of products, with a <code>calculateProductPrice</code> call per
+ * product or with a single <code>calculateProductPrices</code> call.
+ * <p>The products are read from the <code>test</code> delegator, which must hold at least a page of them (the demo
+ * data do). The scores are per product.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class PriceServicesBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private LocalDispatcher dispatcher;
+    private List<GenericValue> products;
+    private List<String> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException, GenericEntityException {
+        BenchmarkEnvironment.start();
+        Delegator delegator = DelegatorFactory.getDelegator(BenchmarkEnvironment.DELEGATOR_NAME);
+        dispatcher = ServiceContainer.getLocalDispatcher("jmh", delegator);
+        products = EntityQuery.use(delegator).from("Product").orderBy("productId").maxRows(PAGE_SIZE).queryList();
+        if (products.size() < PAGE_SIZE) {
+            throw new IllegalStateException("The price benchmarks need " + PAGE_SIZE + " products in the "
+                    + BenchmarkEnvironment.DELEGATOR_NAME + " delegator, only " + products.size() + " found");
+        }
+        productIds = EntityUtil.getFieldListFromEntityList(products, "productId", false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public int calculateProductPrice() throws GenericServiceException {
+        int prices = 0;
+        for (GenericValue product : products) {
+            Map<String, Object> result = dispatcher.runSync("calculateProductPrice", UtilMisc.toMap("product", product));
+            if (ServiceUtil.isSuccess(result)) {
+                prices++;
+            }
+        }
+        return prices;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public Map<String, Object> calculateProductPrices() throws GenericServiceException {
+        return dispatcher.runSync("calculateProductPrices", UtilMisc.toMap("productIds", productIds));
+    }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.product.product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the in-memory product keyword index on a synthetic catalog of 500,000 products with 12 keywords each,
+ * drawn from a vocabulary of 50,000 words with a skewed (Zipf like) frequency.
+ * <p>The searches pick their words in the mid frequency ranks, as most user searches do.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ProductKeywordIndexBenchmark {
+
+    private static final int PRODUCT_COUNT = 500000;
+    private static final int KEYWORDS_PER_PRODUCT = 12;
+    private static final int VOCABULARY_SIZE = 50000;
+    private static final int QUERY_COUNT = 1000;
+    private static final String[] VOCABULARY = new String[VOCABULARY_SIZE];
+    static {
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            VOCABULARY[i] = "kw" + Integer.toString(i, 36);
+        }
+    }
+
+    /** The index and the queries of a kind of search */
+    @State(Scope.Benchmark)
+    public static class Searches {
+
+        /** The keywords of the searches: one, two or three required, a prefix and a keyword required, or one of three */
+        @Param({"one", "two-and", "three-and", "prefix-and", "three-or"})
+        public String search;
+
+        private ProductKeywordIndex index;
+        private List<List<String>> andKeywords;
+        private List<List<Set<String>>> orKeywordSets;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            index = buildIndex();
+            Random random = new Random(20240502L);
+            andKeywords = new ArrayList<>(QUERY_COUNT);
+            orKeywordSets = new ArrayList<>(QUERY_COUNT);
+            for (int i = 0; i < QUERY_COUNT; i++) {
+                List<String> and = new ArrayList<>();
+                List<Set<String>> or = new ArrayList<>();
+                switch (search) {
+                case "one":
+                    and.add(searchWord(random));
+                    break;
+                case "two-and":
+                    and.addAll(UtilMisc.toList(searchWord(random), searchWord(random)));
+                    break;
+                case "three-and":
+                    and.addAll(UtilMisc.toList(searchWord(random), searchWord(random), searchWord(random)));
+                    break;
+                case "prefix-and":
+                    and.addAll(UtilMisc.toList(searchWord(random).substring(0, 4) + "%", searchWord(random)));
+                    break;
+                default:
+                    or.add(UtilMisc.toSet(searchWord(random), searchWord(random), searchWord(random)));
+                    break;
+                }
+                andKeywords.add(and);
+                orKeywordSets.add(or);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> search(Searches searches) {
+        int query = searches.next++ % QUERY_COUNT;
+        return searches.index.search(searches.andKeywords.get(query), searches.orKeywordSets.get(query), Collections.emptyList(), null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public ProductKeywordIndex build() {
+        return buildIndex();
+    }
+
+    private static ProductKeywordIndex buildIndex() {
+        Random random = new Random(20240501L);
+        ProductKeywordIndex.Builder builder = new ProductKeywordIndex.Builder();
+        for (int p = 0; p < PRODUCT_COUNT; p++) {
+            String productId = "JMH" + p;
+            Set<Integer> ranks = new HashSet<>();
+            while (ranks.size() < KEYWORDS_PER_PRODUCT) {
+                // small ranks are much more frequent
+                ranks.add((int) (VOCABULARY_SIZE * Math.pow(random.nextDouble(), 3)));
+            }
+            for (int rank : ranks) {
+                builder.add(productId, VOCABULARY[rank], "KWT_KEYWORD", null, 1L + (rank % 3));
+            }
+        }
+        return builder.build();
+    }
+
+    private static String searchWord(Random random) {
+        return VOCABULARY[100 + random.nextInt(5000)];
+    }
+}
@@ -63,4 +63,38 @@ class ProductPriceTests extends OFBizTestCase {
         assert resultMap.defaultPrice == 10
     }
 
+    void testCalculateProductPrices() {
+        // The batch service must return for each product the result of calculateProductPrice, with and without rules
+        // (9000 on the PROMOTIONS category, 9001 on WG-1111 and a party group, PR4FC on a party) and in another currency
+        List productIds = ['GZ-2002', 'GZ-1006-3', 'DemoProduct', 'WG-1111', 'GZ-2644', 'WG-5569', 'WG-9943', 'UnknownProduct']
+        List contexts = [[:],
+                         [partyId: 'DemoCustomer', productStoreId: '9000'],
+                         [partyId: 'EuroCustomer'],
+                         [currencyUomId: 'EUR'],
+                         [quantity: 10.0, prodCatalogId: 'DemoCatalog', webSiteId: 'WebStore']]
+        List compared = ['basePrice', 'price', 'defaultPrice', 'listPrice', 'competitivePrice', 'averageCost', 'promoPrice',
+                         'specialPromoPrice', 'isSale', 'validPriceFound', 'currencyUsed']
+        boolean ruleApplied = false
+        contexts.each { Map context ->
+            Map resultMap = dispatcher.runSync('calculateProductPrices', context + [productIds: productIds])
+            assert ServiceUtil.isSuccess(resultMap)
+            Map productPrices = resultMap.productPrices
+            assert !productPrices.containsKey('UnknownProduct')
+            productIds.findAll { it != 'UnknownProduct' }.each { String productId ->
+                GenericValue product = from('Product').where('productId', productId).queryOne()
+                Map expected = dispatcher.runSync('calculateProductPrice', context + [product: product])
+                assert ServiceUtil.isSuccess(expected)
+                Map actual = productPrices[productId]
+                assert actual != null, "No price of ${productId} for ${context}"
+                compared.each { String key ->
+                    assert expected[key] == actual[key], "${key} of ${productId} for ${context}"
+                }
+                assert expected.orderItemPriceInfos*.productPriceRuleId == actual.orderItemPriceInfos*.productPriceRuleId,
+                        "Rules of ${productId} for ${context}"
+                ruleApplied = ruleApplied || actual.orderItemPriceInfos
+            }
+        }
+        assert ruleApplied, 'A price rule is applied to one of the products'
+    }
+
 }
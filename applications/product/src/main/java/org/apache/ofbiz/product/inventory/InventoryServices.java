@@ -37,6 +37,7 @@ import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
@@ -1029,4 +1030,44 @@ public class InventoryServices {
         }
         return result;
     }
+
+    /**
+     * Applies the change of an InventoryItem about to be created or stored to the ProductInventorySummary of its product.
+     */
+    public static Map<String, Object> updateProductInventorySummary(DispatchContext dctx, Map<String, ? extends Object> context) {
+        return updateProductInventorySummary(dctx.getDelegator(), (GenericEntity) context.get("inventoryItem"), false);
+    }
+
+    /**
+     * Applies the removal of an InventoryItem to the ProductInventorySummary of its product.
+     */
+    public static Map<String, Object> removeFromProductInventorySummary(DispatchContext dctx, Map<String, ? extends Object> context) {
+        return updateProductInventorySummary(dctx.getDelegator(), (GenericEntity) context.get("inventoryItem"), true);
+    }
+
+    private static Map<String, Object> updateProductInventorySummary(Delegator delegator, GenericEntity inventoryItem, boolean remove) {
+        try {
+            ProductInventorySummaryWorker.updateInventoryItem(delegator, inventoryItem, remove);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Recomputes the ProductInventorySummary records from the inventory items.
+     */
+    public static Map<String, Object> rebuildProductInventorySummaries(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String productId = (String) context.get("productId");
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        try {
+            result.put("summaryCount", ProductInventorySummaryWorker.rebuildSummaries(delegator, productId));
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        return result;
+    }
 }
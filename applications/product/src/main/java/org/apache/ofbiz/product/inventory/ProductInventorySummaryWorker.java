@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.product.inventory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityListIterator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+
+/**
+ * Maintains and reads the ProductInventorySummary entity.
+ * <p>A ProductInventorySummary holds the totals of the inventory items of a product in a facility which are counted
+ * by the getProductInventoryAvailable service when it is called without status: the items without status, available
+ * or returned, and the serialized items whose totals already reflect their status. It is updated in the transaction
+ * which writes an InventoryItem, so the availability of a product is read from one row per facility instead of
+ * summing all its items.</p>
+ * <p>A product has either no summary, in which case its availability is still computed from the items, or a
+ * summary for each facility of its items. The summary of a product is built the first time one of its items is
+ * written.</p>
+ */
+public final class ProductInventorySummaryWorker {
+
+    private static final String MODULE = ProductInventorySummaryWorker.class.getName();
+    /** The facilityId of the summary of the inventory items without facility */
+    public static final String NO_FACILITY_ID = "_NA_";
+    private static final String[] TOTAL_FIELDS = {"quantityOnHandTotal", "availableToPromiseTotal", "accountingQuantityTotal"};
+
+    private ProductInventorySummaryWorker() { }
+
+    /**
+     * Applies the change of an inventory item to the summaries of its product. Must be called before the item is
+     * written, in the same transaction: the item row is locked and its stored state is compared with the new one. The
+     * summary rows are then locked in the order of their product and facility.
+     * @param delegator the delegator
+     * @param inventoryItem the InventoryItem about to be created or stored, only the fields it holds being changed,
+     *            or the primary key of the InventoryItem about to be removed
+     * @param remove whether the inventory item is removed
+     * @throws GenericEntityException if the inventory item or the summaries cannot be read or stored
+     */
+    public static void updateInventoryItem(Delegator delegator, GenericEntity inventoryItem, boolean remove) throws GenericEntityException {
+        String inventoryItemId = inventoryItem.getString("inventoryItemId");
+        if (UtilValidate.isEmpty(inventoryItemId)) {
+            return;
+        }
+        GenericValue oldItem = EntityQuery.use(delegator).from("InventoryItem").where("inventoryItemId", inventoryItemId)
+                .forUpdate().queryOne();
+        GenericValue newItem = null;
+        if (!remove) {
+            newItem = delegator.makeValue("InventoryItem");
+            if (oldItem != null) {
+                newItem.setFields(oldItem);
+            }
+            newItem.setFields(inventoryItem);
+        }
+
+        Map<String, Map<String, BigDecimal[]>> changesByProduct = new TreeMap<>();
+        addTotals(changesByProduct, oldItem, true);
+        addTotals(changesByProduct, newItem, false);
+        for (Map.Entry<String, Map<String, BigDecimal[]>> productChanges : changesByProduct.entrySet()) {
+            for (Map.Entry<String, BigDecimal[]> facilityChanges : productChanges.getValue().entrySet()) {
+                BigDecimal[] changes = facilityChanges.getValue();
+                if (changes[0].signum() == 0 && changes[1].signum() == 0 && changes[2].signum() == 0) {
+                    continue;
+                }
+                addToSummary(delegator, productChanges.getKey(), facilityChanges.getKey(), changes);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the summaries from the inventory items, replacing the existing ones, in one transaction.
+     * <p>The inventory items and then the summaries are locked, in the order {@link #updateInventoryItem} locks them,
+     * before the items are summed: the changes of the items committed meanwhile are already in the summaries being
+     * replaced, and the other changes wait for the rebuilt summaries. A rebuild of all the products locks all the
+     * inventory items until it commits, so it should be run while the inventory is not being changed.</p>
+     * @param delegator the delegator
+     * @param productId the product of the summaries to rebuild, all the products when empty
+     * @return the number of summaries created
+     * @throws GenericEntityException if the inventory items cannot be read or the summaries cannot be stored
+     */
+    public static int rebuildSummaries(Delegator delegator, String productId) throws GenericEntityException {
+        boolean beganTransaction = false;
+        try {
+            beganTransaction = TransactionUtil.begin();
+            int summaryCount = rebuildSummariesInTransaction(delegator, productId);
+            TransactionUtil.commit(beganTransaction);
+            return summaryCount;
+        } catch (GenericEntityException e) {
+            TransactionUtil.rollback(beganTransaction, "Error rebuilding the product inventory summaries", e);
+            throw e;
+        }
+    }
+
+    private static int rebuildSummariesInTransaction(Delegator delegator, String productId) throws GenericEntityException {
+        EntityCondition condition = UtilValidate.isNotEmpty(productId) ? EntityCondition.makeCondition("productId", productId) : null;
+        try (EntityListIterator inventoryItems = EntityQuery.use(delegator).select("inventoryItemId").from("InventoryItem")
+                .where(condition).forUpdate().queryIterator()) {
+            while (inventoryItems.next() != null) {
+                // only locking the items
+            }
+        }
+        try (EntityListIterator oldSummaries = EntityQuery.use(delegator).select("productId", "facilityId").from("ProductInventorySummary")
+                .where(condition).forUpdate().queryIterator()) {
+            while (oldSummaries.next() != null) {
+                // only locking the summaries
+            }
+        }
+
+        Map<List<String>, GenericValue> summaries = new HashMap<>();
+        try (EntityListIterator inventoryItems = EntityQuery.use(delegator)
+                .select("productId", "facilityId", "statusId", "inventoryItemTypeId", "quantityOnHandTotal", "availableToPromiseTotal",
+                        "accountingQuantityTotal")
+                .from("InventoryItem").where(condition).queryIterator()) {
+            GenericValue inventoryItem;
+            while ((inventoryItem = inventoryItems.next()) != null) {
+                if (inventoryItem.get("productId") == null) {
+                    continue;
+                }
+                List<String> key = UtilMisc.toList(inventoryItem.getString("productId"), getFacilityId(inventoryItem));
+                // every facility of the items gets a summary, even when none of its items is counted
+                GenericValue summary = summaries.computeIfAbsent(key, k -> makeSummary(delegator, k.get(0), k.get(1)));
+                if (isCounted(inventoryItem)) {
+                    for (String field : TOTAL_FIELDS) {
+                        summary.set(field, summary.getBigDecimal(field).add(getTotal(inventoryItem, field)));
+                    }
+                }
+            }
+        }
+
+        if (UtilValidate.isNotEmpty(productId)) {
+            delegator.removeByAnd("ProductInventorySummary", "productId", productId);
+        } else {
+            delegator.removeAll("ProductInventorySummary");
+        }
+        delegator.createAllByBatchProcess(new ArrayList<>(summaries.values()));
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Rebuilt " + summaries.size() + " product inventory summaries"
+                    + (UtilValidate.isNotEmpty(productId) ? " of product [" + productId + "]" : ""), MODULE);
+        }
+        return summaries.size();
+    }
+
+    /**
+     * Returns the totals of the inventory items of a product counted by getProductInventoryAvailable when it is called
+     * without status, location, lot, container or owner.
+     * @param delegator the delegator
+     * @param productId the product
+     * @param facilityId the facility of the inventory items, all the facilities when empty
+     * @return a map with the <code>quantityOnHandTotal</code>, <code>availableToPromiseTotal</code> and
+     *         <code>accountingQuantityTotal</code> keys, or <code>null</code> if the product has no summary and its
+     *         totals have to be computed from its inventory items
+     * @throws GenericEntityException if the summaries cannot be read
+     */
+    public static Map<String, Object> getInventoryTotals(Delegator delegator, String productId, String facilityId)
+            throws GenericEntityException {
+        List<GenericValue> summaries;
+        if (UtilValidate.isNotEmpty(facilityId)) {
+            GenericValue summary = EntityQuery.use(delegator).from("ProductInventorySummary")
+                    .where("productId", productId, "facilityId", facilityId).queryOne();
+            if (summary == null) {
+                // no items in the facility if the product has a summary
+                summary = EntityQuery.use(delegator).from("ProductInventorySummary").where("productId", productId).queryFirst();
+                if (summary == null) {
+                    return null;
+                }
+                summary = makeSummary(delegator, productId, facilityId);
+            }
+            summaries = UtilMisc.toList(summary);
+        } else {
+            summaries = EntityQuery.use(delegator).from("ProductInventorySummary").where("productId", productId).queryList();
+            if (summaries.isEmpty()) {
+                return null;
+            }
+        }
+
+        Map<String, Object> totals = new HashMap<>();
+        for (String field : TOTAL_FIELDS) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (GenericValue summary : summaries) {
+                total = total.add(getTotal(summary, field));
+            }
+            totals.put(field, total);
+        }
+        return totals;
+    }
+
+    /**
+     * Checks if an inventory item is counted by getProductInventoryAvailable when it is called without status. The
+     * totals of the serialized items are set from their status.
+     * @param inventoryItem the InventoryItem
+     * @return <code>true</code> if the totals of the item are counted
+     */
+    public static boolean isCounted(GenericValue inventoryItem) {
+        String statusId = inventoryItem.getString("statusId");
+        return UtilValidate.isEmpty(statusId) || "INV_AVAILABLE".equals(statusId) || "INV_NS_RETURNED".equals(statusId)
+                || "SERIALIZED_INV_ITEM".equals(inventoryItem.getString("inventoryItemTypeId"));
+    }
+
+    private static void addTotals(Map<String, Map<String, BigDecimal[]>> changesByProduct, GenericValue inventoryItem, boolean subtract) {
+        if (inventoryItem == null || inventoryItem.get("productId") == null) {
+            return;
+        }
+        BigDecimal[] changes = changesByProduct.computeIfAbsent(inventoryItem.getString("productId"), k -> new TreeMap<>())
+                .computeIfAbsent(getFacilityId(inventoryItem), k -> new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+        if (!isCounted(inventoryItem)) {
+            return;
+        }
+        for (int i = 0; i < TOTAL_FIELDS.length; i++) {
+            BigDecimal total = getTotal(inventoryItem, TOTAL_FIELDS[i]);
+            changes[i] = subtract ? changes[i].subtract(total) : changes[i].add(total);
+        }
+    }
+
+    private static void addToSummary(Delegator delegator, String productId, String facilityId, BigDecimal[] changes)
+            throws GenericEntityException {
+        GenericValue summary = EntityQuery.use(delegator).from("ProductInventorySummary")
+                .where("productId", productId, "facilityId", facilityId).forUpdate().queryOne();
+        if (summary == null) {
+            // the product lock keeps concurrent transactions from creating the same summaries
+            EntityQuery.use(delegator).from("Product").where("productId", productId).forUpdate().queryOne();
+            if (EntityQuery.use(delegator).from("ProductInventorySummary").where("productId", productId).queryFirst() == null) {
+                // the stored items do not include the change yet
+                rebuildSummaries(delegator, productId);
+            }
+            summary = EntityQuery.use(delegator).from("ProductInventorySummary")
+                    .where("productId", productId, "facilityId", facilityId).forUpdate().queryOne();
+        }
+        if (summary == null) {
+            summary = makeSummary(delegator, productId, facilityId);
+            addChanges(summary, changes);
+            summary.create();
+        } else {
+            addChanges(summary, changes);
+            summary.store();
+        }
+    }
+
+    private static void addChanges(GenericValue summary, BigDecimal[] changes) {
+        for (int i = 0; i < TOTAL_FIELDS.length; i++) {
+            summary.set(TOTAL_FIELDS[i], getTotal(summary, TOTAL_FIELDS[i]).add(changes[i]));
+        }
+    }
+
+    private static String getFacilityId(GenericValue inventoryItem) {
+        String facilityId = inventoryItem.getString("facilityId");
+        return UtilValidate.isEmpty(facilityId) ? NO_FACILITY_ID : facilityId;
+    }
+
+    private static BigDecimal getTotal(GenericValue value, String field) {
+        BigDecimal total = value.getBigDecimal(field);
+        return total == null ? BigDecimal.ZERO : total;
+    }
+
+    private static GenericValue makeSummary(Delegator delegator, String productId, String facilityId) {
+        GenericValue summary = delegator.makeValue("ProductInventorySummary", "productId", productId, "facilityId", facilityId);
+        for (String field : TOTAL_FIELDS) {
+            summary.set(field, BigDecimal.ZERO);
+        }
+        return summary;
+    }
+}
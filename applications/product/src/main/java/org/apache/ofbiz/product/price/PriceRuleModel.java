@@ -0,0 +1,603 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.product.price;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.cache.Cache;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+
+/**
+ * Compiled model of the product price rules.
+ * <p>
+ * The <code>ProductPriceRule</code>, <code>ProductPriceCond</code> and <code>ProductPriceAction</code> values are read
+ * once and compiled into immutable rules holding their conditions, with parsed numeric values and descriptions, and
+ * their actions. Rules having an equality condition on an input known without looking at the product categories or
+ * features (product, party, web site, catalog, store group or currency) are indexed by the value of that condition, so
+ * that selecting the rules of a price calculation costs a few map lookups instead of a query per condition type.
+ * <p>
+ * The model is kept in the entity object cache of the three entities: a change to any of them drops it and the model
+ * is compiled again on next use.
+ */
+public final class PriceRuleModel {
+
+    private static final String MODULE = PriceRuleModel.class.getName();
+    private static final String CACHE_NAME = "PriceRuleModel";
+    private static final List<String> ENTITY_NAMES = List.of("ProductPriceRule", "ProductPriceCond", "ProductPriceAction");
+    // the inputs rules are indexed by, the most selective first
+    private static final List<String> INDEXED_INPUTS = List.of("PRIP_PRODUCT_ID", "PRIP_PARTY_ID", "PRIP_WEBSITE_ID", "PRIP_PROD_CLG_ID",
+            "PRIP_PROD_SGRP_ID", "PRIP_CURRENCY_UOMID");
+
+    private final Map<String, Rule> rules;
+    private final List<Rule> unindexedRules;
+    private final Map<String, Map<String, List<Rule>>> indexedRules;
+    private final Set<String> productCategoryIds;
+    private final Set<String> productFeatureIds;
+
+    private PriceRuleModel(Map<String, Rule> rules, List<Rule> unindexedRules, Map<String, Map<String, List<Rule>>> indexedRules,
+            Set<String> productCategoryIds, Set<String> productFeatureIds) {
+        this.rules = rules;
+        this.unindexedRules = unindexedRules;
+        this.indexedRules = indexedRules;
+        this.productCategoryIds = productCategoryIds;
+        this.productFeatureIds = productFeatureIds;
+    }
+
+    /**
+     * Gets the price rule model of a delegator, compiling it if the price rules changed since the last call.
+     * @param delegator the delegator
+     * @return the price rule model
+     * @throws GenericEntityException
+     */
+    public static PriceRuleModel getModel(Delegator delegator) throws GenericEntityException {
+        Cache cache = delegator.getCache();
+        PriceRuleModel model = null;
+        for (String entityName : ENTITY_NAMES) {
+            PriceRuleModel entityModel = cache.get(entityName, null, CACHE_NAME);
+            if (entityModel == null || (model != null && model != entityModel)) {
+                model = null;
+                break;
+            }
+            model = entityModel;
+        }
+        if (model == null) {
+            model = compile(delegator);
+            for (String entityName : ENTITY_NAMES) {
+                cache.put(entityName, null, CACHE_NAME, model);
+            }
+        }
+        return model;
+    }
+
+    private static PriceRuleModel compile(Delegator delegator) throws GenericEntityException {
+        long startTime = System.currentTimeMillis();
+        Map<String, List<Condition>> conditionsByRule = new HashMap<>();
+        for (GenericValue productPriceCond : EntityQuery.use(delegator).from("ProductPriceCond")
+                .orderBy("productPriceRuleId", "productPriceCondSeqId").queryList()) {
+            conditionsByRule.computeIfAbsent(productPriceCond.getString("productPriceRuleId"), k -> new ArrayList<>())
+                    .add(new Condition(productPriceCond, makeDescription(delegator, productPriceCond)));
+        }
+        Map<String, List<GenericValue>> actionsByRule = new HashMap<>();
+        for (GenericValue productPriceAction : EntityQuery.use(delegator).from("ProductPriceAction")
+                .orderBy("productPriceRuleId", "productPriceActionSeqId").queryList()) {
+            actionsByRule.computeIfAbsent(productPriceAction.getString("productPriceRuleId"), k -> new ArrayList<>()).add(productPriceAction);
+        }
+
+        Map<String, Rule> rules = new HashMap<>();
+        List<Rule> unindexedRules = new ArrayList<>();
+        Map<String, Map<String, List<Rule>>> indexedRules = new HashMap<>();
+        Set<String> productCategoryIds = new HashSet<>();
+        Set<String> productFeatureIds = new HashSet<>();
+        int ordinal = 0;
+        for (GenericValue productPriceRule : EntityQuery.use(delegator).from("ProductPriceRule").orderBy("productPriceRuleId").queryList()) {
+            String productPriceRuleId = productPriceRule.getString("productPriceRuleId");
+            List<Condition> conditions = conditionsByRule.getOrDefault(productPriceRuleId, Collections.emptyList());
+            Rule rule = new Rule(ordinal++, productPriceRule, conditions, actionsByRule.getOrDefault(productPriceRuleId, Collections.emptyList()));
+            rules.put(productPriceRuleId, rule);
+
+            Condition indexCondition = null;
+            for (Condition condition : conditions) {
+                if (condition.condValue == null) {
+                    continue;
+                }
+                if ("PRIP_PROD_CAT_ID".equals(condition.inputParamEnumId)) {
+                    productCategoryIds.add(condition.condValue);
+                } else if ("PRIP_PROD_FEAT_ID".equals(condition.inputParamEnumId)) {
+                    productFeatureIds.add(condition.condValue);
+                }
+                if (condition.isIndexable() && (indexCondition == null
+                        || INDEXED_INPUTS.indexOf(condition.inputParamEnumId) < INDEXED_INPUTS.indexOf(indexCondition.inputParamEnumId))) {
+                    indexCondition = condition;
+                }
+            }
+            if (indexCondition == null) {
+                unindexedRules.add(rule);
+            } else {
+                indexedRules.computeIfAbsent(indexCondition.inputParamEnumId, k -> new HashMap<>())
+                        .computeIfAbsent(indexCondition.condValue, k -> new ArrayList<>()).add(rule);
+            }
+        }
+        Debug.logInfo("Compiled " + rules.size() + " price rules, " + unindexedRules.size() + " of them not indexed, in "
+                + (System.currentTimeMillis() - startTime) + "ms", MODULE);
+        return new PriceRuleModel(Collections.unmodifiableMap(rules), Collections.unmodifiableList(unindexedRules), indexedRules,
+                Collections.unmodifiableSet(productCategoryIds), Collections.unmodifiableSet(productFeatureIds));
+    }
+
+    private static String makeDescription(Delegator delegator, GenericValue productPriceCond) throws GenericEntityException {
+        StringBuilder description = new StringBuilder("[");
+        GenericValue inputParamEnum = productPriceCond.getRelatedOne("InputParamEnumeration", true);
+        if (inputParamEnum != null) {
+            description.append(inputParamEnum.getString("enumCode"));
+        }
+        GenericValue operatorEnum = productPriceCond.getRelatedOne("OperatorEnumeration", true);
+        if (operatorEnum != null) {
+            description.append(operatorEnum.getString("description"));
+        }
+        description.append(productPriceCond.getString("condValue"));
+        description.append("] ");
+        return description.toString();
+    }
+
+    /**
+     * Gets a compiled rule.
+     * @param productPriceRuleId the rule id
+     * @return the rule, or <code>null</code> if there is no such rule
+     */
+    public Rule getRule(String productPriceRuleId) {
+        return rules.get(productPriceRuleId);
+    }
+
+    /**
+     * Gets the product categories referenced by the rule conditions.
+     * @return the product category ids
+     */
+    public Set<String> getProductCategoryIds() {
+        return productCategoryIds;
+    }
+
+    /**
+     * Gets the product features referenced by the rule conditions.
+     * @return the product feature ids
+     */
+    public Set<String> getProductFeatureIds() {
+        return productFeatureIds;
+    }
+
+    /**
+     * Selects the rules active at <code>nowTimestamp</code> which may apply to the given inputs, leaving out the rules
+     * with an equality condition on one of these inputs which is not satisfied. The rules are sorted by id.
+     * @param productId the product id
+     * @param virtualProductId the virtual product id of a variant, may be <code>null</code>
+     * @param prodCatalogId the catalog id, may be <code>null</code>
+     * @param productStoreGroupId the store group id, may be <code>null</code>
+     * @param webSiteId the web site id, may be <code>null</code>
+     * @param partyId the party id, may be <code>null</code>
+     * @param currencyUomId the currency
+     * @param nowTimestamp the time of the calculation
+     * @return the rules to evaluate
+     */
+    public List<Rule> selectRules(String productId, String virtualProductId, String prodCatalogId, String productStoreGroupId,
+            String webSiteId, String partyId, String currencyUomId, Timestamp nowTimestamp) {
+        List<Rule> selectedRules = new ArrayList<>(unindexedRules);
+        addIndexedRules(selectedRules, "PRIP_PRODUCT_ID", productId);
+        if (virtualProductId != null && !virtualProductId.equals(productId)) {
+            addIndexedRules(selectedRules, "PRIP_PRODUCT_ID", virtualProductId);
+        }
+        addIndexedRules(selectedRules, "PRIP_PARTY_ID", partyId);
+        addIndexedRules(selectedRules, "PRIP_WEBSITE_ID", webSiteId);
+        addIndexedRules(selectedRules, "PRIP_PROD_CLG_ID", prodCatalogId);
+        addIndexedRules(selectedRules, "PRIP_PROD_SGRP_ID", productStoreGroupId);
+        addIndexedRules(selectedRules, "PRIP_CURRENCY_UOMID", currencyUomId);
+        if (selectedRules.size() > unindexedRules.size()) {
+            selectedRules.sort(Comparator.comparingInt(rule -> rule.ordinal));
+        }
+        selectedRules.removeIf(rule -> !rule.isActive(nowTimestamp));
+        return selectedRules;
+    }
+
+    private void addIndexedRules(List<Rule> selectedRules, String inputParamEnumId, String value) {
+        if (UtilValidate.isEmpty(value)) {
+            return;
+        }
+        Map<String, List<Rule>> rulesByValue = indexedRules.get(inputParamEnumId);
+        if (rulesByValue != null) {
+            List<Rule> valueRules = rulesByValue.get(value);
+            if (valueRules != null) {
+                selectedRules.addAll(valueRules);
+            }
+        }
+    }
+
+    /**
+     * Makes a condition resolver with the category and feature memberships of a set of products loaded upfront, to
+     * price them without further queries on these entities.
+     * @param delegator the delegator
+     * @param productIds the ids of the products, and of their virtual products
+     * @param nowTimestamp the time of the calculation
+     * @return the condition resolver
+     * @throws GenericEntityException
+     */
+    public ConditionResolver makeResolver(Delegator delegator, Collection<String> productIds, Timestamp nowTimestamp)
+            throws GenericEntityException {
+        Map<String, Set<String>> categoriesByProduct = new HashMap<>();
+        Map<String, Set<String>> featuresByProduct = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            for (String productId : productIds) {
+                categoriesByProduct.put(productId, new HashSet<>());
+                featuresByProduct.put(productId, new HashSet<>());
+            }
+            if (!productCategoryIds.isEmpty()) {
+                List<GenericValue> members = EntityQuery.use(delegator).from("ProductCategoryMember")
+                        .where(EntityCondition.makeCondition("productId", EntityOperator.IN, productIds),
+                                EntityCondition.makeCondition("productCategoryId", EntityOperator.IN, productCategoryIds))
+                        .filterByDate(nowTimestamp).queryList();
+                for (GenericValue member : members) {
+                    categoriesByProduct.get(member.getString("productId")).add(member.getString("productCategoryId"));
+                }
+            }
+            if (!productFeatureIds.isEmpty()) {
+                List<GenericValue> appls = EntityQuery.use(delegator).from("ProductFeatureAppl")
+                        .where(EntityCondition.makeCondition("productId", EntityOperator.IN, productIds),
+                                EntityCondition.makeCondition("productFeatureId", EntityOperator.IN, productFeatureIds))
+                        .filterByDate(nowTimestamp).queryList();
+                for (GenericValue appl : appls) {
+                    featuresByProduct.get(appl.getString("productId")).add(appl.getString("productFeatureId"));
+                }
+            }
+        }
+        return new CachedResolver(delegator) {
+            @Override
+            public boolean isCategoryMember(String productId, String productCategoryId, Timestamp nowTimestamp)
+                    throws GenericEntityException {
+                Set<String> productCategories = categoriesByProduct.get(productId);
+                if (productCategories != null && productCategoryIds.contains(productCategoryId)) {
+                    return productCategories.contains(productCategoryId);
+                }
+                return super.isCategoryMember(productId, productCategoryId, nowTimestamp);
+            }
+
+            @Override
+            public boolean hasFeature(String productId, String productFeatureId, Timestamp nowTimestamp) throws GenericEntityException {
+                Set<String> productFeatures = featuresByProduct.get(productId);
+                if (productFeatures != null && productFeatureIds.contains(productFeatureId)) {
+                    return productFeatures.contains(productFeatureId);
+                }
+                return super.hasFeature(productId, productFeatureId, nowTimestamp);
+            }
+        };
+    }
+
+    /**
+     * A compiled price rule.
+     */
+    public static final class Rule {
+        private final int ordinal;
+        private final GenericValue productPriceRule;
+        private final List<Condition> conditions;
+        private final List<GenericValue> actions;
+        private final Timestamp fromDate;
+        private final Timestamp thruDate;
+
+        private Rule(int ordinal, GenericValue productPriceRule, List<Condition> conditions, List<GenericValue> actions) {
+            this.ordinal = ordinal;
+            this.productPriceRule = productPriceRule;
+            this.conditions = Collections.unmodifiableList(conditions);
+            this.actions = Collections.unmodifiableList(actions);
+            this.fromDate = productPriceRule.getTimestamp("fromDate");
+            this.thruDate = productPriceRule.getTimestamp("thruDate");
+        }
+
+        /**
+         * Gets the ProductPriceRule value of this rule.
+         * @return the rule value
+         */
+        public GenericValue getProductPriceRule() {
+            return productPriceRule;
+        }
+
+        /**
+         * Gets the rule id.
+         * @return the rule id
+         */
+        public String getProductPriceRuleId() {
+            return productPriceRule.getString("productPriceRuleId");
+        }
+
+        /**
+         * Gets the conditions of the rule.
+         * @return the conditions
+         */
+        public List<Condition> getConditions() {
+            return conditions;
+        }
+
+        /**
+         * Gets the ProductPriceAction values of the rule, sorted by sequence id.
+         * @return the actions
+         */
+        public List<GenericValue> getActions() {
+            return actions;
+        }
+
+        /**
+         * Checks if the rule is in effect at a given time.
+         * @param nowTimestamp the time
+         * @return <code>true</code> if the rule is in effect
+         */
+        public boolean isActive(Timestamp nowTimestamp) {
+            return (fromDate == null || !fromDate.after(nowTimestamp)) && (thruDate == null || thruDate.after(nowTimestamp));
+        }
+    }
+
+    /**
+     * A compiled price rule condition.
+     */
+    public static final class Condition {
+        private final String inputParamEnumId;
+        private final String operatorEnumId;
+        private final String condValue;
+        private final BigDecimal numericValue;
+        private final String description;
+
+        /**
+         * Compiles a price rule condition.
+         * @param productPriceCond the ProductPriceCond value
+         * @param description the description of the condition for the price info, may be <code>null</code>
+         */
+        public Condition(GenericValue productPriceCond, String description) {
+            this.inputParamEnumId = productPriceCond.getString("inputParamEnumId");
+            this.operatorEnumId = productPriceCond.getString("operatorEnumId");
+            this.condValue = productPriceCond.getString("condValue");
+            this.description = description;
+            BigDecimal number = null;
+            if (("PRIP_QUANTITY".equals(inputParamEnumId) || "PRIP_LIST_PRICE".equals(inputParamEnumId)) && condValue != null) {
+                try {
+                    number = new BigDecimal(condValue);
+                } catch (NumberFormatException e) {
+                    Debug.logWarning("Invalid number [" + condValue + "] in the price condition " + productPriceCond.getPrimaryKey()
+                            + ", the condition will always fail", MODULE);
+                }
+            }
+            this.numericValue = number;
+        }
+
+        private boolean isIndexable() {
+            return "PRC_EQ".equals(operatorEnumId) && condValue != null && INDEXED_INPUTS.contains(inputParamEnumId);
+        }
+
+        /**
+         * Gets the input parameter of the condition.
+         * @return the inputParamEnumId
+         */
+        public String getInputParamEnumId() {
+            return inputParamEnumId;
+        }
+
+        /**
+         * Gets the description of the condition for the price info.
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * Checks the condition, taking the same inputs as {@link PriceServices#checkPriceCondition}.
+         * @return <code>true</code> if the condition is satisfied
+         * @throws GenericEntityException
+         */
+        public boolean check(String productId, String virtualProductId, String prodCatalogId, String productStoreGroupId, String webSiteId,
+                String partyId, BigDecimal quantity, BigDecimal listPrice, String currencyUomId, ConditionResolver resolver,
+                Timestamp nowTimestamp) throws GenericEntityException {
+            int compare;
+            switch (inputParamEnumId == null ? "" : inputParamEnumId) {
+            case "PRIP_PRODUCT_ID":
+                compare = condValue != null && (condValue.equals(productId) || condValue.equals(virtualProductId)) ? 0 : 1;
+                break;
+            case "PRIP_PROD_CAT_ID":
+                // NOTE: a virtual product is typically a member of a category where its variants are not
+                compare = resolver.isCategoryMember(productId, condValue, nowTimestamp)
+                        || (UtilValidate.isNotEmpty(virtualProductId)
+                        && resolver.isCategoryMember(virtualProductId, condValue, nowTimestamp)) ? 0 : 1;
+                break;
+            case "PRIP_PROD_FEAT_ID":
+                // NOTE: DEJ20070130 don't retry this condition with the virtualProductId as well; this breaks various things you might want to do
+                // with price rules, like have different pricing for a variant products with a certain distinguishing feature
+                compare = resolver.hasFeature(productId, condValue, nowTimestamp) ? 0 : 1;
+                break;
+            case "PRIP_PROD_CLG_ID":
+                compare = compareInput(prodCatalogId);
+                break;
+            case "PRIP_PROD_SGRP_ID":
+                compare = compareInput(productStoreGroupId);
+                break;
+            case "PRIP_WEBSITE_ID":
+                compare = compareInput(webSiteId);
+                break;
+            case "PRIP_QUANTITY":
+                if (quantity == null) {
+                    // if no quantity is passed in, assume all quantity conditions pass
+                    return true;
+                }
+                if (numericValue == null) {
+                    return false;
+                }
+                compare = quantity.compareTo(numericValue);
+                break;
+            case "PRIP_PARTY_ID":
+                compare = compareInput(partyId);
+                break;
+            case "PRIP_PARTY_GRP_MEM":
+                compare = UtilValidate.isNotEmpty(partyId) && resolver.isPartyGroupMember(partyId, condValue, nowTimestamp) ? 0 : 1;
+                break;
+            case "PRIP_PARTY_CLASS":
+                compare = UtilValidate.isNotEmpty(partyId) && resolver.isPartyClassified(partyId, condValue, nowTimestamp) ? 0 : 1;
+                break;
+            case "PRIP_ROLE_TYPE":
+                compare = partyId != null && resolver.hasPartyRole(partyId, condValue) ? 0 : 1;
+                break;
+            case "PRIP_LIST_PRICE":
+                if (numericValue == null) {
+                    return false;
+                }
+                compare = listPrice.compareTo(numericValue);
+                break;
+            case "PRIP_CURRENCY_UOMID":
+                compare = currencyUomId.compareTo(condValue);
+                break;
+            default:
+                Debug.logWarning("An un-supported productPriceCond input parameter (lhs) was used: " + inputParamEnumId
+                        + ", returning false, ie check failed", MODULE);
+                return false;
+            }
+
+            switch (operatorEnumId == null ? "" : operatorEnumId) {
+            case "PRC_EQ":
+                return compare == 0;
+            case "PRC_NEQ":
+                return compare != 0;
+            case "PRC_LT":
+                return compare < 0;
+            case "PRC_LTE":
+                return compare <= 0;
+            case "PRC_GT":
+                return compare > 0;
+            case "PRC_GTE":
+                return compare >= 0;
+            default:
+                Debug.logWarning("An un-supported productPriceCond condition was used: " + operatorEnumId
+                        + ", returning false, ie check failed", MODULE);
+                return false;
+            }
+        }
+
+        private int compareInput(String input) {
+            return UtilValidate.isNotEmpty(input) ? input.compareTo(condValue) : 1;
+        }
+    }
+
+    /**
+     * Answers the conditions of the price rules depending on other entities than the price rules.
+     */
+    public interface ConditionResolver {
+        boolean isCategoryMember(String productId, String productCategoryId, Timestamp nowTimestamp) throws GenericEntityException;
+        boolean hasFeature(String productId, String productFeatureId, Timestamp nowTimestamp) throws GenericEntityException;
+        boolean isPartyGroupMember(String partyId, String groupPartyId, Timestamp nowTimestamp) throws GenericEntityException;
+        boolean isPartyClassified(String partyId, String partyClassificationGroupId, Timestamp nowTimestamp) throws GenericEntityException;
+        boolean hasPartyRole(String partyId, String roleTypeId) throws GenericEntityException;
+    }
+
+    /**
+     * Condition resolver looking up the entity cache, remembering the party answers since they are the same for all
+     * the products priced for a party.
+     */
+    public static class CachedResolver implements ConditionResolver {
+        private final Delegator delegator;
+        private final Map<String, Boolean> partyAnswers = new HashMap<>();
+
+        public CachedResolver(Delegator delegator) {
+            this.delegator = delegator;
+        }
+
+        @Override
+        public boolean isCategoryMember(String productId, String productCategoryId, Timestamp nowTimestamp) throws GenericEntityException {
+            return UtilValidate.isNotEmpty(EntityQuery.use(delegator).from("ProductCategoryMember")
+                    .where("productId", productId, "productCategoryId", productCategoryId)
+                    .cache(true).filterByDate(nowTimestamp).queryList());
+        }
+
+        @Override
+        public boolean hasFeature(String productId, String productFeatureId, Timestamp nowTimestamp) throws GenericEntityException {
+            return UtilValidate.isNotEmpty(EntityQuery.use(delegator).from("ProductFeatureAppl")
+                    .where("productId", productId, "productFeatureId", productFeatureId)
+                    .cache(true).filterByDate(nowTimestamp).queryList());
+        }
+
+        @Override
+        public boolean isPartyGroupMember(String partyId, String groupPartyId, Timestamp nowTimestamp) throws GenericEntityException {
+            String key = "GRP|" + partyId + "|" + groupPartyId;
+            Boolean answer = partyAnswers.get(key);
+            if (answer == null) {
+                answer = partyId.equals(groupPartyId) || isPartyInGroupHierarchy(partyId, groupPartyId, nowTimestamp, new HashSet<>());
+                partyAnswers.put(key, answer);
+            }
+            return answer;
+        }
+
+        // looks for a GROUP_ROLLUP PartyRelationship from the group to the party, or to one of the groups of the party
+        private boolean isPartyInGroupHierarchy(String partyId, String groupPartyId, Timestamp nowTimestamp, Set<String> visited)
+                throws GenericEntityException {
+            if (!visited.add(partyId)) {
+                return false;
+            }
+            List<GenericValue> partyRelationships = EntityQuery.use(delegator).from("PartyRelationship")
+                    .where("partyIdTo", partyId, "partyRelationshipTypeId", "GROUP_ROLLUP").cache(true).filterByDate(nowTimestamp).queryList();
+            for (GenericValue partyRelationship : partyRelationships) {
+                String partyIdFrom = partyRelationship.getString("partyIdFrom");
+                if (partyIdFrom.equals(groupPartyId) || isPartyInGroupHierarchy(partyIdFrom, groupPartyId, nowTimestamp, visited)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isPartyClassified(String partyId, String partyClassificationGroupId, Timestamp nowTimestamp)
+                throws GenericEntityException {
+            String key = "CLASS|" + partyId + "|" + partyClassificationGroupId;
+            Boolean answer = partyAnswers.get(key);
+            if (answer == null) {
+                answer = UtilValidate.isNotEmpty(EntityQuery.use(delegator).from("PartyClassification")
+                        .where("partyId", partyId, "partyClassificationGroupId", partyClassificationGroupId)
+                        .cache(true).filterByDate(nowTimestamp).queryList());
+                partyAnswers.put(key, answer);
+            }
+            return answer;
+        }
+
+        @Override
+        public boolean hasPartyRole(String partyId, String roleTypeId) throws GenericEntityException {
+            String key = "ROLE|" + partyId + "|" + roleTypeId;
+            Boolean answer = partyAnswers.get(key);
+            if (answer == null) {
+                answer = EntityQuery.use(delegator).from("PartyRole").where("partyId", partyId, "roleTypeId", roleTypeId)
+                        .cache(true).queryOne() != null;
+                partyAnswers.put(key, answer);
+            }
+            return answer;
+        }
+    }
+}
@@ -21,13 +21,14 @@ package org.apache.ofbiz.product.price;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.sql.Timestamp;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.Set;
 
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilDateTime;
@@ -82,6 +83,65 @@ public class PriceServices {
      * </ul>
      */
     public static Map<String, Object> calculateProductPrice(DispatchContext dctx, Map<String, ? extends Object> context) {
+        return calculateProductPrice(dctx, context, new PriceRuleModel.CachedResolver(dctx.getDelegator()));
+    }
+
+    /**
+     * Calculates the prices of a list of products, sharing the price rule evaluation for the same party and store.
+     * Takes the same input as calculateProductPrice, with <code>productIds</code> in place of <code>product</code>,
+     * and returns the price calculation result of each product in the <code>productPrices</code> map, by product id.
+     * Unknown product ids are left out.
+     */
+    public static Map<String, Object> calculateProductPrices(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        Locale locale = (Locale) context.get("locale");
+        List<String> productIds = UtilGenerics.cast(context.get("productIds"));
+        Timestamp nowTimestamp = UtilDateTime.nowTimestamp();
+
+        Map<String, GenericValue> products = new HashMap<>();
+        PriceRuleModel.ConditionResolver resolver;
+        try {
+            Set<String> ruleProductIds = new HashSet<>(productIds);
+            for (GenericValue product : EntityQuery.use(delegator).from("Product")
+                    .where(EntityCondition.makeCondition("productId", EntityOperator.IN, productIds)).queryList()) {
+                products.put(product.getString("productId"), product);
+                if ("Y".equals(product.getString("isVariant"))) {
+                    String virtualProductId = ProductWorker.getVariantVirtualId(product);
+                    if (virtualProductId != null) {
+                        ruleProductIds.add(virtualProductId);
+                    }
+                }
+            }
+            // one query for all the category and feature conditions of the page
+            resolver = PriceRuleModel.getModel(delegator).makeResolver(delegator, ruleProductIds, nowTimestamp);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error getting rules from the database while calculating prices", MODULE);
+            return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE,
+                    "ProductPriceCannotRetrievePriceRules", UtilMisc.toMap("errorString", e.toString()), locale));
+        }
+
+        Map<String, Object> priceContext = new HashMap<>(context);
+        priceContext.remove("productIds");
+        Map<String, Object> productPrices = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            GenericValue product = products.get(productId);
+            if (product == null || productPrices.containsKey(productId)) {
+                continue;
+            }
+            priceContext.put("product", product);
+            Map<String, Object> priceResult = calculateProductPrice(dctx, priceContext, resolver);
+            if (ServiceUtil.isError(priceResult)) {
+                return priceResult;
+            }
+            productPrices.put(productId, priceResult);
+        }
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("productPrices", productPrices);
+        return result;
+    }
+
+    private static Map<String, Object> calculateProductPrice(DispatchContext dctx, Map<String, ? extends Object> context,
+            PriceRuleModel.ConditionResolver resolver) {
         Delegator delegator = dctx.getDelegator();
         LocalDispatcher dispatcher = dctx.getDispatcher();
         Map<String, Object> result = new HashMap<>();
@@ -97,7 +157,6 @@ public class PriceServices {
 
         String findAllQuantityPricesStr = (String) context.get("findAllQuantityPrices");
         boolean findAllQuantityPrices = "Y".equals(findAllQuantityPricesStr);
-        boolean optimizeForLargeRuleSet = "Y".equals(context.get("optimizeForLargeRuleSet"));
 
         String agreementId = (String) context.get("agreementId");
 
@@ -437,29 +496,27 @@ public class PriceServices {
             if (errorResult != null) return errorResult;
         } else {
             try {
-                List<GenericValue> allProductPriceRules = makeProducePriceRuleList(delegator, optimizeForLargeRuleSet, productId, virtualProductId,
-                        prodCatalogId, productStoreGroupId, webSiteId, partyId, currencyDefaultUomId);
-                allProductPriceRules = EntityUtil.filterByDate(allProductPriceRules, true);
+                // the compiled rules are indexed by the inputs of the equality conditions, which makes the selection fast
+                // for any rule set: optimizeForLargeRuleSet is no longer needed to pre-filter the rules
+                List<PriceRuleModel.Rule> allProductPriceRules = PriceRuleModel.getModel(delegator).selectRules(productId, virtualProductId,
+                        prodCatalogId, productStoreGroupId, webSiteId, partyId, currencyDefaultUomId, nowTimestamp);
 
-                List<GenericValue> quantityProductPriceRules = null;
-                List<GenericValue> nonQuantityProductPriceRules = null;
+                List<PriceRuleModel.Rule> quantityProductPriceRules = null;
+                List<PriceRuleModel.Rule> nonQuantityProductPriceRules = null;
                 if (findAllQuantityPrices) {
                     // split into list with quantity conditions and list without, then iterate through each quantity cond one
                     quantityProductPriceRules = new LinkedList<>();
                     nonQuantityProductPriceRules = new LinkedList<>();
-                    for (GenericValue productPriceRule: allProductPriceRules) {
-                        List<GenericValue> productPriceCondList = EntityQuery.use(delegator).from("ProductPriceCond").where("productPriceRuleId",
-                                productPriceRule.get("productPriceRuleId")).cache(true).queryList();
-
+                    for (PriceRuleModel.Rule productPriceRule: allProductPriceRules) {
                         boolean foundQuantityInputParam = false;
                         // only consider a rule if all conditions except the quantity condition are true
                         boolean allExceptQuantTrue = true;
-                        for (GenericValue productPriceCond: productPriceCondList) {
-                            if ("PRIP_QUANTITY".equals(productPriceCond.getString("inputParamEnumId"))) {
+                        for (PriceRuleModel.Condition productPriceCond: productPriceRule.getConditions()) {
+                            if ("PRIP_QUANTITY".equals(productPriceCond.getInputParamEnumId())) {
                                 foundQuantityInputParam = true;
                             } else {
-                                if (!checkPriceCondition(productPriceCond, productId, virtualProductId, prodCatalogId, productStoreGroupId,
-                                        webSiteId, partyId, quantity, listPrice, currencyDefaultUomId, delegator, nowTimestamp)) {
+                                if (!productPriceCond.check(productId, virtualProductId, prodCatalogId, productStoreGroupId,
+                                        webSiteId, partyId, quantity, listPrice, currencyDefaultUomId, resolver, nowTimestamp)) {
                                     allExceptQuantTrue = false;
                                 }
                             }
@@ -478,32 +535,32 @@ public class PriceServices {
 
                     // if findAllQuantityPrices then iterate through quantityProductPriceRules
                     // foreach create an entry in the out list and eval that rule and all nonQuantityProductPriceRules rather than a single rule
-                    for (GenericValue quantityProductPriceRule: quantityProductPriceRules) {
-                        List<GenericValue> ruleListToUse = new LinkedList<>();
+                    for (PriceRuleModel.Rule quantityProductPriceRule: quantityProductPriceRules) {
+                        List<PriceRuleModel.Rule> ruleListToUse = new LinkedList<>();
                         ruleListToUse.add(quantityProductPriceRule);
                         ruleListToUse.addAll(nonQuantityProductPriceRules);
 
-                        Map<String, Object> quantCalcResults = calcPriceResultFromRules(ruleListToUse, listPrice, defaultPrice, promoPrice,
+                        Map<String, Object> quantCalcResults = calcPriceResultFromCompiledRules(ruleListToUse, listPrice, defaultPrice, promoPrice,
                                 wholesalePrice, maximumPriceValue, minimumPriceValue, validPriceFound,
                                 averageCostValue, productId, virtualProductId, prodCatalogId, productStoreGroupId,
-                                webSiteId, partyId, null, currencyDefaultUomId, delegator, nowTimestamp, locale);
+                                webSiteId, partyId, null, currencyDefaultUomId, delegator, resolver, nowTimestamp, locale);
                         Map<String, Object> quantErrorResult = addGeneralResults(quantCalcResults, competitivePriceValue, specialPromoPriceValue,
                                 productStore,
                                 checkIncludeVat, currencyDefaultUomId, productId, quantity, partyId, dispatcher, locale);
                         if (quantErrorResult != null) return quantErrorResult;
 
                         // also add the quantityProductPriceRule to the Map so it can be used for quantity break information
-                        quantCalcResults.put("quantityProductPriceRule", quantityProductPriceRule);
+                        quantCalcResults.put("quantityProductPriceRule", quantityProductPriceRule.getProductPriceRule());
 
                         allQuantityPrices.add(quantCalcResults);
                     }
                     result.put("allQuantityPrices", allQuantityPrices);
 
                     // use a quantity 1 to get the main price, then fill in the quantity break prices
-                    Map<String, Object> calcResults = calcPriceResultFromRules(allProductPriceRules, listPrice, defaultPrice, promoPrice,
+                    Map<String, Object> calcResults = calcPriceResultFromCompiledRules(allProductPriceRules, listPrice, defaultPrice, promoPrice,
                             wholesalePrice, maximumPriceValue, minimumPriceValue, validPriceFound,
                             averageCostValue, productId, virtualProductId, prodCatalogId, productStoreGroupId,
-                            webSiteId, partyId, BigDecimal.ONE, currencyDefaultUomId, delegator, nowTimestamp, locale);
+                            webSiteId, partyId, BigDecimal.ONE, currencyDefaultUomId, delegator, resolver, nowTimestamp, locale);
                     result.putAll(calcResults);
                     // The orderItemPriceInfos out parameter requires a special treatment:
                     // the list of OrderItemPriceInfos generated by the price rule is appended to
@@ -518,10 +575,10 @@ public class PriceServices {
                             checkIncludeVat, currencyDefaultUomId, productId, quantity, partyId, dispatcher, locale);
                     if (errorResult != null) return errorResult;
                 } else {
-                    Map<String, Object> calcResults = calcPriceResultFromRules(allProductPriceRules, listPrice, defaultPrice, promoPrice,
+                    Map<String, Object> calcResults = calcPriceResultFromCompiledRules(allProductPriceRules, listPrice, defaultPrice, promoPrice,
                             wholesalePrice, maximumPriceValue, minimumPriceValue, validPriceFound,
                             averageCostValue, productId, virtualProductId, prodCatalogId, productStoreGroupId,
-                            webSiteId, partyId, quantity, currencyDefaultUomId, delegator, nowTimestamp, locale);
+                            webSiteId, partyId, quantity, currencyDefaultUomId, delegator, resolver, nowTimestamp, locale);
                     result.putAll(calcResults);
                     // The orderItemPriceInfos out parameter requires a special treatment:
                     // the list of OrderItemPriceInfos generated by the price rule is appended to
@@ -668,170 +725,20 @@ public class PriceServices {
         return null;
     }
 
+    /**
+     * Returns the price rules which may apply to the given inputs, read from the compiled price rule model.
+     * @deprecated use {@link PriceRuleModel#selectRules}, which indexes the rules by their equality conditions for any
+     * rule set size: <code>optimizeForLargeRuleSet</code> is ignored, and only the rules active now are returned.
+     */
+    @Deprecated
     public static List<GenericValue> makeProducePriceRuleList(Delegator delegator, boolean optimizeForLargeRuleSet, String productId,
             String virtualProductId, String prodCatalogId, String productStoreGroupId, String webSiteId, String partyId, String currencyUomId)
             throws GenericEntityException {
-        List<GenericValue> productPriceRules = null;
-
-        // At this point we have two options: optimize for large ruleset, or optimize for small ruleset
-        // NOTE: This only effects the way that the rules to be evaluated are selected.
-        // For large rule sets we can do a cached pre-filter to limit the rules that need to be evaled for a specific product.
-        // Genercally I don't think that rule sets will get that big though, so the default is optimize for smaller rule set.
-        if (optimizeForLargeRuleSet) {
-            // ========= find all rules that must be run for each input type; this is kind of like a pre-filter to slim down the rules to run =======
-            TreeSet<String> productPriceRuleIds = new TreeSet<>();
-
-            // ------- These are all of the conditions that DON'T depend on the current inputs -------
-
-            // by productCategoryId
-            // for we will always include any rules that go by category, shouldn't be too many to iterate through each time and will save on cache
-            // entries note that we always want to put the category, quantity, etc ones that find all rules with these conditions in separate cache
-            // lists so that they can be easily cleared
-            Collection<GenericValue> productCategoryIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_PROD_CAT_ID").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(productCategoryIdConds)) {
-                for (GenericValue productCategoryIdCond: productCategoryIdConds) {
-                    productPriceRuleIds.add(productCategoryIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // by productFeatureId
-            Collection<GenericValue> productFeatureIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_PROD_FEAT_ID").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(productFeatureIdConds)) {
-                for (GenericValue productFeatureIdCond: productFeatureIdConds) {
-                    productPriceRuleIds.add(productFeatureIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // by quantity -- should we really do this one, ie is it necessary?
-            // we could say that all rules with quantity on them must have one of these other values
-            // but, no we'll do it the other way, any that have a quantity will always get compared
-            Collection<GenericValue> quantityConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_QUANTITY").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(quantityConds)) {
-                for (GenericValue quantityCond: quantityConds) {
-                    productPriceRuleIds.add(quantityCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // by roleTypeId
-            Collection<GenericValue> roleTypeIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_ROLE_TYPE").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(roleTypeIdConds)) {
-                for (GenericValue roleTypeIdCond: roleTypeIdConds) {
-                    productPriceRuleIds.add(roleTypeIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // by partyClassificationGroupId
-            Collection<GenericValue> partyClassificationGroupIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_PARTY_CLASS").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(partyClassificationGroupIdConds)) {
-                for (GenericValue partyClassificationGroupIdCond: partyClassificationGroupIdConds) {
-                    productPriceRuleIds.add(partyClassificationGroupIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // TODO, not supported yet: by groupPartyId
-            // later: (by partyClassificationTypeId)
-
-            // by listPrice
-            Collection<GenericValue> listPriceConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_LIST_PRICE").cache(true).queryList();
-            if (UtilValidate.isNotEmpty(listPriceConds)) {
-                for (GenericValue listPriceCond: listPriceConds) {
-                    productPriceRuleIds.add(listPriceCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // ------- These are all of them that DO depend on the current inputs -------
-
-            // by productId
-            Collection<GenericValue> productIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_PRODUCT_ID", "condValue", productId).cache(true).queryList();
-            if (UtilValidate.isNotEmpty(productIdConds)) {
-                for (GenericValue productIdCond: productIdConds) {
-                    productPriceRuleIds.add(productIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            // by virtualProductId, if not null
-            if (virtualProductId != null) {
-                Collection<GenericValue> virtualProductIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                        "PRIP_PRODUCT_ID", "condValue", virtualProductId).cache(true).queryList();
-                if (UtilValidate.isNotEmpty(virtualProductIdConds)) {
-                    for (GenericValue virtualProductIdCond: virtualProductIdConds) {
-                        productPriceRuleIds.add(virtualProductIdCond.getString("productPriceRuleId"));
-                    }
-                }
-            }
-
-            // by prodCatalogId - which is optional in certain cases
-            if (UtilValidate.isNotEmpty(prodCatalogId)) {
-                Collection<GenericValue> prodCatalogIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                        "PRIP_PROD_CLG_ID", "condValue", prodCatalogId).cache(true).queryList();
-                if (UtilValidate.isNotEmpty(prodCatalogIdConds)) {
-                    for (GenericValue prodCatalogIdCond: prodCatalogIdConds) {
-                        productPriceRuleIds.add(prodCatalogIdCond.getString("productPriceRuleId"));
-                    }
-                }
-            }
-
-            // by productStoreGroupId
-            if (UtilValidate.isNotEmpty(productStoreGroupId)) {
-                Collection<GenericValue> storeGroupConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                        "PRIP_PROD_SGRP_ID", "condValue", productStoreGroupId).cache(true).queryList();
-                if (UtilValidate.isNotEmpty(storeGroupConds)) {
-                    for (GenericValue storeGroupCond: storeGroupConds) {
-                        productPriceRuleIds.add(storeGroupCond.getString("productPriceRuleId"));
-                    }
-                }
-            }
-
-            // by webSiteId
-            if (UtilValidate.isNotEmpty(webSiteId)) {
-                Collection<GenericValue> webSiteIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                        "PRIP_WEBSITE_ID", "condValue", webSiteId).cache(true).queryList();
-                if (UtilValidate.isNotEmpty(webSiteIdConds)) {
-                    for (GenericValue webSiteIdCond: webSiteIdConds) {
-                        productPriceRuleIds.add(webSiteIdCond.getString("productPriceRuleId"));
-                    }
-                }
-            }
-
-            // by partyId
-            if (UtilValidate.isNotEmpty(partyId)) {
-                Collection<GenericValue> partyIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                        "PRIP_PARTY_ID", "condValue", partyId).cache(true).queryList();
-                if (UtilValidate.isNotEmpty(partyIdConds)) {
-                    for (GenericValue partyIdCond: partyIdConds) {
-                        productPriceRuleIds.add(partyIdCond.getString("productPriceRuleId"));
-                    }
-                }
-            }
-
-            // by currencyUomId
-            Collection<GenericValue> currencyUomIdConds = EntityQuery.use(delegator).from("ProductPriceCond").where("inputParamEnumId",
-                    "PRIP_CURRENCY_UOMID", "condValue", currencyUomId).cache(true).queryList();
-            if (UtilValidate.isNotEmpty(currencyUomIdConds)) {
-                for (GenericValue currencyUomIdCond: currencyUomIdConds) {
-                    productPriceRuleIds.add(currencyUomIdCond.getString("productPriceRuleId"));
-                }
-            }
-
-            productPriceRules = new LinkedList<>();
-            for (String productPriceRuleId: productPriceRuleIds) {
-                GenericValue productPriceRule = EntityQuery.use(delegator).from("ProductPriceRule").where("productPriceRuleId", productPriceRuleId)
-                        .cache().queryOne();
-                if (productPriceRule == null) continue;
-                productPriceRules.add(productPriceRule);
-            }
-        } else {
-            productPriceRules = EntityQuery.use(delegator).from("ProductPriceRule").cache(true).queryList();
-            if (productPriceRules == null) productPriceRules = new LinkedList<>();
+        List<GenericValue> productPriceRules = new LinkedList<>();
+        for (PriceRuleModel.Rule rule: PriceRuleModel.getModel(delegator).selectRules(productId, virtualProductId, prodCatalogId,
+                productStoreGroupId, webSiteId, partyId, currencyUomId, UtilDateTime.nowTimestamp())) {
+            productPriceRules.add(rule.getProductPriceRule());
         }
-
         return productPriceRules;
     }
 
@@ -844,6 +751,24 @@ public class PriceServices {
                                                                String webSiteId, String partyId, BigDecimal quantity, String currencyUomId,
                                                                Delegator delegator, Timestamp nowTimestamp,
                                                                Locale locale) throws GenericEntityException {
+        PriceRuleModel priceRuleModel = PriceRuleModel.getModel(delegator);
+        List<PriceRuleModel.Rule> rules = new LinkedList<>();
+        for (GenericValue productPriceRule: productPriceRules) {
+            PriceRuleModel.Rule rule = priceRuleModel.getRule(productPriceRule.getString("productPriceRuleId"));
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return calcPriceResultFromCompiledRules(rules, listPrice, defaultPrice, promoPrice, wholesalePrice, maximumPriceValue, minimumPriceValue,
+                validPriceFound, averageCostValue, productId, virtualProductId, prodCatalogId, productStoreGroupId, webSiteId, partyId, quantity,
+                currencyUomId, delegator, new PriceRuleModel.CachedResolver(delegator), nowTimestamp, locale);
+    }
+
+    private static Map<String, Object> calcPriceResultFromCompiledRules(List<PriceRuleModel.Rule> productPriceRules, BigDecimal listPrice,
+            BigDecimal defaultPrice, BigDecimal promoPrice, BigDecimal wholesalePrice, GenericValue maximumPriceValue,
+            GenericValue minimumPriceValue, boolean validPriceFound, GenericValue averageCostValue, String productId, String virtualProductId,
+            String prodCatalogId, String productStoreGroupId, String webSiteId, String partyId, BigDecimal quantity, String currencyUomId,
+            Delegator delegator, PriceRuleModel.ConditionResolver resolver, Timestamp nowTimestamp, Locale locale) throws GenericEntityException {
 
         Map<String, Object> calcResults = new HashMap<>();
 
@@ -863,49 +788,29 @@ public class PriceServices {
         // calculate running sum based on listPrice and rules found
         BigDecimal price = listPrice;
 
-        for (GenericValue productPriceRule: productPriceRules) {
-            String productPriceRuleId = productPriceRule.getString("productPriceRuleId");
+        for (PriceRuleModel.Rule compiledRule: productPriceRules) {
+            GenericValue productPriceRule = compiledRule.getProductPriceRule();
 
             // check from/thru dates
-            java.sql.Timestamp fromDate = productPriceRule.getTimestamp("fromDate");
-            java.sql.Timestamp thruDate = productPriceRule.getTimestamp("thruDate");
-
-            if (fromDate != null && fromDate.after(nowTimestamp)) {
-                // hasn't started yet
-                continue;
-            }
-            if (thruDate != null && thruDate.before(nowTimestamp)) {
-                // already expired
+            if (!compiledRule.isActive(nowTimestamp)) {
                 continue;
             }
 
             // check all conditions
             boolean allTrue = true;
             StringBuilder condsDescription = new StringBuilder();
-            List<GenericValue> productPriceConds = EntityQuery.use(delegator).from("ProductPriceCond").where("productPriceRuleId",
-                    productPriceRuleId).cache(true).queryList();
-            for (GenericValue productPriceCond: productPriceConds) {
+            for (PriceRuleModel.Condition productPriceCond: compiledRule.getConditions()) {
 
                 totalConds++;
 
-                if (!checkPriceCondition(productPriceCond, productId, virtualProductId, prodCatalogId, productStoreGroupId, webSiteId, partyId,
-                        quantity, listPrice, currencyUomId, delegator, nowTimestamp)) {
+                if (!productPriceCond.check(productId, virtualProductId, prodCatalogId, productStoreGroupId, webSiteId, partyId,
+                        quantity, listPrice, currencyUomId, resolver, nowTimestamp)) {
                     allTrue = false;
                     break;
                 }
 
                 // add condsDescription string entry
-                condsDescription.append("[");
-                GenericValue inputParamEnum = productPriceCond.getRelatedOne("InputParamEnumeration", true);
-
-                condsDescription.append(inputParamEnum.getString("enumCode"));
-                // condsDescription.append(":");
-                GenericValue operatorEnum = productPriceCond.getRelatedOne("OperatorEnumeration", true);
-
-                condsDescription.append(operatorEnum.getString("description"));
-                // condsDescription.append(":");
-                condsDescription.append(productPriceCond.getString("condValue"));
-                condsDescription.append("] ");
+                condsDescription.append(productPriceCond.getDescription());
             }
 
             // add some info about the prices we are calculating from
@@ -926,9 +831,7 @@ public class PriceServices {
                     isSale = true;
                 }
 
-                List<GenericValue> productPriceActions = EntityQuery.use(delegator).from("ProductPriceAction").where("productPriceRuleId",
-                        productPriceRuleId).cache(true).queryList();
-                for (GenericValue productPriceAction: productPriceActions) {
+                for (GenericValue productPriceAction: compiledRule.getActions()) {
 
                     totalActions++;
 
@@ -1115,190 +1018,8 @@ public class PriceServices {
         if (Debug.verboseOn()) {
             Debug.logVerbose("Checking price condition: " + productPriceCond, MODULE);
         }
-        int compare = 0;
-
-        if ("PRIP_PRODUCT_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            compare = UtilMisc.toList(productId, virtualProductId).contains(productPriceCond.getString("condValue")) ? 0 : 1;
-        } else if ("PRIP_PROD_CAT_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            // if a ProductCategoryMember exists for this productId and the specified productCategoryId
-            String productCategoryId = productPriceCond.getString("condValue");
-            // and from/thru date within range
-            List<GenericValue> productCategoryMembers = EntityQuery.use(delegator).from("ProductCategoryMember")
-                    .where("productId", productId, "productCategoryId", productCategoryId)
-                    .cache(true)
-                    .filterByDate(nowTimestamp)
-                    .queryList();
-            // then 0 (equals), otherwise 1 (not equals)
-            if (UtilValidate.isNotEmpty(productCategoryMembers)) {
-                compare = 0;
-            } else {
-                compare = 1;
-            }
-
-            // if there is a virtualProductId, try that given that this one has failed
-            // NOTE: this is important becuase of the common scenario where a virtual product is a member of a category but the variants
-            // will typically NOT be
-            // NOTE: we may want to parameterize this in the future, ie with an indicator on the ProductPriceCond entity
-            if (compare == 1 && UtilValidate.isNotEmpty(virtualProductId)) {
-                // and from/thru date within range
-                List<GenericValue> virtualProductCategoryMembers = EntityQuery.use(delegator).from("ProductCategoryMember").where("productId",
-                        virtualProductId, "productCategoryId", productCategoryId).cache(true).filterByDate(nowTimestamp).queryList();
-                if (UtilValidate.isNotEmpty(virtualProductCategoryMembers)) {
-                    // we found a member record? great, then this condition is satisfied
-                    compare = 0;
-                }
-            }
-        } else if ("PRIP_PROD_FEAT_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            // NOTE: DEJ20070130 don't retry this condition with the virtualProductId as well; this breaks various things you might want to do
-            // with price rules, like have different pricing for a variant products with a certain distinguishing feature
-
-            // if a ProductFeatureAppl exists for this productId and the specified productFeatureId
-            String productFeatureId = productPriceCond.getString("condValue");
-            // and from/thru date within range
-            List<GenericValue> productFeatureAppls = EntityQuery.use(delegator).from("ProductFeatureAppl").where("productId", productId,
-                    "productFeatureId", productFeatureId).cache(true).filterByDate(nowTimestamp).queryList();
-            // then 0 (equals), otherwise 1 (not equals)
-            if (UtilValidate.isNotEmpty(productFeatureAppls)) {
-                compare = 0;
-            } else {
-                compare = 1;
-            }
-        } else if ("PRIP_PROD_CLG_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isNotEmpty(prodCatalogId)) {
-                compare = prodCatalogId.compareTo(productPriceCond.getString("condValue"));
-            } else {
-                // this shouldn't happen because if prodCatalogId is null no PRIP_PROD_CLG_ID prices will be in the list
-                compare = 1;
-            }
-        } else if ("PRIP_PROD_SGRP_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isNotEmpty(productStoreGroupId)) {
-                compare = productStoreGroupId.compareTo(productPriceCond.getString("condValue"));
-            } else {
-                compare = 1;
-            }
-        } else if ("PRIP_WEBSITE_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isNotEmpty(webSiteId)) {
-                compare = webSiteId.compareTo(productPriceCond.getString("condValue"));
-            } else {
-                compare = 1;
-            }
-        } else if ("PRIP_QUANTITY".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (quantity == null) {
-                // if no quantity is passed in, assume all quantity conditions pass
-                // NOTE: setting compare = 0 won't do the trick here because the condition won't always be or include and equal
-                return true;
-            } else {
-                compare = quantity.compareTo(new BigDecimal(productPriceCond.getString("condValue")));
-            }
-        } else if ("PRIP_PARTY_ID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isNotEmpty(partyId)) {
-                compare = partyId.compareTo(productPriceCond.getString("condValue"));
-            } else {
-                compare = 1;
-            }
-        } else if ("PRIP_PARTY_GRP_MEM".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isEmpty(partyId)) {
-                compare = 1;
-            } else {
-                String groupPartyId = productPriceCond.getString("condValue");
-                if (partyId.equals(groupPartyId)) {
-                    compare = 0;
-                } else {
-                    // look for PartyRelationship with
-                    // partyRelationshipTypeId=GROUP_ROLLUP, the partyIdTo is
-                    // the group member, so the partyIdFrom is the groupPartyId
-                    // and from/thru date within range
-                    List<GenericValue> partyRelationshipList = EntityQuery.use(delegator).from("PartyRelationship").where("partyIdFrom", groupPartyId,
-                            "partyIdTo", partyId, "partyRelationshipTypeId", "GROUP_ROLLUP").cache(true).filterByDate(nowTimestamp).queryList();
-                    // then 0 (equals), otherwise 1 (not equals)
-                    if (UtilValidate.isNotEmpty(partyRelationshipList)) {
-                        compare = 0;
-                    } else {
-                        compare = checkConditionPartyHierarchy(delegator, nowTimestamp, groupPartyId, partyId);
-                    }
-                }
-            }
-        } else if ("PRIP_PARTY_CLASS".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (UtilValidate.isEmpty(partyId)) {
-                compare = 1;
-            } else {
-                String partyClassificationGroupId = productPriceCond.getString("condValue");
-                // find any PartyClassification
-                // and from/thru date within range
-                List<GenericValue> partyClassificationList = EntityQuery.use(delegator).from("PartyClassification").where("partyId", partyId,
-                        "partyClassificationGroupId", partyClassificationGroupId).cache(true).filterByDate(nowTimestamp).queryList();
-                // then 0 (equals), otherwise 1 (not equals)
-                if (UtilValidate.isNotEmpty(partyClassificationList)) {
-                    compare = 0;
-                } else {
-                    compare = 1;
-                }
-            }
-        } else if ("PRIP_ROLE_TYPE".equals(productPriceCond.getString("inputParamEnumId"))) {
-            if (partyId != null) {
-                // if a PartyRole exists for this partyId and the specified roleTypeId
-                GenericValue partyRole = EntityQuery.use(delegator).from("PartyRole").where("partyId", partyId, "roleTypeId",
-                        productPriceCond.getString("condValue")).cache(true).queryOne();
-
-                // then 0 (equals), otherwise 1 (not equals)
-                if (partyRole != null) {
-                    compare = 0;
-                } else {
-                    compare = 1;
-                }
-            } else {
-                compare = 1;
-            }
-        } else if ("PRIP_LIST_PRICE".equals(productPriceCond.getString("inputParamEnumId"))) {
-            BigDecimal listPriceValue = listPrice;
-
-            compare = listPriceValue.compareTo(new BigDecimal(productPriceCond.getString("condValue")));
-        } else if ("PRIP_CURRENCY_UOMID".equals(productPriceCond.getString("inputParamEnumId"))) {
-            compare = currencyUomId.compareTo(productPriceCond.getString("condValue"));
-        } else {
-            Debug.logWarning("An un-supported productPriceCond input parameter (lhs) was used: " + productPriceCond.getString("inputParamEnumId")
-                    + ", returning false, ie check failed", MODULE);
-            return false;
-        }
-
-        if (Debug.verboseOn()) {
-            Debug.logVerbose("Price Condition compare done, compare=" + compare, MODULE);
-        }
-
-        if ("PRC_EQ".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare == 0) return true;
-        } else if ("PRC_NEQ".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare != 0) return true;
-        } else if ("PRC_LT".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare < 0) return true;
-        } else if ("PRC_LTE".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare <= 0) return true;
-        } else if ("PRC_GT".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare > 0) return true;
-        } else if ("PRC_GTE".equals(productPriceCond.getString("operatorEnumId"))) {
-            if (compare >= 0) return true;
-        } else {
-            Debug.logWarning("An un-supported productPriceCond condition was used: " + productPriceCond.getString("operatorEnumId")
-                    + ", returning false, ie check failed", MODULE);
-            return false;
-        }
-        return false;
-    }
-
-    private static int checkConditionPartyHierarchy(Delegator delegator, Timestamp nowTimestamp, String groupPartyId, String partyId)
-            throws GenericEntityException {
-        List<GenericValue> partyRelationshipList = EntityQuery.use(delegator).from("PartyRelationship").where("partyIdTo", partyId,
-                "partyRelationshipTypeId", "GROUP_ROLLUP").cache(true).filterByDate(nowTimestamp).queryList();
-        for (GenericValue genericValue : partyRelationshipList) {
-            String partyIdFrom = (String) genericValue.get("partyIdFrom");
-            if (partyIdFrom.equals(groupPartyId)) {
-                return 0;
-            }
-            if (0 == checkConditionPartyHierarchy(delegator, nowTimestamp, groupPartyId, partyIdFrom)) {
-                return 0;
-            }
-        }
-        return 1;
+        return new PriceRuleModel.Condition(productPriceCond, null).check(productId, virtualProductId, prodCatalogId, productStoreGroupId,
+                webSiteId, partyId, quantity, listPrice, currencyUomId, new PriceRuleModel.CachedResolver(delegator), nowTimestamp);
     }
 
     /**
@@ -215,6 +215,7 @@ public class KeywordIndex {
 
             if ("true".equals(EntityUtilProperties.getPropertyValue("prodsearch", "index.delete.on_index", "false", delegator))) {
                 // delete all keywords if the properties file says to
+                ProductKeywordIndex.keywordsRemoved(delegator, product.getString("productId"));
                 delegator.removeByAnd("ProductKeyword", UtilMisc.toMap("productId", product.getString("productId")));
             }
 
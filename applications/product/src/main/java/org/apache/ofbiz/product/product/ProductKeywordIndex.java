@@ -0,0 +1,715 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.product.product;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityComparisonOperator;
+import org.apache.ofbiz.entity.transaction.GenericTransactionException;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityListIterator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityUtilProperties;
+
+/**
+ * In-memory inverted index of the <code>ProductKeyword</code> entity, as written by {@link KeywordIndex}.
+ * <p>
+ * The index maps every keyword to a posting list holding, for each product having the keyword, its relevancy
+ * weight, keyword type and status. Posting lists are sorted by product ordinal and stored as delta encoded
+ * variable length integers. Keyword constraints of a {@link ProductSearch} are resolved against the index so that
+ * only the candidate product ids are handed to the database, instead of joining one <code>ProductKeyword</code>
+ * member per keyword.
+ * <p>
+ * The index is enabled with the <code>index.memory.enable</code> property of prodsearch.properties. It is built
+ * in the background on first use and kept up to date by the <code>ProductKeyword</code> entity ECAs.
+ * <p>
+ * The index is held by each server and only the entity ECAs of that server update it. <code>ProductKeyword</code>
+ * is not cached by the entity engine, so the distributed cache clear does not carry its changes to the other
+ * servers. The indexes are held in the <code>product.keyword.index</code> cache instead: a server missing changes
+ * made elsewhere drops its index when it expires, when the entity caches are cleared or when
+ * <code>rebuildProductKeywordIndex</code> is run, and a new index is built on the next search.
+ */
+public final class ProductKeywordIndex {
+
+    private static final String MODULE = ProductKeywordIndex.class.getName();
+    private static final UtilCache<String, ProductKeywordIndex> INDEXES = UtilCache.createUtilCache("product.keyword.index");
+
+    private final String delegatorName;
+    private final ConcurrentSkipListMap<String, byte[]> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Integer> productOrdinals = new HashMap<>();
+    private volatile String[] productIds = new String[1024];
+    private volatile int productCount = 0;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final ConcurrentLinkedQueue<Runnable> pendingUpdates = new ConcurrentLinkedQueue<>();
+    private volatile boolean ready = false;
+
+    private ProductKeywordIndex(String delegatorName) {
+        this.delegatorName = delegatorName;
+    }
+
+    /**
+     * Checks if the in-memory keyword index is enabled for this delegator.
+     * @param delegator the delegator
+     * @return <code>true</code> if keyword searches should use the in-memory index
+     */
+    public static boolean isEnabled(Delegator delegator) {
+        return "true".equals(EntityUtilProperties.getPropertyValue("prodsearch", "index.memory.enable", "false", delegator));
+    }
+
+    /**
+     * Gets the maximum number of candidate products handed to the database as an IN condition.
+     * @param delegator the delegator
+     * @return the maximum number of candidates
+     */
+    public static int getMaxCandidates(Delegator delegator) {
+        String maxCandidates = EntityUtilProperties.getPropertyValue("prodsearch", "index.memory.max.candidates", "1000", delegator);
+        try {
+            return Integer.parseInt(maxCandidates.trim());
+        } catch (NumberFormatException e) {
+            Debug.logWarning("Invalid index.memory.max.candidates [" + maxCandidates + "], using 1000", MODULE);
+            return 1000;
+        }
+    }
+
+    /**
+     * Gets the keyword index of this delegator, starting to build it in the background on first call.
+     * @param delegator the delegator
+     * @return the index, or <code>null</code> if the index is disabled or not built yet
+     */
+    public static ProductKeywordIndex getIndex(Delegator delegator) {
+        if (!isEnabled(delegator)) {
+            return null;
+        }
+        ProductKeywordIndex index = INDEXES.get(delegator.getDelegatorName());
+        if (index == null) {
+            ProductKeywordIndex newIndex = new ProductKeywordIndex(delegator.getDelegatorName());
+            index = INDEXES.putIfAbsent(delegator.getDelegatorName(), newIndex);
+            if (index == null) {
+                index = newIndex;
+                ExecutionPool.GLOBAL_BATCH.submit(() -> {
+                    try {
+                        newIndex.load(delegator);
+                    } catch (GenericEntityException e) {
+                        Debug.logError(e, "Unable to build the product keyword index, keyword searches will use the database", MODULE);
+                        removeIndex(newIndex);
+                    }
+                    return null;
+                });
+            }
+        }
+        return index.ready ? index : null;
+    }
+
+    /**
+     * Builds a new keyword index from the <code>ProductKeyword</code> entity and makes it the index of this delegator.
+     * @param delegator the delegator
+     * @return the new index
+     * @throws GenericEntityException
+     */
+    public static ProductKeywordIndex rebuild(Delegator delegator) throws GenericEntityException {
+        ProductKeywordIndex index = new ProductKeywordIndex(delegator.getDelegatorName());
+        INDEXES.put(index.delegatorName, index);
+        try {
+            index.load(delegator);
+        } catch (GenericEntityException e) {
+            removeIndex(index);
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * Drops the keyword index of this delegator, a new index is built on the next keyword search.
+     * @param delegator the delegator
+     */
+    public static void clear(Delegator delegator) {
+        INDEXES.remove(delegator.getDelegatorName());
+    }
+
+    private static void removeIndex(ProductKeywordIndex index) {
+        // keep an index put by a concurrent rebuild
+        if (INDEXES.get(index.delegatorName) == index) {
+            INDEXES.remove(index.delegatorName);
+        }
+    }
+
+    /**
+     * Adds or replaces the keyword of a <code>ProductKeyword</code> value in the index, once the current transaction
+     * is committed.
+     * @param productKeyword the created or updated value
+     */
+    public static void keywordStored(GenericValue productKeyword) {
+        ProductKeywordIndex index = INDEXES.get(productKeyword.getDelegator().getDelegatorName());
+        if (index != null) {
+            String productId = productKeyword.getString("productId");
+            String keyword = productKeyword.getString("keyword");
+            String keywordTypeId = productKeyword.getString("keywordTypeId");
+            String statusId = productKeyword.getString("statusId");
+            Long weight = productKeyword.getLong("relevancyWeight");
+            index.afterCommit(() -> index.put(productId, keyword, keywordTypeId, statusId, weight == null ? 0 : weight));
+        }
+    }
+
+    /**
+     * Removes the keyword of a <code>ProductKeyword</code> value from the index, once the current transaction is committed.
+     * @param productKeyword the removed value, or its primary key
+     */
+    public static void keywordRemoved(GenericEntity productKeyword) {
+        ProductKeywordIndex index = INDEXES.get(productKeyword.getDelegator().getDelegatorName());
+        if (index != null) {
+            String productId = productKeyword.getString("productId");
+            String keyword = productKeyword.getString("keyword");
+            String keywordTypeId = productKeyword.getString("keywordTypeId");
+            index.afterCommit(() -> index.remove(productId, keyword, keywordTypeId));
+        }
+    }
+
+    /**
+     * Removes the keywords of a product from the index, once the current transaction is committed. To be called before
+     * removing them by a condition, as <code>removeByAnd</code>, which does not trigger the remove ECA of each value.
+     * @param delegator the delegator
+     * @param productId the product whose keywords are removed
+     * @throws GenericEntityException if the keywords cannot be read
+     */
+    public static void keywordsRemoved(Delegator delegator, String productId) throws GenericEntityException {
+        if (INDEXES.get(delegator.getDelegatorName()) != null) {
+            for (GenericValue productKeyword : EntityQuery.use(delegator).from("ProductKeyword").where("productId", productId).queryList()) {
+                keywordRemoved(productKeyword);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable update) {
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            apply(update);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register the product keyword index update, applying it now: ", MODULE);
+        }
+        apply(update);
+    }
+
+    private void apply(Runnable update) {
+        // updates received while the index is loading are replayed once it is loaded, the row they change may already be read
+        synchronized (this) {
+            if (!ready) {
+                pendingUpdates.add(update);
+                return;
+            }
+        }
+        update.run();
+    }
+
+    private void load(Delegator delegator) throws GenericEntityException {
+        long startTime = System.currentTimeMillis();
+        long rows = 0;
+        Builder builder = new Builder(this);
+        try (EntityListIterator eli = EntityQuery.use(delegator).from("ProductKeyword").orderBy("productId").queryIterator()) {
+            GenericValue productKeyword;
+            while ((productKeyword = eli.next()) != null) {
+                Long weight = productKeyword.getLong("relevancyWeight");
+                builder.add(productKeyword.getString("productId"), productKeyword.getString("keyword"), productKeyword.getString("keywordTypeId"),
+                        productKeyword.getString("statusId"), weight == null ? 0 : weight);
+                rows++;
+            }
+        }
+        builder.build();
+        synchronized (this) {
+            Runnable update;
+            while ((update = pendingUpdates.poll()) != null) {
+                update.run();
+            }
+            ready = true;
+        }
+        Debug.logInfo("Loaded the product keyword index with " + rows + " keywords of " + productCount + " products in "
+                + (System.currentTimeMillis() - startTime) + "ms", MODULE);
+    }
+
+    /**
+     * Gets the number of distinct keywords of the index.
+     * @return the number of keywords
+     */
+    public int getKeywordCount() {
+        return postings.size();
+    }
+
+    /**
+     * Gets the number of products known to the index.
+     * @return the number of products
+     */
+    public int getProductCount() {
+        return productCount;
+    }
+
+    /**
+     * Gets the memory used by the posting lists, not counting the keywords and product ids.
+     * @return the size of the posting lists in bytes
+     */
+    public long getPostingsSize() {
+        long size = 0;
+        for (byte[] posting : postings.values()) {
+            size += posting.length;
+        }
+        return size;
+    }
+
+    /**
+     * Adds a keyword of a product to the index, replacing the entry of the same keyword type if any.
+     * @param productId the product id
+     * @param keyword the keyword
+     * @param keywordTypeId the keyword type
+     * @param statusId the keyword status, may be <code>null</code>
+     * @param relevancyWeight the relevancy weight
+     */
+    public void put(String productId, String keyword, String keywordTypeId, String statusId, long relevancyWeight) {
+        if (productId == null || keyword == null) {
+            return;
+        }
+        int ordinal = getOrCreateOrdinal(productId);
+        int typeCode = getCode(keywordTypeId);
+        int statusCode = getCode(statusId);
+        postings.compute(keyword, (k, posting) -> Posting.put(posting, ordinal, typeCode, statusCode, relevancyWeight));
+    }
+
+    /**
+     * Removes a keyword of a product from the index.
+     * @param productId the product id
+     * @param keyword the keyword
+     * @param keywordTypeId the keyword type
+     */
+    public void remove(String productId, String keyword, String keywordTypeId) {
+        Integer ordinal;
+        synchronized (productOrdinals) {
+            ordinal = productOrdinals.get(productId);
+        }
+        if (ordinal == null || keyword == null) {
+            return;
+        }
+        int typeCode = getCode(keywordTypeId);
+        postings.computeIfPresent(keyword, (k, posting) -> Posting.remove(posting, ordinal, typeCode));
+    }
+
+    /**
+     * Resolves keyword constraints against the index. Keywords are SQL LIKE patterns, as built by
+     * {@link org.apache.ofbiz.common.KeywordSearchUtil#fixKeywordsForSearch}. A product matches when it has every keyword of
+     * <code>andKeywords</code> and at least one keyword of each set of <code>orKeywordSets</code>, its relevancy being the
+     * sum of the weights of the matching keywords.
+     * @param andKeywords the keyword patterns all required
+     * @param orKeywordSets the sets of keyword patterns of which one is required
+     * @param keywordTypeIds the keyword types to consider, all if empty
+     * @param statusId the keyword status to consider, all if <code>null</code>
+     * @return the relevancy of the matching products by product id
+     */
+    public Map<String, Long> search(Collection<String> andKeywords, Collection<? extends Collection<String>> orKeywordSets,
+            List<String> keywordTypeIds, String statusId) {
+        BitSet typeCodes = null;
+        if (UtilValidate.isNotEmpty(keywordTypeIds)) {
+            typeCodes = new BitSet();
+            for (String keywordTypeId : keywordTypeIds) {
+                typeCodes.set(getCode(keywordTypeId));
+            }
+        }
+        int statusCode = UtilValidate.isNotEmpty(statusId) ? getCode(statusId) : -1;
+
+        Matches result = null;
+        for (String keyword : andKeywords) {
+            result = Matches.and(result, match(Set.of(keyword), typeCodes, statusCode));
+            if (result.size == 0) {
+                return new HashMap<>();
+            }
+        }
+        for (Collection<String> orKeywords : orKeywordSets) {
+            result = Matches.and(result, match(orKeywords, typeCodes, statusCode));
+            if (result.size == 0) {
+                return new HashMap<>();
+            }
+        }
+        Map<String, Long> relevancies = new HashMap<>();
+        if (result != null) {
+            String[] ids = productIds;
+            for (int i = 0; i < result.size; i++) {
+                relevancies.put(ids[result.ordinals[i]], result.weights[i]);
+            }
+        }
+        return relevancies;
+    }
+
+    // Collects the products having any keyword matching one of the patterns, summing up the weights.
+    private Matches match(Collection<String> patterns, BitSet typeCodes, int statusCode) {
+        Set<byte[]> matchingPostings = new HashSet<>();
+        for (String pattern : patterns) {
+            int wildcard = indexOfWildcard(pattern);
+            if (wildcard < 0) {
+                byte[] posting = postings.get(pattern);
+                if (posting != null) {
+                    matchingPostings.add(posting);
+                }
+                continue;
+            }
+            String prefix = pattern.substring(0, wildcard);
+            NavigableMap<String, byte[]> candidates = prefix.isEmpty() ? postings
+                    : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            boolean prefixOnly = wildcard == pattern.length() - 1 && pattern.charAt(wildcard) == '%';
+            for (Map.Entry<String, byte[]> entry : candidates.entrySet()) {
+                if (prefixOnly || EntityComparisonOperator.compareLike(entry.getKey(), pattern)) {
+                    matchingPostings.add(entry.getValue());
+                }
+            }
+        }
+        if (matchingPostings.size() == 1) {
+            return Posting.decode(matchingPostings.iterator().next(), typeCodes, statusCode);
+        }
+        // several keywords: accumulate in an array indexed by product ordinal, which also sorts the result
+        int maxOrdinal = productCount;
+        long[] weights = new long[maxOrdinal];
+        BitSet found = new BitSet(maxOrdinal);
+        for (byte[] posting : matchingPostings) {
+            Posting.accumulate(posting, typeCodes, statusCode, weights, found);
+        }
+        Matches matches = new Matches(found.cardinality());
+        for (int ordinal = found.nextSetBit(0); ordinal >= 0; ordinal = found.nextSetBit(ordinal + 1)) {
+            matches.add(ordinal, weights[ordinal]);
+        }
+        return matches;
+    }
+
+    private static int indexOfWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%' || c == '_') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int getOrCreateOrdinal(String productId) {
+        synchronized (productOrdinals) {
+            Integer ordinal = productOrdinals.get(productId);
+            if (ordinal == null) {
+                ordinal = productCount;
+                String[] ids = productIds;
+                if (ordinal == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                }
+                ids[ordinal] = productId;
+                productIds = ids;
+                productOrdinals.put(productId, ordinal);
+                productCount = ordinal + 1;
+            }
+            return ordinal;
+        }
+    }
+
+    // Codes of the keyword types and statuses, 0 standing for null.
+    private int getCode(String id) {
+        if (id == null) {
+            return 0;
+        }
+        synchronized (codes) {
+            return codes.computeIfAbsent(id, k -> codes.size() + 1);
+        }
+    }
+
+    /**
+     * Bulk loader of an index, appending to the posting lists instead of encoding them again for every keyword.
+     * Keywords are best added grouped by product, as read from the database ordered by product id.
+     */
+    public static final class Builder {
+        private final ProductKeywordIndex index;
+        private final Map<String, Writer> writers = new HashMap<>();
+
+        /**
+         * Creates a builder of a standalone index, not attached to a delegator nor updated by the entity ECAs.
+         */
+        public Builder() {
+            this(new ProductKeywordIndex(null));
+            index.ready = true;
+        }
+
+        private Builder(ProductKeywordIndex index) {
+            this.index = index;
+        }
+
+        /**
+         * Adds a keyword of a product.
+         * @param productId the product id
+         * @param keyword the keyword
+         * @param keywordTypeId the keyword type
+         * @param statusId the keyword status, may be <code>null</code>
+         * @param relevancyWeight the relevancy weight
+         * @return this builder
+         */
+        public Builder add(String productId, String keyword, String keywordTypeId, String statusId, long relevancyWeight) {
+            if (productId == null || keyword == null) {
+                return this;
+            }
+            int ordinal = index.getOrCreateOrdinal(productId);
+            int typeCode = index.getCode(keywordTypeId);
+            int statusCode = index.getCode(statusId);
+            Writer writer = writers.get(keyword);
+            if (writer == null) {
+                writer = new Writer();
+                writers.put(keyword, writer);
+            } else if (ordinal < writer.lastOrdinal) {
+                // a product seen before, insert the entry in order
+                writer = new Writer(Posting.put(writer.toByteArray(), ordinal, typeCode, statusCode, relevancyWeight), writer.lastOrdinal);
+                writers.put(keyword, writer);
+                return this;
+            }
+            writer.write(ordinal, typeCode, statusCode, relevancyWeight);
+            return this;
+        }
+
+        /**
+         * Publishes the posting lists added so far to the index.
+         * @return the index
+         */
+        public ProductKeywordIndex build() {
+            for (Map.Entry<String, Writer> entry : writers.entrySet()) {
+                index.postings.put(entry.getKey(), entry.getValue().toByteArray());
+            }
+            writers.clear();
+            return index;
+        }
+    }
+
+    /**
+     * Sorted product ordinals with their summed relevancy weight.
+     */
+    private static final class Matches {
+        private int[] ordinals;
+        private long[] weights;
+        private int size = 0;
+
+        private Matches(int capacity) {
+            ordinals = new int[Math.max(capacity, 4)];
+            weights = new long[ordinals.length];
+        }
+
+        private void add(int ordinal, long weight) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                weights[size - 1] += weight;
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            weights[size] = weight;
+            size++;
+        }
+
+        private static Matches and(Matches left, Matches right) {
+            if (left == null) {
+                return right;
+            }
+            Matches result = new Matches(Math.min(left.size, right.size));
+            int i = 0;
+            int j = 0;
+            while (i < left.size && j < right.size) {
+                if (left.ordinals[i] < right.ordinals[j]) {
+                    i++;
+                } else if (left.ordinals[i] > right.ordinals[j]) {
+                    j++;
+                } else {
+                    result.add(left.ordinals[i], left.weights[i] + right.weights[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Encoding of a posting list: a sequence of entries sorted by product ordinal then keyword type, each made of the
+     * ordinal delta, the keyword type code, the status code and the zigzag encoded weight, all as variable length integers.
+     * Posting lists are immutable, an update encodes a new one.
+     */
+    private static final class Posting {
+
+        private Posting() { }
+
+        private static byte[] put(byte[] posting, int ordinal, int typeCode, int statusCode, long weight) {
+            if (posting == null) {
+                Writer writer = new Writer();
+                writer.write(ordinal, typeCode, statusCode, weight);
+                return writer.toByteArray();
+            }
+            Writer writer = new Writer();
+            Reader reader = new Reader(posting);
+            boolean written = false;
+            while (reader.next()) {
+                int cmp = reader.ordinal != ordinal ? Integer.compare(reader.ordinal, ordinal) : Integer.compare(reader.typeCode, typeCode);
+                if (cmp == 0) {
+                    continue;
+                }
+                if (cmp > 0 && !written) {
+                    writer.write(ordinal, typeCode, statusCode, weight);
+                    written = true;
+                }
+                writer.write(reader.ordinal, reader.typeCode, reader.statusCode, reader.weight);
+            }
+            if (!written) {
+                writer.write(ordinal, typeCode, statusCode, weight);
+            }
+            return writer.toByteArray();
+        }
+
+        private static byte[] remove(byte[] posting, int ordinal, int typeCode) {
+            Writer writer = new Writer();
+            Reader reader = new Reader(posting);
+            while (reader.next()) {
+                if (reader.ordinal != ordinal || reader.typeCode != typeCode) {
+                    writer.write(reader.ordinal, reader.typeCode, reader.statusCode, reader.weight);
+                }
+            }
+            return writer.size() == 0 ? null : writer.toByteArray();
+        }
+
+        private static Matches decode(byte[] posting, BitSet typeCodes, int statusCode) {
+            Matches matches = new Matches(posting.length / 4);
+            Reader reader = new Reader(posting);
+            while (reader.next()) {
+                if (reader.accept(typeCodes, statusCode)) {
+                    matches.add(reader.ordinal, reader.weight);
+                }
+            }
+            return matches;
+        }
+
+        private static void accumulate(byte[] posting, BitSet typeCodes, int statusCode, long[] weights, BitSet found) {
+            Reader reader = new Reader(posting);
+            while (reader.next()) {
+                // products added after the accumulator was sized are ignored, they are new to this search
+                if (reader.ordinal < weights.length && reader.accept(typeCodes, statusCode)) {
+                    weights[reader.ordinal] += reader.weight;
+                    found.set(reader.ordinal);
+                }
+            }
+        }
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+        private int lastOrdinal = 0;
+
+        private Writer() {
+        }
+
+        private Writer(byte[] posting, int lastOrdinal) {
+            super(posting.length + 16);
+            write(posting, 0, posting.length);
+            this.lastOrdinal = lastOrdinal;
+        }
+
+        private void write(int ordinal, int typeCode, int statusCode, long weight) {
+            writeVarLong(ordinal - lastOrdinal);
+            writeVarLong(typeCode);
+            writeVarLong(statusCode);
+            writeVarLong((weight << 1) ^ (weight >> 63));
+            lastOrdinal = ordinal;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position = 0;
+        private int ordinal = 0;
+        private int typeCode;
+        private int statusCode;
+        private long weight;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private boolean next() {
+            if (position >= bytes.length) {
+                return false;
+            }
+            ordinal += (int) readVarLong();
+            typeCode = (int) readVarLong();
+            statusCode = (int) readVarLong();
+            long zigzag = readVarLong();
+            weight = (zigzag >>> 1) ^ -(zigzag & 1);
+            return true;
+        }
+
+        private boolean accept(BitSet typeCodes, int acceptedStatusCode) {
+            return (typeCodes == null || typeCodes.get(typeCode)) && (acceptedStatusCode < 0 || statusCode == acceptedStatusCode);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
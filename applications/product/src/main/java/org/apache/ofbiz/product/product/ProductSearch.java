@@ -22,6 +22,7 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -156,6 +157,7 @@ public class ProductSearch {
         private DynamicViewEntity dynamicViewEntity = new DynamicViewEntity();
         private boolean productIdGroupBy = false;
         private boolean includedKeywordSearch = false;
+        private Map<String, Long> keywordRelevancy = null;
         private Timestamp nowTimestamp = UtilDateTime.nowTimestamp();
         private List<Set<String>> keywordFixedOrSetAndList = new LinkedList<>();
         private Set<String> orKeywordFixedSet = new HashSet<>();
@@ -361,6 +363,10 @@ public class ProductSearch {
             Debug.logInfo("Finished initial setup of keywords, doingBothAndOr=" + doingBothAndOr + ", andKeywordFixedSet=" + andKeywordFixedSet
                     + "\n keywordFixedOrSetAndList=" + keywordFixedOrSetAndList, MODULE);
 
+            if (this.finishKeywordConstraintsInMemory()) {
+                return;
+            }
+
             ComplexAlias relevancyComplexAlias = new ComplexAlias("+");
             if (!andKeywordFixedSet.isEmpty()) {
                 // add up the relevancyWeight fields from all keyword member entities for a total to sort by
@@ -445,6 +451,31 @@ public class ProductSearch {
             }
         }
 
+        /**
+         * Resolves the keyword constraints against the in-memory keyword index, if enabled, and restricts the query
+         * to the matching products.
+         * @return <code>false</code> if the keyword constraints are to be joined in the query
+         */
+        private boolean finishKeywordConstraintsInMemory() {
+            ProductKeywordIndex keywordIndex = ProductKeywordIndex.getIndex(delegator);
+            if (keywordIndex == null) {
+                return false;
+            }
+            Map<String, Long> relevancy = keywordIndex.search(andKeywordFixedSet, keywordFixedOrSetAndList, keywordTypeIds, statusId);
+            if (relevancy.size() > ProductKeywordIndex.getMaxCandidates(delegator)) {
+                Debug.logInfo("Keyword search matches " + relevancy.size() + " products in the keyword index, searching in the database", MODULE);
+                return false;
+            }
+            this.keywordRelevancy = relevancy;
+            entityConditionList.add(EntityCondition.makeCondition("mainProductId", EntityOperator.IN, relevancy.keySet()));
+            return true;
+        }
+
+        // with the in-memory keyword index the relevancy is not known to the database, the results are sorted after the query
+        private boolean isSortedByIndexRelevancy() {
+            return keywordRelevancy != null && resultSortOrder instanceof SortKeywordRelevancy;
+        }
+
         /**
          * Finish category and feature constraints.
          */
@@ -814,7 +845,7 @@ public class ProductSearch {
             EntityListIterator eli = null;
             try {
                 int queryMaxResults = 0;
-                if (maxResults != null) {
+                if (maxResults != null && !isSortedByIndexRelevancy()) {
                     queryMaxResults = maxResults;
                     if (resultOffset != null) {
                         queryMaxResults += resultOffset - 1;
@@ -846,6 +877,9 @@ public class ProductSearch {
                 Debug.logWarning("The eli is null, returning zero results", MODULE);
                 return productIds;
             }
+            if (isSortedByIndexRelevancy()) {
+                return makeProductIdListByIndexRelevancy(eli);
+            }
 
             try {
                 boolean hasResults = false;
@@ -923,6 +957,29 @@ public class ProductSearch {
             return productIds;
         }
 
+        private ArrayList<String> makeProductIdListByIndexRelevancy(EntityListIterator eli) {
+            List<String> allProductIds = new ArrayList<>();
+            Set<String> productIdSet = new HashSet<>();
+            try {
+                GenericValue searchResult;
+                while ((searchResult = eli.next()) != null) {
+                    String productId = searchResult.getString("mainProductId");
+                    if (productIdSet.add(productId)) {
+                        allProductIds.add(productId);
+                    }
+                }
+            } catch (GenericEntityException e) {
+                Debug.logError(e, "Error getting results from the product search query", MODULE);
+            }
+            allProductIds.sort(Comparator.comparing((String productId) -> keywordRelevancy.getOrDefault(productId, 0L)).reversed()
+                    .thenComparing(Comparator.naturalOrder()));
+            this.totalResults = allProductIds.size();
+
+            int fromIndex = Math.min(resultOffset != null && resultOffset > 1 ? resultOffset - 1 : 0, allProductIds.size());
+            int toIndex = maxResults == null ? allProductIds.size() : Math.min(fromIndex + maxResults, allProductIds.size());
+            return new ArrayList<>(allProductIds.subList(fromIndex, toIndex));
+        }
+
         /**
          * Save search result info.
          * @param numResults   the num results
@@ -2684,7 +2741,7 @@ public class ProductSearch {
 
         @Override
         public void setSortOrder(ProductSearchContext productSearchContext) {
-            if (productSearchContext.includedKeywordSearch) {
+            if (productSearchContext.includedKeywordSearch && productSearchContext.keywordRelevancy == null) {
                 // we have to check this in order to be sure that there is a totalRelevancy to sort by...
                 if (!productSearchContext.keywordFixedOrSetAndList.isEmpty() || !productSearchContext.andKeywordFixedSet.isEmpty()) {
                     productSearchContext.orderByList.add("-totalRelevancy");
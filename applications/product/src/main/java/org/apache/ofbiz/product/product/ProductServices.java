@@ -49,6 +49,7 @@ import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.base.util.string.FlexibleStringExpander;
 import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
@@ -1553,4 +1554,62 @@ public class ProductServices {
         }
         return ServiceUtil.returnSuccess();
     }
+
+    /**
+     * Updates the in-memory keyword index after a ProductKeyword was created or stored.
+     * @param dctx the dispatch context
+     * @param context the context holding the productKeyword value
+     * @return the result of the service execution
+     */
+    public static Map<String, Object> updateProductKeywordIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        ProductKeywordIndex.keywordStored((GenericValue) context.get("productKeyword"));
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Updates the in-memory keyword index after a ProductKeyword was removed.
+     * @param dctx the dispatch context
+     * @param context the context holding the productKeyword value
+     * @return the result of the service execution
+     */
+    public static Map<String, Object> removeFromProductKeywordIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        // a GenericPK when the keyword is removed by its primary key
+        ProductKeywordIndex.keywordRemoved((GenericEntity) context.get("productKeyword"));
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Rebuilds the in-memory keyword index from the ProductKeyword entity.
+     * @param dctx the dispatch context
+     * @param context the service context
+     * @return the result of the service execution, with the number of indexed keywords and products
+     */
+    public static Map<String, Object> rebuildProductKeywordIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        if (!ProductKeywordIndex.isEnabled(delegator)) {
+            return ServiceUtil.returnSuccess();
+        }
+        ProductKeywordIndex index;
+        try {
+            index = ProductKeywordIndex.rebuild(delegator);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, MODULE);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("keywordCount", index.getKeywordCount());
+        result.put("productCount", index.getProductCount());
+        return result;
+    }
+
+    /**
+     * Drops the in-memory keyword index of this server, to be built again on the next keyword search.
+     * @param dctx the dispatch context
+     * @param context the service context
+     * @return the result of the service execution
+     */
+    public static Map<String, Object> clearProductKeywordIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        ProductKeywordIndex.clear(dctx.getDelegator());
+        return ServiceUtil.returnSuccess();
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+
+package org.apache.ofbiz.product.test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.product.inventory.ProductInventorySummaryWorker;
+import org.apache.ofbiz.service.ServiceUtil;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Tests the availability read from the ProductInventorySummary records against the availability computed by
+ * getProductInventoryAvailable from the inventory items.
+ */
+public class ProductInventorySummaryTests extends OFBizTestCase {
+
+    private static final String[] TOTAL_FIELDS = {"quantityOnHandTotal", "availableToPromiseTotal", "accountingQuantityTotal"};
+
+    public ProductInventorySummaryTests(String name) {
+        super(name);
+    }
+
+    /**
+     * Test the summaries follow the creations, quantity changes, status changes and facility changes of the inventory
+     * items, and match the availability computed from the items.
+     * @throws Exception the exception
+     */
+    public void testSummaryMatchesItems() throws Exception {
+        String productId = "TEST_INV_SUMMARY";
+        getDelegator().create("Product", "productId", productId, "productTypeId", "FINISHED_GOOD", "internalName", "Inventory summary test");
+
+        String nonSerialized = createInventoryItem(productId, "WebStoreWarehouse", "NON_SERIAL_INV_ITEM", null);
+        createInventoryItemDetail(nonSerialized, new BigDecimal("10"), new BigDecimal("10"));
+        assertEquals("Summaries of the product", 1, from("ProductInventorySummary").where("productId", productId).queryCount());
+        assertSummaryMatchesItems(productId);
+
+        String returned = createInventoryItem(productId, "RegionalWarehouse1", "NON_SERIAL_INV_ITEM", "INV_NS_RETURNED");
+        createInventoryItemDetail(returned, new BigDecimal("4"), new BigDecimal("4"));
+        String serialized = createInventoryItem(productId, "WebStoreWarehouse", "SERIALIZED_INV_ITEM", "INV_AVAILABLE");
+        createInventoryItemDetail(serialized, BigDecimal.ONE, BigDecimal.ONE);
+        // a reservation only changes the available to promise total
+        createInventoryItemDetail(nonSerialized, new BigDecimal("-3"), BigDecimal.ZERO);
+        assertSummaryMatchesItems(productId);
+
+        // an item not counted anymore, and an item moved to another facility
+        updateInventoryItem(UtilMisc.toMap("inventoryItemId", returned, "statusId", "INV_NS_DEFECTIVE"));
+        updateInventoryItem(UtilMisc.toMap("inventoryItemId", serialized, "facilityId", "RegionalWarehouse1"));
+        assertSummaryMatchesItems(productId);
+        Map<String, Object> totals = ProductInventorySummaryWorker.getInventoryTotals(getDelegator(), productId, null);
+        assertEquals("Quantity on hand", 0, new BigDecimal("11").compareTo((BigDecimal) totals.get("quantityOnHandTotal")));
+        assertEquals("Available to promise", 0, new BigDecimal("8").compareTo((BigDecimal) totals.get("availableToPromiseTotal")));
+    }
+
+    /**
+     * Test the summaries rebuilt from the inventory items are the summaries maintained by the entity ECAs.
+     * @throws Exception the exception
+     */
+    public void testRebuildSummaries() throws Exception {
+        String productId = "GZ-2644";
+        // builds the summaries of the product if it has none yet
+        Map<String, Object> result = getDispatcher().runSync("rebuildProductInventorySummaries",
+                UtilMisc.toMap("productId", productId, "userLogin", getUserLogin("system")));
+        assertTrue(ServiceUtil.isSuccess(result));
+        String inventoryItemId = createInventoryItem(productId, "WebStoreWarehouse", "NON_SERIAL_INV_ITEM", null);
+        createInventoryItemDetail(inventoryItemId, new BigDecimal("2"), new BigDecimal("2"));
+        List<GenericValue> maintained = from("ProductInventorySummary").where("productId", productId).orderBy("facilityId").queryList();
+
+        result = getDispatcher().runSync("rebuildProductInventorySummaries", UtilMisc.toMap("productId", productId,
+                "userLogin", getUserLogin("system")));
+        assertTrue(ServiceUtil.isSuccess(result));
+        List<GenericValue> rebuilt = from("ProductInventorySummary").where("productId", productId).orderBy("facilityId").queryList();
+        assertEquals("Summaries rebuilt", maintained.size(), rebuilt.size());
+        for (int i = 0; i < maintained.size(); i++) {
+            assertEquals("Facility", maintained.get(i).get("facilityId"), rebuilt.get(i).get("facilityId"));
+            for (String field : TOTAL_FIELDS) {
+                assertEquals(field, 0, maintained.get(i).getBigDecimal(field).compareTo(rebuilt.get(i).getBigDecimal(field)));
+            }
+        }
+        assertSummaryMatchesItems(productId);
+    }
+
+    /**
+     * Compares the availability read from the summaries of a product, in all its facilities and in each of them, with
+     * the availability getProductInventoryAvailable computes from the inventory items once the summaries are removed.
+     * The summaries are rebuilt afterwards.
+     */
+    private void assertSummaryMatchesItems(String productId) throws Exception {
+        List<GenericValue> summaries = from("ProductInventorySummary").where("productId", productId).queryList();
+        assertFalse("The product has summaries", summaries.isEmpty());
+        Map<String, Map<String, Object>> fromSummaries = new HashMap<>();
+        fromSummaries.put(null, getAvailability(productId, null));
+        for (GenericValue summary : summaries) {
+            String facilityId = summary.getString("facilityId");
+            fromSummaries.put(facilityId, getAvailability(productId, facilityId));
+        }
+
+        getDelegator().removeByAnd("ProductInventorySummary", "productId", productId);
+        try {
+            for (Map.Entry<String, Map<String, Object>> availability : fromSummaries.entrySet()) {
+                Map<String, Object> fromItems = getAvailability(productId, availability.getKey());
+                for (String field : TOTAL_FIELDS) {
+                    assertEquals(field + " of facility " + availability.getKey(), 0,
+                            ((BigDecimal) fromItems.get(field)).compareTo((BigDecimal) availability.getValue().get(field)));
+                }
+            }
+        } finally {
+            ProductInventorySummaryWorker.rebuildSummaries(getDelegator(), productId);
+        }
+    }
+
+    private Map<String, Object> getAvailability(String productId, String facilityId) throws Exception {
+        Map<String, Object> result;
+        if (facilityId == null) {
+            result = getDispatcher().runSync("getProductInventoryAvailable", UtilMisc.toMap("productId", productId));
+        } else {
+            result = getDispatcher().runSync("getInventoryAvailableByFacility", UtilMisc.toMap("productId", productId,
+                    "facilityId", facilityId));
+        }
+        assertTrue(ServiceUtil.isSuccess(result));
+        return result;
+    }
+
+    private String createInventoryItem(String productId, String facilityId, String inventoryItemTypeId, String statusId) throws Exception {
+        Map<String, Object> result = getDispatcher().runSync("createInventoryItem", UtilMisc.toMap("productId", productId,
+                "facilityId", facilityId, "inventoryItemTypeId", inventoryItemTypeId, "statusId", statusId, "userLogin", getUserLogin("system")));
+        assertTrue(ServiceUtil.isSuccess(result));
+        return (String) result.get("inventoryItemId");
+    }
+
+    private void createInventoryItemDetail(String inventoryItemId, BigDecimal availableToPromiseDiff, BigDecimal quantityOnHandDiff)
+            throws Exception {
+        Map<String, Object> result = getDispatcher().runSync("createInventoryItemDetail", UtilMisc.toMap("inventoryItemId", inventoryItemId,
+                "availableToPromiseDiff", availableToPromiseDiff, "quantityOnHandDiff", quantityOnHandDiff,
+                "accountingQuantityDiff", quantityOnHandDiff, "userLogin", getUserLogin("system")));
+        assertTrue(ServiceUtil.isSuccess(result));
+    }
+
+    private void updateInventoryItem(Map<String, Object> context) throws Exception {
+        context.put("userLogin", getUserLogin("system"));
+        Map<String, Object> result = getDispatcher().runSync("updateInventoryItem", context);
+        assertTrue(ServiceUtil.isSuccess(result));
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.conversion;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the lookup of the converters, as done by <code>ObjectType.simpleTypeOrObjectConvert</code> for each
+ * converted value.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ConvertersBenchmark {
+
+    /** The source and target classes of the converter, separated by a colon */
+    @Param({"java.lang.String:java.math.BigDecimal", "java.lang.String:java.sql.Timestamp", "java.math.BigDecimal:java.lang.String",
+            "java.lang.Integer:java.lang.Long", "java.util.ArrayList:java.lang.String"})
+    public String classes;
+
+    private Class<?> sourceClass;
+    private Class<?> targetClass;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+        String[] classNames = classes.split(":");
+        sourceClass = Class.forName(classNames[0]);
+        targetClass = Class.forName(classNames[1]);
+    }
+
+    @Benchmark
+    public Converter<?, ?> getConverter() throws ClassNotFoundException {
+        return Converters.getConverter(sourceClass, targetClass);
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.util;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the conversions of the service parameters and of the entity fields, from the lookup of the type and
+ * of the converter to the conversion itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class ObjectTypeBenchmark {
+
+    private static final Timestamp NOW = new Timestamp(System.currentTimeMillis());
+    /** The value converted from each source type */
+    private static final Map<String, Object> VALUES = UtilMisc.toMap("String(BigDecimal)", "1234.56", "BigDecimal",
+            new BigDecimal("1234.56"), "String(Timestamp)", NOW.toString(), "Timestamp", NOW, "String(Long)", "123456", "Long", 123456L);
+
+    /** The source value and the target type, separated by a colon */
+    @Param({"String(BigDecimal):BigDecimal", "BigDecimal:String", "String(Timestamp):Timestamp", "Timestamp:String",
+            "String(Long):Long", "Long:String"})
+    public String conversion;
+
+    private Object value;
+    private String type;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] valueAndType = conversion.split(":");
+        value = VALUES.get(valueAndType[0]);
+        type = valueAndType[1];
+    }
+
+    @Benchmark
+    public Object simpleTypeOrObjectConvert() throws GeneralException {
+        return ObjectType.simpleTypeOrObjectConvert(value, type, null, null, Locale.ENGLISH, true);
+    }
+}
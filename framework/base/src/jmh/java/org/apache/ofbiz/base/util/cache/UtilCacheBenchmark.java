@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.util.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of a cache shared by several threads, only read or read and written at the same time.
+ * <p>A size limit lower than the number of keys makes the cache evict its least recently used elements.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Group)
+public class UtilCacheBenchmark {
+
+    private static final int KEY_COUNT = 10000;
+    private static final String[] KEYS = new String[KEY_COUNT];
+    static {
+        for (int i = 0; i < KEY_COUNT; i++) {
+            KEYS[i] = "key" + i;
+        }
+    }
+
+    /** The size limit of the cache, 0 for no limit */
+    @Param({"0", "1000"})
+    public int sizeLimit;
+
+    private UtilCache<String, String> cache;
+
+    /** The index of the next key used by a thread */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = 0;
+
+        String next() {
+            // a prime step spreads the keys read by the threads over the cache
+            index = (index + 7919) % KEY_COUNT;
+            return KEYS[index];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = UtilCache.createUtilCache("jmh.UtilCacheBenchmark", sizeLimit, 0, false);
+        for (String key : KEYS) {
+            cache.put(key, key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String get(Cursor cursor) {
+        return cache.get(cursor.next());
+    }
+
+    @Benchmark
+    @Group("getPut")
+    @GroupThreads(3)
+    public String getPutGet(Cursor cursor) {
+        return cache.get(cursor.next());
+    }
+
+    @Benchmark
+    @Group("getPut")
+    @GroupThreads(1)
+    public String getPutPut(Cursor cursor) {
+        String key = cursor.next();
+        return cache.put(key, key);
+    }
+}
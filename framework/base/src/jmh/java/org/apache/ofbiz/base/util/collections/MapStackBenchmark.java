@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.util.collections;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the context operations of a screen rendering: nested sections each pushing a scope and setting a field,
+ * with variable lookups in every scope.
+ * <p>The layered benchmark runs the same operations on a deque of <code>HashMap</code>, the structure of the
+ * <code>MapStack</code> before its symbol table.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class MapStackBenchmark {
+
+    private static final String[] FIELD_NAMES = {"field0", "field1", "field2", "field3", "field4", "field5", "field6", "field7"};
+    private static final String[] LOOKUP_NAMES = {"locale", "userLogin", "orderId", "orderHeader", "uiLabelMap", "field3", "missing"};
+
+    /** The number of nested scopes */
+    @Param({"30"})
+    public int depth;
+
+    @Benchmark
+    public int mapStack() {
+        MapStack<String> stack = MapStack.create();
+        stack.put("locale", Locale.ENGLISH);
+        stack.put("userLogin", UtilMisc.toMap("userLoginId", "admin"));
+        stack.put("orderId", "WS10000");
+        stack.put("orderHeader", UtilMisc.toMap("orderId", "WS10000"));
+        stack.put("uiLabelMap", new HashMap<>());
+        int found = 0;
+        for (int level = 0; level < depth; level++) {
+            stack.push();
+            stack.put(FIELD_NAMES[level % FIELD_NAMES.length], level);
+            for (String name : LOOKUP_NAMES) {
+                if (stack.get(name) != null) {
+                    found++;
+                }
+            }
+        }
+        for (int level = 0; level < depth; level++) {
+            stack.pop();
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int layeredHashMaps() {
+        Deque<Map<String, Object>> layers = new ArrayDeque<>();
+        Map<String, Object> top = new HashMap<>();
+        top.put("locale", Locale.ENGLISH);
+        top.put("userLogin", UtilMisc.toMap("userLoginId", "admin"));
+        top.put("orderId", "WS10000");
+        top.put("orderHeader", UtilMisc.toMap("orderId", "WS10000"));
+        top.put("uiLabelMap", new HashMap<>());
+        layers.addFirst(top);
+        int found = 0;
+        for (int level = 0; level < depth; level++) {
+            Map<String, Object> layer = new HashMap<>();
+            layer.put(FIELD_NAMES[level % FIELD_NAMES.length], level);
+            layers.addFirst(layer);
+            for (String name : LOOKUP_NAMES) {
+                for (Map<String, Object> scope : layers) {
+                    if (scope.containsKey(name)) {
+                        if (scope.get(name) != null) {
+                            found++;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        for (int level = 0; level < depth; level++) {
+            layers.removeFirst();
+        }
+        return found;
+    }
+}
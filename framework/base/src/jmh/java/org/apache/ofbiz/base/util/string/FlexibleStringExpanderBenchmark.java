@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.util.string;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the expansion of the expressions found in the widgets and the mini-language, the parsed expressions
+ * being taken from the expander cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class FlexibleStringExpanderBenchmark {
+
+    @Param({"constant", "Order ${orderId}", "${order.orderId} of ${order.customer.name}", "${groovy: order.total * 2}",
+            "Total: ${order.total?currency(USD)}", "Item ${orderItems[3].orderItemSeqId}: ${orderItems[3].itemDescription}",
+            "${order.statusId == 'ORDER_APPROVED' ? 'Approved' : 'Pending'}",
+            "Item ${orderItems[${parameters.showAll == 'Y' ? 0 : 1}].productId}"})
+    public String expression;
+
+    private Map<String, Object> context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new HashMap<>();
+        context.put("orderId", "WS10000");
+        context.put("order", UtilMisc.toMap("orderId", "WS10000", "statusId", "ORDER_APPROVED", "customer",
+                UtilMisc.toMap("name", "DemoCustomer"), "total", new BigDecimal("123.45")));
+        context.put("orderItems", makeOrderItems());
+        context.put("parameters", UtilMisc.toMap("orderId", "WS10000", "showAll", "Y"));
+    }
+
+    @Benchmark
+    public String expandString() {
+        return FlexibleStringExpander.expandString(expression, context, Locale.ENGLISH);
+    }
+
+    /**
+     * Makes the items of an order, as listed by the order view screens.
+     * @return the order items
+     */
+    static List<Map<String, Object>> makeOrderItems() {
+        List<Map<String, Object>> orderItems = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            orderItems.add(UtilMisc.toMap("orderId", "WS10000", "orderItemSeqId", String.format("%05d", i), "productId", "GZ-" + (1000 + i),
+                    "quantity", BigDecimal.valueOf(i), "unitPrice", new BigDecimal("15.99"), "statusId", "ITEM_APPROVED",
+                    "itemDescription", "Gizmo " + i));
+        }
+        return orderItems;
+    }
+}
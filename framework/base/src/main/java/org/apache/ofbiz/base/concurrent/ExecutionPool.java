@@ -67,6 +67,23 @@ public final class ExecutionPool {
         }
     }
 
+    /**
+     * Returns a factory of virtual threads named <code>namePrefix-n</code>.
+     * Virtual threads are looked up by reflection so that OFBiz still compiles and runs on Java 17.
+     * @param namePrefix the thread name prefix
+     * @return the thread factory, or <code>null</code> when the JVM does not support virtual threads (before Java 21)
+     */
+    public static ThreadFactory getVirtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     public static ScheduledExecutorService getScheduledExecutor(ThreadGroup group, String namePrefix, int threadCount, long keepAliveSeconds,
                                                                 boolean preStart) {
         ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threadCount, new ExecutionPoolThreadFactory(group, namePrefix));
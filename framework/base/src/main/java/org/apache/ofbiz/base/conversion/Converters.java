@@ -37,6 +37,11 @@ public final class Converters {
     private static final ConcurrentHashMap<String, Converter<?, ?>> CONVERTER_MAP = new ConcurrentHashMap<>();
     private static final Set<ConverterCreator> CREATORS = new HashSet<>();
     private static final Set<String> NO_CONVERSIONS = new HashSet<>();
+    // Marks a class pair without converter in the lookup cache
+    private static final Object NO_CONVERTER = new Object();
+    // Converters found by getConverter, by source class then target class. Replaced when a converter or a creator
+    // is registered, since the new one can change the result of a lookup.
+    private static volatile ClassValue<ClassValue<Object>> lookupCache = newLookupCache();
 
     static {
         registerCreator(new PassThruConverterCreator());
@@ -68,6 +73,30 @@ public final class Converters {
      * @throws ClassNotFoundException
      */
     public static <S, T> Converter<S, T> getConverter(Class<S> sourceClass, Class<T> targetClass) throws ClassNotFoundException {
+        Object converter = lookupCache.get(sourceClass).get(targetClass);
+        if (converter == NO_CONVERTER) {
+            throw new ClassNotFoundException("No converter found for " + sourceClass.getName().concat(DELIMITER).concat(targetClass.getName()));
+        }
+        return UtilGenerics.cast(converter);
+    }
+
+    private static ClassValue<ClassValue<Object>> newLookupCache() {
+        return new ClassValue<ClassValue<Object>>() {
+            @Override
+            protected ClassValue<Object> computeValue(Class<?> sourceClass) {
+                return new ClassValue<Object>() {
+                    @Override
+                    protected Object computeValue(Class<?> targetClass) {
+                        Converter<?, ?> converter = findConverter(sourceClass, targetClass);
+                        return converter != null ? converter : NO_CONVERTER;
+                    }
+                };
+            }
+        };
+    }
+
+    // Finds the converter of a class pair not yet in the lookup cache; returns null when there is none.
+    private static Converter<?, ?> findConverter(Class<?> sourceClass, Class<?> targetClass) {
         String key = sourceClass.getName().concat(DELIMITER).concat(targetClass.getName());
         if (Debug.verboseOn()) {
             Debug.logVerbose("Getting converter: " + key, MODULE);
@@ -76,10 +105,10 @@ public final class Converters {
         do {
             Converter<?, ?> result = CONVERTER_MAP.get(key);
             if (result != null) {
-                return UtilGenerics.cast(result);
+                return result;
             }
             if (NO_CONVERSIONS.contains(key)) {
-                throw new ClassNotFoundException("No converter found for " + key);
+                return null;
             }
             Class<?> foundSourceClass = null;
             Converter<?, ?> foundConverter = null;
@@ -116,7 +145,7 @@ public final class Converters {
                         + ". Please report this message to the developer community so "
                         + "a suitable converter can be created. ***", MODULE);
             }
-            throw new ClassNotFoundException("No converter found for " + key);
+            return null;
         } while (true);
     }
 
@@ -165,6 +194,7 @@ public final class Converters {
         synchronized (CREATORS) {
             CREATORS.add(creator);
         }
+        clearLookupCache();
     }
 
     /** Registers a <code>Converter</code> instance to be used by the
@@ -178,6 +208,13 @@ public final class Converters {
         registerConverter(converter, converter.getSourceClass(), converter.getTargetClass());
     }
 
+    private static void clearLookupCache() {
+        synchronized (NO_CONVERSIONS) {
+            NO_CONVERSIONS.clear();
+        }
+        lookupCache = newLookupCache();
+    }
+
     private static <S, T> void registerConverter(Converter<S, T> converter, Class<?> sourceClass, Class<?> targetClass) {
         StringBuilder sb = new StringBuilder();
         if (sourceClass != null) {
@@ -189,6 +226,7 @@ public final class Converters {
         sb.append(targetClass.getName());
         String key = sb.toString();
         if (CONVERTER_MAP.putIfAbsent(key, converter) == null) {
+            clearLookupCache();
             if (Debug.verboseOn()) {
                 Debug.logVerbose("Registered converter " + converter.getClass().getName(), MODULE);
             }
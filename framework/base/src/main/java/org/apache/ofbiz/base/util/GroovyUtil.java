@@ -21,8 +21,11 @@ package org.apache.ofbiz.base.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.script.ScriptContext;
 
@@ -34,7 +37,6 @@ import org.codehaus.groovy.runtime.InvokerHelper;
 
 import groovy.lang.Binding;
 import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyShell;
 import groovy.lang.Script;
 
 /**
@@ -45,6 +47,9 @@ public final class GroovyUtil {
 
     private static final String MODULE = GroovyUtil.class.getName();
     private static final UtilCache<String, Class<?>> PARSED_SCRIPTS = UtilCache.createUtilCache("script.GroovyLocationParsedCache", 0, 0, false);
+    // bounded: the expressions are often expanded from ${} templates, each distinct value loads a class
+    private static final UtilCache<String, ParsedExpression> PARSED_EXPRESSIONS = UtilCache.createUtilCache("script.GroovyExpressionParsedCache",
+            1000, 3600000, false);
     private static final GroovyClassLoader GROOVY_CLASS_LOADER;
 
     private GroovyUtil() { }
@@ -62,13 +67,15 @@ public final class GroovyUtil {
 
     /**
      * Evaluate a Groovy condition or expression
+     * <p>The expression is compiled once and cached. It is evaluated against the context itself: the
+     * variables it assigns are set in the context, the ones missing from the context evaluate to
+     * <code>null</code>, and the context is available as a variable called "context".</p>
      * @param expression The expression to evaluate
      * @param context The context to use in evaluation (re-written)
      * @see <a href="StringUtil.html#convertOperatorSubstitutions(java.lang.String)">StringUtil.convertOperatorSubstitutions(java.lang.String)</a>
      * @return Object The result of the evaluation
      * @throws CompilationFailedException
      */
-    @SuppressWarnings("unchecked")
     public static Object eval(String expression, Map<String, Object> context) throws CompilationFailedException {
         Object o;
         if (expression == null || "".equals(expression)) {
@@ -79,22 +86,72 @@ public final class GroovyUtil {
             Debug.logVerbose("Evaluating -- " + expression, MODULE);
             Debug.logVerbose("Using Context -- " + context, MODULE);
         }
+        ParsedExpression parsedExpression = getParsedExpression(expression);
+        long startTime = System.nanoTime();
         try {
-            GroovyShell shell = new GroovyShell(getBinding(context, expression));
-            o = shell.evaluate(StringUtil.convertOperatorSubstitutions(expression));
-            if (Debug.verboseOn()) {
-                Debug.logVerbose("Evaluated to -- " + o, MODULE);
-            }
-            // read back the context info
-            Binding binding = shell.getContext();
-            context.putAll(binding.getVariables());
-        } catch (CompilationFailedException e) {
-            Debug.logError(e, "Groovy Evaluation error.", MODULE);
-            throw e;
+            Script script = InvokerHelper.createScript(parsedExpression.scriptClass, new ContextBinding(context != null ? context : new HashMap<>()));
+            o = script.run();
+        } finally {
+            parsedExpression.evaluated(System.nanoTime() - startTime);
+        }
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Evaluated to -- " + o, MODULE);
         }
         return o;
     }
 
+    private static ParsedExpression getParsedExpression(String expression) throws CompilationFailedException {
+        ParsedExpression parsedExpression = PARSED_EXPRESSIONS.get(expression);
+        if (parsedExpression == null) {
+            long startTime = System.nanoTime();
+            Class<?> scriptClass;
+            // same class loader as a GroovyShell, a new one for each expression so that the class can be garbage collected
+            try (GroovyClassLoader classLoader = new GroovyClassLoader(Thread.currentThread().getContextClassLoader())) {
+                scriptClass = classLoader.parseClass(StringUtil.convertOperatorSubstitutions(expression));
+            } catch (CompilationFailedException e) {
+                Debug.logError(e, "Groovy Evaluation error.", MODULE);
+                throw e;
+            } catch (IOException e) {
+                // only thrown when closing the class loader, the class is parsed
+                throw new IllegalStateException(e);
+            }
+            parsedExpression = PARSED_EXPRESSIONS.putIfAbsentAndGet(expression,
+                    new ParsedExpression(expression, scriptClass, System.nanoTime() - startTime));
+        }
+        return parsedExpression;
+    }
+
+    /**
+     * Returns the statistics of the expressions compiled by {@link #eval(String, Map)}: for each expression,
+     * a <code>Map</code> with the <code>expression</code>, its <code>compileMillis</code>, its <code>evalCount</code>,
+     * its <code>evalTotalMillis</code> and its <code>evalAverageMicros</code>.
+     * @return the statistics of the cached expressions, the most evaluated first
+     */
+    public static List<Map<String, Object>> getExpressionStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<>();
+        for (ParsedExpression parsedExpression : PARSED_EXPRESSIONS.values()) {
+            long evalCount = parsedExpression.evalCount.sum();
+            long evalNanos = parsedExpression.evalNanos.sum();
+            statistics.add(UtilMisc.toMap("expression", parsedExpression.expression,
+                    "compileMillis", Math.round(parsedExpression.compileNanos / 1000.0) / 1000.0,
+                    "evalCount", evalCount,
+                    "evalTotalMillis", Math.round(evalNanos / 1000.0) / 1000.0,
+                    "evalAverageMicros", evalCount == 0 ? 0.0 : Math.round((double) evalNanos / evalCount) / 1000.0));
+        }
+        statistics.sort((a, b) -> Long.compare((Long) b.get("evalCount"), (Long) a.get("evalCount")));
+        return statistics;
+    }
+
+    /**
+     * Resets the evaluation counters of the expressions compiled by {@link #eval(String, Map)}.
+     */
+    public static void resetExpressionStatistics() {
+        for (ParsedExpression parsedExpression : PARSED_EXPRESSIONS.values()) {
+            parsedExpression.evalCount.reset();
+            parsedExpression.evalNanos.reset();
+        }
+    }
+
     /** Returns a <code>Binding</code> instance initialized with the
      * variables contained in <code>context</code>. If <code>context</code>
      * is <code>null</code>, an empty <code>Binding</code> is returned.
@@ -137,6 +194,58 @@ public final class GroovyUtil {
         return getBinding(context, null);
     }
 
+    /** A compiled expression, with its evaluation counters. */
+    private static final class ParsedExpression {
+        private final String expression;
+        private final Class<?> scriptClass;
+        private final long compileNanos;
+        private final LongAdder evalCount = new LongAdder();
+        private final LongAdder evalNanos = new LongAdder();
+
+        ParsedExpression(String expression, Class<?> scriptClass, long compileNanos) {
+            this.expression = expression;
+            this.scriptClass = scriptClass;
+            this.compileNanos = compileNanos;
+        }
+
+        void evaluated(long nanos) {
+            evalCount.increment();
+            evalNanos.add(nanos);
+        }
+    }
+
+    /**
+     * The <code>Binding</code> of the expressions: reads and writes the context directly instead of a copy of it.
+     * Variables missing from the context evaluate to <code>null</code>, the script helper is only created when the
+     * expression uses it.
+     */
+    private static final class ContextBinding extends Binding {
+        private final Map<String, Object> context;
+
+        ContextBinding(Map<String, Object> context) {
+            super(context);
+            this.context = context;
+        }
+
+        @Override
+        public Object getVariable(String name) {
+            if ("context".equals(name)) {
+                return context;
+            }
+            Object value = context.get(name);
+            if (value == null && ScriptUtil.SCRIPT_HELPER_KEY.equals(name)) {
+                ScriptContext scriptContext = ScriptUtil.createScriptContext(context);
+                value = scriptContext.getAttribute(ScriptUtil.SCRIPT_HELPER_KEY);
+            }
+            return value;
+        }
+
+        @Override
+        public boolean hasVariable(String name) {
+            return "context".equals(name) || context.containsKey(name);
+        }
+    }
+
     public static Class<?> getScriptClassFromLocation(String location) throws GeneralException {
         try {
             Class<?> scriptClass = PARSED_SCRIPTS.get(location);
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.regex.Pattern;
 
 import org.apache.ofbiz.base.conversion.ConversionException;
 import org.apache.ofbiz.base.conversion.Converter;
@@ -50,6 +51,7 @@ public class ObjectType {
 
     private static final Map<String, String> CLASS_ALIAS = new HashMap<>();
     private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+    private static final Pattern NOT_NUMERIC_CHARS = Pattern.compile("[^\\p{IsAlnum}\\p{IsPunct}]");
 
     static {
         CLASS_ALIAS.put("Object", "java.lang.Object");
@@ -332,7 +334,7 @@ public class ObjectType {
         if (converter != null) {
             // numeric types : replace everything that's not in [:IsAlnum:] or [:IsPunct:] classes by an empty string
             if (obj instanceof String && Number.class.isAssignableFrom((targetClass))) {
-                obj = ((String) obj).replaceAll("[^\\p{IsAlnum}\\p{IsPunct}]", "");
+                obj = NOT_NUMERIC_CHARS.matcher((String) obj).replaceAll("");
             }
 
             if (converter instanceof LocalizedConverter) {
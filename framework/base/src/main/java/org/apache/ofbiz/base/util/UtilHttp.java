@@ -1712,7 +1712,12 @@ public final class UtilHttp {
         return "autoId_" + uniqueIdNumber;
     }
 
-    private static void setContentDisposition(final HttpServletResponse response, final String filename) {
+    /**
+     * Sets the Content-Disposition header of a response, with the disposition type of requestHandler.properties.
+     * @param response the response
+     * @param filename the name of the downloaded file
+     */
+    public static void setContentDisposition(final HttpServletResponse response, final String filename) {
         String dispositionType = UtilProperties.getPropertyValue("requestHandler", "content-disposition-type", "attachment");
         response.setHeader("Content-Disposition", String.format("%s; filename=\"%s\"", dispositionType, filename));
     }
@@ -23,6 +23,8 @@ import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -30,11 +32,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.apache.ofbiz.base.util.UtilGenerics;
@@ -44,22 +47,63 @@ import org.apache.ofbiz.base.util.UtilGenerics;
  *
  * Provide a combined view for a collection of maps which are organized in a deque.
  * All write operations affect only the head of the deque.
+ * <p>The Maps pushed with {@link #push(Map)}, or shared with other contexts, are kept as layers that are
+ * looked up from the top. The scopes created by {@link #push()} are not Maps: their entries are kept in a
+ * single open addressing symbol table holding the visible value of each key, and every scope records in
+ * an undo log the values it hides, which are restored when it is popped. A lookup of a key set in one of
+ * these scopes costs one probe of the table whatever the depth of the stack, and a push allocates nothing.
+ * The scopes are turned into Maps when the layers of the context are shared or a Map is pushed above them.</p>
  */
 public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
 
-    private Deque<Map<K, V>> contexts = new LinkedList<>();
+    // stands for the null key in the symbol table, where null marks an empty slot
+    private static final Object NULL_KEY = new Object();
+    // scope of an undo log entry of a key which was not in the symbol table
+    private static final int ABSENT = -1;
+
+    // the Maps of the context, bottom first; the scopes are above them
+    private Map<K, V>[] layers = newLayers(4);
+    private int layerCount;
+
+    // symbol table of the keys set in the scopes: the visible value and the scope it belongs to
+    private Object[] tableKeys;
+    private Object[] tableValues;
+    private int[] tableScopes;
+    private int tableSize;
+
+    // undo log of the scopes: the entry of the symbol table each scope replaced when it first set a key
+    private Object[] undoKeys;
+    private Object[] undoValues;
+    private int[] undoScopes;
+    private int undoSize;
+
+    // for each scope, the undo log size when it was pushed
+    private int[] scopeStarts;
+    private int scopeCount;
 
     /**
      * Gets contexts.
+     * <p>The returned Deque is a copy holding the Maps of this context, the top one first; the Maps
+     * themselves are shared with this context, so writing to them writes to the context.</p>
      * @return the contexts
      */
     public Deque<Map<K, V>> getContexts() {
+        spillScopes();
+        Deque<Map<K, V>> contexts = new LinkedList<>();
+        for (int i = layerCount - 1; i >= 0; i--) {
+            contexts.add(layers[i]);
+        }
         return contexts;
     }
 
     /** Puts a new Map on the top of the stack */
     public void push() {
-        contexts.addFirst(new HashMap<>());
+        if (scopeStarts == null) {
+            scopeStarts = new int[8];
+        } else if (scopeCount == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopeCount * 2);
+        }
+        scopeStarts[scopeCount++] = undoSize;
     }
 
     /** Puts an existing Map on the top of the stack (top meaning will override lower layers on the stack) */
@@ -67,7 +111,8 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
         if (existingMap == null) {
             throw new IllegalArgumentException("Error: cannot push null existing Map onto a MapContext");
         }
-        contexts.addFirst(existingMap);
+        spillScopes();
+        addLayer(existingMap);
     }
 
     /** Puts an existing Map on the BOTTOM of the stack (bottom meaning will be overriden by lower layers on the stack,
@@ -76,13 +121,45 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
         if (existingMap == null) {
             throw new IllegalArgumentException("Error: cannot add null existing Map to bottom of a MapContext");
         }
-        contexts.addLast(existingMap);
+        addLayer(existingMap);
+        System.arraycopy(layers, 0, layers, 1, layerCount - 1);
+        layers[0] = existingMap;
+    }
+
+    /** Puts the Maps of another context on the top of the stack, sharing them with that context */
+    void pushShared(MapContext<K, V> source) {
+        spillScopes();
+        source.spillScopes();
+        for (int i = 0; i < source.layerCount; i++) {
+            addLayer(source.layers[i]);
+        }
     }
 
     /** Remove and returns the Map from the top of the stack; if there is only one Map on the stack it returns null and does not remove it */
     public Map<K, V> pop() {
         // always leave at least one Map in the List, ie never pop off the last Map
-        return contexts.size() > 1 ? contexts.removeFirst() : null;
+        if (layerCount + scopeCount <= 1) {
+            return null;
+        }
+        if (scopeCount > 0) {
+            return popScope();
+        }
+        Map<K, V> top = layers[--layerCount];
+        layers[layerCount] = null;
+        return top;
+    }
+
+    /**
+     * Returns the value of a key in the Map on the top of the stack only, ignoring the lower layers.
+     * @param key the key
+     * @return the value, null if the top Map does not contain the key
+     */
+    protected V getFromTop(Object key) {
+        if (scopeCount > 0) {
+            int slot = findSlot(maskNull(key));
+            return slot >= 0 && tableScopes[slot] == scopeCount - 1 ? UtilGenerics.cast(tableValues[slot]) : null;
+        }
+        return topLayer().get(key);
     }
 
     /* (non-Javadoc)
@@ -90,7 +167,7 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public int size() {
-        return contexts.stream()
+        return layersTopFirst().stream()
                 .flatMap(ctx -> ctx.keySet().stream())
                 .distinct()
                 .mapToInt(k -> 1)
@@ -102,13 +179,21 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public boolean isEmpty() {
-        return contexts.stream().allMatch(Map::isEmpty);
+        if (tableSize > 0) {
+            return false;
+        }
+        for (int i = 0; i < layerCount; i++) {
+            if (!layers[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     // Return a sequential stream of actual entries.
     private Stream<Map.Entry<K, V>> entryStream() {
         Set<K> seenKeys = new HashSet<>();
-        return contexts.stream()
+        return layersTopFirst().stream()
                 .flatMap(ctx -> ctx.entrySet().stream())
                 .sequential()
                 .filter(e -> seenKeys.add(e.getKey()));
@@ -119,7 +204,15 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public boolean containsKey(Object key) {
-        return contexts.stream().anyMatch(ctx -> ctx.containsKey(key));
+        if (tableSize > 0 && findSlot(maskNull(key)) >= 0) {
+            return true;
+        }
+        for (int i = layerCount - 1; i >= 0; i--) {
+            if (layers[i].containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /* (non-Javadoc)
@@ -130,37 +223,50 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
         return entryStream().anyMatch(e -> Objects.equals(value, e.getValue()));
     }
 
-    private V withContextContainingKey(Object key, Function<Map<K, V>, V> f) {
-        for (Map<K, V> ctx: contexts) {
+    /* (non-Javadoc)
+     * @see java.util.Map#get(java.lang.Object)
+     */
+    @Override
+    public V get(Object key) {
+        if (tableSize > 0) {
+            int slot = findSlot(maskNull(key));
+            if (slot >= 0) {
+                return UtilGenerics.cast(tableValues[slot]);
+            }
+        }
+        for (int i = layerCount - 1; i >= 0; i--) {
+            Map<K, V> ctx = layers[i];
             /* Use `containsKey` rather than checking for null.
                This allows a null value at the head of the deque to override the followings. */
             if (ctx.containsKey(key)) {
-                return f.apply(ctx);
+                return ctx.get(key);
             }
         }
         return null;
     }
 
-    /* (non-Javadoc)
-     * @see java.util.Map#get(java.lang.Object)
-     */
-    @Override
-    public V get(Object key) {
-        return withContextContainingKey(key, ctx -> ctx.get(key));
-    }
-
     /* (non-Javadoc)
      * @see org.apache.ofbiz.base.util.collections.LocalizedMap#get(java.lang.String, java.util.Locale)
      */
     @Override
     public V get(String name, Locale locale) {
-        return withContextContainingKey(name, ctx -> {
-            if (ctx instanceof LocalizedMap<?>) {
-                LocalizedMap<V> lmap = UtilGenerics.cast(ctx);
-                return lmap.get(name, locale);
+        if (tableSize > 0) {
+            int slot = findSlot(maskNull(name));
+            if (slot >= 0) {
+                return UtilGenerics.cast(tableValues[slot]);
             }
-            return ctx.get(name);
-        });
+        }
+        for (int i = layerCount - 1; i >= 0; i--) {
+            Map<K, V> ctx = layers[i];
+            if (ctx.containsKey(name)) {
+                if (ctx instanceof LocalizedMap<?>) {
+                    LocalizedMap<V> lmap = UtilGenerics.cast(ctx);
+                    return lmap.get(name, locale);
+                }
+                return ctx.get(name);
+            }
+        }
+        return null;
     }
 
     /* (non-Javadoc)
@@ -168,7 +274,27 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public V put(K key, V value) {
-        return contexts.getFirst().put(key, value);
+        if (scopeCount == 0) {
+            return topLayer().put(key, value);
+        }
+        int scope = scopeCount - 1;
+        Object maskedKey = maskNull(key);
+        int slot = findSlot(maskedKey);
+        if (slot < 0) {
+            logUndo(maskedKey, null, ABSENT);
+            insertSlot(maskedKey, value, scope);
+            return null;
+        }
+        if (tableScopes[slot] == scope) {
+            V previous = UtilGenerics.cast(tableValues[slot]);
+            tableValues[slot] = value;
+            return previous;
+        }
+        // the value comes from a lower scope, hide it until this scope is popped
+        logUndo(maskedKey, tableValues[slot], tableScopes[slot]);
+        tableValues[slot] = value;
+        tableScopes[slot] = scope;
+        return null;
     }
 
     /* (non-Javadoc)
@@ -176,7 +302,29 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public V remove(Object key) {
-        return contexts.getFirst().remove(key);
+        if (scopeCount == 0) {
+            return topLayer().remove(key);
+        }
+        int scope = scopeCount - 1;
+        Object maskedKey = maskNull(key);
+        int slot = findSlot(maskedKey);
+        if (slot < 0 || tableScopes[slot] != scope) {
+            return null;
+        }
+        V previous = UtilGenerics.cast(tableValues[slot]);
+        for (int i = undoSize - 1; i >= scopeStarts[scope]; i--) {
+            if (maskedKey.equals(undoKeys[i])) {
+                undo(slot, i);
+                System.arraycopy(undoKeys, i + 1, undoKeys, i, undoSize - i - 1);
+                System.arraycopy(undoValues, i + 1, undoValues, i, undoSize - i - 1);
+                System.arraycopy(undoScopes, i + 1, undoScopes, i, undoSize - i - 1);
+                undoSize--;
+                undoKeys[undoSize] = null;
+                undoValues[undoSize] = null;
+                break;
+            }
+        }
+        return previous;
     }
 
     /* (non-Javadoc)
@@ -184,7 +332,13 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public void putAll(Map<? extends K, ? extends V> arg0) {
-        contexts.getFirst().putAll(arg0);
+        if (scopeCount == 0) {
+            topLayer().putAll(arg0);
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : arg0.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     /* (non-Javadoc)
@@ -192,7 +346,11 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public void clear() {
-        contexts.getFirst().clear();
+        if (scopeCount == 0) {
+            topLayer().clear();
+            return;
+        }
+        undoScope(scopeCount - 1, null);
     }
 
     /* (non-Javadoc)
@@ -200,7 +358,7 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
      */
     @Override
     public Set<K> keySet() {
-        return contexts.stream()
+        return layersTopFirst().stream()
                 .flatMap(ctx -> ctx.keySet().stream())
                 .collect(collectingAndThen(toSet(), Collections::unmodifiableSet));
     }
@@ -229,7 +387,7 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
     public String toString() {
         StringBuilder fullMapString = new StringBuilder();
         int curLevel = 0;
-        for (Map<K, V> ctx: contexts) {
+        for (Map<K, V> ctx: layersTopFirst()) {
             fullMapString.append("============================== Start stack level " + curLevel + "\n");
             for (Map.Entry<K, V> curEntry: ctx.entrySet()) {
 
@@ -249,4 +407,220 @@ public class MapContext<K, V> implements Map<K, V>, LocalizedMap<V> {
         }
         return fullMapString.toString();
     }
+
+    private Map<K, V> topLayer() {
+        if (layerCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return layers[layerCount - 1];
+    }
+
+    private void addLayer(Map<K, V> layer) {
+        if (layerCount == layers.length) {
+            layers = Arrays.copyOf(layers, layerCount * 2);
+        }
+        layers[layerCount++] = layer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newLayers(int length) {
+        return (Map<K, V>[]) new Map<?, ?>[length];
+    }
+
+    /** Returns all the layers of the context, the top one first, with the scopes turned into new Maps */
+    private List<Map<K, V>> layersTopFirst() {
+        List<Map<K, V>> result = new ArrayList<>(scopeCount + layerCount);
+        List<Map<K, V>> scopeMaps = scopeMaps();
+        for (int i = scopeMaps.size() - 1; i >= 0; i--) {
+            result.add(scopeMaps.get(i));
+        }
+        for (int i = layerCount - 1; i >= 0; i--) {
+            result.add(layers[i]);
+        }
+        return result;
+    }
+
+    /** Returns the content of each scope as a new Map, the bottom one first */
+    private List<Map<K, V>> scopeMaps() {
+        List<Map<K, V>> scopeMaps = new ArrayList<>(scopeCount);
+        for (int i = 0; i < scopeCount; i++) {
+            scopeMaps.add(new HashMap<>());
+        }
+        if (tableKeys != null) {
+            for (int i = 0; i < tableKeys.length; i++) {
+                if (tableKeys[i] != null) {
+                    scopeMaps.get(tableScopes[i]).put(unmaskNull(tableKeys[i]), UtilGenerics.cast(tableValues[i]));
+                }
+            }
+        }
+        // the values hidden by upper scopes
+        for (int i = 0; i < undoSize; i++) {
+            if (undoScopes[i] != ABSENT) {
+                scopeMaps.get(undoScopes[i]).put(unmaskNull(undoKeys[i]), UtilGenerics.cast(undoValues[i]));
+            }
+        }
+        return scopeMaps;
+    }
+
+    /** Turns the scopes into Maps on the top of the layers, so that they can be shared or have a Map pushed above them */
+    private void spillScopes() {
+        if (scopeCount == 0) {
+            return;
+        }
+        for (Map<K, V> scopeMap : scopeMaps()) {
+            addLayer(scopeMap);
+        }
+        if (tableSize > 0) {
+            Arrays.fill(tableKeys, null);
+            Arrays.fill(tableValues, null);
+            tableSize = 0;
+        }
+        if (undoSize > 0) {
+            Arrays.fill(undoKeys, 0, undoSize, null);
+            Arrays.fill(undoValues, 0, undoSize, null);
+            undoSize = 0;
+        }
+        scopeCount = 0;
+    }
+
+    private Map<K, V> popScope() {
+        Map<K, V> popped = new HashMap<>();
+        undoScope(scopeCount - 1, popped);
+        scopeCount--;
+        return popped;
+    }
+
+    /** Restores the entries a scope has replaced, leaving it empty; the entries of the scope are put in <code>removed</code> */
+    private void undoScope(int scope, Map<K, V> removed) {
+        int start = scopeStarts[scope];
+        for (int i = undoSize - 1; i >= start; i--) {
+            Object maskedKey = undoKeys[i];
+            int slot = findSlot(maskedKey);
+            if (removed != null) {
+                removed.put(unmaskNull(maskedKey), UtilGenerics.cast(tableValues[slot]));
+            }
+            undo(slot, i);
+            undoKeys[i] = null;
+            undoValues[i] = null;
+        }
+        undoSize = start;
+    }
+
+    private void undo(int slot, int undoIndex) {
+        if (undoScopes[undoIndex] == ABSENT) {
+            deleteSlot(slot);
+        } else {
+            tableValues[slot] = undoValues[undoIndex];
+            tableScopes[slot] = undoScopes[undoIndex];
+        }
+    }
+
+    private void logUndo(Object maskedKey, Object value, int scope) {
+        if (undoKeys == null) {
+            undoKeys = new Object[16];
+            undoValues = new Object[16];
+            undoScopes = new int[16];
+        } else if (undoSize == undoKeys.length) {
+            undoKeys = Arrays.copyOf(undoKeys, undoSize * 2);
+            undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+            undoScopes = Arrays.copyOf(undoScopes, undoSize * 2);
+        }
+        undoKeys[undoSize] = maskedKey;
+        undoValues[undoSize] = value;
+        undoScopes[undoSize] = scope;
+        undoSize++;
+    }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static <K> K unmaskNull(Object key) {
+        return key == NULL_KEY ? null : UtilGenerics.cast(key);
+    }
+
+    private static int hash(Object maskedKey) {
+        int h = maskedKey.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int findSlot(Object maskedKey) {
+        if (tableKeys == null) {
+            return -1;
+        }
+        int mask = tableKeys.length - 1;
+        int slot = hash(maskedKey) & mask;
+        Object slotKey;
+        while ((slotKey = tableKeys[slot]) != null) {
+            if (slotKey == maskedKey || slotKey.equals(maskedKey)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertSlot(Object maskedKey, Object value, int scope) {
+        if (tableKeys == null) {
+            tableKeys = new Object[16];
+            tableValues = new Object[16];
+            tableScopes = new int[16];
+        } else if ((tableSize + 1) * 2 > tableKeys.length) {
+            resizeTable(tableKeys.length * 2);
+        }
+        int mask = tableKeys.length - 1;
+        int slot = hash(maskedKey) & mask;
+        while (tableKeys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        tableKeys[slot] = maskedKey;
+        tableValues[slot] = value;
+        tableScopes[slot] = scope;
+        tableSize++;
+    }
+
+    private void resizeTable(int length) {
+        Object[] oldKeys = tableKeys;
+        Object[] oldValues = tableValues;
+        int[] oldScopes = tableScopes;
+        tableKeys = new Object[length];
+        tableValues = new Object[length];
+        tableScopes = new int[length];
+        int mask = length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (tableKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = oldKeys[i];
+                tableValues[slot] = oldValues[i];
+                tableScopes[slot] = oldScopes[i];
+            }
+        }
+    }
+
+    /** Empties a slot, moving back the following entries of its probe sequence so that no lookup stops early */
+    private void deleteSlot(int slot) {
+        int mask = tableKeys.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            Object nextKey = tableKeys[next];
+            if (nextKey == null) {
+                break;
+            }
+            int home = hash(nextKey) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                tableKeys[hole] = nextKey;
+                tableValues[hole] = tableValues[next];
+                tableScopes[hole] = tableScopes[next];
+                hole = next;
+            }
+        }
+        tableKeys[hole] = null;
+        tableValues[hole] = null;
+        tableSize--;
+    }
 }
@@ -18,12 +18,18 @@
  *******************************************************************************/
 package org.apache.ofbiz.base.util.string;
 
+import java.beans.FeatureDescriptor;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.el.ArrayELResolver;
 import javax.el.BeanELResolver;
@@ -44,6 +50,7 @@ import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.StringUtil;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.cache.UtilCache;
 import org.apache.ofbiz.base.util.collections.LocalizedMap;
 
 /** Implements the Unified Expression Language (JSR-245). */
@@ -53,6 +60,7 @@ public final class UelUtil {
     private static final ExpressionFactory EXPR_FACTORY = JuelConnector.newExpressionFactory();
     private static final ELResolver DEFAULT_RESOLVER = new ExtendedCompositeResolver() {
         {
+            add(new ContextVariableResolver());
             add(new ExtendedMapResolver(false));
             add(new ExtendedListResolver(false));
             add(new ArrayELResolver(false));
@@ -62,6 +70,17 @@ public final class UelUtil {
         }
     };
 
+    /**
+     * Parsed expressions, by expected type and expression. They are parsed without binding the context variables,
+     * the variables being resolved by the {@link ContextVariableResolver} at evaluation, so that they can be evaluated
+     * with any context, concurrently.
+     */
+    private static final UtilCache<String, ValueExpression> PARSED_EXPRESSIONS = UtilCache.createUtilCache("uel.ParsedValueExpressions",
+            0, 10000, 0, false);
+    /** JUEL reserved words, these are not identifiers. */
+    private static final Set<String> RESERVED_WORDS = new HashSet<>(UtilMisc.toList("and", "div", "empty", "eq", "false", "ge", "gt",
+            "instanceof", "le", "lt", "mod", "ne", "not", "null", "or", "true"));
+
     private UelUtil() { }
 
     public static String getLocalizedMapLocaleKey() {
@@ -85,7 +104,7 @@ public final class UelUtil {
      */
     public static Object evaluate(Map<String, ? extends Object> context, String expression, Class<?> expectedType) {
         ELContext elContext = new ReadOnlyContext(context);
-        ValueExpression ve = EXPR_FACTORY.createValueExpression(elContext, expression, expectedType);
+        ValueExpression ve = getValueExpression(expression, expectedType);
         return ve.getValue(elContext);
     }
 
@@ -100,7 +119,7 @@ public final class UelUtil {
             Debug.logVerbose("UelUtil.setValue invoked, expression = " + expression + ", value = " + value, MODULE);
         }
         ELContext elContext = new BasicContext(context);
-        ValueExpression ve = EXPR_FACTORY.createValueExpression(elContext, expression, expectedType);
+        ValueExpression ve = getValueExpression(expression, expectedType);
         ve.setValue(elContext, value);
     }
 
@@ -114,10 +133,276 @@ public final class UelUtil {
             Debug.logVerbose("UelUtil.removeValue invoked, expression = " + expression, MODULE);
         }
         ELContext elContext = new BasicContext(context);
-        ValueExpression ve = EXPR_FACTORY.createValueExpression(elContext, expression, Object.class);
+        ValueExpression ve = getValueExpression(expression, Object.class);
         ve.setValue(elContext, null);
     }
 
+    /**
+     * Returns the parsed expression from the cache, parsing it if needed. Expressions made of a variable followed by
+     * map keys and list indexes, like <code>${orderHeader.orderId}</code> or <code>${orderItems[0]['productId']}</code>,
+     * are evaluated by a {@link PathExpression} without going through the JUEL tree.
+     */
+    private static ValueExpression getValueExpression(String expression, Class<?> expectedType) {
+        String key = expectedType == Object.class ? expression : expectedType.getName().concat(":").concat(expression);
+        ValueExpression ve = PARSED_EXPRESSIONS.get(key);
+        if (ve == null) {
+            ve = EXPR_FACTORY.createValueExpression(new ParsingContext(), expression, expectedType);
+            if (expectedType == Object.class) {
+                List<Object> path = parsePath(expression);
+                if (path != null) {
+                    ve = new PathExpression(path, ve);
+                }
+            }
+            ve = PARSED_EXPRESSIONS.putIfAbsentAndGet(key, ve);
+        }
+        return ve;
+    }
+
+    /**
+     * Parses a <code>${variable.key['key'][0]}</code> expression.
+     * @return the variable name followed by the <code>String</code> keys and <code>Integer</code> indexes,
+     * or <code>null</code> if the expression is not such a path
+     */
+    static List<Object> parsePath(String expression) {
+        int length = expression.length();
+        if (length < 4 || !expression.startsWith("${") || expression.charAt(length - 1) != '}') {
+            return null;
+        }
+        List<Object> path = new ArrayList<>();
+        int end = length - 1;
+        int pos = parseIdentifier(expression, 2, end);
+        if (pos < 0) {
+            return null;
+        }
+        path.add(expression.substring(2, pos));
+        while (pos < end) {
+            char c = expression.charAt(pos);
+            if (c == '.') {
+                int next = parseIdentifier(expression, pos + 1, end);
+                if (next < 0) {
+                    return null;
+                }
+                path.add(expression.substring(pos + 1, next));
+                pos = next;
+            } else if (c == '[') {
+                int close = expression.indexOf(']', pos);
+                if (close < 0 || close >= end) {
+                    return null;
+                }
+                String property = expression.substring(pos + 1, close);
+                if (property.length() >= 2 && (property.charAt(0) == '\'' || property.charAt(0) == '"')
+                        && property.charAt(property.length() - 1) == property.charAt(0)) {
+                    String key = property.substring(1, property.length() - 1);
+                    if (key.indexOf('\\') >= 0 || key.indexOf(property.charAt(0)) >= 0) {
+                        return null;
+                    }
+                    path.add(key);
+                } else if (!property.isEmpty() && property.length() < 10 && property.chars().allMatch(Character::isDigit)) {
+                    path.add(Integer.valueOf(property));
+                } else {
+                    return null;
+                }
+                pos = close + 1;
+            } else {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    /** Returns the end of the identifier starting at <code>start</code>, or -1 if there is no identifier there. */
+    private static int parseIdentifier(String expression, int start, int end) {
+        int pos = start;
+        if (pos >= end || !Character.isJavaIdentifierStart(expression.charAt(pos))) {
+            return -1;
+        }
+        pos++;
+        while (pos < end && Character.isJavaIdentifierPart(expression.charAt(pos))) {
+            pos++;
+        }
+        if (RESERVED_WORDS.contains(expression.substring(start, pos))) {
+            return -1;
+        }
+        return pos;
+    }
+
+    /** Returns the variables of an <code>ELContext</code> created by this class. */
+    private static Map<String, ? extends Object> getVariables(ELContext context) {
+        if (context instanceof ReadOnlyContext) {
+            return ((ReadOnlyContext) context).variables;
+        } else if (context instanceof BasicContext) {
+            return ((BasicContext) context).variables;
+        }
+        return null;
+    }
+
+    /**
+     * The context used to parse the cached expressions: no variable is bound at parse time, all of them are
+     * resolved at evaluation by the {@link ContextVariableResolver}.
+     */
+    private static final class ParsingContext extends ELContext {
+        private static final VariableMapper NO_VARIABLES = new VariableMapper() {
+            @Override
+            public ValueExpression resolveVariable(String variable) {
+                return null;
+            }
+            @Override
+            public ValueExpression setVariable(String variable, ValueExpression expression) {
+                throw new PropertyNotWritableException();
+            }
+        };
+        @Override
+        public ELResolver getELResolver() {
+            return DEFAULT_RESOLVER;
+        }
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return UelFunctions.getFunctionMapper();
+        }
+        @Override
+        public VariableMapper getVariableMapper() {
+            return NO_VARIABLES;
+        }
+    }
+
+    /**
+     * Resolves the top level variables of the expressions in the variables of the evaluation context,
+     * like the variable mappers of the contexts did when the variables were bound at parse time.
+     * Unknown variables are left unresolved, setting them is done by the {@link ExtendedCompositeResolver}.
+     */
+    private static final class ContextVariableResolver extends ELResolver {
+        private static Object resolve(ELContext context, Object base, Object property) {
+            if (base != null || property == null) {
+                return null;
+            }
+            Map<String, ? extends Object> variables = getVariables(context);
+            if (variables == null) {
+                return null;
+            }
+            return UelUtil.resolveVariable(property.toString(), variables, null);
+        }
+        // a variable present in the context with a null value is resolved to null, like the variable mappers did
+        private static boolean isNullVariable(ELContext context, Object base, Object property) {
+            if (base != null || property == null) {
+                return false;
+            }
+            Map<String, ? extends Object> variables = getVariables(context);
+            return variables != null && variables.containsKey(property.toString());
+        }
+        @Override
+        public Object getValue(ELContext context, Object base, Object property) {
+            Object value = resolve(context, base, property);
+            if (value != null || isNullVariable(context, base, property)) {
+                context.setPropertyResolved(true);
+            }
+            return value;
+        }
+        @Override
+        public Class<?> getType(ELContext context, Object base, Object property) {
+            Object value = resolve(context, base, property);
+            if (value != null) {
+                context.setPropertyResolved(true);
+                return value.getClass();
+            }
+            return null;
+        }
+        @Override
+        public void setValue(ELContext context, Object base, Object property, Object value) {
+            // variables are set by the ExtendedCompositeResolver, whether they exist or not
+        }
+        @Override
+        public boolean isReadOnly(ELContext context, Object base, Object property) {
+            if (resolve(context, base, property) != null) {
+                context.setPropertyResolved(true);
+                return context instanceof ReadOnlyContext;
+            }
+            return false;
+        }
+        @Override
+        public Iterator<FeatureDescriptor> getFeatureDescriptors(ELContext context, Object base) {
+            return Collections.emptyIterator();
+        }
+        @Override
+        public Class<?> getCommonPropertyType(ELContext context, Object base) {
+            return base == null ? String.class : null;
+        }
+    }
+
+    /**
+     * Evaluates a variable followed by map keys and list indexes without the JUEL tree, falling back to the
+     * JUEL expression for anything else (beans, arrays, localized maps, unknown variables...), so that the
+     * result and the errors are the same.
+     */
+    @SuppressWarnings("serial")
+    private static final class PathExpression extends ValueExpression {
+        private final Object[] path;
+        private final ValueExpression expression;
+        private PathExpression(List<Object> path, ValueExpression expression) {
+            this.path = path.toArray();
+            this.expression = expression;
+        }
+        @Override
+        public Object getValue(ELContext context) {
+            Map<String, ? extends Object> variables = getVariables(context);
+            if (variables == null) {
+                return expression.getValue(context);
+            }
+            Object value = UelUtil.resolveVariable((String) path[0], variables, null);
+            if (value == null) {
+                if (variables.containsKey(path[0])) {
+                    return null;
+                }
+                // an unknown variable is an error
+                return expression.getValue(context);
+            }
+            for (int i = 1; i < path.length && value != null; i++) {
+                Object property = path[i];
+                if (value instanceof Map<?, ?> && !(value instanceof LocalizedMap<?>) && property instanceof String) {
+                    value = UelUtil.resolveVariable((String) property, UtilGenerics.<Map<String, Object>>cast(value), null);
+                } else if (value instanceof List<?> && property instanceof Integer) {
+                    List<?> list = (List<?>) value;
+                    int index = (Integer) property;
+                    value = index < list.size() ? list.get(index) : null;
+                } else {
+                    return expression.getValue(context);
+                }
+            }
+            return value;
+        }
+        @Override
+        public void setValue(ELContext context, Object value) {
+            expression.setValue(context, value);
+        }
+        @Override
+        public Class<?> getType(ELContext context) {
+            return expression.getType(context);
+        }
+        @Override
+        public boolean isReadOnly(ELContext context) {
+            return expression.isReadOnly(context);
+        }
+        @Override
+        public Class<?> getExpectedType() {
+            return expression.getExpectedType();
+        }
+        @Override
+        public String getExpressionString() {
+            return expression.getExpressionString();
+        }
+        @Override
+        public boolean isLiteralText() {
+            return false;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PathExpression && expression.equals(((PathExpression) obj).expression);
+        }
+        @Override
+        public int hashCode() {
+            return expression.hashCode();
+        }
+    }
+
     private static final class BasicContext extends ELContext {
         private final Map<String, Object> variables;
         private final VariableMapper variableMapper;
@@ -21,6 +21,7 @@ package org.apache.ofbiz.base.conversion;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
 import java.net.URL;
@@ -43,6 +44,32 @@ public class MiscTests {
         }
     }
 
+    private static final class UnconvertibleSource {
+    }
+
+    @Test
+    public void testGetConverterCachesLookups() throws Exception {
+        assertSame("same converter", Converters.getConverter(String.class, BigDecimal.class),
+                Converters.getConverter(String.class, BigDecimal.class));
+        for (int i = 0; i < 2; i++) {
+            try {
+                Converters.getConverter(UnconvertibleSource.class, URL.class);
+                fail("no converter for UnconvertibleSource");
+            } catch (ClassNotFoundException e) {
+                // expected, the second time from the negative cache
+            }
+        }
+        Converter<UnconvertibleSource, URL> converter = new AbstractConverter<UnconvertibleSource, URL>(UnconvertibleSource.class,
+                URL.class) {
+            @Override
+            public URL convert(UnconvertibleSource obj) throws ConversionException {
+                return null;
+            }
+        };
+        Converters.registerConverter(converter);
+        assertSame("converter registered after a failed lookup", converter, Converters.getConverter(UnconvertibleSource.class, URL.class));
+    }
+
     @Test
     public void testLoadContainedConvertersIgnoresException() {
         Converters.loadContainedConverters(MiscTests.class);
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.base.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.junit.Test;
+
+public class GroovyUtilTests {
+
+    @Test
+    public void evaluatesAgainstTheContext() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("amount", 5);
+        assertEquals(Boolean.TRUE, GroovyUtil.eval("amount > 2", context));
+        context.put("amount", 1);
+        assertEquals(Boolean.FALSE, GroovyUtil.eval("amount > 2", context));
+        assertSame(context, GroovyUtil.eval("context", context));
+    }
+
+    @Test
+    public void missingVariablesAreNull() {
+        Map<String, Object> context = new HashMap<>();
+        assertNull(GroovyUtil.eval("missingVariable", context));
+        assertEquals(Boolean.TRUE, GroovyUtil.eval("missingVariable == null", context));
+        assertFalse(context.containsKey("missingVariable"));
+    }
+
+    @Test
+    public void assignmentsGoToTheContext() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("existing", "old");
+        GroovyUtil.eval("existing = 'new'; created = 3", context);
+        assertEquals("new", context.get("existing"));
+        assertEquals(3, context.get("created"));
+    }
+
+    @Test
+    public void nullValuesAreVariables() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("nullValue", null);
+        assertEquals(Boolean.TRUE, GroovyUtil.eval("nullValue == null", context));
+        GroovyUtil.eval("nullValue = 'set'", context);
+        assertEquals("set", context.get("nullValue"));
+    }
+
+    @Test
+    public void expressionCacheIsBounded() {
+        GroovyUtil.eval("1 + 1", new HashMap<>());
+        UtilCache<String, Object> cache = UtilCache.findCache("script.GroovyExpressionParsedCache");
+        assertTrue(cache.getSizeLimit() > 0 || cache.getMaxInMemory() > 0);
+        assertTrue(cache.getExpireTime() > 0);
+    }
+
+    @Test
+    public void distinctExpressionsDoNotGrowTheCacheBeyondItsLimit() {
+        UtilCache<String, Object> cache = UtilCache.findCache("script.GroovyExpressionParsedCache");
+        GroovyUtil.eval("0", new HashMap<>());
+        int limit = cache.getMaxInMemory() > 0 ? cache.getMaxInMemory() : cache.getSizeLimit();
+        for (int i = 0; i <= limit + 10; i++) {
+            assertEquals(i, GroovyUtil.eval(Integer.toString(i), new HashMap<>()));
+        }
+        assertTrue(cache.size() <= limit);
+    }
+}
@@ -20,9 +20,14 @@ package org.apache.ofbiz.base.util.collections;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -93,4 +98,75 @@ public class MapContextTest {
         assertThat("insertion order of LinkedHashMap is preserved by the 'values' method",
                 mc.values(), contains("1", "1", "3", "8", "1", "14"));
     }
+
+    // Checks that the values set in a pushed scope hide the lower ones until the scope is popped.
+    @Test
+    public void scopesHideAndRestoreValues() {
+        MapContext<String, Object> mc = new MapContext<>();
+        mc.push();
+        mc.put("a", "1");
+        mc.put("b", "1");
+        mc.push();
+        assertNull("put of a key of a lower scope returns null", mc.put("a", "2"));
+        mc.put("b", null);
+        mc.put("c", "2");
+        assertEquals("a", "2", mc.get("a"));
+        assertTrue("a null value hides the lower one", mc.containsKey("b"));
+        assertNull("b", mc.get("b"));
+        assertEquals("size", 3, mc.size());
+        assertEquals("removed value", "2", mc.remove("a"));
+        assertEquals("remove reveals the lower value", "1", mc.get("a"));
+        assertNull("remove of a key of a lower scope", mc.remove("a"));
+        assertEquals("a is still set in the lower scope", "1", mc.get("a"));
+        Map<String, Object> popped = mc.pop();
+        assertEquals("popped scope", UtilMisc.toMap("b", null, "c", "2"), popped);
+        assertEquals("b", "1", mc.get("b"));
+        assertFalse("c", mc.containsKey("c"));
+        assertNull("the last scope is not popped", mc.pop());
+        assertEquals("a", "1", mc.get("a"));
+    }
+
+    // Checks that the Maps pushed above scopes and the scopes above them keep the stack order.
+    @Test
+    public void existingMapsAndScopes() {
+        Map<String, Object> existing = new HashMap<>();
+        existing.put("a", "existing");
+        MapContext<String, Object> mc = new MapContext<>();
+        mc.push();
+        mc.put("a", "scope");
+        mc.put("b", "scope");
+        mc.push(existing);
+        assertEquals("pushed Map overrides the scope", "existing", mc.get("a"));
+        mc.push();
+        mc.put("a", "top");
+        mc.clear();
+        assertEquals("clear only empties the top scope", "existing", mc.get("a"));
+        mc.pop();
+        mc.put("c", "written");
+        assertEquals("writes go to the pushed Map", "written", existing.get("c"));
+        assertEquals("pushed Map is on the top", existing, mc.pop());
+        assertEquals("a", "scope", mc.get("a"));
+        assertEquals("b", "scope", mc.get("b"));
+    }
+
+    // Checks that stand alone stacks share the Maps of their source, like the global context of the screens.
+    @Test
+    public void standAloneStacksShareMaps() {
+        MapStack<String> context = MapStack.create();
+        context.put("a", "1");
+        MapStack<String> globalContext = context.standAloneStack();
+        context.push();
+        globalContext.put("b", "global");
+        assertEquals("write to the shared Map is seen", "global", context.get("b"));
+        MapStack<String> child = context.standAloneChildStack();
+        context.put("c", "parent");
+        assertEquals("write to the shared top Map is seen", "parent", child.get("c"));
+        child.put("d", "child");
+        assertFalse("write to the child scope is not seen", context.containsKey("d"));
+        assertEquals("context self reference", context, context.get("context"));
+        context.pop();
+        assertFalse("c", context.containsKey("c"));
+        assertEquals("a", "1", context.get("a"));
+        assertEquals("b", "global", context.get("b"));
+    }
 }
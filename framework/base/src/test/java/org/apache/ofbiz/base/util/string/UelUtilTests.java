@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.util.string;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.el.PropertyNotFoundException;
+
+import org.junit.Test;
+
+public class UelUtilTests {
+
+    private static Map<String, Object> createContext() {
+        Map<String, Object> orderHeader = new HashMap<>();
+        orderHeader.put("orderId", "WS10000");
+        orderHeader.put("statusId", "ORDER_APPROVED");
+        Map<String, Object> item = new HashMap<>();
+        item.put("productId", "GZ-1000");
+        Map<String, Object> context = new HashMap<>();
+        context.put("orderHeader", orderHeader);
+        context.put("orderItems", Arrays.asList(item));
+        context.put("nullValue", null);
+        context.put("date", new Date(1234567890L));
+        return context;
+    }
+
+    @Test
+    public void testParsePath() {
+        assertEquals("dotted path", Arrays.asList("a", "b", "c"), UelUtil.parsePath("${a.b.c}"));
+        assertEquals("bracketed path", Arrays.asList("a", "b c", 0, "d"), UelUtil.parsePath("${a['b c'][0].d}"));
+        assertNull("operator", UelUtil.parsePath("${a + b}"));
+        assertNull("keyword", UelUtil.parsePath("${empty}"));
+        assertNull("nested expression", UelUtil.parsePath("${a.${b}}"));
+        assertNull("not an expression", UelUtil.parsePath("a.b"));
+    }
+
+    @Test
+    public void testEvaluatePath() {
+        Map<String, Object> context = createContext();
+        assertEquals("map property", "WS10000", UelUtil.evaluate(context, "${orderHeader.orderId}"));
+        assertEquals("bracketed map property", "ORDER_APPROVED", UelUtil.evaluate(context, "${orderHeader['statusId']}"));
+        assertEquals("list element", "GZ-1000", UelUtil.evaluate(context, "${orderItems[0].productId}"));
+        assertNull("list index out of range", UelUtil.evaluate(context, "${orderItems[5].productId}"));
+        assertNull("missing map key", UelUtil.evaluate(context, "${orderHeader.missing}"));
+        assertNull("null intermediate", UelUtil.evaluate(context, "${nullValue.anything}"));
+        assertEquals("bean property", 1234567890L, UelUtil.evaluate(context, "${date.time}"));
+        try {
+            UelUtil.evaluate(context, "${unknown.property}");
+            fail("unknown variable - PropertyNotFoundException not thrown");
+        } catch (PropertyNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCachedExpressionIsContextFree() {
+        String expression = "${orderHeader.orderId == 'WS10000'}";
+        Map<String, Object> context = createContext();
+        assertEquals("first context", Boolean.TRUE, UelUtil.evaluate(context, expression));
+        Map<String, Object> otherHeader = new HashMap<>();
+        otherHeader.put("orderId", "WS10001");
+        Map<String, Object> otherContext = new HashMap<>();
+        otherContext.put("orderHeader", otherHeader);
+        assertEquals("second context", Boolean.FALSE, UelUtil.evaluate(otherContext, expression));
+        assertEquals("typed evaluation", "true", UelUtil.evaluate(context, expression, String.class));
+    }
+
+    @Test
+    public void testSetAndRemoveValue() {
+        Map<String, Object> context = new HashMap<>();
+        UelUtil.setValue(context, "${parameters.orderId}", String.class, "WS10000");
+        assertEquals("auto-vivified map", "WS10000", UelUtil.evaluate(context, "${parameters.orderId}"));
+        UelUtil.setValue(context, "${orderId}", String.class, "WS10001");
+        assertEquals("top-level variable", "WS10001", context.get("orderId"));
+        UelUtil.removeValue(context, "${parameters.orderId}");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parameters = (Map<String, Object>) context.get("parameters");
+        assertNull("removed map entry", parameters.get("orderId"));
+        UelUtil.setValue(context, UelUtil.prepareExpression("${items[]}"), String.class, "GZ-1000");
+        assertEquals("auto-vivified list", Arrays.asList("GZ-1000"), context.get("items"));
+    }
+}
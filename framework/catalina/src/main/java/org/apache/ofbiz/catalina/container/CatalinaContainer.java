@@ -73,6 +73,7 @@ import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.entity.util.EntityUtilProperties;
 import org.apache.ofbiz.webapp.WebAppUtil;
+import org.apache.ofbiz.webapp.stats.ServerHitWriter;
 import org.apache.tomcat.JarScanner;
 import org.apache.tomcat.util.IntrospectionUtils;
 import org.apache.tomcat.util.descriptor.web.FilterDef;
@@ -155,6 +156,8 @@ public class CatalinaContainer implements Container {
              * Happens usually when running tests. Output disabled unless in verbose */
             Debug.logVerbose(e, MODULE);
         }
+        // no more requests, write the server statistics still queued
+        ServerHitWriter.shutdown();
     }
 
     @Override
@@ -220,6 +220,17 @@ public class CommonServices {
         return ServiceUtil.returnSuccess();
     }
 
+    /**
+     * Clears the permissions cached for a user login, or for all the user logins when no user login is passed.
+     *@param dctx The DispatchContext that this service is operating in
+     *@param context Map containing the input parameters
+     *@return Map with the result of the service, the output parameters
+     */
+    public static Map<String, Object> clearSecurityPermissionCache(DispatchContext dctx, Map<String, ?> context) {
+        dctx.getSecurity().clearPermissionData((String) context.get("userLoginId"));
+        return ServiceUtil.returnSuccess();
+    }
+
     /**
      * Echo service; returns exactly what was sent.
      * This service does not have required parameters and does not validate
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the delegator reading and writing the Testing values of a {@link TestingState}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DelegatorBenchmark {
+
+    /** The index of the next Testing value read by a thread */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = 0;
+
+        int next() {
+            return index++;
+        }
+    }
+
+    @Benchmark
+    public GenericValue findOne(TestingState testing, Cursor cursor) throws GenericEntityException {
+        return testing.getDelegator().findOne("Testing", false, "testingId", testing.getTesting(cursor.next()).get("testingId"));
+    }
+
+    @Benchmark
+    public GenericValue findOneCache(TestingState testing, Cursor cursor) throws GenericEntityException {
+        return testing.getDelegator().findOne("Testing", true, "testingId", testing.getTesting(cursor.next()).get("testingId"));
+    }
+
+    @Benchmark
+    public List<GenericValue> queryList(TestingState testing) throws GenericEntityException {
+        return EntityQuery.use(testing.getDelegator()).from("Testing").where("testingTypeId", TestingState.TESTING_TYPE_ID)
+                .orderBy("testingId").queryList();
+    }
+
+    @Benchmark
+    public int storeAll(TestingState testing, Cursor cursor) throws GenericEntityException {
+        // every value is changed so that all of them are written
+        BigDecimal testingSize = BigDecimal.valueOf(cursor.next());
+        List<GenericValue> testings = testing.getTestings();
+        for (GenericValue value : testings) {
+            value.set("testingSize", testingSize);
+        }
+        return testing.getDelegator().storeAll(testings);
+    }
+}
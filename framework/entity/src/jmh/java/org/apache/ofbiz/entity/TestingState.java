@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.UtilDateTime;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The Testing values read and written by the benchmarks.
+ * <p>The values have the <code>JMH_BENCHMARK</code> testing type and are created in the <code>test</code> delegator
+ * before each benchmark, then removed after it.</p>
+ */
+@State(Scope.Benchmark)
+public class TestingState {
+
+    public static final String TESTING_TYPE_ID = "JMH_BENCHMARK";
+
+    /** The number of Testing values */
+    @Param({"100"})
+    public int rowCount;
+
+    private Delegator delegator;
+    private List<GenericValue> testings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException, GenericEntityException {
+        BenchmarkEnvironment.start();
+        delegator = DelegatorFactory.getDelegator(BenchmarkEnvironment.DELEGATOR_NAME);
+        // leftovers of an interrupted run
+        tearDown();
+
+        delegator.create("TestingType", "testingTypeId", TESTING_TYPE_ID, "description", "JMH benchmark");
+        testings = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            testings.add(delegator.makeValue("Testing", "testingId", String.format("JMH_%05d", i), "testingTypeId", TESTING_TYPE_ID,
+                    "testingName", "Testing " + i, "description", "JMH benchmark testing " + i, "testingSize", BigDecimal.valueOf(i),
+                    "testingDate", UtilDateTime.nowTimestamp()));
+        }
+        delegator.createAllByBatchProcess(testings);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws GenericEntityException {
+        delegator.removeByAnd("Testing", "testingTypeId", TESTING_TYPE_ID);
+        delegator.removeByAnd("TestingType", "testingTypeId", TESTING_TYPE_ID);
+        delegator.clearAllCaches();
+    }
+
+    /**
+     * Gets the delegator.
+     * @return the <code>test</code> delegator
+     */
+    public Delegator getDelegator() {
+        return delegator;
+    }
+
+    /**
+     * Gets a Testing value.
+     * @param index the index of the value, taken modulo the number of values
+     * @return the Testing value
+     */
+    public GenericValue getTesting(int index) {
+        return testings.get(Math.floorMod(index, testings.size()));
+    }
+
+    /**
+     * Gets the Testing values.
+     * @return the Testing values, in the order of their ID
+     */
+    public List<GenericValue> getTestings() {
+        return testings;
+    }
+}
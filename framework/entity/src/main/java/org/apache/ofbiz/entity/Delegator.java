@@ -756,6 +756,13 @@ public interface Delegator {
     /** Refreshes the ID sequencer clearing all cached bank values. */
     void refreshSequencer();
 
+    /**
+     * Returns the statistics of the ID sequence banks, one map per sequence name.
+     * @return the statistics, empty if no ID has been sequenced yet
+     * @see SequenceUtil#getBankStatistics()
+     */
+    List<Map<String, Object>> getSequenceBankStatistics();
+
     /**
      * <p>Remove the Entities from the List from the persistent store.</p>
      * <p>The List contains GenericEntity objects, can be either GenericPK or
@@ -765,6 +772,8 @@ public interface Delegator {
      * is like a removeByPrimary Key.</p>
      * <p>On the other hand, if a certain entity is an incomplete or non
      * primary key, if will behave like the removeByAnd method. </p>
+     * <p>Complete primary keys of the same entity are removed with batch
+     * deletes, the entity ECAs still running for each of them.</p>
      * <p>These updates all happen in one transaction, so they will either
      * all succeed or all fail, if the data source supports transactions.</p>
      * @param dummyPKs
@@ -897,6 +906,10 @@ public interface Delegator {
      * will either all succeed or all fail, if the data source supports
      * transactions. This is just like to othersToStore feature of the
      * GenericEntity on a create or store.</p>
+     * <p>Values are handled in chunks of the same entity: existing rows are
+     * looked up with one query per chunk, new values are inserted with one
+     * batch insert and changed fields are sent as batch updates. The entity
+     * ECAs still run for each value, before and after the batch of its chunk.</p>
      * @param storeOptions
      *            An instance of EntityStoreOptions that specifies advanced store
      *            options or null for default values.
@@ -921,6 +934,23 @@ public interface Delegator {
      */
     int storeByCondition(String entityName, Map<String, ? extends Object> fieldsToSet, EntityCondition condition) throws GenericEntityException;
 
+    /**
+     * <p>Store the Entities from the List GenericValue instances to the persistent
+     * store, the entities must already exist.</p>
+     * <p>Like the store method, only the fields present in each GenericValue are
+     * updated. Values of the same entity are sent as batch updates, one for each
+     * set of updated fields, and the entity ECAs still run for each value.</p>
+     * <p>These updates all happen in one transaction, so they
+     * will either all succeed or all fail, if the data source supports
+     * transactions.</p>
+     * @param values
+     *            List of GenericValue instances containing the entities to
+     *            store
+     * @return int representing number of rows effected by this operation
+     * @throws GenericEntityException
+     */
+    int updateAll(List<GenericValue> values) throws GenericEntityException;
+
     /**
      * Get use of Distributed Cache Clear mechanism status
      * @return boolean true if this delegator uses a Distributed Cache Clear mechanism
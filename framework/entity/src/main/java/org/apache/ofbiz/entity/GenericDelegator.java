@@ -22,9 +22,11 @@ package org.apache.ofbiz.entity;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -103,6 +105,8 @@ public class GenericDelegator implements Delegator {
      * when true all operations without a transaction will be wrapped in one; seems to be necessary for some (all?) XA aware connection pools,
      * and should improve overall stability and consistency */
     private static final boolean ALWAYS_USE_TRANS = true;
+    /** Number of values of the same entity looked up and written together by storeAll */
+    private static final int STORE_ALL_CHUNK_SIZE = 100;
     // TODO should this is be handled by tenant?
     private static final boolean SAVE_ENTITY_SYNC_REMOVE_INFO = UtilProperties.getPropertyAsBoolean("general", "saveEntitySyncRemoveInfo", false);
 
@@ -1384,67 +1388,274 @@ public class GenericDelegator implements Delegator {
         try {
             beganTransaction = TransactionUtil.begin();
 
-            for (GenericValue value: values) {
-                String entityName = value.getEntityName();
-                GenericPK primaryKey = value.getPrimaryKey();
-                GenericHelper helper = getEntityHelper(entityName);
+            for (List<GenericValue> entityValues: groupValuesByEntity(values, false)) {
+                numberChanged += storeAllOfEntity(entityValues, storeOptions);
+            }
+            TransactionUtil.commit(beganTransaction);
+            return numberChanged;
+        } catch (GenericEntityException e) {
+            String errMsg = "Failure in storeAll operation: " + e.toString() + ". Rolling back transaction.";
+            Debug.logError(e, errMsg, MODULE);
+            TransactionUtil.rollback(beganTransaction, errMsg, e);
+            throw new GenericEntityException(e);
+        }
+    }
 
-                // exists?
-                // NOTE: don't use findByPrimaryKey because we don't want to the ECA events to fire and such
-                if (!primaryKey.isPrimaryKey()) {
-                    throw new GenericModelException("[GenericDelegator.storeAll] One of the passed primary keys is not a valid primary key: "
-                            + primaryKey);
-                }
-                GenericValue existing;
-                try {
-                    existing = helper.findByPrimaryKey(primaryKey);
-                } catch (GenericEntityNotFoundException e) {
-                    existing = null;
-                }
+    /* (non-Javadoc)
+     * @see org.apache.ofbiz.entity.Delegator#updateAll(java.util.List)
+     */
+    @Override
+    public int updateAll(List<GenericValue> values) throws GenericEntityException {
+        if (values == null) {
+            return 0;
+        }
 
-                if (existing == null) {
-                    if (storeOptions.isCreateDummyFks()) {
-                        value.checkFks(true);
-                    }
-                    this.create(value);
-                    numberChanged++;
-                } else {
-                    // don't send fields that are the same, and if no fields have changed, update nothing
-                    ModelEntity modelEntity = value.getModelEntity();
-                    GenericValue toStore = GenericValue.create(this, modelEntity, value.getPrimaryKey());
-                    boolean atLeastOneField = false;
-                    Iterator<ModelField> nonPksIter = modelEntity.getNopksIterator();
-                    while (nonPksIter.hasNext()) {
-                        ModelField modelField = nonPksIter.next();
-                        String fieldName = modelField.getName();
-                        if (value.containsKey(fieldName)) {
-                            Object fieldValue = value.get(fieldName);
-                            Object oldValue = existing.get(fieldName);
-                            if (!Objects.equals(oldValue, fieldValue)) {
-                                toStore.put(fieldName, fieldValue);
-                                atLeastOneField = true;
-                            }
-                        }
-                    }
+        int numberChanged = 0;
 
-                    if (atLeastOneField) {
-                        if (storeOptions.isCreateDummyFks()) {
-                            value.checkFks(true);
-                        }
-                        numberChanged += this.store(toStore);
+        boolean beganTransaction = false;
+        try {
+            beganTransaction = TransactionUtil.begin();
+
+            for (List<GenericValue> entityValues: groupValuesByEntity(values, false)) {
+                ModelEntity modelEntity = entityValues.get(0).getModelEntity();
+                if (modelEntity instanceof ModelViewEntity || modelEntity.lock()) {
+                    // view entities and optimistic locking need the checks and refresh of the single operation
+                    for (GenericValue value: entityValues) {
+                        numberChanged += this.store(value);
                     }
+                    continue;
+                }
+                GenericHelper helper = getEntityHelper(modelEntity.getEntityName());
+                for (int start = 0; start < entityValues.size(); start += STORE_ALL_CHUNK_SIZE) {
+                    numberChanged += storeChangedChunk(helper, modelEntity,
+                            entityValues.subList(start, Math.min(start + STORE_ALL_CHUNK_SIZE, entityValues.size())));
                 }
             }
             TransactionUtil.commit(beganTransaction);
             return numberChanged;
         } catch (GenericEntityException e) {
-            String errMsg = "Failure in storeAll operation: " + e.toString() + ". Rolling back transaction.";
+            String errMsg = "Failure in updateAll operation: " + e.toString() + ". Rolling back transaction.";
             Debug.logError(e, errMsg, MODULE);
             TransactionUtil.rollback(beganTransaction, errMsg, e);
             throw new GenericEntityException(e);
         }
     }
 
+    /**
+     * Splits the values to store or remove in lists of values of the same entity, keeping the original order where it
+     * matters: a value joins the previous list of its entity only if no list started after that one is for an entity
+     * it references through a foreign key (or, when removing, for an entity referencing it), otherwise a new list is started.
+     */
+    private static <T extends GenericEntity> List<List<T>> groupValuesByEntity(List<T> values, boolean forRemove) {
+        List<List<T>> groups = new ArrayList<>();
+        Map<String, Integer> lastGroupByEntity = new HashMap<>();
+        Map<String, Set<String>> referencedEntities = new HashMap<>();
+        for (T value: values) {
+            String entityName = value.getEntityName();
+            Integer groupIndex = lastGroupByEntity.get(entityName);
+            if (groupIndex != null) {
+                for (int i = groupIndex + 1; i < groups.size(); i++) {
+                    GenericEntity otherValue = groups.get(i).get(0);
+                    boolean dependent = forRemove
+                            ? getReferencedEntities(otherValue.getModelEntity(), referencedEntities).contains(entityName)
+                            : getReferencedEntities(value.getModelEntity(), referencedEntities).contains(otherValue.getEntityName());
+                    if (dependent) {
+                        groupIndex = null;
+                        break;
+                    }
+                }
+            }
+            if (groupIndex == null) {
+                groups.add(new ArrayList<>());
+                groupIndex = groups.size() - 1;
+                lastGroupByEntity.put(entityName, groupIndex);
+            }
+            groups.get(groupIndex).add(value);
+        }
+        return groups;
+    }
+
+    private static Set<String> getReferencedEntities(ModelEntity modelEntity, Map<String, Set<String>> referencedEntities) {
+        return referencedEntities.computeIfAbsent(modelEntity.getEntityName(), k -> modelEntity.getRelationsOneList().stream()
+                .filter(modelRelation -> "one".equals(modelRelation.getType()))
+                .map(ModelRelation::getRelEntityName)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Stores values of a single entity, in chunks of STORE_ALL_CHUNK_SIZE values. A chunk is also closed when the same
+     * primary key shows up twice, so the second value sees the first one as existing.
+     */
+    private int storeAllOfEntity(List<GenericValue> values, EntityStoreOptions storeOptions) throws GenericEntityException {
+        ModelEntity modelEntity = values.get(0).getModelEntity();
+        int numberChanged = 0;
+        List<GenericValue> chunk = new ArrayList<>();
+        Set<GenericPK> chunkPrimaryKeys = new HashSet<>();
+        for (GenericValue value: values) {
+            GenericPK primaryKey = value.getPrimaryKey();
+            // NOTE: don't use findByPrimaryKey because we don't want to the ECA events to fire and such
+            if (!primaryKey.isPrimaryKey()) {
+                throw new GenericModelException("[GenericDelegator.storeAll] One of the passed primary keys is not a valid primary key: "
+                        + primaryKey);
+            }
+            if (chunk.size() >= STORE_ALL_CHUNK_SIZE || chunkPrimaryKeys.contains(primaryKey)) {
+                numberChanged += storeAllChunk(modelEntity, chunk, storeOptions);
+                chunk.clear();
+                chunkPrimaryKeys.clear();
+            }
+            chunk.add(value);
+            chunkPrimaryKeys.add(primaryKey);
+        }
+        if (!chunk.isEmpty()) {
+            numberChanged += storeAllChunk(modelEntity, chunk, storeOptions);
+        }
+        return numberChanged;
+    }
+
+    private int storeAllChunk(ModelEntity modelEntity, List<GenericValue> values, EntityStoreOptions storeOptions)
+            throws GenericEntityException {
+        GenericHelper helper = getEntityHelper(modelEntity.getEntityName());
+
+        // exists?
+        List<GenericPK> primaryKeys = new ArrayList<>(values.size());
+        for (GenericValue value: values) {
+            primaryKeys.add(value.getPrimaryKey());
+        }
+        Map<GenericPK, GenericValue> existingValues = new HashMap<>();
+        if (!storeOptions.isSkipExistenceCheck()) {
+            for (GenericValue existing: helper.findAllByPrimaryKeys(primaryKeys)) {
+                existingValues.put(existing.getPrimaryKey(), existing);
+            }
+        }
+
+        List<GenericValue> toCreate = new LinkedList<>();
+        List<GenericValue> toStore = new LinkedList<>();
+        for (GenericValue value: values) {
+            GenericValue existing = existingValues.get(value.getPrimaryKey());
+            GenericValue changed = existing == null ? value : getChangedValue(value, existing);
+            if (changed != null && storeOptions.isCreateDummyFks()) {
+                value.checkFks(true);
+            }
+            if (existing == null) {
+                toCreate.add(value);
+            } else if (changed != null) {
+                toStore.add(changed);
+            }
+        }
+
+        // view entities and optimistic locking need the checks and refresh of the single operations
+        if (modelEntity instanceof ModelViewEntity || modelEntity.lock()) {
+            for (GenericValue value: toCreate) {
+                this.create(value);
+            }
+            int numberChanged = toCreate.size();
+            for (GenericValue value: toStore) {
+                numberChanged += this.store(value);
+            }
+            return numberChanged;
+        }
+        return createAllChunk(helper, modelEntity, toCreate) + storeChangedChunk(helper, modelEntity, toStore);
+    }
+
+    /**
+     * Creates a list of values with one batch insert, running the entity ECAs of each value before and after the batch.
+     */
+    private int createAllChunk(GenericHelper helper, ModelEntity modelEntity, List<GenericValue> values) throws GenericEntityException {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        EntityEcaRuleRunner<?> ecaRunner = this.getEcaRuleRunner(modelEntity.getEntityName());
+        for (GenericValue value: values) {
+            ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_CREATE, value, false);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_CREATE, value, false);
+            value.setDelegator(this);
+
+            // if audit log on for any fields, save new value with no old value because it's a create
+            if (modelEntity.getHasFieldWithAuditLog()) {
+                createEntityAuditLogAll(value, false, false);
+            }
+        }
+
+        helper.createAll(values);
+
+        for (GenericValue value: values) {
+            if (testMode) {
+                storeForTestRollback(new TestOperation(OperationType.INSERT, value));
+            }
+            value.setDelegator(this);
+            // doCacheClear
+            ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_CREATE, value, false);
+            this.clearCacheLine(value);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_CREATE, value, false);
+        }
+        return values.size();
+    }
+
+    /**
+     * Stores a list of changed values with batch updates, running the entity ECAs of each value before and after the batch.
+     */
+    private int storeChangedChunk(GenericHelper helper, ModelEntity modelEntity, List<GenericValue> values) throws GenericEntityException {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        EntityEcaRuleRunner<?> ecaRunner = this.getEcaRuleRunner(modelEntity.getEntityName());
+        List<GenericValue> updatedEntities = testMode ? new LinkedList<>() : null;
+        for (GenericValue value: values) {
+            ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_STORE, value, false);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_STORE, value, false);
+
+            // if audit log on for any fields, save old value before the update so we still have both
+            if (modelEntity.getHasFieldWithAuditLog()) {
+                createEntityAuditLogAll(value, true, false);
+            }
+            if (testMode) {
+                updatedEntities.add(this.findOne(value.getEntityName(), value.getPrimaryKey(), false));
+            }
+        }
+
+        int retVal = helper.updateAll(values);
+
+        for (GenericValue value: values) {
+            // doCacheClear
+            ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_STORE, value, false);
+            this.clearCacheLine(value);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_STORE, value, false);
+        }
+        if (testMode) {
+            for (GenericValue updatedEntity: updatedEntities) {
+                storeForTestRollback(new TestOperation(OperationType.UPDATE, updatedEntity));
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Returns a value holding the primary key and the non primary key fields of <code>value</code> which differ from
+     * <code>existing</code>, or <code>null</code> if no field has changed.
+     */
+    private GenericValue getChangedValue(GenericValue value, GenericValue existing) {
+        // don't send fields that are the same, and if no fields have changed, update nothing
+        ModelEntity modelEntity = value.getModelEntity();
+        GenericValue toStore = GenericValue.create(this, modelEntity, value.getPrimaryKey());
+        // keep the original timestamps of synced data
+        toStore.setIsFromEntitySync(value.getIsFromEntitySync());
+        boolean atLeastOneField = false;
+        Iterator<ModelField> nonPksIter = modelEntity.getNopksIterator();
+        while (nonPksIter.hasNext()) {
+            ModelField modelField = nonPksIter.next();
+            String fieldName = modelField.getName();
+            if (value.containsKey(fieldName)) {
+                Object fieldValue = value.get(fieldName);
+                Object oldValue = existing.get(fieldName);
+                if (!Objects.equals(oldValue, fieldValue)) {
+                    toStore.put(fieldName, fieldValue);
+                    atLeastOneField = true;
+                }
+            }
+        }
+        return atLeastOneField ? toStore : null;
+    }
+
     /* (non-Javadoc)
      * @see org.apache.ofbiz.entity.Delegator#removeAll(java.lang.String)
      */
@@ -1466,12 +1677,32 @@ public class GenericDelegator implements Delegator {
         int numRemoved = 0;
 
         try {
-            for (GenericEntity value: dummyPKs) {
-                if (value.containsPrimaryKey()) {
-                    numRemoved += this.removeByPrimaryKey(value.getPrimaryKey());
-                } else {
-                    numRemoved += this.removeByAnd(value.getEntityName(), value.getAllFields());
+            beganTransaction = TransactionUtil.begin();
+
+            for (List<? extends GenericEntity> entityValues: groupValuesByEntity(dummyPKs, true)) {
+                ModelEntity modelEntity = entityValues.get(0).getModelEntity();
+                List<GenericPK> chunk = new ArrayList<>();
+                for (GenericEntity value: entityValues) {
+                    if (value.containsPrimaryKey() && !(modelEntity instanceof ModelViewEntity)) {
+                        GenericPK primaryKey = value.getPrimaryKey();
+                        primaryKey.setIsFromEntitySync(value.getIsFromEntitySync());
+                        chunk.add(primaryKey);
+                        if (chunk.size() >= STORE_ALL_CHUNK_SIZE) {
+                            numRemoved += removeAllChunk(modelEntity, chunk);
+                            chunk.clear();
+                        }
+                    } else {
+                        // keep the order with the values removed one by one
+                        numRemoved += removeAllChunk(modelEntity, chunk);
+                        chunk.clear();
+                        if (value.containsPrimaryKey()) {
+                            numRemoved += this.removeByPrimaryKey(value.getPrimaryKey());
+                        } else {
+                            numRemoved += this.removeByAnd(value.getEntityName(), value.getAllFields());
+                        }
+                    }
                 }
+                numRemoved += removeAllChunk(modelEntity, chunk);
             }
             TransactionUtil.commit(beganTransaction);
             return numRemoved;
@@ -1483,6 +1714,51 @@ public class GenericDelegator implements Delegator {
         }
     }
 
+    /**
+     * Removes a list of primary keys with one batch delete, running the entity ECAs of each key before and after the batch.
+     */
+    private int removeAllChunk(ModelEntity modelEntity, List<GenericPK> primaryKeys) throws GenericEntityException {
+        if (primaryKeys.isEmpty()) {
+            return 0;
+        }
+        EntityEcaRuleRunner<?> ecaRunner = this.getEcaRuleRunner(modelEntity.getEntityName());
+        GenericHelper helper = getEntityHelper(modelEntity.getEntityName());
+        List<GenericValue> removedEntities = testMode ? new LinkedList<>() : null;
+        for (GenericPK primaryKey: primaryKeys) {
+            ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+
+            // if audit log on for any fields, save old value before removing so it's still there
+            if (modelEntity.getHasFieldWithAuditLog()) {
+                createEntityAuditLogAll(this.findOne(primaryKey.getEntityName(), primaryKey, false), true, true);
+            }
+            if (testMode) {
+                removedEntities.add(this.findOne(primaryKey.getEntityName(), primaryKey, false));
+            }
+        }
+
+        int num = helper.deleteAll(primaryKeys);
+
+        for (GenericPK primaryKey: primaryKeys) {
+            // doCacheClear
+            ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+            this.clearCacheLine(primaryKey);
+
+            if (SAVE_ENTITY_SYNC_REMOVE_INFO) {
+                this.saveEntitySyncRemoveInfo(primaryKey);
+            }
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+        }
+        if (testMode) {
+            for (GenericValue removedEntity: removedEntities) {
+                if (removedEntity != null) {
+                    storeForTestRollback(new TestOperation(OperationType.DELETE, removedEntity));
+                }
+            }
+        }
+        return num;
+    }
+
     // ======================================
     // ======= Find Methods =================
     // ======================================
@@ -2467,6 +2743,12 @@ public class GenericDelegator implements Delegator {
         this.atomicRefSequence.set(null);
     }
 
+    @Override
+    public List<Map<String, Object>> getSequenceBankStatistics() {
+        SequenceUtil sequencer = this.atomicRefSequence.get();
+        return sequencer == null ? Collections.emptyList() : sequencer.getBankStatistics();
+    }
+
 
     /* (non-Javadoc)
      * @see org.apache.ofbiz.entity.Delegator#setNextSubSeqId(org.apache.ofbiz.entity.GenericValue, java.lang.String, int, int)
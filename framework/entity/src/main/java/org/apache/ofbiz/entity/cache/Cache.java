@@ -19,6 +19,7 @@
 package org.apache.ofbiz.entity.cache;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
@@ -60,6 +61,15 @@ public class Cache {
     public void remove(String entityName) {
         entityCache.remove(entityName);
         entityListCache.remove(entityName);
+        entityObjectCache.remove(entityName);
+    }
+
+    /**
+     * Gets the usage and invalidation counters of the entity list cache.
+     * @return the entity list cache statistics
+     */
+    public Map<String, Long> getEntityListCacheStatistics() {
+        return entityListCache.getStatistics();
     }
 
     /**
@@ -195,6 +205,7 @@ public class Cache {
         }
         GenericValue oldEntity = entityCache.remove(entity.getPrimaryKey());
         // Workaround because AbstractEntityConditionCache.storeHook doesn't work.
+        // The list cache only drops the conditions that may include the changed value.
         entityListCache.remove(entity);
         entityObjectCache.remove(entity);
         return oldEntity;
@@ -18,21 +18,54 @@
  *******************************************************************************/
 package org.apache.ofbiz.entity.cache;
 
+import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.ObjectType;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityConditionList;
+import org.apache.ofbiz.entity.condition.EntityConditionValue;
+import org.apache.ofbiz.entity.condition.EntityConditionVisitor;
+import org.apache.ofbiz.entity.condition.EntityDateFilterCondition;
+import org.apache.ofbiz.entity.condition.EntityExpr;
+import org.apache.ofbiz.entity.condition.EntityFieldMap;
+import org.apache.ofbiz.entity.condition.EntityFieldValue;
+import org.apache.ofbiz.entity.condition.EntityNotCondition;
+import org.apache.ofbiz.entity.condition.EntityWhereString;
+import org.apache.ofbiz.entity.config.model.Datasource;
+import org.apache.ofbiz.entity.config.model.EntityConfig;
 import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.model.ModelField;
+import org.apache.ofbiz.entity.model.ModelFieldType;
 import org.apache.ofbiz.entity.util.EntityUtil;
 
 
 public class EntityListCache extends AbstractEntityConditionCache<Object, List<GenericValue>> {
 
     private static final String MODULE = EntityListCache.class.getName();
+    private static final boolean INCREMENTAL_INVALIDATION = UtilProperties.getPropertyAsBoolean("cache",
+            "entity-list.incremental.invalidation", true);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictedCount = new LongAdder();
+    private final LongAdder retainedCount = new LongAdder();
+    private final LongAdder fullClearCount = new LongAdder();
 
     public EntityListCache(String delegatorName) {
         super(delegatorName, "entity-list");
@@ -58,6 +91,7 @@ public class EntityListCache extends AbstractEntityConditionCache<Object, List<G
     public List<GenericValue> get(String entityName, EntityCondition condition, List<String> orderBy) {
         ConcurrentMap<Object, List<GenericValue>> conditionCache = getConditionCache(entityName, condition);
         if (conditionCache == null) {
+            missCount.increment();
             return null;
         }
         Object orderByKey = getOrderByKey(orderBy);
@@ -77,6 +111,11 @@ public class EntityListCache extends AbstractEntityConditionCache<Object, List<G
                 conditionCache.put(orderByKey, valueList);
             }
         }
+        if (valueList != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
         return valueList;
     }
 
@@ -123,7 +162,265 @@ public class EntityListCache extends AbstractEntityConditionCache<Object, List<G
         return super.remove(entityName, condition, getOrderByKey(orderBy));
     }
 
+    /**
+     * Removes the cached lists that may be affected by a change of <code>entity</code>.
+     * <p>
+     * Instead of clearing every cached list of the entity, each cached condition is evaluated in memory: a list is
+     * dropped only when the changed value matches its condition, or when the list holds a row with the same primary
+     * key (the row as it was before the change). Conditions that can't be evaluated in memory as the database would
+     * (raw where strings, sub-selects, functions, values of another type than their field, strings of a case
+     * insensitive collation) are always dropped. The lists cached for the view entities built on this entity are
+     * cleared as their rows can't be traced back to the changed value.
+     * <p>
+     * All the lists of the entity are cleared when a condition can't be checked exactly: when it refers to a field
+     * missing from a partial value (a primary key only remove, a partial store), as this field keeps an unknown value
+     * in the database, or when the cached rows miss the primary key (lists of a subset of fields), as the row before
+     * the change can't be found in them.
+     * @param entity the created, updated or removed value, or a partial (flexible) primary key
+     */
+    @Override
+    public void remove(GenericEntity entity) {
+        if (!INCREMENTAL_INVALIDATION) {
+            fullClearCount.increment();
+            super.remove(entity);
+            return;
+        }
+        UtilCache<EntityCondition, ConcurrentMap<Object, List<GenericValue>>> entityCache = getCache(entity.getEntityName());
+        if (entityCache != null) {
+            for (EntityCondition condition : entityCache.getCacheLineKeys()) {
+                ConcurrentMap<Object, List<GenericValue>> conditionCache = entityCache.get(condition);
+                if (conditionCache == null) {
+                    continue;
+                }
+                Boolean affected = isAffected(condition, entity, conditionCache.values());
+                if (affected == null) {
+                    if (Debug.verboseOn()) {
+                        Debug.logVerbose("Clearing cache [" + entityCache.getName() + "], the condition " + condition
+                                + " can't be checked against " + entity, MODULE);
+                    }
+                    fullClearCount.increment();
+                    super.remove(entity);
+                    return;
+                }
+                if (affected) {
+                    if (Debug.verboseOn()) {
+                        Debug.logVerbose("Removing from cache [" + entityCache.getName() + "] entry with condition: " + condition, MODULE);
+                    }
+                    entityCache.remove(condition);
+                    evictedCount.increment();
+                } else {
+                    retainedCount.increment();
+                }
+            }
+        }
+        Iterator<String> it = entity.getModelEntity().getViewConvertorsIterator();
+        while (it.hasNext()) {
+            UtilCache.clearCache(getCacheName(it.next()));
+            fullClearCount.increment();
+        }
+    }
+
+    /**
+     * Checks if a cached condition is affected by a change.
+     * @return <code>null</code> when it can't be known, as the value or the cached rows miss some fields
+     */
+    private Boolean isAffected(EntityCondition condition, GenericEntity entity, Collection<List<GenericValue>> valueLists) {
+        if (condition == null || !isEvaluableInMemory(condition, entity.getModelEntity())) {
+            return true;
+        }
+        FieldAccessRecorder recorder = new FieldAccessRecorder(entity);
+        try {
+            boolean matches = condition.mapMatches(getDelegator(), recorder);
+            if (recorder.missingField) {
+                return null;
+            }
+            if (matches) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            Debug.logWarning(e, "Could not evaluate cached condition [" + condition + "] in memory, removing it from the cache", MODULE);
+            return true;
+        }
+        // check if the previous version of the value is part of the cached result
+        boolean fullPk = entity.containsPrimaryKey();
+        Map<String, Object> keyFields = fullPk ? entity.getPrimaryKey().getAllFields() : entity.getAllFields();
+        // all the lists of a condition hold the same values in a different order, so checking one is enough
+        Iterator<List<GenericValue>> valueListIt = valueLists.iterator();
+        if (valueListIt.hasNext()) {
+            for (GenericValue value : valueListIt.next()) {
+                if (!value.containsPrimaryKey()) {
+                    return null;
+                }
+                if (value.matchesFields(keyFields)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isEvaluableInMemory(EntityCondition condition, ModelEntity modelEntity) {
+        InMemoryEvaluableVisitor visitor = new InMemoryEvaluableVisitor(getDelegator(), modelEntity);
+        condition.accept(visitor);
+        return visitor.evaluable;
+    }
+
+    /**
+     * Gets the usage and invalidation counters of this cache.
+     * @return a map holding the hit, miss, evicted, retained and full clear counts
+     */
+    public Map<String, Long> getStatistics() {
+        return UtilMisc.toMap("hitCount", hitCount.sum(), "missCount", missCount.sum(), "evictedCount", evictedCount.sum(),
+                "retainedCount", retainedCount.sum(), "fullClearCount", fullClearCount.sum());
+    }
+
     public static final Object getOrderByKey(List<String> orderBy) {
         return orderBy != null ? (Object) orderBy : "{null}";
     }
+
+    /**
+     * Gives the fields of a changed value to a condition, recording if the condition reads a field the value doesn't hold.
+     */
+    private static final class FieldAccessRecorder extends AbstractMap<String, Object> {
+        private final GenericEntity entity;
+        private boolean missingField = false;
+
+        private FieldAccessRecorder(GenericEntity entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!entity.containsKey(key)) {
+                missingField = true;
+            }
+            return entity.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return entity.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return entity.entrySet();
+        }
+    }
+
+    /**
+     * Checks that a condition only holds expressions which {@link EntityCondition#mapMatches} evaluates as the database
+     * would: each expression compares a field of the entity to <code>null</code>, to values of the Java type of the
+     * field, or to a field of the same type. String fields are not evaluable when the datasource of the entity has a
+     * case insensitive collation.
+     */
+    private static final class InMemoryEvaluableVisitor implements EntityConditionVisitor {
+        private final Delegator delegator;
+        private final ModelEntity modelEntity;
+        private final boolean caseInsensitive;
+        private boolean evaluable = true;
+
+        private InMemoryEvaluableVisitor(Delegator delegator, ModelEntity modelEntity) {
+            this.delegator = delegator;
+            this.modelEntity = modelEntity;
+            Datasource datasource = EntityConfig.getDatasource(delegator.getEntityHelperName(modelEntity));
+            String collate = datasource != null ? datasource.getCollate() : null;
+            this.caseInsensitive = collate != null && collate.toLowerCase(Locale.ROOT).contains("_ci");
+        }
+
+        @Override
+        public void visit(EntityNotCondition cond) {
+            cond.getCondition().accept(this);
+        }
+
+        @Override
+        public <T extends EntityCondition> void visit(EntityConditionList<T> l) {
+            Iterator<T> it = l.getConditionIterator();
+            while (evaluable && it.hasNext()) {
+                it.next().accept(this);
+            }
+        }
+
+        @Override
+        public void visit(EntityFieldMap m) {
+            for (EntityExpr expr : m.getConditions()) {
+                expr.accept(this);
+                if (!evaluable) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void visit(EntityDateFilterCondition df) {
+        }
+
+        @Override
+        public void visit(EntityExpr expr) {
+            Object lhs = expr.getLhs();
+            Object rhs = expr.getRhs();
+            if (lhs instanceof EntityCondition) {
+                ((EntityCondition) lhs).accept(this);
+                if (evaluable && rhs instanceof EntityCondition) {
+                    ((EntityCondition) rhs).accept(this);
+                }
+                return;
+            }
+            Class<?> fieldClass = getFieldClass(lhs);
+            if (fieldClass == null) {
+                evaluable = false;
+            } else if (rhs instanceof EntityConditionValue) {
+                evaluable = fieldClass.equals(getFieldClass(rhs));
+            } else if (rhs instanceof Collection<?>) {
+                for (Object value : (Collection<?>) rhs) {
+                    if (!hasClass(value, fieldClass)) {
+                        evaluable = false;
+                        return;
+                    }
+                }
+            } else {
+                evaluable = rhs == null || rhs == GenericEntity.NULL_FIELD || hasClass(rhs, fieldClass);
+            }
+        }
+
+        @Override
+        public void visit(EntityWhereString ws) {
+            evaluable = false;
+        }
+
+        private static boolean hasClass(Object value, Class<?> fieldClass) {
+            return value != null && value.getClass().equals(fieldClass);
+        }
+
+        /**
+         * Gets the Java class of the values of a plain field of the entity.
+         * @return <code>null</code> when the operand is not such a field (a function, a sub-select, a view alias), or when
+         * its values can't be compared in memory
+         */
+        private Class<?> getFieldClass(Object operand) {
+            if (operand == null || operand.getClass() != EntityFieldValue.class) {
+                return null;
+            }
+            EntityFieldValue fieldValue = (EntityFieldValue) operand;
+            ModelField modelField = modelEntity.getField(fieldValue.getFieldName());
+            if (modelField == null || modelField != fieldValue.getModelField(modelEntity)) {
+                return null;
+            }
+            try {
+                ModelFieldType type = delegator.getEntityFieldType(modelEntity, modelField.getType());
+                if (type == null) {
+                    return null;
+                }
+                Class<?> fieldClass = ObjectType.loadClass(type.getJavaType());
+                if (caseInsensitive && String.class.equals(fieldClass)) {
+                    return null;
+                }
+                return fieldClass;
+            } catch (GenericEntityException | ClassNotFoundException e) {
+                Debug.logWarning(e, "Could not find the Java type of the field [" + modelField.getName() + "] of the entity ["
+                        + modelEntity.getEntityName() + "]", MODULE);
+                return null;
+            }
+        }
+    }
 }
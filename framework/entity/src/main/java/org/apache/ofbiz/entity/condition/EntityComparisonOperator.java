@@ -20,9 +20,9 @@
 package org.apache.ofbiz.entity.condition;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.PatternFactory;
@@ -215,7 +215,7 @@ public abstract class EntityComparisonOperator<L, R> extends EntityOperator<L, R
             if (rhs != null) {
                 return false;
             }
-        } else if (!lhs.equals(rhs)) {
+        } else if (!valueEquals(lhs, rhs)) {
             return false;
         }
         return true;
@@ -226,7 +226,7 @@ public abstract class EntityComparisonOperator<L, R> extends EntityOperator<L, R
             if (rhs == null) {
                 return false;
             }
-        } else if (lhs.equals(rhs)) {
+        } else if (valueEquals(lhs, rhs)) {
             return false;
         }
         return true;
@@ -278,10 +278,30 @@ public abstract class EntityComparisonOperator<L, R> extends EntityOperator<L, R
 
     public static final <L, R extends L> boolean compareIn(L lhs, R rhs) {
         if (rhs instanceof Collection && lhs != null) {
-            return (((Collection<?>) rhs).contains(lhs));
+            for (Object value : (Collection<?>) rhs) {
+                if (valueEquals(lhs, value)) {
+                    return true;
+                }
+            }
+            return false;
         } else {
-            return Objects.equals(lhs, rhs);
+            return lhs == null ? rhs == null : valueEquals(lhs, rhs);
+        }
+    }
+
+    /**
+     * Checks if two values are equal the way the database compares them: numbers and dates of the same class are
+     * compared by value, so a <code>BigDecimal</code> with another scale is equal.
+     * @param lhs the left value, not <code>null</code>
+     * @param rhs the right value
+     * @return <code>true</code> if the values are equal
+     */
+    private static boolean valueEquals(Object lhs, Object rhs) {
+        if (rhs != null && lhs.getClass() == rhs.getClass() && lhs instanceof Comparable<?>
+                && (lhs instanceof Number || lhs instanceof Date)) {
+            return UtilGenerics.<Comparable<Object>>cast(lhs).compareTo(rhs) == 0;
         }
+        return lhs.equals(rhs);
     }
 
     public static final <L, R> boolean compareLike(L lhs, R rhs) {
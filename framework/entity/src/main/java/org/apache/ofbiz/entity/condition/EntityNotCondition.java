@@ -43,6 +43,14 @@ public class EntityNotCondition implements EntityCondition {
         condition = cond;
     }
 
+    /**
+     * Gets the negated condition expression.
+     * @return the negated condition
+     */
+    public EntityCondition getCondition() {
+        return condition;
+    }
+
     @Override
     public void accept(EntityConditionVisitor visitor) {
         visitor.visit(this);
@@ -261,6 +261,19 @@ public abstract class EntityOperator<L, R> implements Serializable {
         codeString = code;
     }
 
+    /**
+     * Replaces a deserialized operator by the registered one, operators are compared by identity.
+     * @return the registered operator with the same id
+     */
+    protected Object readResolve() {
+        for (EntityOperator<?, ?> operator : registry.values()) {
+            if (operator.idInt == idInt) {
+                return operator;
+            }
+        }
+        return this;
+    }
+
     /**
      * Gets code.
      * @return the code
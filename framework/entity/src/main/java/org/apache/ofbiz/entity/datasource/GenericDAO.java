@@ -20,12 +20,15 @@ package org.apache.ofbiz.entity.datasource;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +46,7 @@ import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericEntityNotFoundException;
 import org.apache.ofbiz.entity.GenericModelException;
 import org.apache.ofbiz.entity.GenericNotImplementedException;
+import org.apache.ofbiz.entity.GenericPK;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
 import org.apache.ofbiz.entity.condition.EntityConditionParam;
@@ -101,6 +105,63 @@ public class GenericDAO {
         fieldsToSave.add(modelEntity.getField(fieldName));
     }
 
+    private static void setCreateStamps(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        // if we have a STAMP_TX_FIELD or CREATE_STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
+        // NOTE: these fairly complicated if statements have a few objectives:
+        //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
+        //   2. don't set the stamp values if it is from an EntitySync (ie maintain original values), unless the stamps are null then set it
+        // anyway, ie even if it was from an EntitySync (also used for imports and such)
+        boolean stampTxIsField = modelEntity.isField(ModelEntity.STAMP_TX_FIELD);
+        boolean createStampTxIsField = modelEntity.isField(ModelEntity.CREATE_STAMP_TX_FIELD);
+        if ((stampTxIsField || createStampTxIsField) && (!entity.getIsFromEntitySync()
+                || (stampTxIsField && entity.get(ModelEntity.STAMP_TX_FIELD) == null)
+                || (createStampTxIsField && entity.get(ModelEntity.CREATE_STAMP_TX_FIELD) == null))) {
+            Timestamp txStartStamp = TransactionUtil.getTransactionStartStamp();
+            if (stampTxIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_TX_FIELD) == null)) {
+                entity.set(ModelEntity.STAMP_TX_FIELD, txStartStamp);
+                addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_TX_FIELD, modelEntity);
+            }
+            if (createStampTxIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.CREATE_STAMP_TX_FIELD) == null)) {
+                entity.set(ModelEntity.CREATE_STAMP_TX_FIELD, txStartStamp);
+                addFieldIfMissing(fieldsToSave, ModelEntity.CREATE_STAMP_TX_FIELD, modelEntity);
+            }
+        }
+
+        // if we have a STAMP_FIELD or CREATE_STAMP_FIELD then set it with NOW
+        boolean stampIsField = modelEntity.isField(ModelEntity.STAMP_FIELD);
+        boolean createStampIsField = modelEntity.isField(ModelEntity.CREATE_STAMP_FIELD);
+        if ((stampIsField || createStampIsField) && (!entity.getIsFromEntitySync() || (stampIsField && entity.get(ModelEntity.STAMP_FIELD) == null)
+                || (createStampIsField && entity.get(ModelEntity.CREATE_STAMP_FIELD) == null))) {
+            Timestamp startStamp = TransactionUtil.getTransactionUniqueNowStamp();
+            if (stampIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_FIELD) == null)) {
+                entity.set(ModelEntity.STAMP_FIELD, startStamp);
+                addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
+            }
+            if (createStampIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.CREATE_STAMP_FIELD) == null)) {
+                entity.set(ModelEntity.CREATE_STAMP_FIELD, startStamp);
+                addFieldIfMissing(fieldsToSave, ModelEntity.CREATE_STAMP_FIELD, modelEntity);
+            }
+        }
+    }
+
+    private static void setUpdateStamps(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
+        // if we have a STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
+        // NOTE: these fairly complicated if statements have a few objectives:
+        //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
+        //   2. don't set the stamp values if it is from an EntitySync (ie maintain original values), unless the stamps are null then set it
+        // anyway, ie even if it was from an EntitySync (also used for imports and such)
+        if (modelEntity.isField(ModelEntity.STAMP_TX_FIELD) && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_TX_FIELD) == null)) {
+            entity.set(ModelEntity.STAMP_TX_FIELD, TransactionUtil.getTransactionStartStamp());
+            addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_TX_FIELD, modelEntity);
+        }
+
+        // if we have a STAMP_FIELD then update it with NOW.
+        if (modelEntity.isField(ModelEntity.STAMP_FIELD) && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_FIELD) == null)) {
+            entity.set(ModelEntity.STAMP_FIELD, TransactionUtil.getTransactionUniqueNowStamp());
+            addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
+        }
+    }
+
     /**
      * Insert int.
      * @param entity the entity
@@ -160,10 +221,11 @@ public class GenericDAO {
         try {
             sqlP.prepareStatement(sqlB.toString());
             for (GenericEntity ent : entities) {
+                setCreateStamps(ent, modelEntity, fieldsToSave);
                 SqlJdbcUtil.setValues(sqlP, fieldsToSave, ent, modelFieldTypeReader);
                 sqlP.addBatch();
             }
-            int retVal = sqlP.executeBatch();
+            int retVal = countBatchRows(sqlP.executeBatchUpdateCounts(), entities, false);
 
             for (GenericEntity ent : entities) {
                 ent.synchronizedWithDatasource();
@@ -180,42 +242,7 @@ public class GenericDAO {
             return singleUpdateView(entity, (ModelViewEntity) modelEntity, fieldsToSave, sqlP);
         }
 
-        // if we have a STAMP_TX_FIELD or CREATE_STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
-        // NOTE: these fairly complicated if statements have a few objectives:
-        //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
-        //   2. don't set the stamp values if it is from an EntitySync (ie maintain original values), unless the stamps are null then set it
-        // anyway, ie even if it was from an EntitySync (also used for imports and such)
-        boolean stampTxIsField = modelEntity.isField(ModelEntity.STAMP_TX_FIELD);
-        boolean createStampTxIsField = modelEntity.isField(ModelEntity.CREATE_STAMP_TX_FIELD);
-        if ((stampTxIsField || createStampTxIsField) && (!entity.getIsFromEntitySync()
-                || (stampTxIsField && entity.get(ModelEntity.STAMP_TX_FIELD) == null)
-                || (createStampTxIsField && entity.get(ModelEntity.CREATE_STAMP_TX_FIELD) == null))) {
-            Timestamp txStartStamp = TransactionUtil.getTransactionStartStamp();
-            if (stampTxIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_TX_FIELD) == null)) {
-                entity.set(ModelEntity.STAMP_TX_FIELD, txStartStamp);
-                addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_TX_FIELD, modelEntity);
-            }
-            if (createStampTxIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.CREATE_STAMP_TX_FIELD) == null)) {
-                entity.set(ModelEntity.CREATE_STAMP_TX_FIELD, txStartStamp);
-                addFieldIfMissing(fieldsToSave, ModelEntity.CREATE_STAMP_TX_FIELD, modelEntity);
-            }
-        }
-
-        // if we have a STAMP_FIELD or CREATE_STAMP_FIELD then set it with NOW
-        boolean stampIsField = modelEntity.isField(ModelEntity.STAMP_FIELD);
-        boolean createStampIsField = modelEntity.isField(ModelEntity.CREATE_STAMP_FIELD);
-        if ((stampIsField || createStampIsField) && (!entity.getIsFromEntitySync() || (stampIsField && entity.get(ModelEntity.STAMP_FIELD) == null)
-                || (createStampIsField && entity.get(ModelEntity.CREATE_STAMP_FIELD) == null))) {
-            Timestamp startStamp = TransactionUtil.getTransactionUniqueNowStamp();
-            if (stampIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_FIELD) == null)) {
-                entity.set(ModelEntity.STAMP_FIELD, startStamp);
-                addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
-            }
-            if (createStampIsField && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.CREATE_STAMP_FIELD) == null)) {
-                entity.set(ModelEntity.CREATE_STAMP_FIELD, startStamp);
-                addFieldIfMissing(fieldsToSave, ModelEntity.CREATE_STAMP_FIELD, modelEntity);
-            }
-        }
+        setCreateStamps(entity, modelEntity, fieldsToSave);
 
         StringBuilder sqlB = new StringBuilder("INSERT INTO ").append(modelEntity.getTableName(datasource)).append(" (");
 
@@ -272,6 +299,122 @@ public class GenericDAO {
         return customUpdate(entity, modelEntity, partialFields);
     }
 
+    /**
+     * Update in database the non primary key fields present in each GenericValue, all values being of the same entity.
+     * Values updating the same set of fields share one prepared statement and are sent as a JDBC batch.
+     * @param entities the values to update
+     * @return number of entity updated in database
+     * @throws GenericEntityException
+     */
+    public int updateAll(List<GenericValue> entities) throws GenericEntityException {
+        if (UtilValidate.isEmpty(entities)) {
+            return 0;
+        }
+        GenericEntity entity = entities.get(0);
+        ModelEntity modelEntity = entity.getModelEntity();
+        if (modelEntity instanceof ModelViewEntity || modelEntity.lock()) {
+            // views and optimistic locking need the row by row checks of the single update
+            int retVal = 0;
+            for (GenericValue value : entities) {
+                retVal += update(value);
+            }
+            return retVal;
+        }
+
+        int retVal = 0;
+        Map<List<ModelField>, List<GenericValue>> valuesByFields = new LinkedHashMap<>();
+        for (GenericValue value : entities) {
+            List<ModelField> partialFields = new ArrayList<>();
+            Collection<String> keys = value.getAllKeys();
+            Iterator<ModelField> nopkIter = modelEntity.getNopksIterator();
+            while (nopkIter.hasNext()) {
+                ModelField curField = nopkIter.next();
+                if (keys.contains(curField.getName())) {
+                    partialFields.add(curField);
+                }
+            }
+            if (partialFields.isEmpty()) {
+                // same as a single update, nothing to do but count it as updated
+                retVal++;
+                continue;
+            }
+            setUpdateStamps(value, modelEntity, partialFields);
+            valuesByFields.computeIfAbsent(partialFields, k -> new LinkedList<>()).add(value);
+        }
+
+        try (SQLProcessor sqlP = new SQLProcessor(entity.getDelegator(), helperInfo)) {
+            try {
+                for (Map.Entry<List<ModelField>, List<GenericValue>> entry : valuesByFields.entrySet()) {
+                    retVal += multiUpdate(entry.getValue(), modelEntity, entry.getKey(), sqlP);
+                }
+                return retVal;
+            } catch (GenericEntityException e) {
+                sqlP.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private int multiUpdate(List<GenericValue> entities, ModelEntity modelEntity, List<ModelField> fieldsToSave, SQLProcessor sqlP)
+            throws GenericEntityException {
+        StringBuilder sql = new StringBuilder().append("UPDATE ").append(modelEntity.getTableName(datasource)).append(" SET ");
+        modelEntity.colNameString(fieldsToSave, sql, "", "=?, ", "=?", false);
+        sql.append(" WHERE ");
+        modelEntity.colNameString(modelEntity.getPkFieldsUnmodifiable(), sql, "", "=? AND ", "=?", false);
+
+        int retVal;
+        try {
+            sqlP.prepareStatement(sql.toString());
+            for (GenericEntity ent : entities) {
+                SqlJdbcUtil.setValues(sqlP, fieldsToSave, ent, modelFieldTypeReader);
+                SqlJdbcUtil.setValues(sqlP, modelEntity.getPkFieldsUnmodifiable(), ent, modelFieldTypeReader);
+                sqlP.addBatch();
+            }
+            retVal = countBatchRows(sqlP.executeBatchUpdateCounts(), entities, true);
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Updated " + retVal + " rows of " + modelEntity.getEntityName() + " with a batch of "
+                        + entities.size() + " statements", MODULE);
+            }
+            for (GenericEntity ent : entities) {
+                ent.synchronizedWithDatasource();
+            }
+        } catch (GenericEntityNotFoundException e) {
+            throw e;
+        } catch (GenericEntityException | SQLException e) {
+            throw new GenericEntityException("Error while updating: " + sql, e);
+        }
+        return retVal;
+    }
+
+    /**
+     * Counts the rows changed by a JDBC batch, checking the update count of each statement. A statement the driver
+     * reports as successful without a row count ({@link Statement#SUCCESS_NO_INFO}) counts as one row, so with such a
+     * driver a missing row can't be detected.
+     * @param updateCounts the update counts returned by the batch
+     * @param entities the values of the statements, in the order of the batch
+     * @param mustExist <code>true</code> if each statement must change a row, as an update of an existing value
+     * @return the number of rows changed
+     * @throws GenericEntityException if a statement failed, or changed no row while it must
+     */
+    static int countBatchRows(int[] updateCounts, List<? extends GenericEntity> entities, boolean mustExist)
+            throws GenericEntityException {
+        int retVal = 0;
+        Iterator<? extends GenericEntity> entityIt = entities.iterator();
+        for (int updateCount : updateCounts) {
+            GenericEntity entity = entityIt.next();
+            if (updateCount == Statement.SUCCESS_NO_INFO) {
+                retVal++;
+            } else if (updateCount == Statement.EXECUTE_FAILED) {
+                throw new GenericDataSourceException("The batch statement failed for " + entity.getPrimaryKey());
+            } else if (updateCount == 0 && mustExist) {
+                throw new GenericEntityNotFoundException("Tried to update an entity that does not exist: " + entity.getPrimaryKey());
+            } else {
+                retVal += updateCount;
+            }
+        }
+        return retVal;
+    }
+
     private int customUpdate(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) throws GenericEntityException {
         try (SQLProcessor sqlP = new SQLProcessor(entity.getDelegator(), helperInfo)) {
             try {
@@ -314,21 +457,7 @@ public class GenericDAO {
             }
         }
 
-        // if we have a STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
-        // NOTE: these fairly complicated if statements have a few objectives:
-        //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
-        //   2. don't set the stamp values if it is from an EntitySync (ie maintain original values), unless the stamps are null then set it
-        // anyway, ie even if it was from an EntitySync (also used for imports and such)
-        if (modelEntity.isField(ModelEntity.STAMP_TX_FIELD) && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_TX_FIELD) == null)) {
-            entity.set(ModelEntity.STAMP_TX_FIELD, TransactionUtil.getTransactionStartStamp());
-            addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_TX_FIELD, modelEntity);
-        }
-
-        // if we have a STAMP_FIELD then update it with NOW.
-        if (modelEntity.isField(ModelEntity.STAMP_FIELD) && (!entity.getIsFromEntitySync() || entity.get(ModelEntity.STAMP_FIELD) == null)) {
-            entity.set(ModelEntity.STAMP_FIELD, TransactionUtil.getTransactionUniqueNowStamp());
-            addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
-        }
+        setUpdateStamps(entity, modelEntity, fieldsToSave);
 
         StringBuilder sql = new StringBuilder().append("UPDATE ").append(modelEntity.getTableName(datasource)).append(" SET ");
         modelEntity.colNameString(fieldsToSave, sql, "", "=?, ", "=?", false);
@@ -851,6 +980,9 @@ public class GenericDAO {
         // OFFSET clause
         makeOffsetString(sqlBuffer, findOptions);
 
+        // FOR UPDATE clause
+        makeForUpdateString(sqlBuffer, findOptions);
+
         // make the final SQL String
         String sql = sqlBuffer.toString();
 
@@ -1058,6 +1190,23 @@ public class GenericDAO {
         return offsetString;
     }
 
+    /**
+     * Appends the row locking clause requested by the find options: <code>FOR UPDATE</code>, followed by
+     * <code>SKIP LOCKED</code> when it is requested and the datasource supports it.
+     * @param forUpdateString the for update string
+     * @param findOptions the find options
+     * @return the string builder
+     */
+    protected StringBuilder makeForUpdateString(StringBuilder forUpdateString, EntityFindOptions findOptions) {
+        if (findOptions.getForUpdate()) {
+            forUpdateString.append(" FOR UPDATE");
+            if (findOptions.getSkipLocked() && datasource.getUseSkipLocked()) {
+                forUpdateString.append(" SKIP LOCKED");
+            }
+        }
+        return forUpdateString;
+    }
+
     /**
      * Select by multi relation list.
      * @param value the value
@@ -1383,6 +1532,49 @@ public class GenericDAO {
         return retVal;
     }
 
+    /**
+     * Delete from database all GenericPK of the same entity with one JDBC batch
+     * @param primaryKeys the primary keys of the rows to delete
+     * @return number of entity deleted from database
+     * @throws GenericEntityException
+     */
+    public int deleteAll(List<GenericPK> primaryKeys) throws GenericEntityException {
+        if (UtilValidate.isEmpty(primaryKeys)) {
+            return 0;
+        }
+        GenericEntity entity = primaryKeys.get(0);
+        ModelEntity modelEntity = entity.getModelEntity();
+        if (modelEntity instanceof ModelViewEntity) {
+            throw new GenericNotImplementedException("Operation delete not supported yet for view entities");
+        }
+
+        StringBuilder sql = new StringBuilder().append("DELETE FROM ").append(modelEntity.getTableName(datasource)).append(" WHERE ");
+        modelEntity.colNameString(modelEntity.getPkFieldsUnmodifiable(), sql, "", "=? AND ", "=?", false);
+
+        try (SQLProcessor sqlP = new SQLProcessor(entity.getDelegator(), helperInfo)) {
+            try {
+                sqlP.prepareStatement(sql.toString());
+                for (GenericPK primaryKey : primaryKeys) {
+                    SqlJdbcUtil.setValues(sqlP, modelEntity.getPkFieldsUnmodifiable(), primaryKey, modelFieldTypeReader);
+                    sqlP.addBatch();
+                }
+                int retVal = countBatchRows(sqlP.executeBatchUpdateCounts(), primaryKeys, false);
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Deleted " + retVal + " rows of " + modelEntity.getEntityName() + " with a batch of "
+                            + primaryKeys.size() + " statements", MODULE);
+                }
+
+                for (GenericPK primaryKey : primaryKeys) {
+                    primaryKey.removedFromDatasource();
+                }
+                return retVal;
+            } catch (GenericEntityException | SQLException e) {
+                sqlP.rollback();
+                throw new GenericDataSourceException("Exception while deleting: " + sql, e);
+            }
+        }
+    }
+
     /**
      * Delete by condition int.
      * @param delegator the delegator
@@ -85,6 +85,12 @@ public interface GenericHelper {
      */
     int removeByPrimaryKey(GenericPK primaryKey) throws GenericEntityException;
 
+    /** Remove the Generic Entities corresponding to a list of primary keys of the same entity, all in one batch
+     *@param primaryKeys The primary keys of the entities to remove.
+     *@return int representing number of rows effected by this operation
+     */
+    int deleteAll(List<GenericPK> primaryKeys) throws GenericEntityException;
+
     List<GenericValue> findByMultiRelation(GenericValue value, ModelRelation modelRelationOne, ModelEntity modelEntityOne,
             ModelRelation modelRelationTwo, ModelEntity modelEntityTwo, List<String> orderBy) throws GenericEntityException;
 
@@ -135,6 +141,12 @@ public interface GenericHelper {
      */
     int store(GenericValue value) throws GenericEntityException;
 
+    /** Store a list of GenericValue of the same entity to the persistent store, values changing the same fields being sent in one batch
+     *@param values List of GenericValue instances containing the entities
+     *@return int representing number of rows effected by this operation
+     */
+    int updateAll(List<GenericValue> values) throws GenericEntityException;
+
     /** Check the datasource to make sure the entity definitions are correct, optionally adding missing entities or fields on the server
      *@param modelEntities Map of entityName names and ModelEntity values
      *@param messages List to put any result messages in
@@ -18,21 +18,27 @@
  *******************************************************************************/
 package org.apache.ofbiz.entity.datasource;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericPK;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.entity.model.ModelEntity;
 import org.apache.ofbiz.entity.model.ModelField;
 import org.apache.ofbiz.entity.model.ModelRelation;
+import org.apache.ofbiz.entity.model.ModelViewEntity;
 import org.apache.ofbiz.entity.util.EntityFindOptions;
 import org.apache.ofbiz.entity.util.EntityListIterator;
 
@@ -43,6 +49,7 @@ import org.apache.ofbiz.entity.util.EntityListIterator;
 public class GenericHelperDAO implements GenericHelper {
 
     private static final String MODULE = GenericHelperDAO.class.getName();
+    private static final int FIND_CHUNK_SIZE = 100;
 
     private GenericDAO genericDAO;
     private GenericHelperInfo helperInfo;
@@ -126,16 +133,60 @@ public class GenericHelperDAO implements GenericHelper {
     @Override
     public List<GenericValue> findAllByPrimaryKeys(List<GenericPK> primaryKeys) throws GenericEntityException {
         if (primaryKeys == null) return null;
-        List<GenericValue> results = new LinkedList<>();
 
+        // look the keys up entity by entity, FIND_CHUNK_SIZE keys per query
+        Map<String, List<GenericPK>> primaryKeysByEntity = new LinkedHashMap<>();
+        for (GenericPK primaryKey: primaryKeys) {
+            primaryKeysByEntity.computeIfAbsent(primaryKey.getEntityName(), k -> new LinkedList<>()).add(primaryKey);
+        }
+        Map<GenericPK, GenericValue> found = new HashMap<>();
+        for (List<GenericPK> entityPrimaryKeys: primaryKeysByEntity.values()) {
+            ModelEntity modelEntity = entityPrimaryKeys.get(0).getModelEntity();
+            if (modelEntity instanceof ModelViewEntity || modelEntity.getPksSize() == 0) {
+                for (GenericPK primaryKey: entityPrimaryKeys) {
+                    GenericValue result = this.findByPrimaryKey(primaryKey);
+                    if (result != null) found.put(primaryKey, result);
+                }
+                continue;
+            }
+            Delegator delegator = entityPrimaryKeys.get(0).getDelegator();
+            for (int start = 0; start < entityPrimaryKeys.size(); start += FIND_CHUNK_SIZE) {
+                List<GenericPK> chunk = entityPrimaryKeys.subList(start, Math.min(start + FIND_CHUNK_SIZE, entityPrimaryKeys.size()));
+                try (EntityListIterator eli = genericDAO.selectListIteratorByCondition(delegator, modelEntity,
+                        makePrimaryKeysCondition(modelEntity, chunk), null, null, null, null)) {
+                    GenericValue result;
+                    while ((result = eli.next()) != null) {
+                        found.put(result.getPrimaryKey(), result);
+                    }
+                }
+            }
+        }
+
+        List<GenericValue> results = new LinkedList<>();
         for (GenericPK primaryKey: primaryKeys) {
-            GenericValue result = this.findByPrimaryKey(primaryKey);
+            GenericValue result = found.get(primaryKey);
 
             if (result != null) results.add(result);
         }
         return results;
     }
 
+    private static EntityCondition makePrimaryKeysCondition(ModelEntity modelEntity, List<GenericPK> primaryKeys) {
+        if (modelEntity.getPksSize() == 1) {
+            String pkFieldName = modelEntity.getOnlyPk().getName();
+            List<Object> pkValues = new ArrayList<>(primaryKeys.size());
+            for (GenericPK primaryKey: primaryKeys) {
+                pkValues.add(primaryKey.get(pkFieldName));
+            }
+            return EntityCondition.makeCondition(pkFieldName, EntityOperator.IN, pkValues);
+        }
+        List<EntityCondition> pkConditions = new ArrayList<>(primaryKeys.size());
+        for (GenericPK primaryKey: primaryKeys) {
+            pkConditions.add(EntityCondition.makeCondition(primaryKey));
+        }
+        return EntityCondition.makeCondition(pkConditions, EntityOperator.OR);
+    }
+
     /** Remove a Generic Entity corresponding to the primaryKey
      *@param  primaryKey  The primary key of the entity to remove.
      *@return int representing number of rows effected by this operation
@@ -151,6 +202,22 @@ public class GenericHelperDAO implements GenericHelper {
         return genericDAO.delete(primaryKey);
     }
 
+    /** Remove the Generic Entities corresponding to a list of primary keys of the same entity, all in one batch
+     *@param primaryKeys The primary keys of the entities to remove.
+     *@return int representing number of rows effected by this operation
+     */
+    @Override
+    public int deleteAll(List<GenericPK> primaryKeys) throws GenericEntityException {
+        if (UtilValidate.isEmpty(primaryKeys)) {
+            return 0;
+        }
+        int retVal = genericDAO.deleteAll(primaryKeys);
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Delete Return Value : " + retVal, MODULE);
+        }
+        return retVal;
+    }
+
     /** Finds GenericValues by the conditions specified in the EntityCondition object, the the EntityCondition javadoc for more details.
      *@param modelEntity The ModelEntity of the Entity as defined in the entity XML file
      *@param whereEntityCondition The EntityCondition object that specifies how to constrain this query before any groupings are done
@@ -215,6 +282,22 @@ public class GenericHelperDAO implements GenericHelper {
         return genericDAO.update(value);
     }
 
+    /** Store a list of GenericValue of the same entity, values changing the same fields being sent in one batch
+     *@param values List of GenericValue instances containing the entities
+     *@return int representing number of rows effected by this operation
+     */
+    @Override
+    public int updateAll(List<GenericValue> values) throws GenericEntityException {
+        if (UtilValidate.isEmpty(values)) {
+            return 0;
+        }
+        int retVal = genericDAO.updateAll(values);
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("Update Return Value : " + retVal, MODULE);
+        }
+        return retVal;
+    }
+
     /** Updates a group of values in a single pass.
      *@param modelEntity The ModelEntity of the Entity as defined in the entity XML file
      *@param fieldsToSet The fields of the named entity to set in the database
@@ -130,6 +130,14 @@ public class ReadOnlyHelperDAO implements GenericHelper {
         return 0;
     }
 
+    /** Read only, no remove realize on the database
+     *@return 0
+     */
+    @Override
+    public int deleteAll(List<GenericPK> primaryKeys) throws GenericEntityException {
+        return 0;
+    }
+
     /** Finds GenericValues by the conditions specified in the EntityCondition object, the the EntityCondition javadoc for more details.
      *@param modelEntity The ModelEntity of the Entity as defined in the entity XML file
      *@param whereEntityCondition The EntityCondition object that specifies how to constrain this query before any groupings are done
@@ -185,6 +193,14 @@ public class ReadOnlyHelperDAO implements GenericHelper {
         return 0;
     }
 
+    /** Read only, no store realize on the database
+     *@return 0
+     */
+    @Override
+    public int updateAll(List<GenericValue> values) throws GenericEntityException {
+        return 0;
+    }
+
     /** Read only, no store realize on the database
      *@return 0
      */
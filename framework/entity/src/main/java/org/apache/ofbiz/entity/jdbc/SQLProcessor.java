@@ -874,6 +874,21 @@ public class SQLProcessor implements AutoCloseable {
         }
     }
 
+    /**
+     * Ask the processor to execute the batch and return the update count of each statement, which can be
+     * {@link java.sql.Statement#SUCCESS_NO_INFO} when the driver doesn't know the number of rows changed
+     * @return The update counts, in the order the statements were added to the batch
+     * @throws GenericDataSourceException
+     */
+    public int[] executeBatchUpdateCounts() throws GenericDataSourceException {
+        try {
+            return ps.executeBatch();
+        } catch (SQLException sqle) {
+            this.checkLockWaitInfo(sqle);
+            throw new GenericDataSourceException("SQL Exception while executing the following:" + sql, sqle);
+        }
+    }
+
     /**
      * Add to the processor a batch treatment
      * @throws SQLException
@@ -18,6 +18,8 @@
  */
 package org.apache.ofbiz.entity.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -68,7 +70,7 @@ public class ModelEntity implements Comparable<ModelEntity>, Serializable {
     public static final String CREATE_STAMP_FIELD = "createdStamp";
     public static final String CREATE_STAMP_TX_FIELD = "createdTxStamp";
 
-    private transient ModelInfo modelInfo;
+    private ModelInfo modelInfo;
 
     /** The ModelReader that created this Entity */
     private final ModelReader modelReader;
@@ -90,7 +92,7 @@ public class ModelEntity implements Comparable<ModelEntity>, Serializable {
 
     /** Synchronization object used to control access to the ModelField collection objects.
      * A single lock is used for all ModelField collections so collection updates are atomic. */
-    private final Object fieldsLock = new Object();
+    private transient Object fieldsLock = new Object();
 
     /** Model fields in the order they were defined. This list duplicates the values in fieldsMap, but
      *  we must keep the list in its original sequence for SQL DISTINCT operations to work properly. */
@@ -140,6 +142,11 @@ public class ModelEntity implements Comparable<ModelEntity>, Serializable {
     /** The location of this entity's definition */
     private String location = "";
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        fieldsLock = new Object();
+    }
+
     // ===== CONSTRUCTORS =====
     /** Default Constructor */
     public ModelEntity() {
@@ -21,16 +21,24 @@ package org.apache.ofbiz.entity.model;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ofbiz.base.component.ComponentConfig;
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
 import org.apache.ofbiz.base.config.GenericConfigException;
 import org.apache.ofbiz.base.config.MainResourceHandler;
 import org.apache.ofbiz.base.config.ResourceHandler;
@@ -62,14 +70,18 @@ public final class ModelReader implements Serializable {
 
     private volatile Map<String, ModelEntity> entityCache = null;
 
-    private int numEntities = 0;
-    private int numViewEntities = 0;
-    private int numFields = 0;
-    private int numRelations = 0;
+    // updated by the entity model files parsed in parallel
+    private final AtomicInteger numEntities = new AtomicInteger();
+    private final AtomicInteger numViewEntities = new AtomicInteger();
+    private final AtomicInteger numFields = new AtomicInteger();
+    private final AtomicInteger numRelations = new AtomicInteger();
     private int numAutoRelations = 0;
 
     private String modelName;
 
+    /** parses the entity model files one after the other instead of in parallel, to check that both give the same model */
+    private boolean parseSequentially = false;
+
     /** collection of filenames for entity definitions */
     private Collection<ResourceHandler> entityResourceHandlers;
 
@@ -96,7 +108,7 @@ public final class ModelReader implements Serializable {
         if (reader == null) {
             reader = new ModelReader(tempModelName);
             // preload caches...
-            reader.getEntityCache();
+            reader = reader.loadEntityCache();
             reader = READERS.putIfAbsentAndGet(tempModelName, reader);
         }
         return reader;
@@ -129,11 +141,81 @@ public final class ModelReader implements Serializable {
         }
     }
 
-    private ModelEntity buildEntity(ResourceHandler entityResourceHandler, Element curEntityElement, int i, ModelInfo def)
-            throws GenericEntityException {
+    /**
+     * Creates a reader of the given entity model files, which are not looked up in the entity engine and component configurations.
+     * @param modelName the entity model reader name
+     * @param entityResourceHandlers the entity model files, in loading order
+     * @param parseSequentially whether the files are parsed one after the other instead of in parallel
+     */
+    ModelReader(String modelName, Collection<ResourceHandler> entityResourceHandlers, boolean parseSequentially) {
+        this.modelName = modelName;
+        this.entityResourceHandlers = new LinkedList<>(entityResourceHandlers);
+        this.parseSequentially = parseSequentially;
+        resourceHandlerEntities = new HashMap<>();
+        entityResourceHandlerMap = new HashMap<>();
+    }
+
+    /**
+     * Loads the entities of this reader, from the entity model snapshot when it is enabled and none of the entity model files changed.
+     * @return this reader, or the reader read from the snapshot
+     */
+    private ModelReader loadEntityCache() throws GenericEntityException {
+        String snapshotKey = null;
+        if (ModelReaderSnapshot.isEnabled()) {
+            snapshotKey = ModelReaderSnapshot.computeKey(modelName, entityResourceHandlers);
+            if (snapshotKey != null) {
+                ModelReader snapshotReader = ModelReaderSnapshot.read(modelName, snapshotKey);
+                if (snapshotReader != null) {
+                    return snapshotReader;
+                }
+            }
+        }
+        getEntityCache();
+        if (snapshotKey != null) {
+            ModelReaderSnapshot.write(this, snapshotKey);
+        }
+        return this;
+    }
+
+    String getModelName() {
+        return modelName;
+    }
+
+    private ModelEntity buildEntity(Element curEntityElement, int i, ModelInfo def, String resourceLocation) {
         boolean isEntity = "entity".equals(curEntityElement.getNodeName());
         String entityName = UtilXml.checkEmpty(curEntityElement.getAttribute("entity-name")).intern();
-        boolean redefinedEntity = "true".equals(curEntityElement.getAttribute("redefinition"));
+
+        // utilTimer.timerString(" After entityEntityName -- " + i + " --");
+
+        ModelEntity modelEntity = null;
+        if (isEntity) {
+            modelEntity = createModelEntity(curEntityElement, null, def);
+        } else {
+            modelEntity = createModelViewEntity(curEntityElement, null, def);
+        }
+
+        // utilTimer.timerString(" After createModelEntity -- " + i + " --");
+        if (modelEntity != null) {
+            modelEntity.setLocation(resourceLocation);
+            // utilTimer.timerString(" After entityCache.put -- " + i + " --");
+            if (isEntity) {
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("-- [Entity]: #" + i + ": " + entityName, MODULE);
+                }
+            } else {
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("-- [ViewEntity]: #" + i + ": " + entityName, MODULE);
+                }
+            }
+        } else {
+            Debug.logWarning("-- -- ENTITYGEN ERROR:getModelEntity: Could not create "
+                    + "entity for entityName: " + entityName, MODULE);
+        }
+        return modelEntity;
+    }
+
+    private void registerEntity(ResourceHandler entityResourceHandler, ModelEntity modelEntity, boolean redefinedEntity) {
+        String entityName = modelEntity.getEntityName();
 
         // add entityName to appropriate resourceHandlerEntities collection
         Collection<String> resourceHandlerEntityNames = resourceHandlerEntities.get(entityResourceHandler);
@@ -156,16 +238,40 @@ public final class ModelReader implements Serializable {
 
         // add entityName, entityFileName pair to entityResourceHandlerMap map
         entityResourceHandlerMap.put(entityName, entityResourceHandler);
+    }
 
-        // utilTimer.timerString(" After entityEntityName -- " + i + " --");
+    private Callable<ResourceEntities> createEntityReaderCallable(final ResourceHandler entityResourceHandler) {
+        return () -> readResourceEntities(entityResourceHandler);
+    }
 
-        ModelEntity modelEntity = null;
-        if (isEntity) {
-            modelEntity = createModelEntity(curEntityElement, null, def);
-        } else {
-            modelEntity = createModelViewEntity(curEntityElement, null, def);
+    /**
+     * Parses the entity, view-entity and extend-entity elements of an entity model file,
+     * this is done in parallel for all the files so it must not change the state of the reader.
+     * @return the definitions of the file, <code>null</code> if the document has no root element
+     */
+    private ResourceEntities readResourceEntities(ResourceHandler entityResourceHandler) throws GenericEntityException {
+        UtilTimer utilTimer = new UtilTimer();
+        // utilTimer.timerString("Before getDocument in file " + entityFileName);
+        Document document = null;
+
+        try {
+            document = entityResourceHandler.getDocument();
+        } catch (GenericConfigException e) {
+            throw new GenericEntityConfException("Error getting document from resource handler", e);
+        }
+        if (document == null) {
+            throw new GenericEntityConfException("Could not get document for " + entityResourceHandler.toString());
         }
 
+        // utilTimer.timerString("Before getDocumentElement in " + entityResourceHandler.toString());
+        Element docElement = document.getDocumentElement();
+
+        if (docElement == null) {
+            return null;
+        }
+        docElement.normalize();
+        Node curChild = docElement.getFirstChild();
+
         String resourceLocation = entityResourceHandler.getLocation();
         try {
             resourceLocation = entityResourceHandler.getURL().toExternalForm();
@@ -173,24 +279,37 @@ public final class ModelReader implements Serializable {
             Debug.logError(e, "Could not get resource URL", MODULE);
         }
 
-        // utilTimer.timerString(" After createModelEntity -- " + i + " --");
-        if (modelEntity != null) {
-            modelEntity.setLocation(resourceLocation);
-            // utilTimer.timerString(" After entityCache.put -- " + i + " --");
-            if (isEntity) {
-                if (Debug.verboseOn()) {
-                    Debug.logVerbose("-- [Entity]: #" + i + ": " + entityName, MODULE);
-                }
-            } else {
-                if (Debug.verboseOn()) {
-                    Debug.logVerbose("-- [ViewEntity]: #" + i + ": " + entityName, MODULE);
+        ResourceEntities resourceEntities = new ResourceEntities(entityResourceHandler);
+        ModelInfo def = ModelInfo.createFromElements(ModelInfo.DEFAULT, docElement);
+        int i = 0;
+
+        if (curChild != null) {
+            utilTimer.timerString("Before start of entity loop in " + entityResourceHandler.toString());
+            do {
+                boolean isEntity = "entity".equals(curChild.getNodeName());
+                boolean isViewEntity = "view-entity".equals(curChild.getNodeName());
+                boolean isExtendEntity = "extend-entity".equals(curChild.getNodeName());
+
+                if ((isEntity || isViewEntity) && curChild.getNodeType() == Node.ELEMENT_NODE) {
+                    i++;
+                    Element curEntityElement = (Element) curChild;
+                    ModelEntity modelEntity = buildEntity(curEntityElement, i, def, resourceLocation);
+                    if (modelEntity != null) {
+                        resourceEntities.entities.add(modelEntity);
+                        if ("true".equals(curEntityElement.getAttribute("redefinition"))) {
+                            resourceEntities.redefinedEntities.add(modelEntity);
+                        }
+                    }
+                } else if (isExtendEntity && curChild.getNodeType() == Node.ELEMENT_NODE) {
+                    resourceEntities.extendEntityElements.add((Element) curChild);
                 }
-            }
+                curChild = curChild.getNextSibling();
+            } while (curChild != null);
         } else {
-            Debug.logWarning("-- -- ENTITYGEN ERROR:getModelEntity: Could not create "
-                    + "entity for entityName: " + entityName, MODULE);
+            Debug.logWarning("No child nodes found.", MODULE);
         }
-        return modelEntity;
+        utilTimer.timerString("Finished " + entityResourceHandler.toString() + " - Total Entities: " + i + " FINISHED");
+        return resourceEntities;
     }
 
     public Map<String, ModelEntity> getEntityCache() throws GenericEntityException {
@@ -198,69 +317,45 @@ public final class ModelReader implements Serializable {
             synchronized (ModelReader.class) {
                 // must check if null again as one of the blocked threads can still enter
                 if (entityCache == null) { // now it's safe
-                    numEntities = 0;
-                    numViewEntities = 0;
-                    numFields = 0;
-                    numRelations = 0;
+                    long startTime = System.currentTimeMillis();
+                    numEntities.set(0);
+                    numViewEntities.set(0);
+                    numFields.set(0);
+                    numRelations.set(0);
                     numAutoRelations = 0;
 
-                    entityCache = new HashMap<>();
-                    List<ModelViewEntity> tempViewEntityList = new LinkedList<>();
-                    List<Element> tempExtendEntityElementList = new LinkedList<>();
-
-                    UtilTimer utilTimer = new UtilTimer();
-
+                    // the entity model files are parsed in parallel, their definitions are then added
+                    // in the order of the files so that the last definition of an entity still wins
+                    List<Future<ResourceEntities>> futures = new ArrayList<>(entityResourceHandlers.size());
                     for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
-
-                        // utilTimer.timerString("Before getDocument in file " + entityFileName);
-                        Document document = null;
-
-                        try {
-                            document = entityResourceHandler.getDocument();
-                        } catch (GenericConfigException e) {
-                            throw new GenericEntityConfException("Error getting document from resource handler", e);
-                        }
-                        if (document == null) {
-                            throw new GenericEntityConfException("Could not get document for " + entityResourceHandler.toString());
+                        if (parseSequentially) {
+                            FutureTask<ResourceEntities> task = new FutureTask<>(createEntityReaderCallable(entityResourceHandler));
+                            task.run();
+                            futures.add(task);
+                        } else {
+                            futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(createEntityReaderCallable(entityResourceHandler)));
                         }
+                    }
 
-                        // utilTimer.timerString("Before getDocumentElement in " + entityResourceHandler.toString());
-                        Element docElement = document.getDocumentElement();
+                    entityCache = new HashMap<>();
+                    List<ModelViewEntity> tempViewEntityList = new LinkedList<>();
+                    List<Element> tempExtendEntityElementList = new LinkedList<>();
 
-                        if (docElement == null) {
+                    for (Future<ResourceEntities> future : futures) {
+                        ResourceEntities resourceEntities = getResourceEntities(future);
+                        if (resourceEntities == null) {
                             return null;
                         }
-                        docElement.normalize();
-                        Node curChild = docElement.getFirstChild();
-
-                        ModelInfo def = ModelInfo.createFromElements(ModelInfo.DEFAULT, docElement);
-                        int i = 0;
-
-                        if (curChild != null) {
-                            utilTimer.timerString("Before start of entity loop in " + entityResourceHandler.toString());
-                            do {
-                                boolean isEntity = "entity".equals(curChild.getNodeName());
-                                boolean isViewEntity = "view-entity".equals(curChild.getNodeName());
-                                boolean isExtendEntity = "extend-entity".equals(curChild.getNodeName());
-
-                                if ((isEntity || isViewEntity) && curChild.getNodeType() == Node.ELEMENT_NODE) {
-                                    i++;
-                                    ModelEntity modelEntity = buildEntity(entityResourceHandler, (Element) curChild, i, def);
-                                    // put the view entity in a list to get ready for the second pass to populate fields...
-                                    if (isViewEntity) {
-                                        tempViewEntityList.add((ModelViewEntity) modelEntity);
-                                    } else {
-                                        entityCache.put(modelEntity.getEntityName(), modelEntity);
-                                    }
-                                } else if (isExtendEntity && curChild.getNodeType() == Node.ELEMENT_NODE) {
-                                    tempExtendEntityElementList.add((Element) curChild);
-                                }
-                                curChild = curChild.getNextSibling();
-                            } while (curChild != null);
-                        } else {
-                            Debug.logWarning("No child nodes found.", MODULE);
+                        for (ModelEntity modelEntity : resourceEntities.entities) {
+                            registerEntity(resourceEntities.resourceHandler, modelEntity, resourceEntities.redefinedEntities.contains(modelEntity));
+                            // put the view entity in a list to get ready for the second pass to populate fields...
+                            if (modelEntity instanceof ModelViewEntity) {
+                                tempViewEntityList.add((ModelViewEntity) modelEntity);
+                            } else {
+                                entityCache.put(modelEntity.getEntityName(), modelEntity);
+                            }
                         }
-                        utilTimer.timerString("Finished " + entityResourceHandler.toString() + " - Total Entities: " + i + " FINISHED");
+                        tempExtendEntityElementList.addAll(resourceEntities.extendEntityElements);
                     }
 
                     // all entity elements in, now go through extend-entity elements and add their stuff
@@ -444,7 +539,7 @@ public final class ModelReader implements Serializable {
                         }
                         Debug.logInfo("Finished loading entities; #Entities=" + numEntities + " #ViewEntities="
                                 + numViewEntities + " #Fields=" + numFields + " #Relationships=" + numRelations
-                                + " #AutoRelationships=" + numAutoRelations, MODULE);
+                                + " #AutoRelationships=" + numAutoRelations + " in " + (System.currentTimeMillis() - startTime) + "ms", MODULE);
                     }
                 }
             }
@@ -452,6 +547,20 @@ public final class ModelReader implements Serializable {
         return entityCache;
     }
 
+    private static ResourceEntities getResourceEntities(Future<ResourceEntities> future) throws GenericEntityException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GenericEntityException) {
+                throw (GenericEntityException) e.getCause();
+            }
+            throw new GenericEntityConfException("Error reading entity definitions", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityConfException("Interrupted while reading entity definitions", e);
+        }
+    }
+
     /**
      * rebuilds the resourceHandlerEntities Map of Collections based on the current
      * entityResourceHandlerMap Map, must be done whenever a manual change is made
@@ -624,7 +733,7 @@ public final class ModelReader implements Serializable {
         if (entityElement == null) {
             return null;
         }
-        this.numEntities++;
+        this.numEntities.incrementAndGet();
         ModelEntity entity = new ModelEntity(this, entityElement, utilTimer, def);
         return entity;
     }
@@ -633,18 +742,30 @@ public final class ModelReader implements Serializable {
         if (entityElement == null) {
             return null;
         }
-        this.numViewEntities++;
+        this.numViewEntities.incrementAndGet();
         ModelViewEntity entity = new ModelViewEntity(this, entityElement, utilTimer, def);
         return entity;
     }
 
     public ModelRelation createRelation(ModelEntity entity, Element relationElement) {
-        this.numRelations++;
+        this.numRelations.incrementAndGet();
         ModelRelation relation = ModelRelation.create(entity, relationElement, false);
         return relation;
     }
 
     public void incrementFieldCount(int amount) {
-        this.numFields += amount;
+        this.numFields.addAndGet(amount);
+    }
+
+    /** The definitions read from one entity model file. */
+    private static final class ResourceEntities {
+        private final ResourceHandler resourceHandler;
+        private final List<ModelEntity> entities = new LinkedList<>();
+        private final Set<ModelEntity> redefinedEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Element> extendEntityElements = new LinkedList<>();
+
+        private ResourceEntities(ResourceHandler resourceHandler) {
+            this.resourceHandler = resourceHandler;
+        }
     }
 }
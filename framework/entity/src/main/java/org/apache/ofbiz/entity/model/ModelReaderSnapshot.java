@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+import org.apache.ofbiz.base.config.GenericConfigException;
+import org.apache.ofbiz.base.config.ResourceHandler;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.SafeObjectInputStream;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilProperties;
+
+/**
+ * Binary snapshot of a loaded {@link ModelReader}.
+ * <p>The entity model (entities, view entities, relations and indexes) is serialized in the snapshot directory
+ * with a key computed from the content of the entity model files; at the next start the snapshot is read back
+ * instead of parsing these files when the key is unchanged. A snapshot which cannot be read is ignored and
+ * replaced once the files have been parsed.</p>
+ */
+final class ModelReaderSnapshot {
+
+    private static final String MODULE = ModelReaderSnapshot.class.getName();
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("general", "entity.model.snapshot.enable", false);
+    private static final String DIRECTORY = UtilProperties.getPropertyValue("general", "entity.model.snapshot.dir",
+            "runtime/data/entitymodel");
+
+    private ModelReaderSnapshot() { }
+
+    static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Computes the key of the entity model files of a reader.
+     * @param modelName the entity model reader name
+     * @param entityResourceHandlers the entity model files, in loading order
+     * @return a SHA-256 digest of the location and the content of the files, <code>null</code> if a file cannot be read
+     */
+    static String computeKey(String modelName, Collection<ResourceHandler> entityResourceHandlers) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            byte[] buffer = new byte[8192];
+            for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
+                digest.update(entityResourceHandler.getURL().toExternalForm().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = entityResourceHandler.getStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+            return StringUtil.toHexString(digest.digest());
+        } catch (GenericConfigException | IOException | NoSuchAlgorithmException e) {
+            Debug.logWarning(e, "Unable to compute the entity model snapshot key of [" + modelName + "], the snapshot is not used", MODULE);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the snapshot of an entity model reader.
+     * @param modelName the entity model reader name
+     * @param key the key of the current entity model files
+     * @return the snapshot reader, <code>null</code> if there is no snapshot or it was made from other files
+     */
+    static ModelReader read(String modelName, String key) {
+        Path file = getFile(modelName);
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+        try (ObjectInputStream in = new SafeObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!key.equals(in.readUTF())) {
+                Debug.logInfo("The entity model files of [" + modelName + "] changed, the snapshot " + file + " is not used", MODULE);
+                return null;
+            }
+            ModelReader reader = (ModelReader) in.readObject();
+            Debug.logInfo("Loaded entity model [" + modelName + "] from snapshot " + file + " in "
+                    + (System.currentTimeMillis() - startTime) + "ms", MODULE);
+            return reader;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Debug.logWarning(e, "Unable to read the entity model snapshot " + file + ", the entity model files are parsed", MODULE);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a loaded entity model reader, the previous snapshot is replaced once the new one is complete.
+     * @param reader the reader, with its entities loaded
+     * @param key the key of the entity model files of the reader
+     */
+    static void write(ModelReader reader, String key) {
+        Path file = getFile(reader.getModelName());
+        Path tempFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tempFile = Files.createTempFile(file.getParent(), reader.getModelName(), ".tmp");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeUTF(key);
+                out.writeObject(reader);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Debug.logInfo("Saved entity model [" + reader.getModelName() + "] snapshot " + file, MODULE);
+        } catch (IOException e) {
+            Debug.logWarning(e, "Unable to write the entity model snapshot " + file, MODULE);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ioe) {
+                    Debug.logWarning(ioe, MODULE);
+                }
+            }
+        }
+    }
+
+    private static Path getFile(String modelName) {
+        return Paths.get(System.getProperty("ofbiz.home", ".")).resolve(DIRECTORY).resolve(modelName + ".ser");
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.testtools.EntityTestCase;
+import org.apache.ofbiz.entity.util.EntityDataExporter;
+import org.apache.ofbiz.entity.util.EntityDataExporter.ExportFile;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline;
+import org.apache.ofbiz.entity.util.EntityQuery;
+
+public class EntityDataExporterTestSuite extends EntityTestCase {
+
+    public static final long TEST_COUNT = 250;
+    public static final int CHUNK_SIZE = 40;
+
+    private static final EntityCondition TEST_CONDITION = EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "EXPORT-%");
+
+    public EntityDataExporterTestSuite(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getDelegator().removeByCondition("Testing", TEST_CONDITION);
+        List<GenericValue> values = new ArrayList<>();
+        for (int i = 0; i < TEST_COUNT; i++) {
+            values.add(getDelegator().makeValue("Testing", "testingId", "EXPORT-" + StringUtil.padNumberString(String.valueOf(i), 5),
+                    "description", "Export " + i, "testingSize", (long) i));
+        }
+        getDelegator().storeAll(values);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getDelegator().removeByCondition("Testing", TEST_CONDITION);
+        super.tearDown();
+    }
+
+    /**
+     * Test that a chunked export can be checked against its manifest and loaded back in parallel.
+     */
+    public void testExportRoundTrip() throws Exception {
+        Path directory = Files.createTempDirectory("entity-export");
+        try {
+            long totalRows = EntityQuery.use(getDelegator()).from("Testing").queryCount();
+            EntityDataExporter exporter = new EntityDataExporter(getDelegator());
+            exporter.setThreads(4);
+            exporter.setChunkSize(CHUNK_SIZE);
+            List<ExportFile> files = exporter.export(directory, UtilMisc.toList("Testing"));
+            assertTrue("No export errors: " + exporter.getErrors(), exporter.getErrors().isEmpty());
+            assertTrue("Testing exported in chunks", files.size() >= (totalRows + CHUNK_SIZE - 1) / CHUNK_SIZE && files.size() > 1);
+
+            List<ExportFile> manifest = EntityDataExporter.readManifest(directory);
+            assertNotNull("Manifest written", manifest);
+            assertEquals("Manifest lists every file", files.size(), manifest.size());
+            long manifestRows = 0;
+            for (ExportFile file : manifest) {
+                assertEquals("Manifest entity", "Testing", file.getEntityName());
+                assertNotNull("Manifest checksum of " + file.getFileName(), file.getChecksum());
+                manifestRows += file.getRows();
+            }
+            assertEquals("Manifest rows", totalRows, manifestRows);
+            assertTrue("Files match their checksums", EntityDataExporter.checkFiles(directory, manifest, 4).isEmpty());
+
+            ExportFile tampered = manifest.get(0);
+            byte[] content = Files.readAllBytes(directory.resolve(tampered.getFileName()));
+            Files.write(directory.resolve(tampered.getFileName()), new byte[0]);
+            assertEquals("Changed file is reported", 1, EntityDataExporter.checkFiles(directory, manifest, 4).size());
+            Files.write(directory.resolve(tampered.getFileName()), content);
+
+            getDelegator().removeByCondition("Testing", TEST_CONDITION);
+            assertEquals("Test values removed", 0, EntityQuery.use(getDelegator()).from("Testing").where(TEST_CONDITION).queryCount());
+
+            List<URL> urls = new ArrayList<>();
+            for (ExportFile file : manifest) {
+                urls.add(directory.resolve(file.getFileName()).toUri().toURL());
+            }
+            EntityDataLoadPipeline pipeline = new EntityDataLoadPipeline(getDelegator());
+            pipeline.setParserThreads(4);
+            pipeline.setWriterThreads(4);
+            Map<URL, Long> readCounts = pipeline.load(urls);
+            assertTrue("No load errors: " + pipeline.getErrorMessages(), pipeline.getErrorMessages().isEmpty());
+            for (int i = 0; i < manifest.size(); i++) {
+                assertEquals("Rows read from " + manifest.get(i).getFileName(), Long.valueOf(manifest.get(i).getRows()),
+                        readCounts.get(urls.get(i)));
+            }
+
+            List<GenericValue> values = EntityQuery.use(getDelegator()).from("Testing").where(TEST_CONDITION).orderBy("testingId").queryList();
+            assertEquals("Test values loaded back", TEST_COUNT, values.size());
+            for (int i = 0; i < TEST_COUNT; i++) {
+                assertEquals("Description loaded back", "Export " + i, values.get(i).getString("description"));
+                assertEquals("Size loaded back", i, values.get(i).getLong("testingSize").longValue());
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            } catch (IOException e) {
+                // the temporary directory is left behind
+            }
+        }
+    }
+}
@@ -18,7 +18,12 @@
  *******************************************************************************/
 package org.apache.ofbiz.entity.test;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Blob;
 import java.sql.Date;
 import java.sql.Time;
@@ -53,11 +58,13 @@ import org.apache.ofbiz.entity.condition.EntityCondition;
 import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.entity.config.model.Datasource;
 import org.apache.ofbiz.entity.config.model.EntityConfig;
+import org.apache.ofbiz.entity.eca.EntityEcaHandler;
 import org.apache.ofbiz.entity.model.ModelEntity;
 import org.apache.ofbiz.entity.model.ModelField;
 import org.apache.ofbiz.entity.testtools.EntityTestCase;
 import org.apache.ofbiz.entity.transaction.GenericTransactionException;
 import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline;
 import org.apache.ofbiz.entity.util.EntityListIterator;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.entity.util.EntitySaxReader;
@@ -336,6 +343,83 @@ public class EntityTestSuite extends EntityTestCase {
                 testValue.getString("subtypeDescription"));
     }
 
+    /**
+     * Tests that a partial store clears the cached lists whose condition refers to a field missing from the value
+     * @throws Exception the exception
+     */
+    public void testEntityListCachePartialValue() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingTypeId", "TEST-LIST-CACHE"));
+        delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", "TEST-LIST-CACHE"));
+        delegator.create("TestingType", "testingTypeId", "TEST-LIST-CACHE", "description", "Testing Type #List-Cache");
+        delegator.create("Testing", "testingId", "TEST-LIST-CACHE-1", "testingTypeId", "TEST-LIST-CACHE", "description", "out");
+        EntityQuery query = EntityQuery.use(delegator).from("Testing").where("testingTypeId", "TEST-LIST-CACHE", "description", "in").cache(true);
+        assertEquals("No value matches before the store", 0, query.queryList().size());
+        // the stored value doesn't hold testingTypeId, so the cached condition can't be checked against it
+        GenericValue partialValue = delegator.makeValue("Testing", "testingId", "TEST-LIST-CACHE-1", "description", "in");
+        delegator.store(partialValue);
+        assertEquals("The stored value matches after a partial store", 1, query.queryList().size());
+        delegator.removeByPrimaryKey(delegator.makePK("Testing", "testingId", "TEST-LIST-CACHE-1"));
+        assertEquals("No value matches after a primary key remove", 0, query.queryList().size());
+    }
+
+    /**
+     * Tests that a change clears the cached lists of values missing the primary key, a subset of the entity fields
+     * @throws Exception the exception
+     */
+    public void testEntityListCacheFieldSubset() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingTypeId", "TEST-LIST-CACHE"));
+        delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", "TEST-LIST-CACHE"));
+        delegator.create("TestingType", "testingTypeId", "TEST-LIST-CACHE", "description", "Testing Type #List-Cache");
+        delegator.create("Testing", "testingId", "TEST-LIST-CACHE-2", "testingTypeId", "TEST-LIST-CACHE", "description", "in");
+        EntityCondition condition = EntityCondition.makeCondition(UtilMisc.toMap("testingTypeId", "TEST-LIST-CACHE", "description", "in"));
+        List<String> orderBy = UtilMisc.toList("description");
+        List<GenericValue> subsetList = EntityQuery.use(delegator).select("description").from("Testing").where(condition).queryList();
+        assertEquals("One value matches", 1, subsetList.size());
+        delegator.getCache().put("Testing", condition, orderBy, subsetList);
+        assertNotNull("The list of a subset of the fields is cached", delegator.getCache().get("Testing", condition, orderBy));
+        // the changed value no longer matches and its previous version can't be found in the cached rows
+        GenericValue testing = EntityQuery.use(delegator).from("Testing").where("testingId", "TEST-LIST-CACHE-2").queryOne();
+        testing.put("description", "out");
+        testing.store();
+        assertNull("The list of a subset of the fields is cleared", delegator.getCache().get("Testing", condition, orderBy));
+        testing.remove();
+    }
+
+    /**
+     * Tests that a change clears the cached lists whose condition value has another type than its field
+     * @throws Exception the exception
+     */
+    public void testEntityListCacheValueType() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("TestFieldType", EntityCondition.makeCondition("testFieldTypeId", EntityOperator.LIKE,
+                "TEST-LIST-CACHE-%"));
+        // the Integer value can't be compared in memory to the Long values of the field, the database converts it
+        EntityQuery query = EntityQuery.use(delegator).from("TestFieldType")
+                .where(EntityCondition.makeCondition("numericField", EntityOperator.EQUALS, 7)).cache(true);
+        assertEquals("No value matches before the create", 0, query.queryList().size());
+        delegator.create("TestFieldType", "testFieldTypeId", "TEST-LIST-CACHE-1", "numericField", 7L);
+        assertEquals("The created value matches the Integer condition", 1, query.queryList().size());
+        delegator.removeByAnd("TestFieldType", "testFieldTypeId", "TEST-LIST-CACHE-1");
+    }
+
+    /**
+     * Tests that a change matches the cached lists whose condition value has another scale than the changed value
+     * @throws Exception the exception
+     */
+    public void testEntityListCacheDecimalScale() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("TestFieldType", EntityCondition.makeCondition("testFieldTypeId", EntityOperator.LIKE,
+                "TEST-LIST-CACHE-%"));
+        EntityQuery query = EntityQuery.use(delegator).from("TestFieldType")
+                .where(EntityCondition.makeCondition("fixedPointField", EntityOperator.EQUALS, new BigDecimal("5"))).cache(true);
+        assertEquals("No value matches before the create", 0, query.queryList().size());
+        delegator.create("TestFieldType", "testFieldTypeId", "TEST-LIST-CACHE-2", "fixedPointField", new BigDecimal("5.000"));
+        assertEquals("The created value matches the condition of another scale", 1, query.queryList().size());
+        delegator.removeByAnd("TestFieldType", "testFieldTypeId", "TEST-LIST-CACHE-2");
+    }
+
     /**
      * Test xml serialization.
      * @throws Exception the exception
@@ -771,6 +855,140 @@ public class EntityTestSuite extends EntityTestCase {
         }
     }
 
+    /**
+     * This test will store at once a mix of new values, changed and unchanged existing values, and a value stored twice
+     */
+    public void testStoreAllCreatesAndUpdates() throws Exception {
+        Delegator delegator = getDelegator();
+        try {
+            List<GenericValue> existingValues = new LinkedList<>();
+            for (int i = 0; i < TEST_COUNT; i += 2) {
+                existingValues.add(delegator.makeValue("Testing", "testingId", getTestId("T4-", i), "testingName", "original"));
+            }
+            delegator.storeAll(existingValues);
+
+            List<GenericValue> newValues = new LinkedList<>();
+            for (int i = 0; i < TEST_COUNT; i++) {
+                newValues.add(delegator.makeValue("Testing", "testingId", getTestId("T4-", i), "testingName", i % 4 == 0 ? "original" : "changed"));
+            }
+            newValues.add(delegator.makeValue("Testing", "testingId", getTestId("T4-", 0), "testingName", "changed twice"));
+            int numberChanged = delegator.storeAll(newValues);
+            // every new value, every other existing value and the value stored twice
+            assertEquals("Number of values changed by storeAll", TEST_COUNT / 2 + TEST_COUNT / 4 + 1, numberChanged);
+
+            List<GenericValue> storedValues = EntityQuery.use(delegator)
+                                                         .from("Testing")
+                                                         .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T4-%"))
+                                                         .orderBy("testingId")
+                                                         .queryList();
+            assertEquals("Test to store " + TEST_COUNT + " values at once", TEST_COUNT, storedValues.size());
+            assertEquals("Value stored twice keeps the last version", "changed twice", storedValues.get(0).getString("testingName"));
+            assertEquals("Changed value is updated", "changed", storedValues.get(2).getString("testingName"));
+        } finally {
+            List<GenericValue> storedValues = EntityQuery.use(delegator)
+                                                         .from("Testing")
+                                                         .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T4-%"))
+                                                         .queryList();
+            delegator.removeAll(storedValues);
+        }
+    }
+
+    /**
+     * Tests updating and removing values with batches, the entity ECAs running for each value
+     * @throws Exception the exception
+     */
+    public void testUpdateAllAndRemoveAll() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T5-%"));
+        List<GenericValue> values = new LinkedList<>();
+        for (int i = 0; i < TEST_COUNT; i++) {
+            values.add(delegator.create("Testing", "testingId", getTestId("T5-", i), "testingName", "original"));
+        }
+        EntityEcaHandler<Object> ecaHandler = delegator.getEntityEcaHandler();
+        RecordingEcaHandler recordingEcaHandler = new RecordingEcaHandler(ecaHandler);
+        delegator.setEntityEcaHandler(recordingEcaHandler);
+        try {
+            for (GenericValue value : values) {
+                value.put("testingName", "updated");
+            }
+            assertEquals("Number of values changed by updateAll", TEST_COUNT, delegator.updateAll(values));
+            assertEquals("A store ECA runs for each value", TEST_COUNT, recordingEcaHandler.getCount(EntityEcaHandler.EV_RETURN,
+                    EntityEcaHandler.OP_STORE));
+            assertEquals("Every value is updated", TEST_COUNT, EntityQuery.use(delegator).from("Testing")
+                    .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T5-%"), EntityCondition.makeCondition("testingName",
+                    "updated")).queryCount());
+
+            List<GenericPK> primaryKeys = new LinkedList<>();
+            for (GenericValue value : values) {
+                primaryKeys.add(value.getPrimaryKey());
+            }
+            primaryKeys.add(delegator.makePK("Testing", "testingId", "T5-MISSING"));
+            assertEquals("Number of values removed by removeAll", TEST_COUNT, delegator.removeAll(primaryKeys));
+            assertEquals("A remove ECA runs for each value", TEST_COUNT + 1, recordingEcaHandler.getCount(EntityEcaHandler.EV_RETURN,
+                    EntityEcaHandler.OP_REMOVE));
+            assertEquals("Every value is removed", 0, EntityQuery.use(delegator).from("Testing")
+                    .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T5-%")).queryCount());
+        } finally {
+            delegator.setEntityEcaHandler(ecaHandler);
+            delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T5-%"));
+        }
+    }
+
+    /**
+     * Tests that a failure in a batch update or remove rolls back the values already written
+     * @throws Exception the exception
+     */
+    public void testUpdateAllAndRemoveAllRollback() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%"));
+        delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", "T6-TYPE"));
+        List<GenericValue> values = new LinkedList<>();
+        for (int i = 0; i < 10; i++) {
+            values.add(delegator.create("Testing", "testingId", getTestId("T6-", i), "testingName", "original"));
+        }
+        GenericValue testingType = delegator.create("TestingType", "testingTypeId", "T6-TYPE", "description", "Testing Type #T6");
+        EntityEcaHandler<Object> ecaHandler = delegator.getEntityEcaHandler();
+        RecordingEcaHandler recordingEcaHandler = new RecordingEcaHandler(ecaHandler);
+        delegator.setEntityEcaHandler(recordingEcaHandler);
+        try {
+            List<GenericValue> updatedValues = new LinkedList<>();
+            for (GenericValue value : values) {
+                updatedValues.add(delegator.makeValue("Testing", "testingId", value.get("testingId"), "testingName", "updated"));
+            }
+            // a missing value in the middle of the batch fails the whole update
+            updatedValues.add(5, delegator.makeValue("Testing", "testingId", "T6-MISSING", "testingName", "updated"));
+            try {
+                delegator.updateAll(updatedValues);
+                fail("updateAll of a missing value succeeded");
+            } catch (GenericEntityException e) {
+                Debug.logInfo(e.toString(), MODULE);
+            }
+            assertEquals("No value is updated", 0, EntityQuery.use(delegator).from("Testing")
+                    .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%"), EntityCondition.makeCondition("testingName",
+                    "updated")).queryCount());
+
+            // the Testing values are removed before the ECA of the type fails
+            List<GenericEntity> primaryKeys = new LinkedList<>();
+            for (GenericValue value : values) {
+                primaryKeys.add(value.getPrimaryKey());
+            }
+            primaryKeys.add(testingType.getPrimaryKey());
+            recordingEcaHandler.failingPrimaryKey = testingType.getPrimaryKey();
+            try {
+                delegator.removeAll(primaryKeys);
+                fail("removeAll with a failing entity ECA succeeded");
+            } catch (GenericEntityException e) {
+                Debug.logInfo(e.toString(), MODULE);
+            }
+            assertEquals("No value is removed", values.size(), EntityQuery.use(delegator).from("Testing")
+                    .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%")).queryCount());
+        } finally {
+            delegator.setEntityEcaHandler(ecaHandler);
+            delegator.removeByCondition("Testing", EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%"));
+            delegator.removeByCondition("TestingType", EntityCondition.makeCondition("testingTypeId", "T6-TYPE"));
+        }
+    }
+
     /**
      * This test will create a large number of unique items and add them to the delegator at once
      */
@@ -1177,6 +1395,48 @@ public class EntityTestSuite extends EntityTestCase {
         assertNull("Delete TestingType 2", testType);
     }
 
+    /**
+     * Tests the fast inserts of EntityDataLoadPipeline when the rows exist, as when they are created by an entity ECA
+     * after the entity was found empty or loaded in a previous round.
+     * @throws Exception the exception
+     */
+    public void testDataLoadPipelineFastInsertsOfExistingRows() throws Exception {
+        Delegator delegator = getDelegator();
+        delegator.removeAll("TestingRemoveAll");
+        EntityDataLoadPipeline pipeline = new EntityDataLoadPipeline(delegator);
+        pipeline.setFastInserts(true);
+        pipeline.setRoundSize(1);
+        pipeline.load(UtilMisc.toList(writeDataFile("<entity-engine-xml>"
+                + "<TestingRemoveAll testingRemoveAllId=\"pipeline-1\" description=\"first load\"/>"
+                + "<TestingRemoveAll testingRemoveAllId=\"pipeline-2\" description=\"first load\"/>"
+                + "<TestingRemoveAll testingRemoveAllId=\"pipeline-1\" description=\"next round\"/>"
+                + "</entity-engine-xml>")));
+        assertEquals("Value loaded again in the next round", "next round",
+                EntityQuery.use(delegator).from("TestingRemoveAll").where("testingRemoveAllId", "pipeline-1").queryOne().get("description"));
+
+        // the entity was found empty by the previous load, as if the row was created by an entity ECA
+        delegator.create("TestingRemoveAll", "testingRemoveAllId", "pipeline-3", "description", "created");
+        pipeline.load(UtilMisc.toList(writeDataFile("<entity-engine-xml>"
+                + "<TestingRemoveAll testingRemoveAllId=\"pipeline-3\" description=\"second load\"/>"
+                + "<TestingRemoveAll testingRemoveAllId=\"pipeline-4\" description=\"second load\"/>"
+                + "<create><TestingRemoveAll testingRemoveAllId=\"pipeline-2\" description=\"created again\"/></create>"
+                + "</entity-engine-xml>")));
+        assertTrue("No error", pipeline.getErrorMessages().isEmpty());
+        assertEquals("Existing value updated", "second load",
+                EntityQuery.use(delegator).from("TestingRemoveAll").where("testingRemoveAllId", "pipeline-3").queryOne().get("description"));
+        assertEquals("Existing value not created again", "first load",
+                EntityQuery.use(delegator).from("TestingRemoveAll").where("testingRemoveAllId", "pipeline-2").queryOne().get("description"));
+        assertEquals("All values loaded", 4, EntityQuery.use(delegator).from("TestingRemoveAll").queryCount());
+        delegator.removeAll("TestingRemoveAll");
+    }
+
+    private static URL writeDataFile(String content) throws IOException {
+        Path file = Files.createTempFile("EntityDataLoadPipeline", ".xml");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toUri().toURL();
+    }
+
     /**
      * Test sequence value item.
      */
@@ -1196,6 +1456,89 @@ public class EntityTestSuite extends EntityTestCase {
         assertEquals(10020, seqId.longValue());
     }
 
+    /**
+     * Test sequence bank statistics.
+     */
+    public void testSequenceBankStatistics() {
+        Delegator delegator = getDelegator();
+        SequenceUtil sequencer = new SequenceUtil(delegator.getGroupHelperInfo(delegator.getEntityGroupName("SequenceValueItem")),
+                                                  delegator.getModelEntity("SequenceValueItem"),
+                                                  "seqName", "seqId");
+        UUID id = UUID.randomUUID();
+        String sequenceName = "BogusSequence" + id.toString();
+        for (int i = 0; i < 25; i++) {
+            sequencer.getNextSeqId(sequenceName, 1, null);
+        }
+        List<Map<String, Object>> statistics = sequencer.getBankStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals(sequenceName, statistics.get(0).get("seqName"));
+        assertEquals(25L, statistics.get(0).get("allocatedIds"));
+        assertEquals(10025L, statistics.get(0).get("curSeqId"));
+        assertEquals(3L, statistics.get(0).get("fills"));
+    }
+
+    /**
+     * Test that the bank of a sequence grows when its IDs are used up quickly, and still hands out consecutive IDs.
+     */
+    public void testSequenceBankGrowth() {
+        Delegator delegator = getDelegator();
+        SequenceUtil sequencer = new SequenceUtil(delegator.getGroupHelperInfo(delegator.getEntityGroupName("SequenceValueItem")),
+                                                  delegator.getModelEntity("SequenceValueItem"),
+                                                  "seqName", "seqId");
+        UUID id = UUID.randomUUID();
+        String sequenceName = "BogusSequence" + id.toString();
+        for (int i = 0; i < 2000; i++) {
+            assertEquals("Consecutive sequence id", Long.valueOf(10000L + i), sequencer.getNextSeqId(sequenceName, 1, null));
+        }
+        Map<String, Object> statistics = sequencer.getBankStatistics().get(0);
+        assertEquals(2000L, statistics.get("allocatedIds"));
+        assertTrue("Bank size grew: " + statistics, (Long) statistics.get("bankSize") > 10L);
+        assertTrue("Fewer fills than with a fixed bank size: " + statistics, (Long) statistics.get("fills") < 200L);
+    }
+
+    /**
+     * Test that the IDs of a sequence whose next bank is prefetched are contiguous and unique across concurrent threads.
+     */
+    public void testSequenceBankPrefetchWithConcurrentThreads() {
+        Delegator delegator = getDelegator();
+        final SequenceUtil sequencer = new SequenceUtil(delegator.getGroupHelperInfo(delegator.getEntityGroupName("SequenceValueItem")),
+                                                  delegator.getModelEntity("SequenceValueItem"),
+                                                  "seqName", "seqId");
+        UUID id = UUID.randomUUID();
+        final String sequenceName = "BogusSequence" + id.toString();
+        final int threads = 8;
+        final int idsPerThread = 2500;
+        final ConcurrentMap<Long, Long> seqIds = new ConcurrentHashMap<>();
+        final AtomicBoolean duplicateFound = new AtomicBoolean(false);
+        final AtomicBoolean nullSeqIdReturned = new AtomicBoolean(false);
+
+        List<Future<Void>> futures = new ArrayList<>();
+        Callable<Void> getSeqIdsTask = () -> {
+            for (int i = 0; i < idsPerThread; i++) {
+                Long seqId = sequencer.getNextSeqId(sequenceName, 1, null);
+                if (seqId == null) {
+                    nullSeqIdReturned.set(true);
+                } else if (seqIds.putIfAbsent(seqId, seqId) != null) {
+                    duplicateFound.set(true);
+                }
+            }
+            return null;
+        };
+        for (int i = 0; i < threads; i++) {
+            futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(getSeqIdsTask));
+        }
+        ExecutionPool.getAllFutures(futures);
+        assertFalse("Null sequence id returned", nullSeqIdReturned.get());
+        assertFalse("Duplicate sequence id returned", duplicateFound.get());
+        assertEquals("Sequence ids handed out", threads * idsPerThread, seqIds.size());
+        for (long seqId = 10000; seqId < 10000 + threads * idsPerThread; seqId++) {
+            assertTrue("Sequence id " + seqId + " handed out", seqIds.containsKey(seqId));
+        }
+        Map<String, Object> statistics = sequencer.getBankStatistics().get(0);
+        assertTrue("Bank size grew: " + statistics, (Long) statistics.get("bankSize") > 10L);
+        assertTrue("Banks prefetched: " + statistics, (Long) statistics.get("prefetches") > 0L);
+    }
+
     /**
      * Test sequence value item with concurrent threads.
      */
@@ -1304,6 +1647,49 @@ public class EntityTestSuite extends EntityTestCase {
         assertTrue("One big transaction was not faster than several small ones", totalTimeOneTransaction < totalTimeSeveralSmallTransactions);
     }
 
+    /**
+     * Counts the entity ECA events of the Testing entity, failing the operations on a given primary key
+     */
+    private static final class RecordingEcaHandler implements EntityEcaHandler<Object> {
+        private final EntityEcaHandler<Object> ecaHandler;
+        private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+        private GenericPK failingPrimaryKey = null;
+
+        private RecordingEcaHandler(EntityEcaHandler<Object> ecaHandler) {
+            this.ecaHandler = ecaHandler;
+        }
+
+        private int getCount(String event, String currentOperation) {
+            return counts.getOrDefault(event + ":" + currentOperation, 0);
+        }
+
+        @Override
+        public void setDelegator(Delegator delegator) {
+            if (ecaHandler != null) {
+                ecaHandler.setDelegator(delegator);
+            }
+        }
+
+        @Override
+        public Map<String, List<Object>> getEntityEventMap(String entityName) {
+            return ecaHandler != null ? ecaHandler.getEntityEventMap(entityName) : null;
+        }
+
+        @Override
+        public void evalRules(String currentOperation, Map<String, List<Object>> eventMap, String event, GenericEntity value,
+                boolean isError) throws GenericEntityException {
+            if (EV_RUN.equals(event) && value.getPrimaryKey().equals(failingPrimaryKey)) {
+                throw new GenericEntityException("Failing entity ECA of " + failingPrimaryKey);
+            }
+            if ("Testing".equals(value.getEntityName())) {
+                counts.merge(event + ":" + currentOperation, 1, Integer::sum);
+            }
+            if (ecaHandler != null) {
+                ecaHandler.evalRules(currentOperation, eventMap, event, value, isError);
+            }
+        }
+    }
+
     private final class TestObserver implements Observer {
         private Object arg;
 
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.StringUtil;
+import org.apache.ofbiz.base.util.UtilDateTime;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.UtilXml;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityComparisonOperator;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.model.ModelViewEntity;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline.EntityLevel;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * Exports entities to XML data files, several entities at the same time.
+ * <p>The entities having more rows than the chunk size are split in ranges of primary keys, found by reading their
+ * primary keys only, and each range is exported to its own file in its own transaction. The files are gzip
+ * compressed by default and are listed in a manifest, with their entity, their number of rows and their SHA-256
+ * checksum. The manifest lists the files by entity level, the entities referenced through a foreign key first, so
+ * that {@link EntityDataLoadPipeline} can load them in this order.</p>
+ * <p>Like the export of the entities one after the other, the rows are not read in a single transaction and the
+ * files do not hold a consistent snapshot of a database being written.</p>
+ */
+public class EntityDataExporter {
+
+    /** The name of the file listing the exported files */
+    public static final String MANIFEST_FILE_NAME = "entity-export-manifest.xml";
+
+    private static final String MODULE = EntityDataExporter.class.getName();
+
+    private final Delegator delegator;
+    private int threads = UtilProperties.getPropertyAsInteger("general", "entity.data.export.threads",
+            Runtime.getRuntime().availableProcessors());
+    private int chunkSize = UtilProperties.getPropertyAsInteger("general", "entity.data.export.chunk.size", 100000);
+    private boolean compress = UtilProperties.getPropertyAsBoolean("general", "entity.data.export.compress", true);
+    private int transactionTimeout = EntitySaxReader.DEFAULT_TX_TIMEOUT;
+    private Timestamp fromDate = null;
+
+    private final Map<String, String> errors = new ConcurrentHashMap<>();
+
+    public EntityDataExporter(Delegator delegator) {
+        this.delegator = delegator;
+    }
+
+    /**
+     * Sets the number of entities and ranges exported at the same time.
+     * @param threads the threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the number of rows above which an entity is split in ranges.
+     * @param chunkSize the chunk size
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Sets whether the files are gzip compressed.
+     * @param compress the compress
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Sets the timeout of the transaction reading a range.
+     * @param transactionTimeout the transaction timeout in seconds
+     */
+    public void setTransactionTimeout(int transactionTimeout) {
+        this.transactionTimeout = transactionTimeout;
+    }
+
+    /**
+     * Sets the date from which the rows created are exported.
+     * @param fromDate the date compared with the created stamp of the rows, all the rows when <code>null</code>
+     */
+    public void setFromDate(Timestamp fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    /**
+     * Gets the entities which could not be exported. Their files are not kept.
+     * @return the error message of each entity, by entity name
+     */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Exports entities to a directory and writes the manifest of the files written. The view entities and the
+     * entities having no row are not exported.
+     * @param directory the directory of the files
+     * @param entityNames the entities to export
+     * @return the files written, in the order of the manifest
+     * @throws GenericEntityException if the entity model cannot be read or the export is interrupted
+     * @throws IOException if the manifest cannot be written
+     */
+    public List<ExportFile> export(Path directory, Collection<String> entityNames) throws GenericEntityException, IOException {
+        Map<String, EntityLevel> entityLevels = EntityDataLoadPipeline.getEntityLevels(delegator.getModelReader());
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = ExecutionPool.getScheduledExecutor(null, "OFBiz-data-export", threads, 0, false);
+        List<ExportFile> files = new ArrayList<>();
+        try {
+            List<Ranges> entityRanges = new ArrayList<>(entityNames.size());
+            for (String entityName : entityNames) {
+                ModelEntity modelEntity = delegator.getModelEntity(entityName);
+                if (modelEntity == null || modelEntity instanceof ModelViewEntity) {
+                    continue;
+                }
+                Ranges ranges = new Ranges(directory, modelEntity);
+                ranges.future = executor.submit(ranges);
+                entityRanges.add(ranges);
+            }
+            // the ranges of an entity are exported as soon as they are known
+            List<Range> rangesToExport = new ArrayList<>();
+            for (Ranges ranges : entityRanges) {
+                List<Range> entityRangesToExport = getResult(ranges.modelEntity, ranges.future);
+                if (entityRangesToExport != null) {
+                    for (Range range : entityRangesToExport) {
+                        range.future = executor.submit(range);
+                        rangesToExport.add(range);
+                    }
+                }
+            }
+            for (Range range : rangesToExport) {
+                ExportFile file = getResult(range.modelEntity, range.future);
+                if (file != null) {
+                    files.add(file);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityException("The data export was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // an entity is exported completely or not at all
+        for (ExportFile file : files) {
+            if (errors.containsKey(file.getEntityName())) {
+                Files.deleteIfExists(directory.resolve(file.getFileName()));
+            }
+        }
+        files.removeIf(file -> errors.containsKey(file.getEntityName()));
+        files.sort(Comparator.comparingInt((ExportFile file) -> entityLevels.get(file.getEntityName()).getLevel())
+                .thenComparing(ExportFile::getFileName));
+        writeManifest(directory.resolve(MANIFEST_FILE_NAME), files);
+
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        long rows = files.stream().mapToLong(ExportFile::getRows).sum();
+        Debug.logImportant("Exported " + rows + " rows to " + files.size() + " files in " + elapsedMillis + "ms, "
+                + (elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows) + " rows/s with " + threads + " threads", MODULE);
+        return files;
+    }
+
+    private <T> T getResult(ModelEntity modelEntity, Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            String errMsg = "Error when writing " + modelEntity.getEntityName() + ": " + e.getCause();
+            Debug.logError(e.getCause(), errMsg, MODULE);
+            errors.putIfAbsent(modelEntity.getEntityName(), errMsg);
+            return null;
+        }
+    }
+
+    private EntityQuery makeQuery(ModelEntity modelEntity, Map<String, Object> fromKey, Map<String, Object> toKey) {
+        List<EntityCondition> conditions = new ArrayList<>();
+        if (fromDate != null) {
+            conditions.add(EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_FIELD, EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
+        }
+        if (fromKey != null) {
+            conditions.add(makeKeyCondition(modelEntity.getPkFieldNames(), fromKey, true));
+        }
+        if (toKey != null) {
+            conditions.add(makeKeyCondition(modelEntity.getPkFieldNames(), toKey, false));
+        }
+        return EntityQuery.use(delegator).from(modelEntity.getEntityName()).where(conditions).orderBy(modelEntity.getPkFieldNames());
+    }
+
+    /**
+     * Makes the condition of the keys following or preceding a key, in the order of the primary key fields.
+     * @param pkFieldNames the primary key fields
+     * @param key the key
+     * @param from <code>true</code> for the keys greater than or equal to the key, <code>false</code> for the keys
+     *            lower than the key
+     * @return the condition
+     */
+    static EntityCondition makeKeyCondition(List<String> pkFieldNames, Map<String, Object> key, boolean from) {
+        EntityComparisonOperator<?, ?> operator = from ? EntityOperator.GREATER_THAN : EntityOperator.LESS_THAN;
+        List<EntityCondition> alternatives = new ArrayList<>(pkFieldNames.size() + 1);
+        List<EntityCondition> equalFields = new ArrayList<>(pkFieldNames.size());
+        for (String fieldName : pkFieldNames) {
+            List<EntityCondition> alternative = new ArrayList<>(equalFields);
+            alternative.add(EntityCondition.makeCondition(fieldName, operator, key.get(fieldName)));
+            alternatives.add(EntityCondition.makeCondition(alternative));
+            equalFields.add(EntityCondition.makeCondition(fieldName, key.get(fieldName)));
+        }
+        if (from) {
+            alternatives.add(EntityCondition.makeCondition(equalFields));
+        }
+        return EntityCondition.makeCondition(alternatives, EntityOperator.OR);
+    }
+
+    private String getFileName(String entityName, int rangeIndex) {
+        return entityName + (rangeIndex > 0 ? String.format(".%04d", rangeIndex) : "") + (compress ? ".xml.gz" : ".xml");
+    }
+
+    private static MessageDigest getMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeManifest(Path manifest, List<ExportFile> files) throws IOException {
+        Document document = UtilXml.makeEmptyXmlDocument("entity-export-manifest");
+        Element root = document.getDocumentElement();
+        root.setAttribute("created", UtilDateTime.nowTimestamp().toString());
+        for (ExportFile file : files) {
+            Element element = UtilXml.addChildElement(root, "file", document);
+            element.setAttribute("name", file.getFileName());
+            element.setAttribute("entity", file.getEntityName());
+            element.setAttribute("rows", Long.toString(file.getRows()));
+            element.setAttribute("sha256", file.getChecksum());
+        }
+        try (OutputStream os = Files.newOutputStream(manifest)) {
+            UtilXml.writeXmlDocument(os, document);
+        }
+    }
+
+    /**
+     * Reads the manifest of an export.
+     * @param directory the directory of the export
+     * @return the files listed in the manifest, in loading order, or <code>null</code> if the directory has no manifest
+     * @throws IOException if the manifest cannot be read
+     */
+    public static List<ExportFile> readManifest(Path directory) throws IOException {
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        if (!Files.exists(manifest)) {
+            return null;
+        }
+        Document document;
+        try (InputStream is = Files.newInputStream(manifest)) {
+            document = UtilXml.readXmlDocument(is, false, manifest.toString());
+        } catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Error reading the export manifest " + manifest, e);
+        }
+        List<ExportFile> files = new ArrayList<>();
+        for (Element element : UtilXml.childElementList(document.getDocumentElement(), "file")) {
+            files.add(new ExportFile(element.getAttribute("name"), element.getAttribute("entity"),
+                    Long.parseLong(element.getAttribute("rows")), element.getAttribute("sha256")));
+        }
+        return files;
+    }
+
+    /**
+     * Checks the files of an export against their checksum, several files at the same time.
+     * @param directory the directory of the export
+     * @param files the files listed in the manifest
+     * @param threads the number of files checked at the same time
+     * @return the error messages of the files missing or having another checksum, empty if all the files are valid
+     * @throws GenericEntityException if the check is interrupted
+     */
+    public static List<String> checkFiles(Path directory, List<ExportFile> files, int threads) throws GenericEntityException {
+        ExecutorService executor = ExecutionPool.getScheduledExecutor(null, "OFBiz-data-export-check", Math.max(1, threads), 0, false);
+        List<String> errorMessages = new ArrayList<>();
+        try {
+            List<Future<String>> checks = new ArrayList<>(files.size());
+            for (ExportFile file : files) {
+                checks.add(executor.submit(() -> {
+                    Path path = directory.resolve(file.getFileName());
+                    if (!Files.isReadable(path)) {
+                        return "Missing file " + file.getFileName();
+                    }
+                    String checksum = getChecksum(path);
+                    return checksum.equals(file.getChecksum()) ? null : "Invalid checksum of file " + file.getFileName();
+                }));
+            }
+            for (Future<String> check : checks) {
+                String errorMessage = check.get();
+                if (errorMessage != null) {
+                    errorMessages.add(errorMessage);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityException("The check of the export was interrupted", e);
+        } catch (ExecutionException e) {
+            errorMessages.add("Error checking the export files: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return errorMessages;
+    }
+
+    private static String getChecksum(Path path) throws IOException {
+        MessageDigest digest = getMessageDigest();
+        try (InputStream is = new DigestInputStream(Files.newInputStream(path), digest)) {
+            byte[] buffer = new byte[65536];
+            while (is.read(buffer) >= 0) {
+                // the digest is updated by the stream
+            }
+        }
+        return StringUtil.toHexString(digest.digest());
+    }
+
+    /** A file of an export. */
+    public static final class ExportFile {
+        private final String fileName;
+        private final String entityName;
+        private final long rows;
+        private final String checksum;
+
+        ExportFile(String fileName, String entityName, long rows, String checksum) {
+            this.fileName = fileName;
+            this.entityName = entityName;
+            this.rows = rows;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Gets the file name, relative to the directory of the export.
+         * @return the file name
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * Gets the entity of the rows held by the file.
+         * @return the entity name
+         */
+        public String getEntityName() {
+            return entityName;
+        }
+
+        /**
+         * Gets the number of rows held by the file.
+         * @return the rows
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Gets the SHA-256 checksum of the file, as written on disk.
+         * @return the checksum, in hexadecimal
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+    }
+
+    /** Splits an entity in ranges of primary keys by reading its primary keys in order. */
+    private final class Ranges implements Callable<List<Range>> {
+        private final Path directory;
+        private final ModelEntity modelEntity;
+        private Future<List<Range>> future;
+
+        private Ranges(Path directory, ModelEntity modelEntity) {
+            this.directory = directory;
+            this.modelEntity = modelEntity;
+        }
+
+        @Override
+        public List<Range> call() throws GenericEntityException {
+            List<Range> ranges = new ArrayList<>();
+            List<String> pkFieldNames = modelEntity.getPkFieldNames();
+            if (pkFieldNames.isEmpty()) {
+                ranges.add(new Range(directory, modelEntity, null, null, getFileName(modelEntity.getEntityName(), 0)));
+                return ranges;
+            }
+
+            List<GenericValue> bounds = new ArrayList<>();
+            long rows = 0;
+            boolean beganTransaction = false;
+            try {
+                beganTransaction = TransactionUtil.begin(transactionTimeout);
+                try (EntityListIterator keys = makeQuery(modelEntity, null, null).select(pkFieldNames.toArray(new String[0]))
+                        .queryIterator()) {
+                    GenericValue key;
+                    while ((key = keys.next()) != null) {
+                        if (rows > 0 && rows % chunkSize == 0) {
+                            bounds.add(key);
+                        }
+                        rows++;
+                    }
+                }
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException e) {
+                TransactionUtil.rollback(beganTransaction, "Error reading the primary keys of " + modelEntity.getEntityName(), e);
+                throw e;
+            }
+
+            if (rows == 0) {
+                return ranges;
+            }
+            GenericValue fromKey = null;
+            for (int i = 0; i <= bounds.size(); i++) {
+                GenericValue toKey = i < bounds.size() ? bounds.get(i) : null;
+                ranges.add(new Range(directory, modelEntity, fromKey, toKey,
+                        getFileName(modelEntity.getEntityName(), bounds.isEmpty() ? 0 : i + 1)));
+                fromKey = toKey;
+            }
+            return ranges;
+        }
+    }
+
+    /** Exports the rows of an entity between two primary keys to a file. */
+    private final class Range implements Callable<ExportFile> {
+        private final Path directory;
+        private final ModelEntity modelEntity;
+        private final GenericValue fromKey;
+        private final GenericValue toKey;
+        private final String fileName;
+        private Future<ExportFile> future;
+
+        private Range(Path directory, ModelEntity modelEntity, GenericValue fromKey, GenericValue toKey, String fileName) {
+            this.directory = directory;
+            this.modelEntity = modelEntity;
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public ExportFile call() throws GenericEntityException, IOException {
+            Path path = directory.resolve(fileName);
+            MessageDigest digest = getMessageDigest();
+            long rows = 0;
+            boolean beganTransaction = false;
+            try {
+                beganTransaction = TransactionUtil.begin(transactionTimeout);
+                try (EntityListIterator values = makeQuery(modelEntity, fromKey, toKey).queryIterator();
+                        OutputStream os = openStream(path, digest)) {
+                    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8)));
+                    writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+                    writer.println("<entity-engine-xml>");
+                    GenericValue value;
+                    while ((value = values.next()) != null) {
+                        value.writeXmlText(writer, "");
+                        rows++;
+                    }
+                    writer.println("</entity-engine-xml>");
+                    writer.flush();
+                    if (writer.checkError()) {
+                        throw new IOException("Error writing file " + path);
+                    }
+                }
+                TransactionUtil.commit(beganTransaction);
+            } catch (GenericEntityException | IOException e) {
+                TransactionUtil.rollback(beganTransaction, "Error exporting " + modelEntity.getEntityName() + " to " + fileName, e);
+                Files.deleteIfExists(path);
+                throw e;
+            }
+
+            // the rows may have been removed since the keys were read
+            if (rows == 0) {
+                Files.delete(path);
+                return null;
+            }
+            return new ExportFile(fileName, modelEntity.getEntityName(), rows, StringUtil.toHexString(digest.digest()));
+        }
+
+        private OutputStream openStream(Path path, MessageDigest digest) throws IOException {
+            OutputStream os = new DigestOutputStream(Files.newOutputStream(path), digest);
+            if (!compress) {
+                return os;
+            }
+            try {
+                return new GZIPOutputStream(os, 65536);
+            } catch (IOException e) {
+                os.close();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,718 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericPK;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.model.ModelReader;
+import org.apache.ofbiz.entity.model.ModelRelation;
+import org.apache.ofbiz.entity.model.ModelViewEntity;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntitySaxReader.Action;
+import org.xml.sax.SAXException;
+
+/**
+ * Loads Entity Engine XML files with several threads.
+ * <p>The files are parsed by {@link EntitySaxReader}s running in parallel, each one filling a bounded queue, and the
+ * queues are read in the order of the files. The values read are gathered in rounds which are written while the next
+ * round is read: inside a round the entities are written by level, the entities referenced through a foreign key
+ * before the ones referencing them, and the entities of the same level in parallel, in batches of upserts each
+ * committed in its own transaction. The entities referencing each other in a cycle are written together, in the order
+ * of the files. A value deleted ends the current round, so that the values are deleted in the order of the files.</p>
+ * <p>With the fast inserts, the values of the entities having no row when they are first written are inserted without
+ * looking for an existing row, as long as their primary key has not been loaded before in the same round. The rows
+ * may still exist, as when they were created by an entity ECA or loaded in a previous round: a batch failing with fast
+ * inserts is written again looking for the existing rows, and the values of its entities are no longer inserted
+ * without check.</p>
+ * <p>Unlike {@link EntityDataLoader} which loads each file in its own transaction, a file failing to load may be
+ * partly loaded.</p>
+ */
+public class EntityDataLoadPipeline {
+
+    private static final String MODULE = EntityDataLoadPipeline.class.getName();
+    private static final Entry END = new Entry(null, null, false, false);
+
+    private final Delegator delegator;
+    private final Delegator noEcaDelegator;
+    private int parserThreads = UtilProperties.getPropertyAsInteger("general", "entity.data.load.parser.threads", 2);
+    private int writerThreads = UtilProperties.getPropertyAsInteger("general", "entity.data.load.writer.threads",
+            Runtime.getRuntime().availableProcessors());
+    private int batchSize = UtilProperties.getPropertyAsInteger("general", "entity.data.load.batch.size", 1000);
+    private int queueSize = UtilProperties.getPropertyAsInteger("general", "entity.data.load.queue.size", 10000);
+    private int roundSize = UtilProperties.getPropertyAsInteger("general", "entity.data.load.round.size", 100000);
+    private int transactionTimeout = EntitySaxReader.DEFAULT_TX_TIMEOUT;
+    private boolean createDummyFks = false;
+    private boolean maintainTxStamps = false;
+    private boolean continueOnFail = false;
+    private boolean fastInserts = false;
+
+    private final List<Object> errorMessages = Collections.synchronizedList(new LinkedList<>());
+    private final Map<String, EntityStatistics> statistics = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> emptyEntities = new ConcurrentHashMap<>();
+    private volatile boolean dummyFksCreated = false;
+    private Map<String, EntityLevel> entityLevels = null;
+    private ExecutorService writers = null;
+
+    public EntityDataLoadPipeline(Delegator delegator) {
+        // clone the delegator right off so there is no chance of making change to the initial object
+        this.delegator = delegator.cloneDelegator();
+        this.noEcaDelegator = delegator.cloneDelegator();
+        this.noEcaDelegator.setEntityEcaHandler(null);
+    }
+
+    /**
+     * Sets the number of files parsed at the same time.
+     * @param parserThreads the parser threads
+     */
+    public void setParserThreads(int parserThreads) {
+        this.parserThreads = Math.max(1, parserThreads);
+    }
+
+    /**
+     * Sets the number of batches written at the same time.
+     * @param writerThreads the writer threads
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = Math.max(1, writerThreads);
+    }
+
+    /**
+     * Sets the maximum number of values written in a transaction.
+     * @param batchSize the batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Sets the number of values read in advance for each file being parsed.
+     * @param queueSize the queue size
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    /**
+     * Sets the number of values gathered in a round, at most two rounds are kept in memory.
+     * @param roundSize the round size
+     */
+    public void setRoundSize(int roundSize) {
+        this.roundSize = Math.max(1, roundSize);
+    }
+
+    /**
+     * Sets the timeout of the transactions writing the batches.
+     * @param transactionTimeout the transaction timeout
+     */
+    public void setTransactionTimeout(int transactionTimeout) {
+        this.transactionTimeout = transactionTimeout;
+    }
+
+    /**
+     * Sets create dummy fks.
+     * @param createDummyFks the create dummy fks
+     */
+    public void setCreateDummyFks(boolean createDummyFks) {
+        this.createDummyFks = createDummyFks;
+    }
+
+    /**
+     * Sets maintain tx stamps.
+     * @param maintainTxStamps the maintain tx stamps
+     */
+    public void setMaintainTxStamps(boolean maintainTxStamps) {
+        this.maintainTxStamps = maintainTxStamps;
+    }
+
+    /**
+     * Sets continue on fail.
+     * @param continueOnFail the continue on fail
+     */
+    public void setContinueOnFail(boolean continueOnFail) {
+        this.continueOnFail = continueOnFail;
+    }
+
+    /**
+     * Sets whether the values of the entities empty when the load starts are inserted without existence check.
+     * @param fastInserts the fast inserts
+     */
+    public void setFastInserts(boolean fastInserts) {
+        this.fastInserts = fastInserts;
+    }
+
+    /**
+     * Gets the errors which did not stop the load, when continuing on failure.
+     * @return the error messages
+     */
+    public List<Object> getErrorMessages() {
+        return errorMessages;
+    }
+
+    /**
+     * Loads data files.
+     * @param urls the data files, in loading order
+     * @return the number of values read from each file, in loading order
+     * @throws GenericEntityException if a file cannot be loaded and the load does not continue on failure
+     */
+    public Map<URL, Long> load(List<URL> urls) throws GenericEntityException {
+        Map<URL, Long> readCounts = new LinkedHashMap<>();
+        if (urls.isEmpty()) {
+            return readCounts;
+        }
+        if (entityLevels == null) {
+            entityLevels = getEntityLevels(delegator.getModelReader());
+        }
+        long startTime = System.currentTimeMillis();
+        ExecutorService parsers = ExecutionPool.getScheduledExecutor(null, "OFBiz-data-load-parser", parserThreads, 0, false);
+        writers = ExecutionPool.getScheduledExecutor(null, "OFBiz-data-load-writer", writerThreads, 0, false);
+        Future<Void> previousRound = null;
+        try {
+            List<FileReader> fileReaders = new ArrayList<>(urls.size());
+            for (URL url : urls) {
+                FileReader fileReader = new FileReader(url);
+                fileReader.future = parsers.submit(fileReader);
+                fileReaders.add(fileReader);
+            }
+            Round round = new Round(false);
+            for (FileReader fileReader : fileReaders) {
+                for (Entry entry = fileReader.queue.take(); entry != END; entry = fileReader.queue.take()) {
+                    if (round.remove != (Action.DELETE == entry.action) || round.size >= roundSize) {
+                        previousRound = submitRound(round, previousRound);
+                        round = new Round(Action.DELETE == entry.action);
+                    }
+                    round.add(entry);
+                }
+                try {
+                    readCounts.put(fileReader.url, fileReader.future.get());
+                } catch (ExecutionException e) {
+                    String errMsg = "Error loading XML Resource \"" + fileReader.url.toExternalForm() + "\"; Error was: "
+                            + e.getCause().getMessage();
+                    if (!continueOnFail) {
+                        throw new GenericEntityException(errMsg, e.getCause());
+                    }
+                    Debug.logError(e.getCause(), errMsg, MODULE);
+                    errorMessages.add(errMsg);
+                    readCounts.put(fileReader.url, 0L);
+                }
+            }
+            previousRound = submitRound(round, previousRound);
+            waitForRound(previousRound);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericEntityException("The data load was interrupted", e);
+        } finally {
+            if (previousRound != null) {
+                previousRound.cancel(true);
+            }
+            parsers.shutdownNow();
+            writers.shutdownNow();
+        }
+        logStatistics(System.currentTimeMillis() - startTime);
+        return readCounts;
+    }
+
+    /**
+     * Gets the statistics of the entities written since this pipeline was created, the slowest entities first.
+     * @return a map for each entity, with the number of rows written, inserted without existence check and skipped
+     * as they already existed, the time spent writing them and the number of rows written per second
+     */
+    public List<Map<String, Object>> getStatistics() {
+        List<EntityStatistics> entityStatistics = new ArrayList<>(statistics.values());
+        entityStatistics.sort((s1, s2) -> Long.compare(s2.nanos.get(), s1.nanos.get()));
+        List<Map<String, Object>> result = new ArrayList<>(entityStatistics.size());
+        for (EntityStatistics entityStatistic : entityStatistics) {
+            result.add(UtilMisc.toMap("entityName", entityStatistic.entityName, "rows", entityStatistic.rows.get(),
+                    "fastRows", entityStatistic.fastRows.get(), "skippedRows", entityStatistic.skippedRows.get(),
+                    "millis", entityStatistic.nanos.get() / 1000000, "rowsPerSecond", entityStatistic.getRowsPerSecond()));
+        }
+        return result;
+    }
+
+    private void logStatistics(long elapsedMillis) {
+        long rows = 0;
+        for (Map<String, Object> entityStatistic : getStatistics()) {
+            rows += (Long) entityStatistic.get("rows");
+            Debug.logImportant(entityStatistic.get("entityName") + ": " + entityStatistic.get("rows") + " rows ("
+                    + entityStatistic.get("fastRows") + " fast inserts, " + entityStatistic.get("skippedRows") + " skipped) in "
+                    + entityStatistic.get("millis") + "ms, " + entityStatistic.get("rowsPerSecond") + " rows/s", MODULE);
+        }
+        Debug.logImportant("Wrote " + rows + " rows in " + elapsedMillis + "ms, " + (elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows)
+                + " rows/s with " + parserThreads + " parser threads and " + writerThreads + " writer threads", MODULE);
+    }
+
+    /**
+     * Starts writing a round once the previous one is written.
+     */
+    private Future<Void> submitRound(Round round, Future<Void> previousRound) throws GenericEntityException, InterruptedException {
+        if (round.size == 0) {
+            return previousRound;
+        }
+        if (previousRound != null) {
+            waitForRound(previousRound);
+        }
+        return ExecutionPool.GLOBAL_BATCH.submit(round);
+    }
+
+    private static void waitForRound(Future<Void> round) throws GenericEntityException, InterruptedException {
+        if (round == null) {
+            return;
+        }
+        try {
+            round.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GenericEntityException) {
+                throw (GenericEntityException) e.getCause();
+            }
+            throw new GenericEntityException("Error writing the data", e.getCause());
+        }
+    }
+
+    /**
+     * Writes values of the same entity level, in the order they were read: the values with the same action and
+     * options are written by batches.
+     */
+    private void writeValues(List<Entry> entries) throws GenericEntityException {
+        // the primary keys inserted without existence check, only kept for the round
+        Map<String, Set<GenericPK>> insertedPrimaryKeys = new HashMap<>();
+        int start = 0;
+        while (start < entries.size()) {
+            Entry first = entries.get(start);
+            int end = start + 1;
+            while (end < entries.size() && end - start < batchSize && first.isSameBatch(entries.get(end))) {
+                end++;
+            }
+            try {
+                writeBatch(entries.subList(start, end), insertedPrimaryKeys);
+            } catch (GenericEntityException e) {
+                if (!continueOnFail) {
+                    throw e;
+                }
+                String errMsg = "Error writing " + (end - start) + " values of " + first.value.getEntityName() + "; Error was: " + e.getMessage();
+                Debug.logError(e, errMsg, MODULE);
+                errorMessages.add(errMsg);
+            }
+            start = end;
+        }
+    }
+
+    private void writeBatch(List<Entry> batch, Map<String, Set<GenericPK>> insertedPrimaryKeys) throws GenericEntityException {
+        Entry first = batch.get(0);
+        Delegator writer = first.disableEeca ? noEcaDelegator : delegator;
+        List<GenericValue> newValues = new ArrayList<>(batch.size());
+        List<GenericValue> otherValues = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            if (isNew(entry.value, insertedPrimaryKeys)) {
+                newValues.add(entry.value);
+            } else {
+                otherValues.add(entry.value);
+            }
+        }
+        Set<String> fastEntityNames = new HashSet<>();
+        for (GenericValue value : newValues) {
+            fastEntityNames.add(value.getEntityName());
+        }
+        long startTime = System.nanoTime();
+        int fast = newValues.size();
+        int skipped = 0;
+        boolean beganTransaction = transactionTimeout > 0 ? TransactionUtil.begin(transactionTimeout) : TransactionUtil.begin();
+        try {
+            if (Action.CREATE == first.action && !otherValues.isEmpty()) {
+                // create only the values which do not exist
+                List<GenericValue> missingValues = getMissingValues(writer, otherValues, newValues);
+                skipped = otherValues.size() - missingValues.size();
+                newValues.addAll(missingValues);
+                otherValues.clear();
+            }
+            if (!newValues.isEmpty()) {
+                EntityStoreOptions storeOptions = new EntityStoreOptions(first.createDummyFks);
+                storeOptions.setSkipExistenceCheck(true);
+                writer.storeAll(newValues, storeOptions);
+            }
+            if (!otherValues.isEmpty()) {
+                writer.storeAll(otherValues, new EntityStoreOptions(first.createDummyFks));
+            }
+            TransactionUtil.commit(beganTransaction);
+        } catch (GenericEntityException e) {
+            TransactionUtil.rollback(beganTransaction, "Error writing the data", e);
+            if (fastEntityNames.isEmpty() || !beganTransaction) {
+                throw e;
+            }
+            // some rows inserted without existence check may exist, write the batch again looking for them
+            Debug.logInfo("Unable to insert " + batch.size() + " values of " + fastEntityNames + " without existence check, "
+                    + "looking for the existing rows from now on; Error was: " + e.getMessage(), MODULE);
+            for (String entityName : fastEntityNames) {
+                emptyEntities.put(entityName, false);
+            }
+            writeBatch(batch, insertedPrimaryKeys);
+            return;
+        }
+        if (first.createDummyFks) {
+            // the referenced values may have been created, the fast inserts cannot be trusted anymore
+            dummyFksCreated = true;
+        }
+        addStatistics(batch, System.nanoTime() - startTime, fast, skipped);
+    }
+
+    /**
+     * Gets the values not existing in the database, nor in the values already known as new.
+     */
+    private static List<GenericValue> getMissingValues(Delegator writer, List<GenericValue> values, List<GenericValue> newValues)
+            throws GenericEntityException {
+        Set<GenericPK> knownPrimaryKeys = new HashSet<>();
+        for (GenericValue value : newValues) {
+            knownPrimaryKeys.add(value.getPrimaryKey());
+        }
+        Map<String, List<GenericPK>> primaryKeysByEntity = new HashMap<>();
+        for (GenericValue value : values) {
+            primaryKeysByEntity.computeIfAbsent(value.getEntityName(), k -> new ArrayList<>()).add(value.getPrimaryKey());
+        }
+        for (Map.Entry<String, List<GenericPK>> entityPrimaryKeys : primaryKeysByEntity.entrySet()) {
+            for (GenericValue existing : writer.getEntityHelper(entityPrimaryKeys.getKey()).findAllByPrimaryKeys(entityPrimaryKeys.getValue())) {
+                knownPrimaryKeys.add(existing.getPrimaryKey());
+            }
+        }
+        List<GenericValue> missingValues = new ArrayList<>(values.size());
+        for (GenericValue value : values) {
+            if (knownPrimaryKeys.add(value.getPrimaryKey())) {
+                missingValues.add(value);
+            }
+        }
+        return missingValues;
+    }
+
+    /**
+     * Checks whether a value can be inserted without existence check: its entity had no row when it was first written
+     * and its primary key has not been inserted yet in the round.
+     */
+    private boolean isNew(GenericValue value, Map<String, Set<GenericPK>> insertedPrimaryKeys) throws GenericEntityException {
+        if (!fastInserts || dummyFksCreated || value.getModelEntity() instanceof ModelViewEntity) {
+            return false;
+        }
+        String entityName = value.getEntityName();
+        Boolean empty = emptyEntities.get(entityName);
+        if (empty == null) {
+            // the entity values are written by one thread at a time, and this is done before its first write
+            empty = EntityQuery.use(delegator).from(entityName).queryFirst() == null;
+            emptyEntities.put(entityName, empty);
+        }
+        return empty && insertedPrimaryKeys.computeIfAbsent(entityName, k -> new HashSet<>()).add(value.getPrimaryKey());
+    }
+
+    private void addStatistics(List<Entry> batch, long nanos, int fast, int skipped) {
+        Map<String, Integer> rowsByEntity = new HashMap<>();
+        for (Entry entry : batch) {
+            rowsByEntity.merge(entry.value.getEntityName(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entityRows : rowsByEntity.entrySet()) {
+            EntityStatistics entityStatistics = statistics.computeIfAbsent(entityRows.getKey(), EntityStatistics::new);
+            entityStatistics.rows.addAndGet(entityRows.getValue());
+            entityStatistics.nanos.addAndGet(nanos * entityRows.getValue() / batch.size());
+            entityStatistics.fastRows.addAndGet((long) fast * entityRows.getValue() / batch.size());
+            entityStatistics.skippedRows.addAndGet((long) skipped * entityRows.getValue() / batch.size());
+        }
+    }
+
+    private void removeValues(List<Entry> entries) throws GenericEntityException {
+        int start = 0;
+        while (start < entries.size()) {
+            Entry first = entries.get(start);
+            int end = start + 1;
+            while (end < entries.size() && end - start < batchSize && first.disableEeca == entries.get(end).disableEeca) {
+                end++;
+            }
+            List<GenericValue> values = new ArrayList<>(end - start);
+            for (Entry entry : entries.subList(start, end)) {
+                values.add(entry.value);
+            }
+            try {
+                (first.disableEeca ? noEcaDelegator : delegator).removeAll(values);
+            } catch (GenericEntityException e) {
+                if (!continueOnFail) {
+                    throw e;
+                }
+                String errMsg = "Error removing " + values.size() + " values; Error was: " + e.getMessage();
+                Debug.logError(e, errMsg, MODULE);
+                errorMessages.add(errMsg);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Computes the level of each entity: the entities referencing no other entity through a foreign key are at level 0,
+     * the other ones one level above the highest entity they reference. The entities referencing each other in a cycle
+     * share their level and their group, the view entities are above all the other entities.
+     * @param modelReader the entity model
+     * @return the level of each entity, by entity name
+     */
+    static Map<String, EntityLevel> getEntityLevels(ModelReader modelReader) throws GenericEntityException {
+        return new EntityLevelFinder(modelReader).find();
+    }
+
+    /** The level and the group of an entity. */
+    static final class EntityLevel {
+        private final int level;
+        private final String group;
+
+        EntityLevel(int level, String group) {
+            this.level = level;
+            this.group = group;
+        }
+
+        int getLevel() {
+            return level;
+        }
+
+        String getGroup() {
+            return group;
+        }
+    }
+
+    /**
+     * Finds the cycles of the foreign key graph with the Tarjan algorithm, a cycle being complete once all the
+     * entities it references are.
+     */
+    private static final class EntityLevelFinder {
+        private final ModelReader modelReader;
+        private final Map<String, EntityLevel> levels = new HashMap<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final Map<String, Integer> lowLinks = new HashMap<>();
+        private final LinkedList<String> stack = new LinkedList<>();
+        private final Set<String> onStack = new HashSet<>();
+        private final Map<String, Set<String>> referencedEntities = new HashMap<>();
+
+        private EntityLevelFinder(ModelReader modelReader) {
+            this.modelReader = modelReader;
+        }
+
+        private Map<String, EntityLevel> find() throws GenericEntityException {
+            Set<String> viewEntityNames = new HashSet<>();
+            for (String entityName : new TreeSet<>(modelReader.getEntityNames())) {
+                if (modelReader.getModelEntity(entityName) instanceof ModelViewEntity) {
+                    viewEntityNames.add(entityName);
+                } else if (!indexes.containsKey(entityName)) {
+                    visit(entityName);
+                }
+            }
+            int viewLevel = 0;
+            for (EntityLevel entityLevel : levels.values()) {
+                viewLevel = Math.max(viewLevel, entityLevel.level + 1);
+            }
+            for (String viewEntityName : viewEntityNames) {
+                levels.put(viewEntityName, new EntityLevel(viewLevel, viewEntityName));
+            }
+            return levels;
+        }
+
+        private void visit(String entityName) throws GenericEntityException {
+            int index = indexes.size();
+            indexes.put(entityName, index);
+            lowLinks.put(entityName, index);
+            stack.push(entityName);
+            onStack.add(entityName);
+            for (String referenced : getReferencedEntities(entityName)) {
+                if (!indexes.containsKey(referenced)) {
+                    visit(referenced);
+                    lowLinks.put(entityName, Math.min(lowLinks.get(entityName), lowLinks.get(referenced)));
+                } else if (onStack.contains(referenced)) {
+                    lowLinks.put(entityName, Math.min(lowLinks.get(entityName), indexes.get(referenced)));
+                }
+            }
+            if (lowLinks.get(entityName) == index) {
+                List<String> cycle = new ArrayList<>();
+                String member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    cycle.add(member);
+                } while (!member.equals(entityName));
+                int level = 0;
+                for (String cycleMember : cycle) {
+                    for (String referenced : getReferencedEntities(cycleMember)) {
+                        if (!cycle.contains(referenced)) {
+                            level = Math.max(level, levels.get(referenced).level + 1);
+                        }
+                    }
+                }
+                EntityLevel entityLevel = new EntityLevel(level, entityName);
+                for (String cycleMember : cycle) {
+                    levels.put(cycleMember, entityLevel);
+                }
+            }
+        }
+
+        private Set<String> getReferencedEntities(String entityName) throws GenericEntityException {
+            Set<String> referenced = referencedEntities.get(entityName);
+            if (referenced == null) {
+                referenced = new HashSet<>();
+                for (ModelRelation modelRelation : modelReader.getModelEntity(entityName).getRelationsOneList()) {
+                    String relEntityName = modelRelation.getRelEntityName();
+                    if ("one".equals(modelRelation.getType()) && !entityName.equals(relEntityName)
+                            && modelReader.getModelEntityNoCheck(relEntityName) != null
+                            && !(modelReader.getModelEntityNoCheck(relEntityName) instanceof ModelViewEntity)) {
+                        referenced.add(relEntityName);
+                    }
+                }
+                referencedEntities.put(entityName, referenced);
+            }
+            return referenced;
+        }
+    }
+
+    /** A value read, with the options of its file. */
+    private static final class Entry {
+        private final GenericValue value;
+        private final Action action;
+        private final boolean createDummyFks;
+        private final boolean disableEeca;
+
+        private Entry(GenericValue value, Action action, boolean createDummyFks, boolean disableEeca) {
+            this.value = value;
+            this.action = action;
+            this.createDummyFks = createDummyFks;
+            this.disableEeca = disableEeca;
+        }
+
+        private boolean isSameBatch(Entry other) {
+            return (Action.CREATE == action) == (Action.CREATE == other.action) && createDummyFks == other.createDummyFks
+                    && disableEeca == other.disableEeca;
+        }
+    }
+
+    /** Parses a file, the values read being queued until the previous files are read. */
+    private final class FileReader implements Callable<Long> {
+        private final URL url;
+        private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(queueSize);
+        private Future<Long> future;
+
+        private FileReader(URL url) {
+            this.url = url;
+        }
+
+        @Override
+        public Long call() throws IOException, SAXException, InterruptedException {
+            try {
+                EntitySaxReader reader = new EntitySaxReader(delegator, transactionTimeout);
+                reader.setCreateDummyFks(createDummyFks);
+                reader.setMaintainTxStamps(maintainTxStamps);
+                reader.setContinueOnFail(continueOnFail);
+                reader.setValueHandler((value, action, dummyFks, disableEeca) -> {
+                    try {
+                        queue.put(new Entry(value, action, dummyFks, disableEeca));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SAXException("The data load was interrupted", e);
+                    }
+                });
+                return reader.parse(url);
+            } finally {
+                queue.put(END);
+            }
+        }
+    }
+
+    /** Values read in a row, written by entity level once the previous rounds are written. */
+    private final class Round implements Callable<Void> {
+        private final boolean remove;
+        private final List<Entry> removeEntries = new ArrayList<>();
+        private final Map<Integer, Map<String, List<Entry>>> entriesByLevel = new TreeMap<>();
+        private int size = 0;
+
+        private Round(boolean remove) {
+            this.remove = remove;
+        }
+
+        private void add(Entry entry) {
+            if (remove) {
+                removeEntries.add(entry);
+            } else {
+                EntityLevel entityLevel = entityLevels.get(entry.value.getEntityName());
+                entriesByLevel.computeIfAbsent(entityLevel.level, k -> new HashMap<>())
+                        .computeIfAbsent(entityLevel.group, k -> new ArrayList<>()).add(entry);
+            }
+            size++;
+        }
+
+        @Override
+        public Void call() throws GenericEntityException, InterruptedException {
+            if (remove) {
+                removeValues(removeEntries);
+                return null;
+            }
+            for (Map<String, List<Entry>> levelEntries : entriesByLevel.values()) {
+                List<Future<Void>> futures = new ArrayList<>(levelEntries.size());
+                for (List<Entry> groupEntries : levelEntries.values()) {
+                    futures.add(writers.submit(() -> {
+                        writeValues(groupEntries);
+                        return null;
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    waitForRound(future);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class EntityStatistics {
+        private final String entityName;
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong fastRows = new AtomicLong();
+        private final AtomicLong skippedRows = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        private EntityStatistics(String entityName) {
+            this.entityName = entityName;
+        }
+
+        private long getRowsPerSecond() {
+            long elapsed = nanos.get();
+            return elapsed > 0 ? rows.get() * 1000000000L / elapsed : rows.get();
+        }
+    }
+}
@@ -54,6 +54,12 @@ public class EntityFindOptions implements java.io.Serializable {
     /** OFFSET option */
     private int offset = -1;
 
+    /** FOR UPDATE option */
+    private boolean forUpdate = false;
+
+    /** SKIP LOCKED option, only used with FOR UPDATE */
+    private boolean skipLocked = false;
+
     /** Default constructor. Defaults are as follows:
      *      specifyTypeAndConcur = true
      *      resultSetType = TYPE_FORWARD_ONLY
@@ -173,4 +179,26 @@ public class EntityFindOptions implements java.io.Serializable {
     public void setOffset(int offset) {
         this.offset = offset;
     }
+
+    /** Specifies whether the selected rows should be locked (SELECT ... FOR UPDATE). */
+    public boolean getForUpdate() {
+        return forUpdate;
+    }
+
+    /** Specifies whether the selected rows should be locked (SELECT ... FOR UPDATE). */
+    public void setForUpdate(boolean forUpdate) {
+        this.forUpdate = forUpdate;
+    }
+
+    /** Specifies whether rows locked by another transaction should be skipped instead of waited for
+     * (SELECT ... FOR UPDATE SKIP LOCKED). Ignored when the datasource does not support it. */
+    public boolean getSkipLocked() {
+        return skipLocked;
+    }
+
+    /** Specifies whether rows locked by another transaction should be skipped instead of waited for
+     * (SELECT ... FOR UPDATE SKIP LOCKED). Ignored when the datasource does not support it. */
+    public void setSkipLocked(boolean skipLocked) {
+        this.skipLocked = skipLocked;
+    }
 }
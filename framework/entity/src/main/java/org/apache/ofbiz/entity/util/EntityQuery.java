@@ -72,6 +72,8 @@ public class EntityQuery {
     private Map<String, Object> fieldMap = null;
     private Integer offset;
     private Integer limit;
+    private boolean forUpdate = false;
+    private boolean skipLocked = false;
 
 
     /** Construct an EntityQuery object for use against the specified Delegator
@@ -309,6 +311,25 @@ public class EntityQuery {
         return this;
     }
 
+    /** Specifies that the selected rows should be locked until the end of the current transaction (SELECT ... FOR UPDATE).
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery forUpdate() {
+        this.forUpdate = true;
+        return this;
+    }
+
+    /** Specifies that the selected rows should be locked and that rows already locked by another transaction
+     * should be skipped (SELECT ... FOR UPDATE SKIP LOCKED). When the datasource does not support
+     * <code>SKIP LOCKED</code> the rows are only locked.
+     * @return this EntityQuery object, to enable chaining
+     */
+    public EntityQuery skipLocked() {
+        this.forUpdate = true;
+        this.skipLocked = true;
+        return this;
+    }
+
     /** Specifies whether results should be read from the cache (or written to the cache if the results have not yet been cached)
      * @return this EntityQuery object, to enable chaining
      */
@@ -499,6 +520,8 @@ public class EntityQuery {
             findOptions.setOffset(offset);
         }
         findOptions.setDistinct(distinct);
+        findOptions.setForUpdate(forUpdate);
+        findOptions.setSkipLocked(skipLocked);
         return findOptions;
     }
 
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -97,10 +98,12 @@ public class EntitySaxReader extends DefaultHandler {
     private boolean createDummyFks = false;
     private boolean checkDataOnly = false;
     private boolean continueOnFail = false;
-    private enum Action { CREATE, CREATE_UPDATE, CREATE_REPLACE, DELETE }
+    private boolean disableEeca = false;
+    enum Action { CREATE, CREATE_UPDATE, CREATE_REPLACE, DELETE }
     private List<String> actionTags = UtilMisc.toList("create", "create-update", "create-replace", "delete");
     private Action currentAction = Action.CREATE_UPDATE;
     private List<Object> messageList = null;
+    private ValueHandler valueHandler = null;
 
     private List<GenericValue> valuesToWrite = new ArrayList<>(valuesPerWrite);
     private List<GenericValue> valuesToDelete = new ArrayList<>(valuesPerWrite);
@@ -113,6 +116,21 @@ public class EntitySaxReader extends DefaultHandler {
     private Map<String, Object> placeholderValues = null;
     //contains map of values for corresponding placeholders (eg. ${key}) in the entity xml data file.
 
+    /**
+     * Receives the values read instead of the reader writing them.
+     */
+    interface ValueHandler {
+        /**
+         * Handles a value read, its primary key being complete.
+         * @param value the value
+         * @param action the action of the enclosing action tag
+         * @param createDummyFks whether missing referenced values must be created
+         * @param disableEeca whether the entity ECAs are disabled for the value
+         * @throws SAXException to stop the parsing
+         */
+        void handle(GenericValue value, Action action, boolean createDummyFks, boolean disableEeca) throws SAXException;
+    }
+
     protected EntitySaxReader() { }
 
     public EntitySaxReader(Delegator delegator, int transactionTimeout) {
@@ -209,6 +227,7 @@ public class EntitySaxReader extends DefaultHandler {
      * @param disableEeca the disable eeca
      */
     public void setDisableEeca(boolean disableEeca) {
+        this.disableEeca = disableEeca;
         if (disableEeca) {
             if (this.ecaHandler == null) {
                 this.ecaHandler = delegator.getEntityEcaHandler();
@@ -221,6 +240,14 @@ public class EntitySaxReader extends DefaultHandler {
         }
     }
 
+    /**
+     * Sets the handler receiving the values read, the reader then writes nothing itself.
+     * @param valueHandler the value handler
+     */
+    void setValueHandler(ValueHandler valueHandler) {
+        this.valueHandler = valueHandler;
+    }
+
     private void setAction(Action action) {
         this.currentAction = action;
     }
@@ -244,7 +271,7 @@ public class EntitySaxReader extends DefaultHandler {
     }
 
     /**
-     * Parse long.
+     * Parse long. The file is decompressed when its name ends with <code>.gz</code>.
      * @param location the location
      * @return the long
      * @throws SAXException the sax exception
@@ -257,12 +284,25 @@ public class EntitySaxReader extends DefaultHandler {
         }
         Debug.logImportant("Beginning import from URL: " + location.toExternalForm(), MODULE);
         long numberRead = 0;
-        try (InputStream is = location.openStream()) {
+        try (InputStream is = openStream(location)) {
             numberRead = this.parse(is, location.toString());
         }
         return numberRead;
     }
 
+    private static InputStream openStream(URL location) throws IOException {
+        InputStream is = location.openStream();
+        if (!location.getPath().endsWith(".gz")) {
+            return is;
+        }
+        try {
+            return new GZIPInputStream(is, 65536);
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
     private long parse(InputStream is, String docDescription) throws SAXException, java.io.IOException {
         SAXParser parser;
         try {
@@ -271,6 +311,12 @@ public class EntitySaxReader extends DefaultHandler {
             throw new SAXException("Unable to create the SAX parser", pce);
         }
         numberRead = 0;
+        if (valueHandler != null) {
+            // the handler writes the values, in its own transactions
+            parser.parse(is, this);
+            Debug.logImportant("Finished reading " + numberRead + " values from " + docDescription, MODULE);
+            return numberRead;
+        }
         try {
             boolean beganTransaction = false;
             if (transactionTimeout > -1) {
@@ -401,6 +447,9 @@ public class EntitySaxReader extends DefaultHandler {
 
                     EntitySaxReader reader = new EntitySaxReader(delegator);
                     reader.setUseTryInsertMethod(this.useTryInsertMethod);
+                    reader.setValueHandler(this.valueHandler);
+                    reader.setCreateDummyFks(this.createDummyFks);
+                    reader.setDisableEeca(this.disableEeca);
                     try {
                         reader.setTransactionTimeout(this.transactionTimeout);
                     } catch (GenericTransactionException e1) {
@@ -460,6 +509,16 @@ public class EntitySaxReader extends DefaultHandler {
                     }
                 }
 
+                if (valueHandler != null) {
+                    valueHandler.handle(currentValue, currentAction, createDummyFks, disableEeca);
+                    numberRead++;
+                    if ((numberRead % valuesPerMessage) == 0) {
+                        Debug.logImportant("Another " + valuesPerMessage + " values read: now up to " + numberRead, MODULE);
+                    }
+                    currentValue = null;
+                    return;
+                }
+
                 try {
                     boolean exist = true;
                     boolean skip = false;
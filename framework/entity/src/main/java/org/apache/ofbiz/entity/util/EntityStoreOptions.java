@@ -27,8 +27,11 @@ public class EntityStoreOptions implements java.io.Serializable {
     /** Option for creating missing referenced values as dummy (pk-only) entries */
     private boolean createDummyFks = false;
 
+    /** Option for creating all the values without looking for the existing ones first */
+    private boolean skipExistenceCheck = false;
+
     /**
-     * Default constructor. Defaults are as follows: createDummyFks = false
+     * Default constructor. Defaults are as follows: createDummyFks = false, skipExistenceCheck = false
      */
     public EntityStoreOptions() {
     }
@@ -56,4 +59,20 @@ public class EntityStoreOptions implements java.io.Serializable {
     public void setCreateDummyFks(boolean createDummyFks) {
         this.createDummyFks = createDummyFks;
     }
+
+    /**
+     * If true, the given GenericValues are all created, the caller knowing that none of them exists yet.
+     * @return boolean
+     */
+    public boolean isSkipExistenceCheck() {
+        return skipExistenceCheck;
+    }
+
+    /**
+     * If true, the given GenericValues are all created, the caller knowing that none of them exists yet.
+     * @param skipExistenceCheck
+     */
+    public void setSkipExistenceCheck(boolean skipExistenceCheck) {
+        this.skipExistenceCheck = skipExistenceCheck;
+    }
 }
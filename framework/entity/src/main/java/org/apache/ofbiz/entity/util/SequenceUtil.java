@@ -22,12 +22,25 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.transaction.Transaction;
 
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilProperties;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.datasource.GenericHelperInfo;
 import org.apache.ofbiz.entity.model.ModelEntity;
@@ -42,6 +55,9 @@ import org.apache.ofbiz.entity.transaction.TransactionUtil;
 public class SequenceUtil {
 
     private static final String MODULE = SequenceUtil.class.getName();
+    private static final long MAX_BANK_SIZE = UtilProperties.getPropertyAsLong("general", "sequence.bank.max.size", 5000);
+    private static final long REFILL_MILLIS = UtilProperties.getPropertyAsLong("general", "sequence.bank.refill.millis", 1000);
+    private static final boolean PREFETCH = UtilProperties.getPropertyAsBoolean("general", "sequence.bank.prefetch", true);
 
     private final ConcurrentMap<String, SequenceBank> sequences = new ConcurrentHashMap<>();
     private final GenericHelperInfo helperInfo;
@@ -98,6 +114,20 @@ public class SequenceUtil {
         bank.refresh(staggerMax);
     }
 
+    /**
+     * Returns the statistics of the sequence banks, ordered by sequence name.
+     * @return one map per sequence with the <code>seqName</code>, <code>bankSize</code>, <code>curSeqId</code>,
+     * <code>maxSeqId</code>, <code>allocatedIds</code>, <code>fills</code>, <code>prefetches</code> and
+     * <code>waits</code> (the number of times a caller had to wait for a bank to be fetched) keys
+     */
+    public List<Map<String, Object>> getBankStatistics() {
+        List<Map<String, Object>> statistics = new ArrayList<>(sequences.size());
+        for (SequenceBank bank : new TreeMap<>(sequences).values()) {
+            statistics.add(bank.getStatistics());
+        }
+        return statistics;
+    }
+
     private SequenceBank getBank(String seqName, ModelEntity seqModelEntity) {
         SequenceBank bank = sequences.get(seqName);
 
@@ -105,7 +135,7 @@ public class SequenceUtil {
             long bankSize = SequenceBank.DEF_BANK_SIZE;
             if (seqModelEntity != null && seqModelEntity.getSequenceBankSize() != null) {
                 bankSize = seqModelEntity.getSequenceBankSize().longValue();
-                if (bankSize > SequenceBank.MAX_BANK_SIZE) bankSize = SequenceBank.MAX_BANK_SIZE;
+                if (bankSize > MAX_BANK_SIZE) bankSize = MAX_BANK_SIZE;
             }
             bank = new SequenceBank(seqName, bankSize);
             SequenceBank bankFromCache = sequences.putIfAbsent(seqName, bank);
@@ -115,23 +145,52 @@ public class SequenceUtil {
         return bank;
     }
 
+    /** A range of IDs reserved in the sequence table, handed out without locking. */
+    private static final class Range {
+        private final AtomicLong nextSeqId;
+        private final long maxSeqId;
+        private final long size;
+
+        private Range(long curSeqId, long size) {
+            this.nextSeqId = new AtomicLong(curSeqId);
+            this.maxSeqId = curSeqId + size;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The IDs of a sequence are handed out from the current range without locking; only the callers which find the
+     * range used up synchronize on the bank to switch to the next one.
+     * <p>The bank size adapts to the allocation rate of the sequence: it doubles when two banks in a row are used up in
+     * less than <code>sequence.bank.refill.millis</code> and halves back when a bank lasts more than ten times longer,
+     * within the <code>sequence-bank-size</code> of the entity and <code>sequence.bank.max.size</code>. Once the size
+     * of a bank grew, the next bank is fetched in the background when the current one is three quarters used up.</p>
+     */
     private final class SequenceBank {
         public static final long DEF_BANK_SIZE = 10;
-        public static final long MAX_BANK_SIZE = 5000;
         public static final long START_SEQ_ID = 10000;
 
         private final String seqName;
-        private final long bankSize;
+        private final long minBankSize;
         private final String updateForLockStatement;
         private final String selectSequenceStatement;
 
-        private long curSeqId;
-        private long maxSeqId;
+        private volatile Range range = new Range(0, 0);
+        private volatile long bankSize;
+        private final AtomicReference<Future<Range>> prefetchedRange = new AtomicReference<>();
+
+        // guarded by this
+        private long lastFillTime;
+        private int fastFills;
+
+        private final LongAdder allocatedIds = new LongAdder();
+        private final AtomicLong fills = new AtomicLong();
+        private final AtomicLong prefetches = new AtomicLong();
+        private final AtomicLong waits = new AtomicLong();
 
         private SequenceBank(String seqName, long bankSize) {
             this.seqName = seqName;
-            curSeqId = 0;
-            maxSeqId = 0;
+            this.minBankSize = bankSize;
             this.bankSize = bankSize;
             updateForLockStatement = "UPDATE " + SequenceUtil.this.tableName + " SET " + SequenceUtil.this.idColName + "="
                     + SequenceUtil.this.idColName + " WHERE " + SequenceUtil.this.nameColName + "='" + this.seqName + "'";
@@ -145,28 +204,121 @@ public class SequenceUtil {
                 stagger = (long) Math.ceil(Math.random() * staggerMax);
                 if (stagger == 0) stagger = 1;
             }
-            synchronized (this) {
-                if ((curSeqId + stagger) <= maxSeqId) {
-                    long retSeqId = curSeqId;
-                    curSeqId += stagger;
+            while (true) {
+                Range current = this.range;
+                long retSeqId = current.nextSeqId.getAndAdd(stagger);
+                if ((retSeqId + stagger) <= current.maxSeqId) {
+                    allocatedIds.increment();
+                    if (current.maxSeqId - retSeqId <= current.size / 4) {
+                        prefetch(current);
+                    }
                     return retSeqId;
+                }
+                if (!nextRange(current, stagger)) {
+                    Debug.logError("Fill bank failed, returning null", MODULE);
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Replaces a used up range by the prefetched one, or by a range fetched now.
+         * @return <code>false</code> if no range could be fetched
+         */
+        private synchronized boolean nextRange(Range usedUp, long stagger) {
+            if (this.range != usedUp) {
+                // another caller already switched to the next range
+                return true;
+            }
+            Range next = null;
+            Future<Range> prefetched = prefetchedRange.getAndSet(null);
+            if (prefetched == null || !prefetched.isDone()) {
+                waits.incrementAndGet();
+            }
+            if (prefetched != null) {
+                try {
+                    next = prefetched.get();
+                } catch (ExecutionException e) {
+                    Debug.logWarning(e.getCause(), "Prefetch of the bank of sequenced IDs for [" + seqName + "] failed", MODULE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (next == null || next.size < stagger) {
+                next = fillBank(getFillSize(stagger));
+            }
+            if (next == null) {
+                this.range = new Range(0, 0);
+                return false;
+            }
+            adaptBankSize();
+            this.range = next;
+            return true;
+        }
+
+        /**
+         * Fetches the next range in the background, if the bank size grew and no range is being fetched already.
+         * A caller still holding a range which was replaced meanwhile fetches nothing, so the ranges are used in the
+         * order they were reserved.
+         */
+        private void prefetch(Range current) {
+            if (!PREFETCH || bankSize <= minBankSize || this.range != current || prefetchedRange.get() != null) {
+                return;
+            }
+            FutureTask<Range> task = new FutureTask<>(() -> fillBank(bankSize));
+            if (prefetchedRange.compareAndSet(null, task)) {
+                prefetches.incrementAndGet();
+                ExecutionPool.GLOBAL_BATCH.execute(task);
+            }
+        }
+
+        private void adaptBankSize() {
+            long now = System.currentTimeMillis();
+            if (lastFillTime > 0) {
+                long lasted = now - lastFillTime;
+                if (lasted < REFILL_MILLIS) {
+                    if (++fastFills >= 2) {
+                        bankSize = Math.min(bankSize * 2, MAX_BANK_SIZE);
+                        fastFills = 0;
+                    }
                 } else {
-                    fillBank(stagger);
-                    if ((curSeqId + stagger) <= maxSeqId) {
-                        long retSeqId = curSeqId;
-                        curSeqId += stagger;
-                        return retSeqId;
-                    } else {
-                        Debug.logError("Fill bank failed, returning null", MODULE);
-                        return null;
+                    fastFills = 0;
+                    if (lasted > REFILL_MILLIS * 10) {
+                        bankSize = Math.max(bankSize / 2, minBankSize);
                     }
                 }
             }
+            lastFillTime = now;
+        }
+
+        private long getFillSize(long stagger) {
+            long fillSize = this.bankSize;
+            if (stagger > 1) {
+                // NOTE: could use staggerMax for this, but if that is done it would be easier to guess a valid next id without a brute force attack
+                fillSize = Math.max(fillSize, stagger * DEF_BANK_SIZE);
+            }
+            return Math.min(fillSize, MAX_BANK_SIZE);
         }
 
         private synchronized void refresh(long staggerMax) {
-            this.curSeqId = this.maxSeqId;
-            this.fillBank(staggerMax);
+            // the prefetched range, if any, is dropped with the current one
+            prefetchedRange.set(null);
+            Range next = fillBank(getFillSize(staggerMax));
+            this.range = next != null ? next : new Range(0, 0);
+        }
+
+        private Map<String, Object> getStatistics() {
+            Range current = this.range;
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("seqName", seqName);
+            statistics.put("bankSize", bankSize);
+            statistics.put("curSeqId", Math.min(current.nextSeqId.get(), current.maxSeqId));
+            statistics.put("maxSeqId", current.maxSeqId);
+            statistics.put("allocatedIds", allocatedIds.sum());
+            statistics.put("fills", fills.get());
+            statistics.put("prefetches", prefetches.get());
+            statistics.put("waits", waits.get());
+            return statistics;
         }
 
         /*
@@ -177,22 +329,8 @@ public class SequenceUtil {
            3 - increment the sequence
            The three steps are executed in one dedicated database transaction.
          */
-        private void fillBank(long stagger) {
-            // no need to get a new bank, SeqIds available
-            if ((curSeqId + stagger) <= maxSeqId) {
-                return;
-            }
-
-            long bankSize = this.bankSize;
-            if (stagger > 1) {
-                // NOTE: could use staggerMax for this, but if that is done it would be easier to guess a valid next id without a brute force attack
-                bankSize = stagger * DEF_BANK_SIZE;
-            }
-
-            if (bankSize > MAX_BANK_SIZE) {
-                bankSize = MAX_BANK_SIZE;
-            }
-
+        private Range fillBank(long bankSize) {
+            long curSeqId = 0;
             Transaction suspendedTransaction = null;
             try {
                 suspendedTransaction = TransactionUtil.suspend();
@@ -273,9 +411,7 @@ public class SequenceUtil {
                         }
                     }
                 } catch (SQLException | GenericEntityException e) {
-                    // reset the sequence fields and return (note: it would be better to throw an exception)
-                    curSeqId = 0;
-                    maxSeqId = 0;
+                    // return no range (note: it would be better to throw an exception)
                     String errMsg = "General error in getting a sequenced ID";
                     Debug.logError(e, errMsg, MODULE);
                     try {
@@ -283,33 +419,30 @@ public class SequenceUtil {
                     } catch (GenericTransactionException gte2) {
                         Debug.logError(gte2, "Unable to rollback transaction", MODULE);
                     }
-                    return;
+                    return null;
                 }
             } catch (GenericTransactionException e) {
                 Debug.logError(e, "System Error suspending transaction in sequence util", MODULE);
-                // reset the sequence fields and return (note: it would be better to throw an exception)
-                curSeqId = 0;
-                maxSeqId = 0;
-                return;
+                // return no range (note: it would be better to throw an exception)
+                return null;
             } finally {
                 if (suspendedTransaction != null) {
                     try {
                         TransactionUtil.resume(suspendedTransaction);
                     } catch (GenericTransactionException e) {
                         Debug.logError(e, "Error resuming suspended transaction in sequence util", MODULE);
-                        // reset the sequence fields and return (note: it would be better to throw an exception)
-                        curSeqId = 0;
-                        maxSeqId = 0;
-                        return;
+                        // return no range (note: it would be better to throw an exception)
+                        return null;
                     }
                 }
             }
 
-            maxSeqId = curSeqId + bankSize;
+            fills.incrementAndGet();
             if (Debug.infoOn()) {
-                Debug.logInfo("Got bank of sequenced IDs for [" + this.seqName + "]; curSeqId=" + curSeqId + ", maxSeqId=" + maxSeqId + ", bankSize="
-                        + bankSize, MODULE);
+                Debug.logInfo("Got bank of sequenced IDs for [" + this.seqName + "]; curSeqId=" + curSeqId + ", maxSeqId=" + (curSeqId + bankSize)
+                        + ", bankSize=" + bankSize, MODULE);
             }
+            return new Range(curSeqId, bankSize);
         }
     }
 }
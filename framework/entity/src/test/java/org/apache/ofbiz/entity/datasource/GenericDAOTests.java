@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ofbiz.entity.GenericDataSourceException;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericEntityNotFoundException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.junit.Test;
+
+public class GenericDAOTests {
+    private static final List<GenericValue> VALUES = Arrays.asList(mock(GenericValue.class), mock(GenericValue.class),
+            mock(GenericValue.class));
+
+    @Test
+    public void batchRowsAreSummed() throws GenericEntityException {
+        assertEquals(3, GenericDAO.countBatchRows(new int[] {1, 1, 1}, VALUES, true));
+        assertEquals(2, GenericDAO.countBatchRows(new int[] {1, 0, 1}, VALUES, false));
+    }
+
+    @Test
+    public void successWithoutInfoCountsAsOneRow() throws GenericEntityException {
+        int[] updateCounts = {Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, 1};
+        assertEquals(3, GenericDAO.countBatchRows(updateCounts, VALUES, true));
+    }
+
+    @Test
+    public void updateOfAMissingRowFails() {
+        int[] updateCounts = {Statement.SUCCESS_NO_INFO, 0, 1};
+        assertThrows(GenericEntityNotFoundException.class, () -> GenericDAO.countBatchRows(updateCounts, VALUES, true));
+    }
+
+    @Test
+    public void failedStatementFails() {
+        int[] updateCounts = {1, Statement.EXECUTE_FAILED, 1};
+        assertThrows(GenericDataSourceException.class, () -> GenericDAO.countBatchRows(updateCounts, VALUES, false));
+    }
+}
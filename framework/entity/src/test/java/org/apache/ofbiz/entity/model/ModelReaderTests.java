@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.ofbiz.base.config.GenericConfigException;
+import org.apache.ofbiz.base.config.ResourceHandler;
+import org.apache.ofbiz.base.util.UtilXml;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+public class ModelReaderTests {
+    private static final String BASE_MODEL = "<entitymodel>\n"
+            + "  <entity entity-name=\"TestParent\" package-name=\"org.apache.ofbiz.test\">\n"
+            + "    <field name=\"parentId\" type=\"id\"/>\n"
+            + "    <field name=\"description\" type=\"description\"/>\n"
+            + "    <prim-key field=\"parentId\"/>\n"
+            + "  </entity>\n"
+            + "  <entity entity-name=\"TestChild\" package-name=\"org.apache.ofbiz.test\">\n"
+            + "    <field name=\"childId\" type=\"id\"/>\n"
+            + "    <field name=\"parentId\" type=\"id\"/>\n"
+            + "    <prim-key field=\"childId\"/>\n"
+            + "    <relation type=\"one\" fk-name=\"TEST_CHILD_PARENT\" rel-entity-name=\"TestParent\">\n"
+            + "      <key-map field-name=\"parentId\"/>\n"
+            + "    </relation>\n"
+            + "    <index name=\"TEST_CHILD_PARENT_IDX\"><index-field name=\"parentId\"/></index>\n"
+            + "  </entity>\n"
+            + "  <view-entity entity-name=\"TestChildAndParent\" package-name=\"org.apache.ofbiz.test\">\n"
+            + "    <member-entity entity-alias=\"TC\" entity-name=\"TestChild\"/>\n"
+            + "    <member-entity entity-alias=\"TP\" entity-name=\"TestParent\"/>\n"
+            + "    <alias-all entity-alias=\"TC\"/>\n"
+            + "    <alias entity-alias=\"TP\" name=\"description\"/>\n"
+            + "    <view-link entity-alias=\"TC\" rel-entity-alias=\"TP\"><key-map field-name=\"parentId\"/></view-link>\n"
+            + "  </view-entity>\n"
+            + "</entitymodel>\n";
+    private static final String EXTENSION_MODEL = "<entitymodel>\n"
+            + "  <extend-entity entity-name=\"TestParent\">\n"
+            + "    <field name=\"extensionCode\" type=\"short-varchar\"/>\n"
+            + "  </extend-entity>\n"
+            + "  <entity entity-name=\"TestOther\" package-name=\"org.apache.ofbiz.test\">\n"
+            + "    <field name=\"otherId\" type=\"id\"/>\n"
+            + "    <field name=\"childId\" type=\"id\"/>\n"
+            + "    <prim-key field=\"otherId\"/>\n"
+            + "    <relation type=\"one\" rel-entity-name=\"TestChild\"><key-map field-name=\"childId\"/></relation>\n"
+            + "  </entity>\n"
+            + "</entitymodel>\n";
+    private static final String REDEFINITION_MODEL = "<entitymodel>\n"
+            + "  <entity entity-name=\"TestOther\" package-name=\"org.apache.ofbiz.test.redefined\">\n"
+            + "    <field name=\"otherId\" type=\"id\"/>\n"
+            + "    <field name=\"comments\" type=\"comment\"/>\n"
+            + "    <prim-key field=\"otherId\"/>\n"
+            + "  </entity>\n"
+            + "</entitymodel>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private String ofbizHome;
+    private List<ResourceHandler> handlers;
+
+    @Before
+    public void setUp() throws IOException {
+        ofbizHome = System.getProperty("ofbiz.home");
+        System.setProperty("ofbiz.home", folder.getRoot().getAbsolutePath());
+        handlers = new ArrayList<>();
+        handlers.add(writeModel("entitymodel_base.xml", BASE_MODEL));
+        handlers.add(writeModel("entitymodel_extension.xml", EXTENSION_MODEL));
+        handlers.add(writeModel("entitymodel_redefinition.xml", REDEFINITION_MODEL));
+    }
+
+    @After
+    public void tearDown() {
+        if (ofbizHome == null) {
+            System.clearProperty("ofbiz.home");
+        } else {
+            System.setProperty("ofbiz.home", ofbizHome);
+        }
+    }
+
+    private ResourceHandler writeModel(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return new FileResourceHandler(file);
+    }
+
+    /** Describes the model of a reader: the entities with their fields, keys, relations, indexes, views and file. */
+    private static String describe(ModelReader reader) throws GenericEntityException {
+        StringBuilder description = new StringBuilder();
+        for (String entityName : new TreeSet<>(reader.getEntityNames())) {
+            ModelEntity entity = reader.getModelEntity(entityName);
+            description.append(entityName).append(' ').append(entity.getPackageName()).append(' ')
+                    .append(entity instanceof ModelViewEntity ? "view" : "entity").append('\n');
+            for (ModelField field : entity.getFieldsUnmodifiable()) {
+                description.append("  field ").append(field.getName()).append(' ').append(field.getType())
+                        .append(field.getIsPk() ? " pk" : "").append('\n');
+            }
+            for (ModelRelation relation : entity.getRelationsList(true, true, true)) {
+                description.append("  relation ").append(relation.getCombinedName()).append(' ').append(relation.getType())
+                        .append(' ').append(relation.keyMapString(",", "")).append(relation.isAutoRelation() ? " auto" : "").append('\n');
+            }
+            Iterator<ModelIndex> indexes = entity.getIndexesIterator();
+            while (indexes.hasNext()) {
+                ModelIndex index = indexes.next();
+                description.append("  index ").append(index.getName()).append(' ').append(index.getFields()).append('\n');
+            }
+            Iterator<String> views = entity.getViewConvertorsIterator();
+            while (views.hasNext()) {
+                description.append("  view ").append(views.next()).append('\n');
+            }
+            description.append("  file ").append(reader.getEntityResourceHandler(entityName).getLocation()).append('\n');
+        }
+        return description.toString();
+    }
+
+    @Test
+    public void parallelParsingGivesTheSequentialModel() throws GenericEntityException {
+        ModelReader sequential = new ModelReader("test", handlers, true);
+        ModelReader parallel = new ModelReader("test", handlers, false);
+        String sequentialModel = describe(sequential);
+        assertEquals(sequentialModel, describe(parallel));
+        assertTrue(sequentialModel, sequentialModel.contains("field extensionCode short-varchar"));
+        assertTrue(sequentialModel, sequentialModel.contains("TestOther org.apache.ofbiz.test.redefined entity"));
+        assertTrue(sequentialModel, sequentialModel.contains("field description description\n"));
+        assertTrue(sequentialModel, sequentialModel.contains("relation TestChild many parentId"));
+    }
+
+    @Test
+    public void lastDefinitionOfAnEntityWins() throws GenericEntityException {
+        ModelReader parallel = new ModelReader("test", handlers, false);
+        ModelEntity other = parallel.getModelEntity("TestOther");
+        assertTrue(other.isField("comments"));
+        assertEquals("entitymodel_redefinition.xml", parallel.getEntityResourceHandler("TestOther").getLocation());
+    }
+
+    @Test
+    public void snapshotRoundTrips() throws GenericEntityException {
+        ModelReader reader = new ModelReader("test", handlers, false);
+        String model = describe(reader);
+        String key = ModelReaderSnapshot.computeKey("test", handlers);
+        assertNotNull(key);
+        ModelReaderSnapshot.write(reader, key);
+        assertTrue(Files.isRegularFile(folder.getRoot().toPath().resolve("runtime/data/entitymodel/test.ser")));
+
+        ModelReader snapshot = ModelReaderSnapshot.read("test", key);
+        assertNotNull(snapshot);
+        assertEquals(model, describe(snapshot));
+        assertNotNull(snapshot.getModelEntity("TestChildAndParent").getField("description"));
+    }
+
+    @Test
+    public void changedEntityModelInvalidatesTheSnapshot() throws GenericEntityException, IOException {
+        ModelReader reader = new ModelReader("test", handlers, false);
+        reader.getEntityCache();
+        String key = ModelReaderSnapshot.computeKey("test", handlers);
+        ModelReaderSnapshot.write(reader, key);
+
+        Path extension = folder.getRoot().toPath().resolve("entitymodel_extension.xml");
+        Files.write(extension, EXTENSION_MODEL.replace("extensionCode", "extensionName").getBytes(StandardCharsets.UTF_8));
+        String changedKey = ModelReaderSnapshot.computeKey("test", handlers);
+        assertNotEquals(key, changedKey);
+        assertNull(ModelReaderSnapshot.read("test", changedKey));
+
+        // the snapshot is rewritten from the changed files
+        ModelReader changedReader = new ModelReader("test", handlers, false);
+        ModelReaderSnapshot.write(changedReader, changedKey);
+        ModelReader snapshot = ModelReaderSnapshot.read("test", changedKey);
+        assertNotNull(snapshot);
+        assertTrue(snapshot.getModelEntity("TestParent").isField("extensionName"));
+    }
+
+    @Test
+    public void unreadableSnapshotIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("runtime/data/entitymodel/test.ser");
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[] {1, 2, 3});
+        assertNull(ModelReaderSnapshot.read("test", ModelReaderSnapshot.computeKey("test", handlers)));
+    }
+
+    /** Entity model file of the tests. */
+    @SuppressWarnings("serial")
+    private static final class FileResourceHandler implements ResourceHandler {
+        private final File file;
+
+        private FileResourceHandler(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public String getLoaderName() {
+            return "test";
+        }
+
+        @Override
+        public String getLocation() {
+            return file.getName();
+        }
+
+        @Override
+        public Document getDocument() throws GenericConfigException {
+            try (InputStream in = getStream()) {
+                return UtilXml.readXmlDocument(in, false, file.getName());
+            } catch (Exception e) {
+                throw new GenericConfigException("Error reading " + file, e);
+            }
+        }
+
+        @Override
+        public InputStream getStream() throws GenericConfigException {
+            try {
+                return Files.newInputStream(file.toPath());
+            } catch (IOException e) {
+                throw new GenericConfigException("Error reading " + file, e);
+            }
+        }
+
+        @Override
+        public URL getURL() throws GenericConfigException {
+            try {
+                return file.toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new GenericConfigException("Error getting the URL of " + file, e);
+            }
+        }
+
+        @Override
+        public boolean isFileResource() {
+            return true;
+        }
+
+        @Override
+        public String getFullLocation() {
+            return file.getAbsolutePath();
+        }
+
+        @Override
+        public String toString() {
+            return file.getName();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.junit.Test;
+
+public class EntityDataExporterTests {
+    private static final List<String> PK_FIELD_NAMES = UtilMisc.toList("orderId", "orderItemSeqId");
+
+    private static Map<String, Object> key(String orderId, String orderItemSeqId) {
+        return UtilMisc.toMap("orderId", orderId, "orderItemSeqId", orderItemSeqId);
+    }
+
+    @Test
+    public void fromConditionMatchesTheKeyAndTheFollowingKeys() {
+        EntityCondition condition = EntityDataExporter.makeKeyCondition(PK_FIELD_NAMES, key("WS10001", "00002"), true);
+        assertTrue(condition.mapMatches(null, key("WS10001", "00002")));
+        assertTrue(condition.mapMatches(null, key("WS10001", "00003")));
+        assertTrue(condition.mapMatches(null, key("WS10002", "00001")));
+        assertFalse(condition.mapMatches(null, key("WS10001", "00001")));
+        assertFalse(condition.mapMatches(null, key("WS10000", "00009")));
+    }
+
+    @Test
+    public void toConditionMatchesThePrecedingKeysOnly() {
+        EntityCondition condition = EntityDataExporter.makeKeyCondition(PK_FIELD_NAMES, key("WS10001", "00002"), false);
+        assertTrue(condition.mapMatches(null, key("WS10001", "00001")));
+        assertTrue(condition.mapMatches(null, key("WS10000", "00009")));
+        assertFalse(condition.mapMatches(null, key("WS10001", "00002")));
+        assertFalse(condition.mapMatches(null, key("WS10002", "00001")));
+    }
+}
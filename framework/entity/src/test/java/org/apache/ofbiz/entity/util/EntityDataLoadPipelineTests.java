@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entity.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.model.ModelReader;
+import org.apache.ofbiz.entity.model.ModelRelation;
+import org.apache.ofbiz.entity.model.ModelViewEntity;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline.EntityLevel;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EntityDataLoadPipelineTests {
+    private ModelReader modelReader;
+
+    @Before
+    public void initialize() throws GenericEntityException {
+        modelReader = mock(ModelReader.class);
+        when(modelReader.getEntityNames()).thenReturn(new HashSet<>());
+    }
+
+    private void addEntity(ModelEntity modelEntity, String entityName, String... relEntityNames) throws GenericEntityException {
+        List<ModelRelation> relations = new ArrayList<>();
+        for (String relEntityName : relEntityNames) {
+            ModelRelation relation = mock(ModelRelation.class);
+            when(relation.getType()).thenReturn("one");
+            when(relation.getRelEntityName()).thenReturn(relEntityName);
+            relations.add(relation);
+        }
+        when(modelEntity.getRelationsOneList()).thenReturn(relations);
+        when(modelReader.getModelEntity(entityName)).thenReturn(modelEntity);
+        when(modelReader.getModelEntityNoCheck(entityName)).thenReturn(modelEntity);
+        modelReader.getEntityNames().add(entityName);
+    }
+
+    @Test
+    public void referencedEntitiesComeFirst() throws GenericEntityException {
+        addEntity(mock(ModelEntity.class), "Type", "Type");
+        addEntity(mock(ModelEntity.class), "Item", "Type");
+        addEntity(mock(ModelEntity.class), "ItemAttribute", "Item", "Type");
+        Map<String, EntityLevel> levels = EntityDataLoadPipeline.getEntityLevels(modelReader);
+        assertEquals(0, levels.get("Type").getLevel());
+        assertEquals(1, levels.get("Item").getLevel());
+        assertEquals(2, levels.get("ItemAttribute").getLevel());
+        assertNotEquals(levels.get("Item").getGroup(), levels.get("ItemAttribute").getGroup());
+    }
+
+    @Test
+    public void entitiesInACycleShareTheirGroup() throws GenericEntityException {
+        addEntity(mock(ModelEntity.class), "Type");
+        addEntity(mock(ModelEntity.class), "Party", "Type", "Contact");
+        addEntity(mock(ModelEntity.class), "Contact", "Party");
+        addEntity(mock(ModelEntity.class), "ContactNote", "Contact");
+        Map<String, EntityLevel> levels = EntityDataLoadPipeline.getEntityLevels(modelReader);
+        assertEquals(1, levels.get("Party").getLevel());
+        assertEquals(1, levels.get("Contact").getLevel());
+        assertEquals(levels.get("Party").getGroup(), levels.get("Contact").getGroup());
+        assertEquals(2, levels.get("ContactNote").getLevel());
+    }
+
+    @Test
+    public void viewEntitiesComeLast() throws GenericEntityException {
+        addEntity(mock(ModelEntity.class), "Type");
+        addEntity(mock(ModelEntity.class), "Item", "Type");
+        addEntity(mock(ModelViewEntity.class), "ItemAndType");
+        addEntity(mock(ModelEntity.class), "ItemNote", "Item", "ItemAndType");
+        Map<String, EntityLevel> levels = EntityDataLoadPipeline.getEntityLevels(modelReader);
+        assertEquals(2, levels.get("ItemNote").getLevel());
+        assertEquals(3, levels.get("ItemAndType").getLevel());
+    }
+}
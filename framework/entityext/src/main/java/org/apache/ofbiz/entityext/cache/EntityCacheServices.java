@@ -19,6 +19,7 @@
 package org.apache.ofbiz.entityext.cache;
 
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilMisc;
@@ -43,6 +44,9 @@ public class EntityCacheServices implements DistributedCacheClear {
 
     private static final String MODULE = EntityCacheServices.class.getName();
 
+    // the entities the permissions cached by the Security implementation are resolved from
+    private static final Set<String> PERMISSION_ENTITIES = UtilMisc.toSet("UserLoginSecurityGroup", "SecurityGroupPermission");
+
     private Delegator delegator = null;
     private LocalDispatcher dispatcher = null;
     private String userLoginId = null;
@@ -199,6 +203,7 @@ public class EntityCacheServices implements DistributedCacheClear {
         if (distributeBool != null) distribute = distributeBool;
 
         delegator.clearAllCaches(distribute);
+        dctx.getSecurity().clearPermissionData(null);
 
         return ServiceUtil.returnSuccess();
     }
@@ -224,6 +229,7 @@ public class EntityCacheServices implements DistributedCacheClear {
                 Debug.logVerbose("Got a clear cache line by value service call; value: " + value, MODULE);
             }
             delegator.clearCacheLine(value, distribute);
+            clearPermissionData(dctx, value);
         } else if (context.containsKey("dummyPK")) {
             GenericEntity dummyPK = (GenericEntity) context.get("dummyPK");
             if (Debug.infoOn()) {
@@ -233,6 +239,7 @@ public class EntityCacheServices implements DistributedCacheClear {
                 Debug.logVerbose("Got a clear cache line by dummyPK service call; dummyPK: " + dummyPK, MODULE);
             }
             delegator.clearCacheLineFlexible(dummyPK, distribute);
+            clearPermissionData(dctx, dummyPK);
         } else if (context.containsKey("primaryKey")) {
             GenericPK primaryKey = (GenericPK) context.get("primaryKey");
             if (Debug.infoOn()) {
@@ -242,6 +249,7 @@ public class EntityCacheServices implements DistributedCacheClear {
                 Debug.logVerbose("Got a clear cache line by primaryKey service call; primaryKey: " + primaryKey, MODULE);
             }
             delegator.clearCacheLine(primaryKey, distribute);
+            clearPermissionData(dctx, primaryKey);
         } else if (context.containsKey("condition")) {
             String entityName = (String) context.get("entityName");
             EntityCondition condition = (EntityCondition) context.get("condition");
@@ -252,7 +260,21 @@ public class EntityCacheServices implements DistributedCacheClear {
                 Debug.logVerbose("Got a clear cache line by condition service call; condition: " + condition, MODULE);
             }
             delegator.clearCacheLineByCondition(entityName, condition, distribute);
+            if (PERMISSION_ENTITIES.contains(entityName)) {
+                dctx.getSecurity().clearPermissionData(null);
+            }
         }
         return ServiceUtil.returnSuccess();
     }
+
+    /**
+     * Clears the permissions cached from a security entity changed on another server, whose entity ECAs only ran there.
+     */
+    private static void clearPermissionData(DispatchContext dctx, GenericEntity entity) {
+        if (PERMISSION_ENTITIES.contains(entity.getEntityName())) {
+            // a UserLoginSecurityGroup changes the permissions of its user login, a SecurityGroupPermission those of all of them
+            String userLoginId = entity.getModelEntity().isField("userLoginId") ? entity.getString("userLoginId") : null;
+            dctx.getSecurity().clearPermissionData(userLoginId);
+        }
+    }
 }
@@ -52,6 +52,7 @@ import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.entity.datasource.GenericHelperInfo;
 import org.apache.ofbiz.entity.jdbc.DatabaseUtil;
 import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline;
 import org.apache.ofbiz.entity.util.EntityDataLoader;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.entity.util.EntityUtil;
@@ -83,6 +84,8 @@ public class EntityDataLoadContainer implements Container {
     private static final String TRY_INSERTS = "try-inserts";
     private static final String REPAIR_COLUMNS = "repair-columns";
     private static final String CONTINUE_ON_FAIL = "continue-on-failure";
+    private static final String PARALLEL = "parallel";
+    private static final String FAST_INSERTS = "fast-inserts";
 
     @Override
     public void init(List<StartupCommand> ofbizCommands, String name, String configFile) throws ContainerException {
@@ -427,6 +430,31 @@ public class EntityDataLoadContainer implements Container {
 
         logDataLoadingPlan(urlList, delegator.getDelegatorName());
 
+        if (loadDataProps.containsKey(PARALLEL)) {
+            EntityDataLoadPipeline pipeline = new EntityDataLoadPipeline(delegator);
+            int writerThreads = getWriterThreads(loadDataProps.get(PARALLEL));
+            if (writerThreads > 0) {
+                pipeline.setWriterThreads(writerThreads);
+            }
+            pipeline.setTransactionTimeout(txTimeout);
+            pipeline.setCreateDummyFks(useDummyFks);
+            pipeline.setMaintainTxStamps(maintainTxs);
+            pipeline.setContinueOnFail(continueOnFail);
+            pipeline.setFastInserts(isPropertySet(loadDataProps, FAST_INSERTS));
+            try {
+                for (Map.Entry<URL, Long> readCount : pipeline.load(urlList).entrySet()) {
+                    int rowsChanged = readCount.getValue().intValue();
+                    totalRowsChanged += rowsChanged;
+                    infoMessages.add(createDataLoadMessage(readCount.getKey(), rowsChanged, totalRowsChanged));
+                }
+            } catch (GenericEntityException e) {
+                throw new ContainerException(e);
+            }
+            errorMessages.addAll(pipeline.getErrorMessages());
+            logDataLoadingResults(infoMessages, errorMessages, totalRowsChanged);
+            return;
+        }
+
         for (URL dataUrl: urlList) {
             try {
                 int rowsChanged = EntityDataLoader.loadData(dataUrl, helperInfo.getHelperBaseName(),
@@ -453,6 +481,14 @@ public class EntityDataLoadContainer implements Container {
         }
     }
 
+    private static int getWriterThreads(String threads) {
+        try {
+            return Integer.parseInt(threads);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     private static List<URL> prepareDataUrls(Delegator delegator, Delegator baseDelegator,
             Collection<ComponentConfig> allComponents, GenericHelperInfo helperInfo,
             Map<String, String> loadDataProps) throws ContainerException {
@@ -36,6 +36,7 @@ import org.apache.ofbiz.entity.GenericEntity;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.eca.EntityEcaHandler;
 import org.apache.ofbiz.entityext.EntityServiceFactory;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncChangeLog;
 import org.apache.ofbiz.service.DispatchContext;
 
 /**
@@ -94,6 +95,9 @@ public class DelegatorEcaHandler implements EntityEcaHandler<EntityEcaRule> {
     @Override
     public void evalRules(String currentOperation, Map<String, List<EntityEcaRule>> eventMap, String event, GenericEntity value, boolean isError)
             throws GenericEntityException {
+        if (EntityEcaHandler.EV_RETURN.equals(event) && !isError) {
+            EntitySyncChangeLog.recordChange(delegator, currentOperation, value);
+        }
         // if the eventMap is passed we save a HashMap lookup, but if not that's okay we'll just look it up now
         if (eventMap == null) eventMap = this.getEntityEventMap(value.getEntityName());
         if (UtilValidate.isEmpty(eventMap)) {
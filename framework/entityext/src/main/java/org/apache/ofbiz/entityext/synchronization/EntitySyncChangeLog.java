@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.entityext.synchronization;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericPK;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.eca.EntityEcaHandler;
+import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityStoreOptions;
+import org.apache.ofbiz.entityext.EntityGroupUtil;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncErrorException;
+
+/**
+ * Change log of the synchronized entities.
+ * <p>When <code>saveEntitySyncChangeLog</code> is true in general.properties, each creation, update and removal of an
+ * entity synchronized by an EntitySync is recorded as an EntitySyncChange, in the transaction of the change, with an
+ * sequence number and the primary key of the value changed. <code>runChangeLogEntitySync</code> then sends the changes
+ * of each entity group in chunks of compact change blocks, the changes of a group being read after the last one sent to
+ * the EntitySync target.</p>
+ * <p>The sequence numbers are taken in banks by each server and the transactions do not commit in the order they
+ * start, so a change may become visible after a change with a greater sequence number or transaction stamp was sent.
+ * The changes are read in the order of their transaction stamp, the ones of the overlap window before the last change
+ * sent being read again, skipping the ones already sent.</p>
+ * <p>Only the changes going through the entity ECA handler are recorded: the mass updates and removals by condition
+ * are not, the timestamp based <code>runEntitySync</code> remains available to catch up with them.</p>
+ */
+public final class EntitySyncChangeLog {
+
+    /** Group of the entities synchronized without an entity group. */
+    public static final String DEFAULT_GROUP_ID = "_NA_";
+    public static final String CHANGE_STORE = "U";
+    public static final String CHANGE_REMOVE = "D";
+    private static final Set<String> SYNC_SETUP_ENTITIES = UtilMisc.toSet("EntitySync", "EntitySyncInclude", "EntitySyncIncludeGroup",
+            "EntityGroup", "EntityGroupEntry");
+    private static final Set<String> CHANGE_LOG_ENTITIES = UtilMisc.toSet("EntitySyncChange", "EntitySyncChangeStatus",
+            "EntitySyncChangeSent");
+    private static final Map<String, Set<String>> LOGGED_ENTITY_NAMES = new ConcurrentHashMap<>();
+
+    private EntitySyncChangeLog() { }
+
+    /**
+     * Records a change, called by the entity ECA handler once a value has been created, stored or removed.
+     * @param delegator the delegator
+     * @param operation the entity ECA operation
+     * @param value the value changed, or its primary key
+     * @throws GenericEntityException if the change cannot be recorded, the change is then rolled back
+     */
+    public static void recordChange(Delegator delegator, String operation, GenericEntity value) throws GenericEntityException {
+        String entityName = value.getEntityName();
+        if (SYNC_SETUP_ENTITIES.contains(entityName)) {
+            // the entities to log change with the EntitySync setup
+            LOGGED_ENTITY_NAMES.remove(delegator.getDelegatorName());
+        }
+        if (value.getIsFromEntitySync() || !UtilProperties.getPropertyAsBoolean("general", "saveEntitySyncChangeLog", false)) {
+            return;
+        }
+        String changeType;
+        if (EntityEcaHandler.OP_CREATE.equals(operation) || EntityEcaHandler.OP_STORE.equals(operation)) {
+            changeType = CHANGE_STORE;
+        } else if (EntityEcaHandler.OP_REMOVE.equals(operation)) {
+            changeType = CHANGE_REMOVE;
+        } else {
+            return;
+        }
+        if (CHANGE_LOG_ENTITIES.contains(entityName)) {
+            return;
+        }
+        if (value.getModelEntity().getNoAutoStamp() || !getLoggedEntityNames(delegator).contains(entityName)) {
+            return;
+        }
+        GenericValue change = delegator.makeValue("EntitySyncChange");
+        change.set("changeSeqId", delegator.getNextSeqIdLong("EntitySyncChange"));
+        change.set("changeEntityName", entityName);
+        change.set("changeType", changeType);
+        change.set("primaryKeyText", encodePrimaryKey(value));
+        change.create();
+    }
+
+    /**
+     * Gets the names of the entities synchronized by at least one EntitySync pushing data.
+     */
+    private static Set<String> getLoggedEntityNames(Delegator delegator) throws GenericEntityException {
+        Set<String> entityNames = LOGGED_ENTITY_NAMES.get(delegator.getDelegatorName());
+        if (entityNames == null) {
+            entityNames = new HashSet<>();
+            for (GenericValue entitySync : EntityQuery.use(delegator).from("EntitySync").queryList()) {
+                if (!"Y".equals(entitySync.getString("forPullOnly"))) {
+                    entityNames.addAll(getEntityNames(delegator, entitySync));
+                }
+            }
+            entityNames = Collections.unmodifiableSet(entityNames);
+            LOGGED_ENTITY_NAMES.put(delegator.getDelegatorName(), entityNames);
+        }
+        return entityNames;
+    }
+
+    private static Set<String> getEntityNames(Delegator delegator, GenericValue entitySync) throws GenericEntityException {
+        List<GenericValue> entitySyncIncludes = entitySync.getRelated("EntitySyncInclude", null, null, false);
+        entitySyncIncludes.addAll(entitySync.getRelated("EntitySyncInclGrpDetailView", null, null, false));
+        Set<String> entityNames = new HashSet<>();
+        for (ModelEntity modelEntity : EntityGroupUtil.getModelEntitiesFromRecords(entitySyncIncludes, delegator, true)) {
+            entityNames.add(modelEntity.getEntityName());
+        }
+        return entityNames;
+    }
+
+    /**
+     * Splits the entities of an EntitySync by entity group, the changes of each group being sent on their own.
+     * @param delegator the delegator
+     * @param entitySync the EntitySync
+     * @param entityNames the entities synchronized by the EntitySync
+     * @return the entity names of each group, the entities not included through a group being in the {@link #DEFAULT_GROUP_ID} group
+     * @throws GenericEntityException
+     */
+    public static Map<String, Set<String>> getSyncGroups(Delegator delegator, GenericValue entitySync, Set<String> entityNames)
+            throws GenericEntityException {
+        Map<String, List<GenericValue>> groupIncludes = new LinkedHashMap<>();
+        for (GenericValue groupInclude : entitySync.getRelated("EntitySyncInclGrpDetailView", null, UtilMisc.toList("entityGroupId"), false)) {
+            groupIncludes.computeIfAbsent(groupInclude.getString("entityGroupId"), k -> new ArrayList<>()).add(groupInclude);
+        }
+        Map<String, Set<String>> syncGroups = new LinkedHashMap<>();
+        Set<String> remainingEntityNames = new HashSet<>(entityNames);
+        for (Map.Entry<String, List<GenericValue>> groupInclude : groupIncludes.entrySet()) {
+            Set<String> groupEntityNames = new HashSet<>();
+            for (ModelEntity modelEntity : EntityGroupUtil.getModelEntitiesFromRecords(groupInclude.getValue(), delegator, true)) {
+                if (remainingEntityNames.remove(modelEntity.getEntityName())) {
+                    groupEntityNames.add(modelEntity.getEntityName());
+                }
+            }
+            if (!groupEntityNames.isEmpty()) {
+                syncGroups.put(groupInclude.getKey(), groupEntityNames);
+            }
+        }
+        if (!remainingEntityNames.isEmpty()) {
+            syncGroups.put(DEFAULT_GROUP_ID, remainingEntityNames);
+        }
+        return syncGroups;
+    }
+
+    /**
+     * Sends the changes of a group not sent yet to the target of an EntitySync, in chunks, in the order of the
+     * transaction stamp of the changes. The changes sent are saved after each chunk, so that a sync failing is resumed
+     * after the last chunk sent.
+     * @param delegator the delegator
+     * @param entitySyncId the EntitySync ID
+     * @param syncGroupId the entity group ID
+     * @param entityNames the entities of the group
+     * @param syncEndStamp the changes are read up to this time, so that the transactions still running are not missed
+     * @param chunkSize the maximum number of changes sent at once
+     * @param overlapMillis the milliseconds of changes read again before the last change sent
+     * @param sender sends the changes
+     * @return the number of changes sent
+     * @throws GenericEntityException
+     * @throws SyncErrorException if the changes cannot be sent
+     */
+    public static long sendChanges(Delegator delegator, String entitySyncId, String syncGroupId, Set<String> entityNames,
+            Timestamp syncEndStamp, int chunkSize, long overlapMillis, ChangeSender sender) throws GenericEntityException, SyncErrorException {
+        GenericValue changeStatus = EntityQuery.use(delegator).from("EntitySyncChangeStatus")
+                .where("entitySyncId", entitySyncId, "syncGroupId", syncGroupId).queryOne();
+        Timestamp lastChangeTxStamp = changeStatus == null ? null : changeStatus.getTimestamp("lastChangeTxStamp");
+        Timestamp fromStamp = lastChangeTxStamp == null ? null : new Timestamp(lastChangeTxStamp.getTime() - overlapMillis);
+        Set<Long> sentChangeSeqIds = new HashSet<>();
+        for (GenericValue changeSent : EntityQuery.use(delegator).select("changeSeqId").from("EntitySyncChangeSent")
+                .where("entitySyncId", entitySyncId, "syncGroupId", syncGroupId).queryList()) {
+            sentChangeSeqIds.add(changeSent.getLong("changeSeqId"));
+        }
+
+        long sentCount = 0;
+        GenericValue lastChangeRead = null;
+        List<GenericValue> changes;
+        do {
+            changes = findChanges(delegator, entityNames, fromStamp, lastChangeRead, syncEndStamp, chunkSize);
+            if (changes.isEmpty()) {
+                break;
+            }
+            lastChangeRead = changes.get(changes.size() - 1);
+            List<GenericValue> changesToSend = new ArrayList<>(changes.size());
+            for (GenericValue change : changes) {
+                if (!sentChangeSeqIds.contains(change.getLong("changeSeqId"))) {
+                    changesToSend.add(change);
+                }
+            }
+            if (!changesToSend.isEmpty()) {
+                sender.send(changesToSend);
+                lastChangeTxStamp = saveChangesSent(delegator, entitySyncId, syncGroupId, changesToSend, lastChangeTxStamp);
+                sentCount += changesToSend.size();
+            }
+        } while (changes.size() == chunkSize);
+
+        if (lastChangeTxStamp != null) {
+            // the changes sent before the overlap window are not read again
+            delegator.removeByCondition("EntitySyncChangeSent", EntityCondition.makeCondition(
+                    EntityCondition.makeCondition("entitySyncId", entitySyncId),
+                    EntityCondition.makeCondition("syncGroupId", syncGroupId),
+                    EntityCondition.makeCondition("changeTxStamp", EntityOperator.LESS_THAN,
+                            new Timestamp(lastChangeTxStamp.getTime() - overlapMillis))));
+        }
+        return sentCount;
+    }
+
+    /**
+     * Finds the next changes of entities, in the order of their transaction stamp and sequence number.
+     * @param delegator the delegator
+     * @param entityNames the entities
+     * @param fromStamp the earliest transaction stamp of the changes, <code>null</code> for all the changes
+     * @param lastChangeRead the last change read, the changes are read after it
+     * @param syncEndStamp the changes are read up to this time
+     * @param maxChanges the maximum number of changes read
+     * @return the changes
+     * @throws GenericEntityException
+     */
+    static List<GenericValue> findChanges(Delegator delegator, Set<String> entityNames, Timestamp fromStamp, GenericValue lastChangeRead,
+            Timestamp syncEndStamp, int maxChanges) throws GenericEntityException {
+        List<EntityCondition> conditions = UtilMisc.toList(
+                EntityCondition.makeCondition("changeEntityName", EntityOperator.IN, entityNames),
+                EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_TX_FIELD, EntityOperator.LESS_THAN, syncEndStamp));
+        if (fromStamp != null) {
+            conditions.add(EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_TX_FIELD, EntityOperator.GREATER_THAN_EQUAL_TO, fromStamp));
+        }
+        if (lastChangeRead != null) {
+            Timestamp lastStamp = lastChangeRead.getTimestamp(ModelEntity.CREATE_STAMP_TX_FIELD);
+            conditions.add(EntityCondition.makeCondition(
+                    EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_TX_FIELD, EntityOperator.GREATER_THAN, lastStamp),
+                    EntityOperator.OR,
+                    EntityCondition.makeCondition(
+                            EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_TX_FIELD, lastStamp),
+                            EntityCondition.makeCondition("changeSeqId", EntityOperator.GREATER_THAN, lastChangeRead.getLong("changeSeqId")))));
+        }
+        return EntityQuery.use(delegator).from("EntitySyncChange").where(conditions)
+                .orderBy(ModelEntity.CREATE_STAMP_TX_FIELD, "changeSeqId").maxRows(maxChanges).queryList();
+    }
+
+    /**
+     * Saves the changes sent and the latest transaction stamp of the changes sent, in one transaction.
+     * @return the latest transaction stamp of the changes sent
+     */
+    private static Timestamp saveChangesSent(Delegator delegator, String entitySyncId, String syncGroupId, List<GenericValue> changes,
+            Timestamp lastChangeTxStamp) throws GenericEntityException {
+        Timestamp latestStamp = lastChangeTxStamp;
+        List<GenericValue> changesSent = new ArrayList<>(changes.size());
+        for (GenericValue change : changes) {
+            Timestamp changeTxStamp = change.getTimestamp(ModelEntity.CREATE_STAMP_TX_FIELD);
+            if (latestStamp == null || changeTxStamp.after(latestStamp)) {
+                latestStamp = changeTxStamp;
+            }
+            changesSent.add(delegator.makeValue("EntitySyncChangeSent", "entitySyncId", entitySyncId, "syncGroupId", syncGroupId,
+                    "changeSeqId", change.get("changeSeqId"), "changeTxStamp", changeTxStamp));
+        }
+        boolean beganTransaction = TransactionUtil.begin();
+        try {
+            delegator.storeAll(changesSent);
+            delegator.createOrStore(delegator.makeValue("EntitySyncChangeStatus", "entitySyncId", entitySyncId,
+                    "syncGroupId", syncGroupId, "lastChangeTxStamp", latestStamp));
+            TransactionUtil.commit(beganTransaction);
+        } catch (GenericEntityException e) {
+            TransactionUtil.rollback(beganTransaction, "Error saving the changes sent", e);
+            throw e;
+        }
+        return latestStamp;
+    }
+
+    /**
+     * Makes the change blocks sent to the EntitySync target from changes.
+     * <p>A block holds the consecutive changes of the same type on the same entity: the field names once, then a row
+     * of field values for each change. The values stored are read when the blocks are made, so a value stored again
+     * before being removed is sent once, and a value removed since it was stored is not sent, its removal following.</p>
+     * @param delegator the delegator
+     * @param changes the changes, in the order they were made
+     * @return the change blocks, each one a map with the <code>entityName</code>, the <code>changeType</code>
+     * ({@link #CHANGE_STORE} or {@link #CHANGE_REMOVE}), the <code>fieldNames</code> (the primary key fields for the
+     * removals) and the <code>rows</code>
+     * @throws GenericEntityException
+     */
+    public static List<Map<String, Object>> makeChangeBlocks(Delegator delegator, List<GenericValue> changes) throws GenericEntityException {
+        // keep the first store of a value until it is removed, it sends the current value anyway
+        List<GenericPK> changedKeys = new ArrayList<>(changes.size());
+        List<String> changeTypes = new ArrayList<>(changes.size());
+        Set<GenericPK> storedKeys = new HashSet<>();
+        Map<String, List<GenericPK>> storedKeysByEntity = new HashMap<>();
+        for (GenericValue change : changes) {
+            GenericPK primaryKey = decodePrimaryKey(delegator, change.getString("changeEntityName"), change.getString("primaryKeyText"));
+            if (CHANGE_REMOVE.equals(change.getString("changeType"))) {
+                storedKeys.remove(primaryKey);
+            } else if (storedKeys.add(primaryKey)) {
+                storedKeysByEntity.computeIfAbsent(primaryKey.getEntityName(), k -> new ArrayList<>()).add(primaryKey);
+            } else {
+                continue;
+            }
+            changedKeys.add(primaryKey);
+            changeTypes.add(change.getString("changeType"));
+        }
+
+        Map<GenericPK, GenericValue> storedValues = new HashMap<>();
+        for (Map.Entry<String, List<GenericPK>> entityKeys : storedKeysByEntity.entrySet()) {
+            for (GenericValue value : delegator.getEntityHelper(entityKeys.getKey()).findAllByPrimaryKeys(entityKeys.getValue())) {
+                storedValues.put(value.getPrimaryKey(), value);
+            }
+        }
+
+        List<Map<String, Object>> changeBlocks = new ArrayList<>();
+        Map<String, Object> changeBlock = null;
+        for (int i = 0; i < changedKeys.size(); i++) {
+            GenericPK primaryKey = changedKeys.get(i);
+            String changeType = changeTypes.get(i);
+            ModelEntity modelEntity = primaryKey.getModelEntity();
+            GenericEntity changed = primaryKey;
+            if (CHANGE_STORE.equals(changeType)) {
+                changed = storedValues.get(primaryKey);
+                if (changed == null) {
+                    continue;
+                }
+            }
+            if (changeBlock == null || !primaryKey.getEntityName().equals(changeBlock.get("entityName"))
+                    || !changeType.equals(changeBlock.get("changeType"))) {
+                List<String> fieldNames = CHANGE_STORE.equals(changeType) ? modelEntity.getAllFieldNames() : modelEntity.getPkFieldNames();
+                changeBlock = UtilMisc.toMap("entityName", primaryKey.getEntityName(), "changeType", changeType,
+                        "fieldNames", fieldNames, "rows", new ArrayList<List<Object>>());
+                changeBlocks.add(changeBlock);
+            }
+            List<String> fieldNames = UtilGenerics.cast(changeBlock.get("fieldNames"));
+            List<Object> row = new ArrayList<>(fieldNames.size());
+            for (String fieldName : fieldNames) {
+                row.add(changed.get(fieldName));
+            }
+            List<List<Object>> rows = UtilGenerics.cast(changeBlock.get("rows"));
+            rows.add(row);
+        }
+        return changeBlocks;
+    }
+
+    /**
+     * Applies change blocks received from an EntitySync, in their order: the stored values are inserted or updated in
+     * batches, unless the existing value was updated after them, and the removed values are removed.
+     * @param delegator the delegator
+     * @param changeBlocks the change blocks, made by {@link #makeChangeBlocks(Delegator, List)}
+     * @return the counts of values <code>toStoreInserted</code>, <code>toStoreUpdated</code>, <code>toStoreNotUpdated</code>,
+     * <code>toRemoveDeleted</code> and <code>toRemoveAlreadyDeleted</code>
+     * @throws GenericEntityException
+     */
+    public static Map<String, Long> storeChangeBlocks(Delegator delegator, List<Map<String, Object>> changeBlocks) throws GenericEntityException {
+        long toStoreInserted = 0;
+        long toStoreUpdated = 0;
+        long toStoreNotUpdated = 0;
+        long toRemoveDeleted = 0;
+        long toRemoveAlreadyDeleted = 0;
+        for (Map<String, Object> changeBlock : changeBlocks) {
+            String entityName = (String) changeBlock.get("entityName");
+            List<String> fieldNames = UtilGenerics.cast(changeBlock.get("fieldNames"));
+            List<List<Object>> rows = UtilGenerics.cast(changeBlock.get("rows"));
+            if (CHANGE_REMOVE.equals(changeBlock.get("changeType"))) {
+                List<GenericPK> primaryKeys = new ArrayList<>(rows.size());
+                for (List<Object> row : rows) {
+                    GenericPK primaryKey = delegator.makePK(entityName);
+                    for (int i = 0; i < fieldNames.size(); i++) {
+                        primaryKey.set(fieldNames.get(i), row.get(i));
+                    }
+                    primaryKey.setIsFromEntitySync(true);
+                    primaryKeys.add(primaryKey);
+                }
+                int removed = delegator.removeAll(primaryKeys);
+                toRemoveDeleted += removed;
+                toRemoveAlreadyDeleted += primaryKeys.size() - removed;
+                continue;
+            }
+
+            List<GenericValue> values = new ArrayList<>(rows.size());
+            List<EntityCondition> primaryKeyConditions = new ArrayList<>(rows.size());
+            for (List<Object> row : rows) {
+                GenericValue value = delegator.makeValue(entityName);
+                for (int i = 0; i < fieldNames.size(); i++) {
+                    value.set(fieldNames.get(i), row.get(i));
+                }
+                // maintain the original timestamps when storing synced data
+                value.setIsFromEntitySync(true);
+                values.add(value);
+                primaryKeyConditions.add(EntityCondition.makeCondition(value.getPrimaryKey().getAllFields()));
+            }
+            Map<GenericPK, Timestamp> existingStamps = new HashMap<>();
+            for (GenericValue existing : EntityQuery.use(delegator).from(entityName)
+                    .where(EntityCondition.makeCondition(primaryKeyConditions, EntityOperator.OR)).queryList()) {
+                existingStamps.put(existing.getPrimaryKey(), existing.getTimestamp(ModelEntity.STAMP_FIELD));
+            }
+            Iterator<GenericValue> valueIter = values.iterator();
+            while (valueIter.hasNext()) {
+                GenericValue value = valueIter.next();
+                GenericPK primaryKey = value.getPrimaryKey();
+                if (!existingStamps.containsKey(primaryKey)) {
+                    toStoreInserted++;
+                    continue;
+                }
+                // if the existing value was updated after this one, don't update it
+                Timestamp existingStamp = existingStamps.get(primaryKey);
+                Timestamp stamp = value.getTimestamp(ModelEntity.STAMP_FIELD);
+                if (existingStamp != null && stamp != null && existingStamp.after(stamp)) {
+                    valueIter.remove();
+                    toStoreNotUpdated++;
+                } else {
+                    toStoreUpdated++;
+                }
+            }
+            // create the missing referenced values as place holders, their own changes may come from another group
+            delegator.storeAll(values, new EntityStoreOptions(true));
+        }
+        return UtilMisc.toMap("toStoreInserted", toStoreInserted, "toStoreUpdated", toStoreUpdated, "toStoreNotUpdated", toStoreNotUpdated,
+                "toRemoveDeleted", toRemoveDeleted, "toRemoveAlreadyDeleted", toRemoveAlreadyDeleted);
+    }
+
+    /** Sends changes to the target of an EntitySync. */
+    @FunctionalInterface
+    public interface ChangeSender {
+        /**
+         * Sends changes.
+         * @param changes the changes, in the order they are read
+         * @throws GenericEntityException
+         * @throws SyncErrorException if the changes cannot be sent
+         */
+        void send(List<GenericValue> changes) throws GenericEntityException, SyncErrorException;
+    }
+
+    /**
+     * Encodes the primary key of a value: the primary key field values in the entity order, separated by a pipe.
+     */
+    static String encodePrimaryKey(GenericEntity value) {
+        StringBuilder primaryKeyText = new StringBuilder();
+        for (String fieldName : value.getModelEntity().getPkFieldNames()) {
+            if (primaryKeyText.length() > 0) {
+                primaryKeyText.append('|');
+            }
+            String fieldValue = String.valueOf(value.get(fieldName));
+            for (int i = 0; i < fieldValue.length(); i++) {
+                char c = fieldValue.charAt(i);
+                if (c == '|' || c == '\\') {
+                    primaryKeyText.append('\\');
+                }
+                primaryKeyText.append(c);
+            }
+        }
+        return primaryKeyText.toString();
+    }
+
+    /**
+     * Decodes a primary key encoded by {@link #encodePrimaryKey(GenericEntity)}.
+     */
+    static GenericPK decodePrimaryKey(Delegator delegator, String entityName, String primaryKeyText) {
+        GenericPK primaryKey = delegator.makePK(entityName);
+        Iterator<String> fieldNames = primaryKey.getModelEntity().getPkFieldNames().iterator();
+        StringBuilder fieldValue = new StringBuilder();
+        for (int i = 0; i <= primaryKeyText.length(); i++) {
+            char c = i < primaryKeyText.length() ? primaryKeyText.charAt(i) : '|';
+            if (c == '\\' && i + 1 < primaryKeyText.length()) {
+                fieldValue.append(primaryKeyText.charAt(++i));
+            } else if (c == '|') {
+                if (fieldNames.hasNext()) {
+                    primaryKey.setString(fieldNames.next(), fieldValue.toString());
+                }
+                fieldValue.setLength(0);
+            } else {
+                fieldValue.append(c);
+            }
+        }
+        return primaryKey;
+    }
+}
@@ -178,6 +178,22 @@ public class EntitySyncContext {
         this.totalSplits = totalSplits;
     }
 
+    /**
+     * Gets delegator.
+     * @return the delegator
+     */
+    public Delegator getDelegator() {
+        return delegator;
+    }
+
+    /**
+     * Gets sync end stamp.
+     * @return the sync end stamp
+     */
+    public Timestamp getSyncEndStamp() {
+        return syncEndStamp;
+    }
+
     /**
      * Gets entity sync.
      * @return the entity sync
@@ -320,6 +336,13 @@ public class EntitySyncContext {
         return nextRunEndTime;
     }
 
+    /**
+     * Sets the current run to end at the sync end stamp, once all the changes up to it were sent.
+     */
+    public void setRunToSyncEnd() {
+        this.currentRunEndTime = this.syncEndStamp;
+    }
+
     /**
      * Advance run times.
      */
@@ -1181,39 +1204,76 @@ public class EntitySyncContext {
                     throw new SyncOtherErrorException(serviceErrorMsg, null, null, remoteStoreResult, null);
                 }
 
-                this.totalStoreCalls++;
-
-                long toCreateInsertedCur = remoteStoreResult.get("toCreateInserted") == null ? 0
-                        : (Long) remoteStoreResult.get("toCreateInserted");
-                long toCreateUpdatedCur = remoteStoreResult.get("toCreateUpdated") == null ? 0
-                        : (Long) remoteStoreResult.get("toCreateUpdated");
-                long toCreateNotUpdatedCur = remoteStoreResult.get("toCreateNotUpdated") == null ? 0
-                        : (Long) remoteStoreResult.get("toCreateNotUpdated");
-                long toStoreInsertedCur = remoteStoreResult.get("toStoreInserted") == null ? 0
-                        : (Long) remoteStoreResult.get("toStoreInserted");
-                long toStoreUpdatedCur = remoteStoreResult.get("toStoreUpdated") == null ? 0
-                        : (Long) remoteStoreResult.get("toStoreUpdated");
-                long toStoreNotUpdatedCur = remoteStoreResult.get("toStoreNotUpdated") == null ? 0
-                        : (Long) remoteStoreResult.get("toStoreNotUpdated");
-                long toRemoveDeletedCur = remoteStoreResult.get("toRemoveDeleted") == null ? 0
-                        : (Long) remoteStoreResult.get("toRemoveDeleted");
-                long toRemoveAlreadyDeletedCur = remoteStoreResult.get("toRemoveAlreadyDeleted") == null ? 0
-                        : (Long) remoteStoreResult.get("toRemoveAlreadyDeleted");
-
-                this.toCreateInserted += toCreateInsertedCur;
-                this.toCreateUpdated += toCreateUpdatedCur;
-                this.toCreateNotUpdated += toCreateNotUpdatedCur;
-                this.toStoreInserted += toStoreInsertedCur;
-                this.toStoreUpdated += toStoreUpdatedCur;
-                this.toStoreNotUpdated += toStoreNotUpdatedCur;
-                this.toRemoveDeleted += toRemoveDeletedCur;
-                this.toRemoveAlreadyDeleted += toRemoveAlreadyDeletedCur;
+                this.addStoreResults(remoteStoreResult);
             } catch (GenericServiceException | GenericEntityException e) {
                 throw new SyncServiceErrorException(serviceErrorMsg, e);
             }
         }
     }
 
+    /**
+     * Run push send changes.
+     * @param changeBlocks the change blocks, made from the change log by {@link EntitySyncChangeLog#makeChangeBlocks(Delegator, List)}
+     * @throws SyncOtherErrorException   the sync other error exception
+     * @throws SyncServiceErrorException the sync service error exception
+     */
+    public void runPushSendChanges(List<Map<String, Object>> changeBlocks) throws SyncOtherErrorException, SyncServiceErrorException {
+        if (changeBlocks.isEmpty()) {
+            return;
+        }
+        Map<String, Object> targetServiceMap = UtilMisc.toMap("entitySyncId", entitySyncId, "changeBlocks", changeBlocks);
+        if (UtilValidate.isNotEmpty(targetDelegatorName)) {
+            targetServiceMap.put("delegatorName", targetDelegatorName);
+        }
+        String serviceErrorMsg = "Error running EntitySync [" + entitySyncId + "], call to store service [" + targetServiceName + "] failed.";
+        try {
+            GenericValue userLogin = EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").cache().queryOne();
+            targetServiceMap.put("userLogin", userLogin);
+
+            Map<String, Object> remoteStoreResult = dispatcher.runSync(targetServiceName, targetServiceMap);
+            if (ServiceUtil.isError(remoteStoreResult)) {
+                throw new SyncOtherErrorException(serviceErrorMsg, null, null, remoteStoreResult, null);
+            }
+            this.addStoreResults(remoteStoreResult);
+        } catch (GenericServiceException | GenericEntityException e) {
+            throw new SyncServiceErrorException(serviceErrorMsg, e);
+        }
+    }
+
+    /**
+     * Adds the counts returned by a call to the store service, the change log groups being sent concurrently.
+     * @param remoteStoreResult the store service result
+     */
+    private synchronized void addStoreResults(Map<String, Object> remoteStoreResult) {
+        this.totalStoreCalls++;
+
+        long toCreateInsertedCur = remoteStoreResult.get("toCreateInserted") == null ? 0
+                : (Long) remoteStoreResult.get("toCreateInserted");
+        long toCreateUpdatedCur = remoteStoreResult.get("toCreateUpdated") == null ? 0
+                : (Long) remoteStoreResult.get("toCreateUpdated");
+        long toCreateNotUpdatedCur = remoteStoreResult.get("toCreateNotUpdated") == null ? 0
+                : (Long) remoteStoreResult.get("toCreateNotUpdated");
+        long toStoreInsertedCur = remoteStoreResult.get("toStoreInserted") == null ? 0
+                : (Long) remoteStoreResult.get("toStoreInserted");
+        long toStoreUpdatedCur = remoteStoreResult.get("toStoreUpdated") == null ? 0
+                : (Long) remoteStoreResult.get("toStoreUpdated");
+        long toStoreNotUpdatedCur = remoteStoreResult.get("toStoreNotUpdated") == null ? 0
+                : (Long) remoteStoreResult.get("toStoreNotUpdated");
+        long toRemoveDeletedCur = remoteStoreResult.get("toRemoveDeleted") == null ? 0
+                : (Long) remoteStoreResult.get("toRemoveDeleted");
+        long toRemoveAlreadyDeletedCur = remoteStoreResult.get("toRemoveAlreadyDeleted") == null ? 0
+                : (Long) remoteStoreResult.get("toRemoveAlreadyDeleted");
+
+        this.toCreateInserted += toCreateInsertedCur;
+        this.toCreateUpdated += toCreateUpdatedCur;
+        this.toCreateNotUpdated += toCreateNotUpdatedCur;
+        this.toStoreInserted += toStoreInsertedCur;
+        this.toStoreUpdated += toStoreUpdatedCur;
+        this.toStoreNotUpdated += toStoreNotUpdatedCur;
+        this.toRemoveDeleted += toRemoveDeletedCur;
+        this.toRemoveAlreadyDeleted += toRemoveAlreadyDeletedCur;
+    }
+
     /**
      * Run pull start or restore saved results.
      * @throws SyncDataErrorException    the sync data error exception
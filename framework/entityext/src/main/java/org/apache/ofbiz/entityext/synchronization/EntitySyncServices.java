@@ -30,9 +30,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
@@ -52,7 +56,9 @@ import org.apache.ofbiz.entity.serialize.SerializeException;
 import org.apache.ofbiz.entity.serialize.XmlSerializer;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncAbortException;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncDataErrorException;
 import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncErrorException;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncOtherErrorException;
 import org.apache.ofbiz.service.DispatchContext;
 import org.apache.ofbiz.service.GenericServiceException;
 import org.apache.ofbiz.service.LocalDispatcher;
@@ -127,6 +133,85 @@ public class EntitySyncServices {
         return ServiceUtil.returnSuccess();
     }
 
+    /**
+     * Run an Entity Sync from the change log: the changes of each entity group are sent concurrently, in chunks, in the order
+     * they were made, up to the sync end stamp
+     *@param dctx The DispatchContext that this service is operating in
+     *@param context Map containing the input parameters
+     *@return Map with the result of the service, the output parameters
+     */
+    public static Map<String, Object> runChangeLogEntitySync(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Locale locale = (Locale) context.get("locale");
+        EntitySyncContext esc = null;
+        try {
+            esc = new EntitySyncContext(dctx, context);
+            if ("Y".equals(esc.getEntitySync().get("forPullOnly"))) {
+                return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "EntityExtCannotDoEntitySyncPush", locale));
+            }
+
+            esc.runPushStartRunning();
+            esc.setSplitStartTime();
+
+            Map<String, Set<String>> syncGroups;
+            try {
+                syncGroups = EntitySyncChangeLog.getSyncGroups(esc.getDelegator(), esc.getEntitySync(), esc.makeEntityNameToUseSet());
+            } catch (GenericEntityException e) {
+                throw new SyncDataErrorException("Error getting the entity groups of EntitySync [" + esc.getEntitySyncId() + "]", e);
+            }
+            List<Future<SyncErrorException>> futures = new ArrayList<>(syncGroups.size());
+            for (Map.Entry<String, Set<String>> syncGroup : syncGroups.entrySet()) {
+                EntitySyncContext groupEsc = esc;
+                futures.add(ExecutionPool.GLOBAL_BATCH.submit(() -> {
+                    try {
+                        sendChangeLogGroup(groupEsc, syncGroup.getKey(), syncGroup.getValue());
+                        return null;
+                    } catch (SyncErrorException e) {
+                        return e;
+                    }
+                }));
+            }
+            for (Future<SyncErrorException> future : futures) {
+                SyncErrorException groupException;
+                try {
+                    groupException = future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new SyncOtherErrorException("Error running EntitySync [" + esc.getEntitySyncId() + "] from the change log", e);
+                }
+                if (groupException != null) {
+                    throw groupException;
+                }
+            }
+
+            esc.setRunToSyncEnd();
+            esc.saveResultsReportedFromDataStore();
+            esc.saveFinalSyncResults();
+
+        } catch (SyncAbortException e) {
+            return e.returnError(MODULE);
+        } catch (SyncErrorException e) {
+            e.saveSyncErrorInfo(esc);
+            return e.returnError(MODULE);
+        }
+
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Sends the changes of an entity group not sent yet, saving the changes sent after each chunk.
+     */
+    private static void sendChangeLogGroup(EntitySyncContext esc, String syncGroupId, Set<String> entityNames) throws SyncErrorException {
+        Delegator delegator = esc.getDelegator();
+        int chunkSize = UtilProperties.getPropertyAsInteger("general", "entitySyncChangeLogChunkSize", 500);
+        long overlapMillis = UtilProperties.getPropertyAsLong("general", "entitySyncChangeLogOverlapMillis", 900000);
+        try {
+            EntitySyncChangeLog.sendChanges(delegator, esc.getEntitySyncId(), syncGroupId, entityNames, esc.getSyncEndStamp(), chunkSize,
+                    overlapMillis, changes -> esc.runPushSendChanges(EntitySyncChangeLog.makeChangeBlocks(delegator, changes)));
+        } catch (GenericEntityException e) {
+            throw new SyncDataErrorException("Error sending the changes of group [" + syncGroupId + "] for EntitySync [" + esc.getEntitySyncId()
+                    + "]", e);
+        }
+    }
+
     /**
      * Store Entity Sync Data
      *@param dctx The DispatchContext that this service is operating in
@@ -147,10 +232,17 @@ public class EntitySyncServices {
         //LocalDispatcher dispatcher = dctx.getDispatcher();
 
         String entitySyncId = (String) context.get("entitySyncId");
+        List<Map<String, Object>> changeBlocks = UtilGenerics.cast(context.get("changeBlocks"));
+        if (changeBlocks != null) {
+            return storeEntitySyncChanges(delegator, entitySyncId, changeBlocks, locale);
+        }
         // incoming lists will already be sorted by lastUpdatedStamp (or lastCreatedStamp)
-        List<GenericValue> valuesToCreate = UtilGenerics.cast(context.get("valuesToCreate"));
-        List<GenericValue> valuesToStore = UtilGenerics.cast(context.get("valuesToStore"));
-        List<GenericEntity> keysToRemove = UtilGenerics.cast(context.get("keysToRemove"));
+        List<GenericValue> valuesToCreate = context.get("valuesToCreate") == null ? Collections.emptyList()
+                : UtilGenerics.cast(context.get("valuesToCreate"));
+        List<GenericValue> valuesToStore = context.get("valuesToStore") == null ? Collections.emptyList()
+                : UtilGenerics.cast(context.get("valuesToStore"));
+        List<GenericEntity> keysToRemove = context.get("keysToRemove") == null ? Collections.emptyList()
+                : UtilGenerics.cast(context.get("keysToRemove"));
 
         if (Debug.infoOn()) {
             Debug.logInfo("Running storeEntitySyncData (" + entitySyncId + ") - [" + valuesToCreate.size() + "] to create; [" + valuesToStore.size()
@@ -273,6 +365,28 @@ public class EntitySyncServices {
         }
     }
 
+    /**
+     * Stores the change blocks sent by runChangeLogEntitySync.
+     */
+    private static Map<String, Object> storeEntitySyncChanges(Delegator delegator, String entitySyncId, List<Map<String, Object>> changeBlocks,
+            Locale locale) {
+        if (Debug.infoOn()) {
+            Debug.logInfo("Running storeEntitySyncData (" + entitySyncId + ") - [" + changeBlocks.size() + "] change blocks.", MODULE);
+        }
+        try {
+            Map<String, Object> result = ServiceUtil.returnSuccess();
+            result.put("toCreateInserted", 0L);
+            result.put("toCreateUpdated", 0L);
+            result.put("toCreateNotUpdated", 0L);
+            result.putAll(EntitySyncChangeLog.storeChangeBlocks(delegator, changeBlocks));
+            return result;
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Exception saving Entity Sync Data for entitySyncId [" + entitySyncId + "]: " + e.toString(), MODULE);
+            return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "EntityExtExceptionSavingEntitySyncData",
+                    UtilMisc.toMap("entitySyncId", entitySyncId, "errorString", e.toString()), locale));
+        }
+    }
+
     /**
      * Run Pull Entity Sync - Pull From Remote
      *@param dctx The DispatchContext that this service is operating in
@@ -652,6 +766,10 @@ public class EntitySyncServices {
             int numRemoved = delegator.removeByCondition("EntitySyncRemove", EntityCondition.makeCondition(ModelEntity.STAMP_TX_FIELD,
                     EntityOperator.LESS_THAN, keepAfterStamp));
             Debug.logInfo("In cleanSyncRemoveInfo removed [" + numRemoved + "] values with TX timestamp before [" + keepAfterStamp + "]", MODULE);
+            // the changes are kept as long as the removes, a change older than that is sent or of no use
+            numRemoved = delegator.removeByCondition("EntitySyncChange", EntityCondition.makeCondition(ModelEntity.CREATE_STAMP_TX_FIELD,
+                    EntityOperator.LESS_THAN, keepAfterStamp));
+            Debug.logInfo("In cleanSyncRemoveInfo removed [" + numRemoved + "] changes with TX timestamp before [" + keepAfterStamp + "]", MODULE);
 
             return ServiceUtil.returnSuccess();
         } catch (GenericEntityException e) {
@@ -0,0 +1,175 @@
+/*
+ Licensed to the Apache Software Foundation (ASF) under one
+ or more contributor license agreements.  See the NOTICE file
+ distributed with this work for additional information
+ regarding copyright ownership.  The ASF licenses this file
+ to you under the Apache License, Version 2.0 (the
+ "License"); you may not use this file except in compliance
+ with the License.  You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing,
+ software distributed under the License is distributed on an
+ "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ KIND, either express or implied.  See the License for the
+ specific language governing permissions and limitations
+ under the License.
+ */
+
+package org.apache.ofbiz.entityext.test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.model.ModelEntity;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncChangeLog;
+import org.apache.ofbiz.entityext.synchronization.EntitySyncContext.SyncOtherErrorException;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Tests the change log of the synchronized entities: the changes recorded by the entity ECA handler, and the changes
+ * sent once each even when their transactions commit out of order or the sync is resumed after a failure.
+ */
+public class EntitySyncChangeLogTests extends OFBizTestCase {
+
+    private static final String ENTITY_SYNC_ID = "CHANGE_LOG_TEST";
+    private static final long OVERLAP_MILLIS = 60000;
+
+    public EntitySyncChangeLogTests(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        getDelegator().createOrStore(getDelegator().makeValue("EntitySync", "entitySyncId", ENTITY_SYNC_ID,
+                "runStatusId", "ESR_NOT_STARTED", "forPullOnly", "N", "targetServiceName", "storeEntitySyncData"));
+    }
+
+    /**
+     * Test the entity ECA handler records the creations, updates and removals of a synchronized entity.
+     * @throws Exception the exception
+     */
+    public void testRecordChanges() throws Exception {
+        Delegator delegator = getDelegator();
+        UtilProperties.setPropertyValueInMemory("general", "saveEntitySyncChangeLog", "true");
+        try {
+            delegator.createOrStore(delegator.makeValue("EntitySyncInclude", "entitySyncId", ENTITY_SYNC_ID,
+                    "entityOrPackage", "TestingType", "applEnumId", "ESIA_INCLUDE"));
+            GenericValue testingType = delegator.create("TestingType", "testingTypeId", "CHANGE|LOG", "description", "created");
+            testingType.set("description", "updated");
+            testingType.store();
+            testingType.remove();
+
+            GenericValue synced = delegator.makeValue("TestingType", "testingTypeId", "CHANGE_LOG_SYNCED", "description", "synced");
+            synced.setIsFromEntitySync(true);
+            synced.create();
+        } finally {
+            UtilProperties.setPropertyValueInMemory("general", "saveEntitySyncChangeLog", "false");
+        }
+
+        List<GenericValue> changes = from("EntitySyncChange").where("changeEntityName", "TestingType").orderBy("changeSeqId").queryList();
+        List<String> changeTypes = new ArrayList<>();
+        for (GenericValue change : changes) {
+            assertEquals("Primary key of the change", "CHANGE\\|LOG", change.getString("primaryKeyText"));
+            changeTypes.add(change.getString("changeType"));
+        }
+        assertEquals("Changes recorded, without the synced value", UtilMisc.toList(EntitySyncChangeLog.CHANGE_STORE,
+                EntitySyncChangeLog.CHANGE_STORE, EntitySyncChangeLog.CHANGE_REMOVE), changeTypes);
+
+        // no change is recorded once the change log is disabled
+        delegator.create("TestingType", "testingTypeId", "CHANGE_LOG_OFF", "description", "not recorded");
+        assertEquals("No change recorded", 3, from("EntitySyncChange").where("changeEntityName", "TestingType").queryCount());
+        delegator.removeByAnd("TestingType", "testingTypeId", "CHANGE_LOG_OFF");
+        delegator.removeByAnd("TestingType", "testingTypeId", "CHANGE_LOG_SYNCED");
+    }
+
+    /**
+     * Test a change committed after a change with a greater sequence number was sent is sent on the next run, once.
+     * @throws Exception the exception
+     */
+    public void testOutOfOrderCommits() throws Exception {
+        String entityName = "ChangeLogOutOfOrder";
+        long now = System.currentTimeMillis();
+        Timestamp syncEndStamp = new Timestamp(now);
+        createChange(9100002L, entityName, new Timestamp(now - 20000));
+        assertEquals(UtilMisc.toList(9100002L), sendChanges("OUT_OF_ORDER", entityName, syncEndStamp, 10, null));
+
+        // a transaction started earlier, with a change of a lower sequence number from another bank, commits now
+        createChange(9100001L, entityName, new Timestamp(now - 30000));
+        createChange(9100003L, entityName, new Timestamp(now - 10000));
+        assertEquals(UtilMisc.toList(9100001L, 9100003L), sendChanges("OUT_OF_ORDER", entityName, syncEndStamp, 10, null));
+        assertTrue("Nothing more to send", sendChanges("OUT_OF_ORDER", entityName, syncEndStamp, 10, null).isEmpty());
+
+        // a change older than the overlap window before the last change sent is not read anymore
+        createChange(9100000L, entityName, new Timestamp(now - 10000 - OVERLAP_MILLIS - 1000));
+        assertTrue("Change before the overlap window", sendChanges("OUT_OF_ORDER", entityName, syncEndStamp, 10, null).isEmpty());
+        assertEquals("Only the changes sent in the overlap window are kept", 3,
+                from("EntitySyncChangeSent").where("entitySyncId", ENTITY_SYNC_ID, "syncGroupId", "OUT_OF_ORDER").queryCount());
+    }
+
+    /**
+     * Test a sync failing to send a chunk is resumed after the last chunk sent.
+     * @throws Exception the exception
+     */
+    public void testResumeSync() throws Exception {
+        String entityName = "ChangeLogResume";
+        long now = System.currentTimeMillis();
+        Timestamp syncEndStamp = new Timestamp(now);
+        for (long i = 1; i <= 5; i++) {
+            // two changes per transaction
+            createChange(9200000L + i, entityName, new Timestamp(now - 60000 + (i / 2) * 1000));
+        }
+        // a change of a transaction still running at the sync end is left for the next run
+        createChange(9200006L, entityName, new Timestamp(now + 1000));
+
+        try {
+            sendChanges("RESUME", entityName, syncEndStamp, 2, 2);
+            fail("The second chunk fails");
+        } catch (SyncOtherErrorException e) {
+            // expected
+        }
+        assertEquals(UtilMisc.toList(9200003L, 9200004L, 9200005L), sendChanges("RESUME", entityName, syncEndStamp, 2, null));
+        assertEquals(UtilMisc.toList(9200006L), sendChanges("RESUME", entityName, new Timestamp(now + 2000), 2, null));
+        assertTrue("Nothing more to send", sendChanges("RESUME", entityName, new Timestamp(now + 2000), 2, null).isEmpty());
+    }
+
+    private void createChange(long changeSeqId, String entityName, Timestamp txStamp) throws Exception {
+        GenericValue change = getDelegator().makeValue("EntitySyncChange", "changeSeqId", changeSeqId, "changeEntityName", entityName,
+                "changeType", EntitySyncChangeLog.CHANGE_STORE, "primaryKeyText", String.valueOf(changeSeqId));
+        change.set(ModelEntity.CREATE_STAMP_TX_FIELD, txStamp);
+        change.set(ModelEntity.CREATE_STAMP_FIELD, txStamp);
+        change.set(ModelEntity.STAMP_TX_FIELD, txStamp);
+        change.set(ModelEntity.STAMP_FIELD, txStamp);
+        // keep the transaction stamps set above
+        change.setIsFromEntitySync(true);
+        change.create();
+    }
+
+    /**
+     * Sends the changes of an entity, the sending failing for the given chunk.
+     * @return the sequence numbers of the changes sent
+     */
+    private List<Long> sendChanges(String syncGroupId, String entityName, Timestamp syncEndStamp, int chunkSize, Integer failingChunk)
+            throws Exception {
+        List<Long> sent = new ArrayList<>();
+        int[] chunks = {0};
+        Set<String> entityNames = UtilMisc.toSet(entityName);
+        EntitySyncChangeLog.sendChanges(getDelegator(), ENTITY_SYNC_ID, syncGroupId, entityNames, syncEndStamp, chunkSize, OVERLAP_MILLIS,
+                changes -> {
+                    if (failingChunk != null && ++chunks[0] == failingChunk) {
+                        throw new SyncOtherErrorException("The target is not available", null);
+                    }
+                    for (GenericValue change : changes) {
+                        sent.add(change.getLong("changeSeqId"));
+                    }
+                });
+        return sent;
+    }
+}
@@ -156,4 +156,11 @@ public interface Security {
      * @param userLogin The user login to be cleared
      */
     void clearUserData(GenericValue userLogin);
+
+    /** Clears the cached permissions. This method is called by the framework when
+     *  the security group memberships of a user login, or the permissions of a
+     *  security group, change.
+     * @param userLoginId The user login whose permissions changed, <code>null</code> for all the user logins
+     */
+    default void clearPermissionData(String userLoginId) { }
 }
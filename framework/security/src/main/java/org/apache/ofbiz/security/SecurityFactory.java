@@ -24,8 +24,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpSession;
+import javax.transaction.Synchronization;
 
 import org.apache.ofbiz.base.util.Assert;
 import org.apache.ofbiz.base.util.Debug;
@@ -38,6 +40,8 @@ import org.apache.ofbiz.entity.condition.EntityCondition;
 import org.apache.ofbiz.entity.condition.EntityConditionList;
 import org.apache.ofbiz.entity.condition.EntityExpr;
 import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.transaction.GenericTransactionException;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.entity.util.EntityUtil;
 
@@ -51,6 +55,8 @@ public final class SecurityFactory {
     // The goal is to remove Delegator references in the Security interface, then we can use a singleton
     // and eliminate the cache.
     private static final UtilCache<String, Security> AUTHORIZATION_CACHE = UtilCache.createUtilCache("security.AuthorizationCache");
+    // The permissions of each user login, by delegator name and user login ID.
+    private static final UtilCache<String, UserLoginPermissions> PERMISSION_CACHE = UtilCache.createUtilCache("security.UserLoginPermissions");
 
     /**
      * Returns a <code>Security</code> instance. The method uses Java's
@@ -86,6 +92,9 @@ public final class SecurityFactory {
     private static final class OFBizSecurity implements Security {
 
         private Delegator delegator = null;
+        private String permissionCachePrefix = null;
+        // incremented when permissions are cleared, so that the permissions resolved meanwhile are not cached
+        private final AtomicLong permissionVersion = new AtomicLong();
 
         private static final Map<String, Map<String, String>> SIMPLE_ROLE_ENT = UtilMisc.toMap(
                 "ORDERMGR", UtilMisc.<String, String>toMap("name", "OrderRole", "pkey", "orderId"),
@@ -99,9 +108,64 @@ public final class SecurityFactory {
             if (userLogin != null) {
                 delegator.getCache().remove("UserLoginSecurityGroup", EntityCondition.makeCondition("userLoginId", EntityOperator.EQUALS,
                         userLogin.getString("userLoginId")));
+                clearPermissionData(userLogin.getString("userLoginId"));
             }
         }
 
+        @Override
+        public void clearPermissionData(String userLoginId) {
+            removePermissions(userLoginId);
+            // the change is not committed yet, clear again once it is so that the permissions resolved meanwhile are dropped
+            try {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        removePermissions(userLoginId);
+                    }
+                });
+            } catch (GenericTransactionException e) {
+                Debug.logWarning(e, MODULE);
+            }
+        }
+
+        private void removePermissions(String userLoginId) {
+            permissionVersion.incrementAndGet();
+            if (userLoginId != null) {
+                PERMISSION_CACHE.remove(permissionCachePrefix.concat(userLoginId));
+            } else {
+                PERMISSION_CACHE.clear();
+            }
+        }
+
+        /**
+         * Gets the permissions of a user login, resolving them once until they change or expire.
+         */
+        private UserLoginPermissions getPermissions(GenericValue userLogin) {
+            String userLoginId = userLogin.getString("userLoginId");
+            if (userLoginId == null) {
+                return null;
+            }
+            String key = permissionCachePrefix.concat(userLoginId);
+            UserLoginPermissions permissions = PERMISSION_CACHE.get(key);
+            if (permissions == null || permissions.isExpired(System.currentTimeMillis())) {
+                long version = permissionVersion.get();
+                try {
+                    permissions = UserLoginPermissions.load(delegator, userLoginId);
+                } catch (GenericEntityException e) {
+                    Debug.logWarning(e, MODULE);
+                    return null;
+                }
+                if (permissionVersion.get() == version) {
+                    PERMISSION_CACHE.put(key, permissions);
+                }
+            }
+            return permissions;
+        }
+
         @Override
         @Deprecated
         public Iterator<GenericValue> findUserLoginSecurityGroupByUserLoginId(String userLoginId) {
@@ -124,20 +188,8 @@ public final class SecurityFactory {
         @Override
         public boolean hasEntityPermission(String entity, String action, GenericValue userLogin) {
             if (userLogin == null || entity == null || action == null) return false;
-            String permission = entity.concat(action);
-            String adminPermission = entity.concat("_ADMIN");
-            Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
-            while (iterator.hasNext()) {
-                GenericValue userLoginSecurityGroup = iterator.next();
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), permission)) {
-                    return true;
-                }
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), adminPermission)) {
-                    return true;
-                }
-            }
-
-            return false;
+            UserLoginPermissions permissions = getPermissions(userLogin);
+            return permissions != null && (permissions.hasPermission(entity.concat(action)) || permissions.hasPermission(entity.concat("_ADMIN")));
         }
 
         @Override
@@ -157,13 +209,8 @@ public final class SecurityFactory {
             if (userLogin == null) {
                 return false;
             }
-            Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
-            GenericValue userLoginSecurityGroup = null;
-            while (iterator.hasNext()) {
-                userLoginSecurityGroup = iterator.next();
-                if (securityGroupPermissionExists(userLoginSecurityGroup.getString("groupId"), permission)) return true;
-            }
-            return false;
+            UserLoginPermissions permissions = getPermissions(userLogin);
+            return permissions != null && permissions.hasPermission(permission);
         }
 
         @Override
@@ -285,6 +332,7 @@ public final class SecurityFactory {
             }
             Assert.notNull("delegator", delegator);
             this.delegator = delegator;
+            this.permissionCachePrefix = delegator.getDelegatorName().concat("::");
         }
     }
 }
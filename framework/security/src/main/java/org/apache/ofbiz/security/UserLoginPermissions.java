@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.security;
+
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.util.EntityQuery;
+
+/**
+ * The permissions of a user login, resolved from its security groups.
+ * <p>The permissions are bits set at the index of their permission ID, so checking a permission costs one lookup of
+ * its index. The permissions are valid until the first from or thru date of a security group membership or of a
+ * security group permission is reached.</p>
+ */
+final class UserLoginPermissions {
+
+    /** Index of each permission ID held by a user login, shared by all the permission sets */
+    private static final Map<String, Integer> PERMISSION_INDEXES = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_PERMISSION_INDEX = new AtomicInteger();
+
+    private final BitSet permissions;
+    private final long expireTime;
+
+    private UserLoginPermissions(BitSet permissions, long expireTime) {
+        this.permissions = permissions;
+        this.expireTime = expireTime;
+    }
+
+    /**
+     * Checks a permission.
+     * @param permission the permission ID
+     * @return <code>true</code> if the user login has the permission
+     */
+    boolean hasPermission(String permission) {
+        Integer index = PERMISSION_INDEXES.get(permission);
+        return index != null && permissions.get(index);
+    }
+
+    /**
+     * Checks if the permissions must be resolved again, a security group membership or permission having started or
+     * ended since.
+     * @param now the current time in milliseconds
+     * @return <code>true</code> if the permissions are expired
+     */
+    boolean isExpired(long now) {
+        return now >= expireTime;
+    }
+
+    /**
+     * Resolves the permissions of a user login.
+     * @param delegator the delegator
+     * @param userLoginId the user login ID
+     * @return the permissions of the user login
+     * @throws GenericEntityException
+     */
+    static UserLoginPermissions load(Delegator delegator, String userLoginId) throws GenericEntityException {
+        List<GenericValue> userLoginSecurityGroups = EntityQuery.use(delegator).from("UserLoginSecurityGroup")
+                .where("userLoginId", userLoginId).queryList();
+        Set<String> groupIds = new HashSet<>();
+        for (GenericValue userLoginSecurityGroup : userLoginSecurityGroups) {
+            groupIds.add(userLoginSecurityGroup.getString("groupId"));
+        }
+        List<GenericValue> securityGroupPermissions = groupIds.isEmpty() ? List.of() : EntityQuery.use(delegator)
+                .from("SecurityGroupPermission").where(EntityCondition.makeCondition("groupId", EntityOperator.IN, groupIds)).queryList();
+        return create(userLoginSecurityGroups, securityGroupPermissions, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates the permissions of a user login from its security group memberships.
+     * @param userLoginSecurityGroups the security group memberships of the user login
+     * @param securityGroupPermissions the permissions of the security groups
+     * @param now the current time in milliseconds
+     * @return the permissions of the user login
+     */
+    static UserLoginPermissions create(List<GenericValue> userLoginSecurityGroups, List<GenericValue> securityGroupPermissions, long now) {
+        long expireTime = Long.MAX_VALUE;
+        Set<String> groupIds = new HashSet<>();
+        for (GenericValue userLoginSecurityGroup : userLoginSecurityGroups) {
+            expireTime = Math.min(expireTime, getNextChangeTime(userLoginSecurityGroup, now));
+            if (isActive(userLoginSecurityGroup, now)) {
+                groupIds.add(userLoginSecurityGroup.getString("groupId"));
+            }
+        }
+        BitSet permissions = new BitSet();
+        for (GenericValue securityGroupPermission : securityGroupPermissions) {
+            if (!groupIds.contains(securityGroupPermission.getString("groupId"))) {
+                continue;
+            }
+            expireTime = Math.min(expireTime, getNextChangeTime(securityGroupPermission, now));
+            if (isActive(securityGroupPermission, now)) {
+                permissions.set(PERMISSION_INDEXES.computeIfAbsent(securityGroupPermission.getString("permissionId"),
+                        k -> NEXT_PERMISSION_INDEX.getAndIncrement()));
+            }
+        }
+        return new UserLoginPermissions(permissions, expireTime);
+    }
+
+    /**
+     * Checks the from and thru dates of a value the way <code>EntityUtil.filterByDate</code> does.
+     */
+    private static boolean isActive(GenericValue value, long now) {
+        Timestamp fromDate = value.getTimestamp("fromDate");
+        Timestamp thruDate = value.getTimestamp("thruDate");
+        return (fromDate == null || fromDate.getTime() <= now) && (thruDate == null || thruDate.getTime() > now);
+    }
+
+    /**
+     * Gets the time a value becomes active or inactive next.
+     */
+    private static long getNextChangeTime(GenericValue value, long now) {
+        Timestamp fromDate = value.getTimestamp("fromDate");
+        if (fromDate != null && fromDate.getTime() > now) {
+            return fromDate.getTime();
+        }
+        Timestamp thruDate = value.getTimestamp("thruDate");
+        if (thruDate != null && thruDate.getTime() > now) {
+            return thruDate.getTime();
+        }
+        return Long.MAX_VALUE;
+    }
+}
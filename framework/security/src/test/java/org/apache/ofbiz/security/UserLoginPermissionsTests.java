@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.security;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.apache.ofbiz.entity.GenericValue;
+import org.junit.Test;
+
+public class UserLoginPermissionsTests {
+    private static final long NOW = 1_000_000L;
+
+    private static GenericValue makeValue(String groupId, String permissionId, Long fromDate, Long thruDate) {
+        GenericValue value = mock(GenericValue.class);
+        when(value.getString("groupId")).thenReturn(groupId);
+        when(value.getString("permissionId")).thenReturn(permissionId);
+        when(value.getTimestamp("fromDate")).thenReturn(fromDate == null ? null : new Timestamp(fromDate));
+        when(value.getTimestamp("thruDate")).thenReturn(thruDate == null ? null : new Timestamp(thruDate));
+        return value;
+    }
+
+    @Test
+    public void activeGroupPermissionsAreGranted() {
+        UserLoginPermissions permissions = UserLoginPermissions.create(
+                Arrays.asList(makeValue("ADMIN", null, 0L, null), makeValue("VIEWER", null, 0L, NOW)),
+                Arrays.asList(makeValue("ADMIN", "TEST_ADMIN", 0L, null), makeValue("ADMIN", "TEST_OLD", 0L, NOW - 1),
+                        makeValue("VIEWER", "TEST_VIEW", 0L, null)), NOW);
+        assertTrue(permissions.hasPermission("TEST_ADMIN"));
+        assertFalse(permissions.hasPermission("TEST_OLD"));
+        assertFalse(permissions.hasPermission("TEST_VIEW"));
+        assertFalse(permissions.hasPermission("TEST_UNKNOWN"));
+        assertFalse(permissions.isExpired(NOW));
+    }
+
+    @Test
+    public void permissionsExpireAtTheNextDateReached() {
+        UserLoginPermissions permissions = UserLoginPermissions.create(
+                Arrays.asList(makeValue("ADMIN", null, 0L, NOW + 20), makeValue("VIEWER", null, NOW + 10, null)),
+                Arrays.asList(makeValue("ADMIN", "TEST_ADMIN", 0L, null)), NOW);
+        assertTrue(permissions.hasPermission("TEST_ADMIN"));
+        assertFalse(permissions.isExpired(NOW + 9));
+        assertTrue(permissions.isExpired(NOW + 10));
+    }
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.TestingState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the synchronous service calls, from the validation of the parameters to the commit of the
+ * transaction.
+ * <p>The services update the Testing values of a {@link TestingState}: <code>testEntityAutoUpdateTesting</code>
+ * has no ECA, <code>testEntityAutoUpdateTestingWithEca</code> calls it from a service ECA.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class ServiceDispatcherBenchmark {
+
+    private LocalDispatcher dispatcher;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(TestingState testing) {
+        dispatcher = ServiceContainer.getLocalDispatcher("jmh", testing.getDelegator());
+    }
+
+    @Benchmark
+    public Map<String, Object> runSync(TestingState testing) throws GenericServiceException {
+        return dispatcher.runSync("testEntityAutoUpdateTesting", makeContext(testing));
+    }
+
+    @Benchmark
+    public Map<String, Object> runSyncWithEca(TestingState testing) throws GenericServiceException {
+        return dispatcher.runSync("testEntityAutoUpdateTestingWithEca", makeContext(testing));
+    }
+
+    private Map<String, Object> makeContext(TestingState testing) {
+        int next = index++;
+        return UtilMisc.toMap("testingId", testing.getTesting(next).get("testingId"), "description", "JMH benchmark update " + next,
+                "testingSize", BigDecimal.valueOf(next));
+    }
+}
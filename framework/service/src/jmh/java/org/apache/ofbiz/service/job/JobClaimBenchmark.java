@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.DelegatorFactory;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.transaction.TransactionUtil;
+import org.apache.ofbiz.service.config.model.ThreadPool;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the claim strategies of the job poller: several simulated instances, each with its own instance ID and
+ * transactions, claim the jobs due in a dedicated pool until none is left.
+ * <p>The instances are threads of a single JVM rather than separate servers. They only share the database, which is
+ * where the claims of separate servers conflict, so the conflicts are the same; the latency doesn't include the network
+ * and the poll interval of separate servers.</p>
+ * <p>The primary score is the time to drain the pool. The {@link ClaimCounters} secondary metrics give, per iteration,
+ * the claim polls, the jobs lost to another instance (the claim conflicts of the {@link JobManager} statistics), and
+ * the mean and max latency from the run time of a job to its claim. The <code>skip-locked</code> strategy falls back to
+ * <code>batch</code> when the datasource of the <code>test</code> delegator does not support <code>SKIP LOCKED</code>.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class JobClaimBenchmark {
+
+    private static final String POOL_ID = "JMH_CLAIM_POOL";
+    private static final int JOB_COUNT = 200;
+    private static final int INSTANCE_COUNT = 4;
+    private static final int CLAIM_LIMIT = 10;
+    private static final EntityCondition POOL_CONDITION = EntityCondition.makeCondition("poolId", POOL_ID);
+
+    @Param({ThreadPool.CLAIM_ROW, ThreadPool.CLAIM_BATCH, ThreadPool.CLAIM_SKIP_LOCKED})
+    public String claimStrategy;
+
+    private Delegator delegator;
+    private ExecutorService instances;
+    private final LongAdder claimLatencySum = new LongAdder();
+    private final LongAccumulator claimLatencyMax = new LongAccumulator(Math::max, 0L);
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException {
+        BenchmarkEnvironment.start();
+        delegator = DelegatorFactory.getDelegator(BenchmarkEnvironment.DELEGATOR_NAME);
+        instances = Executors.newFixedThreadPool(INSTANCE_COUNT);
+    }
+
+    @Setup(Level.Invocation)
+    public void createJobs() throws GenericEntityException {
+        delegator.removeByCondition("JobSandbox", POOL_CONDITION);
+        List<GenericValue> jobs = new ArrayList<>(JOB_COUNT);
+        Timestamp runTime = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < JOB_COUNT; i++) {
+            jobs.add(delegator.makeValue("JobSandbox", "jobId", "JMH_" + claimStrategy + "_" + i, "jobName", "claimJobsBenchmark",
+                    "serviceName", "ping", "poolId", POOL_ID, "statusId", "SERVICE_PENDING", "priority", (long) (i % 3) * 50,
+                    "runTime", runTime));
+        }
+        delegator.storeAll(jobs);
+        claimLatencySum.reset();
+        claimLatencyMax.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws GenericEntityException {
+        instances.shutdownNow();
+        delegator.removeByCondition("JobSandbox", POOL_CONDITION);
+    }
+
+    @Benchmark
+    public int claimJobs(ClaimCounters counters) throws InterruptedException, ExecutionException {
+        Map<String, Object> statisticsBefore = JobManager.getClaimStatistics();
+        List<Future<Integer>> claims = new ArrayList<>(INSTANCE_COUNT);
+        for (int instance = 0; instance < INSTANCE_COUNT; instance++) {
+            claims.add(instances.submit(new ClaimAll("JMH" + instance)));
+        }
+        int claimed = 0;
+        for (Future<Integer> claim : claims) {
+            claimed += claim.get();
+        }
+        Map<String, Object> statisticsAfter = JobManager.getClaimStatistics();
+        counters.claimPolls = difference(statisticsBefore, statisticsAfter, "numberOfClaimPolls");
+        counters.lostClaims = difference(statisticsBefore, statisticsAfter, "numberOfClaimConflicts");
+        counters.meanClaimLatencyMs = claimed > 0 ? (double) claimLatencySum.sum() / claimed : 0;
+        counters.maxClaimLatencyMs = claimLatencyMax.get();
+        return claimed;
+    }
+
+    private static long difference(Map<String, Object> before, Map<String, Object> after, String key) {
+        return (Long) after.get(key) - (Long) before.get(key);
+    }
+
+    /**
+     * Secondary metrics of an iteration, an iteration being a single drain of the pool.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ClaimCounters {
+        /** Claim polls of all the instances. */
+        public long claimPolls;
+        /** Jobs selected by an instance but claimed first by another one. */
+        public long lostClaims;
+        /** Mean time from the run time of a job to its claim. */
+        public double meanClaimLatencyMs;
+        /** Longest time from the run time of a job to its claim. */
+        public long maxClaimLatencyMs;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            claimPolls = 0;
+            lostClaims = 0;
+            meanClaimLatencyMs = 0;
+            maxClaimLatencyMs = 0;
+        }
+    }
+
+    /**
+     * Claims the jobs of the pool for an instance until none is left, and returns the number of jobs claimed.
+     */
+    private final class ClaimAll implements Callable<Integer> {
+
+        private final String instanceId;
+
+        private ClaimAll(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        @Override
+        public Integer call() throws GenericEntityException {
+            int claimed = 0;
+            while (true) {
+                EntityCondition dueCondition = EntityCondition.makeCondition(UtilMisc.toList(POOL_CONDITION,
+                        EntityCondition.makeCondition("runTime", EntityOperator.LESS_THAN_EQUAL_TO, new Timestamp(System.currentTimeMillis())),
+                        EntityCondition.makeCondition("startDateTime", null), EntityCondition.makeCondition("cancelDateTime", null),
+                        EntityCondition.makeCondition("runByInstanceId", null)));
+                boolean beganTransaction = TransactionUtil.begin();
+                List<GenericValue> jobs;
+                try {
+                    jobs = JobManager.claimJobs(delegator, dueCondition, CLAIM_LIMIT, instanceId, claimStrategy);
+                    TransactionUtil.commit(beganTransaction);
+                } catch (GenericEntityException e) {
+                    TransactionUtil.rollback(beganTransaction, "Error claiming jobs", e);
+                    throw e;
+                }
+                if (jobs.isEmpty()) {
+                    return claimed;
+                }
+                long claimTime = System.currentTimeMillis();
+                for (GenericValue job : jobs) {
+                    long latency = claimTime - job.getTimestamp("runTime").getTime();
+                    claimLatencySum.add(latency);
+                    claimLatencyMax.accumulate(latency);
+                }
+                claimed += jobs.size();
+            }
+        }
+    }
+}
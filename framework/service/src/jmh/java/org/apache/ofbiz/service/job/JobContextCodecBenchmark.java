@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.UtilDateTime;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.DelegatorFactory;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.SerializeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the encoding and of the decoding of a persisted job context by the XML and the binary job context
+ * codecs.
+ * <p>The context looks like the one of an order notification: a user login, a locale, a few ids and amounts, and a
+ * list of order items.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class JobContextCodecBenchmark {
+
+    @Param({"xml", "binary"})
+    public String codecName;
+
+    private JobContextCodec codec;
+    private Map<String, Object> jobContext;
+    private GenericValue encodeRuntimeData;
+    private GenericValue decodeRuntimeData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException, SerializeException {
+        BenchmarkEnvironment.start();
+        Delegator delegator = DelegatorFactory.getDelegator(BenchmarkEnvironment.DELEGATOR_NAME);
+        codec = "xml".equals(codecName) ? new XmlJobContextCodec() : new BinaryJobContextCodec();
+
+        Timestamp now = UtilDateTime.nowTimestamp();
+        GenericValue userLogin = delegator.makeValue("UserLogin", "userLoginId", "admin", "enabled", "Y", "partyId", "admin",
+                "lastLocale", "en_US", "successiveFailedLogins", 0L, "requirePasswordChange", "N", "lastUpdatedStamp", now);
+        List<Map<String, Object>> orderItems = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            orderItems.add(UtilMisc.toMap("orderItemSeqId", String.format("%05d", i), "productId", "GZ-" + (1000 + i), "quantity",
+                    BigDecimal.valueOf(i), "unitPrice", new BigDecimal("15.99"), "statusId", "ITEM_CREATED", "estimatedDeliveryDate", now));
+        }
+        jobContext = UtilMisc.toMap("userLogin", userLogin, "locale", Locale.US, "orderId", "WS10000", "sendTo", "customer@example.com",
+                "emailType", "PRDS_ODR_CONFIRM", "grandTotal", new BigDecimal("172.37"), "orderDate", now, "orderItems", orderItems,
+                "notifyOnly", Boolean.TRUE);
+
+        encodeRuntimeData = delegator.makeValue("RuntimeData");
+        decodeRuntimeData = delegator.makeValue("RuntimeData");
+        codec.encode(decodeRuntimeData, jobContext);
+    }
+
+    @Benchmark
+    public GenericValue encode() throws SerializeException {
+        codec.encode(encodeRuntimeData, jobContext);
+        return encodeRuntimeData;
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() throws SerializeException {
+        return codec.decode(decodeRuntimeData);
+    }
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.DelegatorFactory;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.service.config.GenericConfigException;
+import org.apache.ofbiz.service.config.ServiceConfigUtil;
+import org.apache.ofbiz.service.config.model.ThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the throughput of I/O bound asynchronous jobs on the platform and on the virtual thread job executors.
+ * <p>The executors are sized by the thread pool of the service engine configuration. Each job reads a row, as most
+ * services do, then waits a few milliseconds to stand in for a call to a payment or shipping gateway.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class JobExecutorBenchmark {
+
+    private static final String MODULE = JobExecutorBenchmark.class.getName();
+    /** The number of jobs queued by each benchmark invocation */
+    private static final int JOB_COUNT = 1000;
+
+    @Param({ThreadPool.EXECUTOR_PLATFORM, ThreadPool.EXECUTOR_VIRTUAL})
+    public String executorMode;
+
+    private Delegator delegator;
+    private ThreadPoolExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException, GenericConfigException {
+        BenchmarkEnvironment.start();
+        delegator = DelegatorFactory.getDelegator(BenchmarkEnvironment.DELEGATOR_NAME);
+        ThreadPool threadPool = ServiceConfigUtil.getServiceEngine().getThreadPool();
+        executor = JobPoller.createJobExecutor(executorMode, threadPool.getMinThreads(), threadPool.getMaxThreads(),
+                threadPool.getMaxVirtualThreads(), threadPool.getTtl(), threadPool.getJobs());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOB_COUNT)
+    public void runJobs() throws InterruptedException, InvalidJobException {
+        CountDownLatch done = new CountDownLatch(JOB_COUNT);
+        for (int i = 0; i < JOB_COUNT; i++) {
+            IoBoundJob job = new IoBoundJob(delegator, i, done);
+            job.queue();
+            executor.execute(job);
+        }
+        done.await();
+    }
+
+    /**
+     * A job reading a row and waiting for a remote call.
+     */
+    private static final class IoBoundJob extends AbstractJob {
+
+        private final transient Delegator delegator;
+        private final long priority;
+        private final transient CountDownLatch done;
+
+        private IoBoundJob(Delegator delegator, int index, CountDownLatch done) {
+            super("ioBoundJob." + index, "ioBoundJob");
+            this.delegator = delegator;
+            this.priority = (index % 3) * 50;
+            this.done = done;
+        }
+
+        @Override
+        public void exec() throws InvalidJobException {
+            try {
+                delegator.findOne("JobSandbox", false, "jobId", "PURGE_OLD_JOBS");
+                Thread.sleep(2);
+            } catch (GenericEntityException e) {
+                Debug.logError(e, MODULE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public long getPriority() {
+            return priority;
+        }
+    }
+}
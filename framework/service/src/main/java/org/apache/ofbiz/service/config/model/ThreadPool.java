@@ -44,17 +44,29 @@ public final class ThreadPool {
     public static final int PURGE_JOBS_DAYS = 30;
     public static final int QUEUE_SIZE = 100;
     public static final int THREAD_TTL = 120000; // Idle thread lifespan - 2 minutes.
+    public static final String EXECUTOR_PLATFORM = "platform";
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+    public static final String CLAIM_ROW = "row"; // One UPDATE per polled job.
+    public static final String CLAIM_BATCH = "batch"; // One UPDATE ... WHERE jobId IN (...) per poll.
+    public static final String CLAIM_SKIP_LOCKED = "skip-locked"; // SELECT ... FOR UPDATE SKIP LOCKED, then a batch UPDATE.
+    public static final String CODEC_BINARY = "binary"; // Compact binary job contexts in RuntimeData.runtimeBinary.
+    public static final String CODEC_XML = "xml"; // XmlSerializer job contexts in RuntimeData.runtimeInfo.
 
+    private final String executor;
     private final int failedRetryMin;
+    private final String jobContextCodec;
     private final int jobs;
     private final int maxThreads;
+    private final int maxVirtualThreads;
     private final int minThreads;
+    private final String pollClaimStrategy;
     private final int pollDbMillis;
     private final boolean pollEnabled;
     private final int purgeJobDays;
     private final List<RunFromPool> runFromPools;
     private final String sendToPool;
     private final int ttl;
+    private final String wakeUpNotifier;
 
     ThreadPool(Element poolElement) throws ServiceConfigException, NumberFormatException {
         String sendToPool = poolElement.getAttribute("send-to-pool").intern();
@@ -160,6 +172,40 @@ public final class ThreadPool {
                 throw new ServiceConfigException("<thread-pool> element poll-db-millis attribute value is invalid");
             }
         }
+        String executor = poolElement.getAttribute("executor").intern();
+        if (executor.isEmpty()) {
+            this.executor = EXECUTOR_PLATFORM;
+        } else if (EXECUTOR_PLATFORM.equals(executor) || EXECUTOR_VIRTUAL.equals(executor)) {
+            this.executor = executor;
+        } else {
+            throw new ServiceConfigException("<thread-pool> element executor attribute value is invalid");
+        }
+        String maxVirtualThreads = poolElement.getAttribute("max-virtual-threads").intern();
+        if (maxVirtualThreads.isEmpty()) {
+            this.maxVirtualThreads = 0;
+        } else {
+            try {
+                this.maxVirtualThreads = Integer.parseInt(maxVirtualThreads);
+                if (this.maxVirtualThreads < 0) {
+                    throw new ServiceConfigException("<thread-pool> element max-virtual-threads attribute value is invalid");
+                }
+            } catch (NumberFormatException | ServiceConfigException e) {
+                Debug.logError(e, MODULE);
+                throw new ServiceConfigException("<thread-pool> element max-virtual-threads attribute value is invalid");
+            }
+        }
+        String pollClaimStrategy = poolElement.getAttribute("poll-claim-strategy").intern();
+        if (pollClaimStrategy.isEmpty()) {
+            this.pollClaimStrategy = CLAIM_BATCH;
+        } else if (CLAIM_ROW.equals(pollClaimStrategy) || CLAIM_BATCH.equals(pollClaimStrategy)
+                || CLAIM_SKIP_LOCKED.equals(pollClaimStrategy)) {
+            this.pollClaimStrategy = pollClaimStrategy;
+        } else {
+            throw new ServiceConfigException("<thread-pool> element poll-claim-strategy attribute value is invalid");
+        }
+        this.wakeUpNotifier = poolElement.getAttribute("wake-up-notifier").intern();
+        String jobContextCodec = poolElement.getAttribute("job-context-codec").intern();
+        this.jobContextCodec = jobContextCodec.isEmpty() ? CODEC_BINARY : jobContextCodec;
         List<? extends Element> runFromPoolElementList = UtilXml.childElementList(poolElement, "run-from-pool");
         if (runFromPoolElementList.isEmpty()) {
             this.runFromPools = Collections.emptyList();
@@ -172,10 +218,18 @@ public final class ThreadPool {
         }
     }
 
+    public String getExecutor() {
+        return executor;
+    }
+
     public int getFailedRetryMin() {
         return failedRetryMin;
     }
 
+    public String getJobContextCodec() {
+        return jobContextCodec;
+    }
+
     public int getJobs() {
         return jobs;
     }
@@ -184,10 +238,18 @@ public final class ThreadPool {
         return maxThreads;
     }
 
+    public int getMaxVirtualThreads() {
+        return maxVirtualThreads;
+    }
+
     public int getMinThreads() {
         return minThreads;
     }
 
+    public String getPollClaimStrategy() {
+        return pollClaimStrategy;
+    }
+
     public int getPollDbMillis() {
         return pollDbMillis;
     }
@@ -211,4 +273,8 @@ public final class ThreadPool {
     public int getTtl() {
         return ttl;
     }
+
+    public String getWakeUpNotifier() {
+        return wakeUpNotifier;
+    }
 }
@@ -18,8 +18,6 @@
  *******************************************************************************/
 package org.apache.ofbiz.service.engine;
 
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.Map;
 
 import org.apache.ofbiz.base.config.GenericConfigException;
@@ -30,7 +28,6 @@ import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.serialize.SerializeException;
-import org.apache.ofbiz.entity.serialize.XmlSerializer;
 import org.apache.ofbiz.service.DispatchContext;
 import org.apache.ofbiz.service.GenericRequester;
 import org.apache.ofbiz.service.GenericServiceException;
@@ -42,6 +39,7 @@ import org.apache.ofbiz.service.job.Job;
 import org.apache.ofbiz.service.job.JobManager;
 import org.apache.ofbiz.service.job.JobManagerException;
 import org.apache.ofbiz.service.job.JobPriority;
+import org.apache.ofbiz.service.job.JobUtil;
 
 /**
  * Generic Asynchronous Engine
@@ -86,7 +84,7 @@ public abstract class GenericAsyncEngine extends AbstractEngine {
 
                 GenericValue runtimeData = getDispatcher().getDelegator().makeValue("RuntimeData", "runtimeDataId", dataId);
 
-                runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
+                JobUtil.setContext(runtimeData, context);
                 runtimeData.create();
 
                 // Get the userLoginId out of the context
@@ -116,13 +114,15 @@ public abstract class GenericAsyncEngine extends AbstractEngine {
                 jobV.create();
             } catch (GenericEntityException e) {
                 throw new GenericServiceException("Unable to create persisted job", e);
-            } catch (FileNotFoundException e) {
-                throw new GenericServiceException("Problem serializing service attributes", e);
-            } catch (SerializeException | GenericConfigException | IOException e) {
+            } catch (SerializeException | GenericConfigException e) {
                 throw new GenericServiceException("Problem serializing service attributes", e);
             }
 
             Debug.logInfo("Persisted job queued : " + jobV.getString("jobName"), MODULE);
+            JobManager jMgr = getDispatcher().getJobManager();
+            if (jMgr != null) {
+                jMgr.notifyJobScheduled(jobV.getString("jobId"));
+            }
         } else {
             JobManager jMgr = getDispatcher().getJobManager();
             if (jMgr != null) {
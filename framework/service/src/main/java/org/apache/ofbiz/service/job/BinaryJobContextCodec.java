@@ -0,0 +1,554 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.service.job;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilObject;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntity;
+import org.apache.ofbiz.entity.GenericPK;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.SerializeException;
+
+/**
+ * {@link JobContextCodec} storing the job context in a compact binary format in the
+ * <code>RuntimeData.runtimeBinary</code> field.
+ * <p>The format starts with a 4 bytes header: the "OJC" magic number and a format version.
+ * The version is followed by a flags byte telling whether the rest is deflated, then by the encoded context.
+ * Each value is a type tag followed by its content: numbers are variable length, strings are UTF-8 and
+ * written once per context (the next occurrences are references to the first one), entity values are their
+ * entity name and fields. Values of other types are written with Java serialization, like the
+ * <code>XmlSerializer</code> does.</p>
+ * <p>A new version of the format must keep reading the previous versions, since the jobs persisted
+ * before an upgrade are run after it.</p>
+ */
+public final class BinaryJobContextCodec implements JobContextCodec {
+
+    /** The current version of the format. */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'O', 'J', 'C'};
+    private static final int FLAG_DEFLATED = 1;
+    /** Contexts shorter than that are not worth deflating. */
+    private static final int DEFLATE_THRESHOLD = 512;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int INTEGER = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int BIG_DECIMAL = 8;
+    private static final int BIG_INTEGER = 9;
+    private static final int TIMESTAMP = 10;
+    private static final int SQL_DATE = 11;
+    private static final int SQL_TIME = 12;
+    private static final int DATE = 13;
+    private static final int LOCALE = 14;
+    private static final int TIME_ZONE = 15;
+    private static final int HASH_MAP = 16;
+    private static final int LINKED_HASH_MAP = 17;
+    private static final int TREE_MAP = 18;
+    private static final int ARRAY_LIST = 19;
+    private static final int LINKED_LIST = 20;
+    private static final int HASH_SET = 21;
+    private static final int LINKED_HASH_SET = 22;
+    private static final int TREE_SET = 23;
+    private static final int GENERIC_VALUE = 24;
+    private static final int GENERIC_PK = 25;
+    private static final int BYTES = 26;
+    private static final int SERIALIZED = 27;
+
+    @Override
+    public void encode(GenericValue runtimeData, Map<String, ? extends Object> context) throws SerializeException {
+        runtimeData.set("runtimeBinary", encode(context));
+    }
+
+    @Override
+    public boolean canDecode(GenericValue runtimeData) {
+        byte[] bytes = runtimeData.getBytes("runtimeBinary");
+        return bytes != null && bytes.length >= 5 && Arrays.equals(MAGIC, 0, MAGIC.length, bytes, 0, MAGIC.length);
+    }
+
+    @Override
+    public Map<String, Object> decode(GenericValue runtimeData) throws SerializeException {
+        return decode(runtimeData.getBytes("runtimeBinary"), runtimeData.getDelegator());
+    }
+
+    /**
+     * Encodes a job context.
+     * @param context The job context
+     * @return the encoded context
+     * @throws SerializeException if a context entry cannot be encoded
+     */
+    public static byte[] encode(Map<String, ? extends Object> context) throws SerializeException {
+        Encoder encoder = new Encoder();
+        encoder.writeValue(context);
+        byte[] body = encoder.toByteArray();
+        int flags = 0;
+        if (body.length >= DEFLATE_THRESHOLD) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                body = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+        byte[] bytes = new byte[MAGIC.length + 2 + body.length];
+        System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+        bytes[MAGIC.length] = (byte) VERSION;
+        bytes[MAGIC.length + 1] = (byte) flags;
+        System.arraycopy(body, 0, bytes, MAGIC.length + 2, body.length);
+        return bytes;
+    }
+
+    /**
+     * Decodes a job context.
+     * @param bytes The encoded context
+     * @param delegator The delegator of the entity values of the context
+     * @return the job context, a mutable <code>Map</code>
+     * @throws SerializeException if the bytes are not an encoded context of a known version
+     */
+    public static Map<String, Object> decode(byte[] bytes, Delegator delegator) throws SerializeException {
+        if (bytes == null || bytes.length < MAGIC.length + 2 || !Arrays.equals(MAGIC, 0, MAGIC.length, bytes, 0, MAGIC.length)) {
+            throw new SerializeException("Not a binary job context");
+        }
+        int version = bytes[MAGIC.length];
+        if (version != VERSION) {
+            throw new SerializeException("Unsupported binary job context version " + version);
+        }
+        int flags = bytes[MAGIC.length + 1];
+        byte[] body = Arrays.copyOfRange(bytes, MAGIC.length + 2, bytes.length);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            body = inflate(body);
+        }
+        Object context = new Decoder(body, delegator).readValue();
+        if (!(context instanceof Map<?, ?>)) {
+            throw new SerializeException("The binary job context is not a Map");
+        }
+        return UtilGenerics.cast(context);
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) throws SerializeException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializeException("Truncated binary job context");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializeException("Corrupted binary job context", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        void writeValue(Object value) throws SerializeException {
+            if (value == null) {
+                out.write(NULL);
+            } else if (value instanceof String) {
+                out.write(STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                out.write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                out.write(INTEGER);
+                writeVarLong((Integer) value);
+            } else if (value instanceof Long) {
+                out.write(LONG);
+                writeVarLong((Long) value);
+            } else if (value instanceof Float) {
+                out.write(FLOAT);
+                writeFixed(Float.floatToIntBits((Float) value), 4);
+            } else if (value instanceof Double) {
+                out.write(DOUBLE);
+                writeFixed(Double.doubleToLongBits((Double) value), 8);
+            } else if (value instanceof BigDecimal) {
+                BigDecimal bigDecimal = (BigDecimal) value;
+                out.write(BIG_DECIMAL);
+                writeVarLong(bigDecimal.scale());
+                writeBytes(bigDecimal.unscaledValue().toByteArray());
+            } else if (value instanceof BigInteger) {
+                out.write(BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (value instanceof Timestamp) {
+                Timestamp timestamp = (Timestamp) value;
+                out.write(TIMESTAMP);
+                // the milliseconds are part of the nanoseconds
+                writeVarLong(Math.floorDiv(timestamp.getTime(), 1000L));
+                writeVarLong(timestamp.getNanos());
+            } else if (value instanceof java.sql.Date) {
+                out.write(SQL_DATE);
+                writeVarLong(((java.sql.Date) value).getTime());
+            } else if (value instanceof java.sql.Time) {
+                out.write(SQL_TIME);
+                writeVarLong(((java.sql.Time) value).getTime());
+            } else if (value.getClass() == java.util.Date.class) {
+                out.write(DATE);
+                writeVarLong(((java.util.Date) value).getTime());
+            } else if (value instanceof Locale) {
+                out.write(LOCALE);
+                writeString(((Locale) value).toLanguageTag());
+            } else if (value instanceof TimeZone) {
+                out.write(TIME_ZONE);
+                writeString(((TimeZone) value).getID());
+            } else if (value instanceof GenericEntity) {
+                // GenericValue and GenericPK have no subclass worth keeping
+                GenericEntity entity = (GenericEntity) value;
+                out.write(entity instanceof GenericPK ? GENERIC_PK : GENERIC_VALUE);
+                writeString(entity.getEntityName());
+                Map<String, Object> fields = entity.getAllFields();
+                writeVarLong(fields.size());
+                for (Map.Entry<String, Object> field : fields.entrySet()) {
+                    writeString(field.getKey());
+                    writeValue(field.getValue());
+                }
+            } else if (value instanceof byte[]) {
+                out.write(BYTES);
+                writeBytes((byte[]) value);
+            } else if (isPlainMap(value)) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.write(value instanceof LinkedHashMap<?, ?> ? LINKED_HASH_MAP : value instanceof TreeMap<?, ?> ? TREE_MAP : HASH_MAP);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (isPlainCollection(value)) {
+                Collection<?> collection = (Collection<?>) value;
+                int tag;
+                if (value instanceof LinkedList<?>) {
+                    tag = LINKED_LIST;
+                } else if (value instanceof TreeSet<?>) {
+                    tag = TREE_SET;
+                } else if (value instanceof LinkedHashSet<?>) {
+                    tag = LINKED_HASH_SET;
+                } else if (value instanceof Set<?>) {
+                    tag = HASH_SET;
+                } else {
+                    tag = ARRAY_LIST;
+                }
+                out.write(tag);
+                writeVarLong(collection.size());
+                for (Object element : collection) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Serializable) {
+                byte[] bytes = UtilObject.getBytes(value);
+                if (bytes == null) {
+                    throw new SerializeException("Unable to serialize object of class " + value.getClass().getName());
+                }
+                out.write(SERIALIZED);
+                writeBytes(bytes);
+            } else {
+                throw new SerializeException("Cannot serialize object of class " + value.getClass().getName());
+            }
+        }
+
+        /**
+         * Maps are decoded as a <code>HashMap</code>, a <code>LinkedHashMap</code> or a <code>TreeMap</code>.
+         * Maps with a behavior of their own (a comparator, properties defaults...) are serialized.
+         */
+        private static boolean isPlainMap(Object value) {
+            if (value instanceof TreeMap<?, ?>) {
+                return ((TreeMap<?, ?>) value).comparator() == null;
+            }
+            return value instanceof Map<?, ?> && !(value instanceof Hashtable<?, ?>);
+        }
+
+        /**
+         * Lists are decoded as an <code>ArrayList</code> or a <code>LinkedList</code> and sets as a <code>HashSet</code>,
+         * a <code>LinkedHashSet</code> or a <code>TreeSet</code>. Collections with a behavior of their own are serialized.
+         */
+        private static boolean isPlainCollection(Object value) {
+            if (value instanceof TreeSet<?>) {
+                return ((TreeSet<?>) value).comparator() == null;
+            }
+            return (value instanceof List<?> || value instanceof Set<?>) && !(value instanceof Vector<?>);
+        }
+
+        private void writeString(String value) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarLong(index + 1);
+                return;
+            }
+            strings.put(value, strings.size());
+            out.write(0);
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private void writeFixed(long value, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                out.write((int) (value >>> (i * 8)));
+            }
+        }
+
+        /** Writes a zigzag encoded variable length number: 7 bits per byte, small absolute values taking one byte. */
+        private void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private final Delegator delegator;
+        private final List<String> strings = new ArrayList<>();
+        private int position;
+
+        Decoder(byte[] bytes, Delegator delegator) {
+            this.bytes = bytes;
+            this.delegator = delegator;
+        }
+
+        Object readValue() throws SerializeException {
+            int tag = readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INTEGER:
+                return (int) readVarLong();
+            case LONG:
+                return readVarLong();
+            case FLOAT:
+                return Float.intBitsToFloat((int) readFixed(4));
+            case DOUBLE:
+                return Double.longBitsToDouble(readFixed(8));
+            case BIG_DECIMAL:
+                int scale = (int) readVarLong();
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes());
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(readVarLong() * 1000L);
+                timestamp.setNanos((int) readVarLong());
+                return timestamp;
+            case SQL_DATE:
+                return new java.sql.Date(readVarLong());
+            case SQL_TIME:
+                return new java.sql.Time(readVarLong());
+            case DATE:
+                return new java.util.Date(readVarLong());
+            case LOCALE:
+                return Locale.forLanguageTag(readString());
+            case TIME_ZONE:
+                return TimeZone.getTimeZone(readString());
+            case HASH_MAP:
+                return readMap(new HashMap<>());
+            case LINKED_HASH_MAP:
+                return readMap(new LinkedHashMap<>());
+            case TREE_MAP:
+                return readMap(new TreeMap<>());
+            case ARRAY_LIST:
+                return readCollection(new ArrayList<>());
+            case LINKED_LIST:
+                return readCollection(new LinkedList<>());
+            case HASH_SET:
+                return readCollection(new HashSet<>());
+            case LINKED_HASH_SET:
+                return readCollection(new LinkedHashSet<>());
+            case TREE_SET:
+                return readCollection(new TreeSet<>());
+            case GENERIC_VALUE:
+            case GENERIC_PK:
+                return readEntity(tag == GENERIC_PK);
+            case BYTES:
+                return readBytes();
+            case SERIALIZED:
+                Object value = UtilObject.getObject(readBytes());
+                if (value == null) {
+                    throw new SerializeException("Unable to deserialize object in binary job context");
+                }
+                return value;
+            default:
+                throw new SerializeException("Unknown type " + tag + " in binary job context");
+            }
+        }
+
+        private Map<Object, Object> readMap(Map<Object, Object> map) throws SerializeException {
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                Object key = readValue();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        private Collection<Object> readCollection(Collection<Object> collection) throws SerializeException {
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private GenericEntity readEntity(boolean primaryKey) throws SerializeException {
+            if (delegator == null) {
+                throw new SerializeException("No delegator to deserialize the entity values of the binary job context");
+            }
+            String entityName = readString();
+            GenericEntity entity = primaryKey ? delegator.makePK(entityName) : delegator.makeValue(entityName);
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                Object value = readValue();
+                try {
+                    entity.set(name, value);
+                } catch (IllegalArgumentException e) {
+                    throw new SerializeException("Unable to set field " + name + " of entity " + entityName, e);
+                }
+            }
+            return entity;
+        }
+
+        private String readString() throws SerializeException {
+            int index = readSize();
+            if (index > 0) {
+                if (index > strings.size()) {
+                    throw new SerializeException("Invalid string reference in binary job context");
+                }
+                return strings.get(index - 1);
+            }
+            String value = new String(readBytes(), StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        private byte[] readBytes() throws SerializeException {
+            int length = readSize();
+            if (length > bytes.length - position) {
+                throw new SerializeException("Truncated binary job context");
+            }
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private int readByte() throws SerializeException {
+            if (position >= bytes.length) {
+                throw new SerializeException("Truncated binary job context");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readFixed(int length) throws SerializeException {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        private int readSize() throws SerializeException {
+            long size = readVarLong();
+            if (size < 0 || size > Integer.MAX_VALUE) {
+                throw new SerializeException("Invalid size in binary job context");
+            }
+            return (int) size;
+        }
+
+        private long readVarLong() throws SerializeException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new SerializeException("Invalid number in binary job context");
+        }
+    }
+}
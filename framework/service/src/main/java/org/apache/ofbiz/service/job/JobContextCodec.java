@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.service.job;
+
+import java.util.Map;
+
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.SerializeException;
+
+/**
+ * Stores the context of a persisted job in a <code>RuntimeData</code> value and reads it back.
+ * <p>The codec used to store new contexts is configured with the <code>job-context-codec</code> attribute of the
+ * <code>&lt;thread-pool&gt;</code> element. Contexts are read back with the first codec able to decode the
+ * <code>RuntimeData</code> value, so that the jobs persisted before a codec change still run.
+ * See {@link JobUtil#setContext} and {@link JobUtil#getContext}.</p>
+ */
+public interface JobContextCodec {
+
+    /**
+     * Stores a job context in a <code>RuntimeData</code> value. The value is neither created nor stored.
+     * @param runtimeData The <code>RuntimeData</code> value receiving the context
+     * @param context The job context
+     * @throws SerializeException if a context entry cannot be encoded
+     */
+    void encode(GenericValue runtimeData, Map<String, ? extends Object> context) throws SerializeException;
+
+    /**
+     * Returns <code>true</code> if the <code>RuntimeData</code> value contains a context stored by this codec.
+     * @param runtimeData The <code>RuntimeData</code> value
+     */
+    boolean canDecode(GenericValue runtimeData);
+
+    /**
+     * Reads the job context stored in a <code>RuntimeData</code> value.
+     * @param runtimeData The <code>RuntimeData</code> value
+     * @return the job context, a mutable <code>Map</code>
+     * @throws SerializeException if the context cannot be decoded
+     */
+    Map<String, Object> decode(GenericValue runtimeData) throws SerializeException;
+}
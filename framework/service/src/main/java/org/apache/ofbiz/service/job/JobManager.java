@@ -18,7 +18,6 @@
  *******************************************************************************/
 package org.apache.ofbiz.service.job;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
@@ -27,9 +26,16 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 
 import org.apache.ofbiz.base.config.GenericConfigException;
 import org.apache.ofbiz.base.util.Assert;
@@ -45,11 +51,14 @@ import org.apache.ofbiz.entity.condition.EntityCondition;
 import org.apache.ofbiz.entity.condition.EntityExpr;
 import org.apache.ofbiz.entity.condition.EntityJoinOperator;
 import org.apache.ofbiz.entity.condition.EntityOperator;
+import org.apache.ofbiz.entity.config.model.Datasource;
+import org.apache.ofbiz.entity.config.model.EntityConfig;
 import org.apache.ofbiz.entity.serialize.SerializeException;
-import org.apache.ofbiz.entity.serialize.XmlSerializer;
+import org.apache.ofbiz.entity.transaction.GenericTransactionException;
 import org.apache.ofbiz.entity.transaction.TransactionUtil;
 import org.apache.ofbiz.entity.util.EntityListIterator;
 import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.entity.util.EntityUtil;
 import org.apache.ofbiz.service.DispatchContext;
 import org.apache.ofbiz.service.LocalDispatcher;
 import org.apache.ofbiz.service.ServiceContainer;
@@ -57,6 +66,7 @@ import org.apache.ofbiz.service.calendar.RecurrenceInfo;
 import org.apache.ofbiz.service.calendar.RecurrenceInfoException;
 import org.apache.ofbiz.service.config.ServiceConfigUtil;
 import org.apache.ofbiz.service.config.model.RunFromPool;
+import org.apache.ofbiz.service.config.model.ThreadPool;
 
 /**
  * Job manager. The job manager queues and manages jobs. Client code can queue a job to be run immediately
@@ -73,6 +83,9 @@ public final class JobManager {
     private static final String MODULE = JobManager.class.getName();
     public static final String INSTANCE_ID = UtilProperties.getPropertyValue("general", "unique.instanceId", "ofbiz0");
     private static final ConcurrentHashMap<String, JobManager> REG_MANAGERS = new ConcurrentHashMap<>();
+    private static final LongAdder CLAIM_POLLS = new LongAdder();
+    private static final LongAdder CLAIMED_JOBS = new LongAdder();
+    private static final LongAdder CLAIM_CONFLICTS = new LongAdder();
     private static boolean isShutDown = false;
 
     private static void assertIsRunning() {
@@ -156,6 +169,29 @@ public final class JobManager {
         }
     }
 
+    /**
+     * Returns the job claiming statistics of this server: the configured claim strategy, the number of
+     * polls, the number of claimed jobs and the number of polled jobs already claimed by another instance.
+     * @return Map of the claiming statistics
+     */
+    public static Map<String, Object> getClaimStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("pollClaimStrategy", getClaimStrategy());
+        statistics.put("numberOfClaimPolls", CLAIM_POLLS.sum());
+        statistics.put("numberOfClaimedJobs", CLAIMED_JOBS.sum());
+        statistics.put("numberOfClaimConflicts", CLAIM_CONFLICTS.sum());
+        return statistics;
+    }
+
+    private static String getClaimStrategy() {
+        try {
+            return ServiceConfigUtil.getServiceEngine().getThreadPool().getPollClaimStrategy();
+        } catch (GenericConfigException e) {
+            Debug.logWarning(e, "Unable to get the poll claim strategy, using the batch strategy: ", MODULE);
+            return ThreadPool.CLAIM_BATCH;
+        }
+    }
+
     private static List<String> getRunPools() throws GenericConfigException {
         List<RunFromPool> runFromPools = ServiceConfigUtil.getServiceEngine().getThreadPool().getRunFromPools();
         List<String> readPools = new ArrayList<>(runFromPools.size());
@@ -231,24 +267,9 @@ public final class JobManager {
                 Debug.logWarning("Unable to poll JobSandbox for jobs; unable to begin transaction.", MODULE);
                 return poll;
             }
-            try (EntityListIterator jobsIterator = EntityQuery.use(delegator)
-                    .from("JobSandbox").where(mainCondition)
-                    .orderBy("priority DESC NULLS LAST", "runTime")
-                    .maxRows(limit).queryIterator()) {
-                GenericValue jobValue = jobsIterator.next();
-                while (jobValue != null) {
-                    // Claim ownership of this value. Using storeByCondition to avoid a race condition.
-                    List<EntityExpr> updateExpression = UtilMisc.toList(EntityCondition.makeCondition("jobId", EntityOperator.EQUALS,
-                            jobValue.get("jobId")), EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null));
-                    int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", INSTANCE_ID),
-                            EntityCondition.makeCondition(updateExpression));
-                    if (rowsUpdated == 1) {
-                        poll.add(new PersistedServiceJob(dctx, jobValue, null));
-                        if (poll.size() == limit) {
-                            break;
-                        }
-                    }
-                    jobValue = jobsIterator.next();
+            try {
+                for (GenericValue jobValue : claimJobs(delegator, mainCondition, limit, INSTANCE_ID, getClaimStrategy())) {
+                    poll.add(new PersistedServiceJob(dctx, jobValue, null));
                 }
             } catch (GenericEntityException e) {
                 Debug.logWarning(e, MODULE);
@@ -298,6 +319,109 @@ public final class JobManager {
         return poll;
     }
 
+    /**
+     * Claims up to <code>limit</code> JobSandbox rows matching <code>condition</code> for the instance <code>instanceId</code>,
+     * by setting their runByInstanceId field. Rows claimed meanwhile by another instance are skipped.
+     * Must be called inside a transaction.
+     * @param delegator The delegator
+     * @param condition The condition selecting the jobs due to run, including <code>runByInstanceId = null</code>
+     * @param limit The maximum number of jobs to claim
+     * @param instanceId The id of the instance claiming the jobs
+     * @param claimStrategy One of the <code>ThreadPool.CLAIM_*</code> strategies; <code>skip-locked</code> falls back
+     *        to <code>batch</code> when the datasource does not support <code>SKIP LOCKED</code>
+     * @return The claimed jobs, by descending priority and ascending run time
+     * @throws GenericEntityException
+     */
+    public static List<GenericValue> claimJobs(Delegator delegator, EntityCondition condition, int limit, String instanceId,
+            String claimStrategy) throws GenericEntityException {
+        CLAIM_POLLS.increment();
+        List<GenericValue> claimed;
+        if (ThreadPool.CLAIM_ROW.equals(claimStrategy)) {
+            claimed = claimJobsByRow(delegator, condition, limit, instanceId);
+        } else {
+            boolean skipLocked = ThreadPool.CLAIM_SKIP_LOCKED.equals(claimStrategy) && useSkipLocked(delegator);
+            claimed = claimJobsByBatch(delegator, condition, limit, instanceId, skipLocked);
+        }
+        CLAIMED_JOBS.add(claimed.size());
+        return claimed;
+    }
+
+    private static boolean useSkipLocked(Delegator delegator) {
+        Datasource datasource = EntityConfig.getDatasource(delegator.getEntityHelperName("JobSandbox"));
+        return datasource != null && datasource.getUseSkipLocked();
+    }
+
+    // Claims the polled jobs one by one. Using storeByCondition to avoid a race condition.
+    private static List<GenericValue> claimJobsByRow(Delegator delegator, EntityCondition condition, int limit, String instanceId)
+            throws GenericEntityException {
+        List<GenericValue> claimed = new ArrayList<>(limit);
+        try (EntityListIterator jobsIterator = EntityQuery.use(delegator)
+                .from("JobSandbox").where(condition)
+                .orderBy("priority DESC NULLS LAST", "runTime")
+                .maxRows(limit).queryIterator()) {
+            GenericValue jobValue = jobsIterator.next();
+            while (jobValue != null) {
+                List<EntityExpr> updateExpression = UtilMisc.toList(EntityCondition.makeCondition("jobId", EntityOperator.EQUALS,
+                        jobValue.get("jobId")), EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null));
+                int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId),
+                        EntityCondition.makeCondition(updateExpression));
+                if (rowsUpdated == 1) {
+                    claimed.add(jobValue);
+                    if (claimed.size() == limit) {
+                        break;
+                    }
+                } else {
+                    CLAIM_CONFLICTS.increment();
+                }
+                jobValue = jobsIterator.next();
+            }
+        }
+        return claimed;
+    }
+
+    // Claims all the polled jobs with a single UPDATE ... WHERE jobId IN (...). With skipLocked the polled rows are locked
+    // and rows locked by concurrent pollers are skipped, so the update does not conflict with other instances.
+    private static List<GenericValue> claimJobsByBatch(Delegator delegator, EntityCondition condition, int limit, String instanceId,
+            boolean skipLocked) throws GenericEntityException {
+        EntityQuery query = EntityQuery.use(delegator)
+                .from("JobSandbox").where(condition)
+                .orderBy("priority DESC NULLS LAST", "runTime")
+                .maxRows(limit);
+        if (skipLocked) {
+            query.limit(limit).skipLocked();
+        }
+        List<GenericValue> candidates = query.queryList();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<String> jobIds = EntityUtil.getFieldListFromEntityList(candidates, "jobId", false);
+        int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId),
+                EntityCondition.makeCondition(UtilMisc.toList(
+                        EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds),
+                        EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null))));
+        if (rowsUpdated == candidates.size()) {
+            return candidates;
+        }
+        // Some jobs were claimed meanwhile by another instance, keep the ones this instance got
+        CLAIM_CONFLICTS.add(candidates.size() - rowsUpdated);
+        if (rowsUpdated == 0) {
+            return Collections.emptyList();
+        }
+        List<String> claimedIdList = EntityUtil.getFieldListFromEntityList(EntityQuery.use(delegator)
+                .from("JobSandbox").select("jobId")
+                .where(EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds),
+                        EntityCondition.makeCondition("runByInstanceId", instanceId))
+                .queryList(), "jobId", false);
+        Set<String> claimedIds = new HashSet<>(claimedIdList);
+        List<GenericValue> claimed = new ArrayList<>(claimedIds.size());
+        for (GenericValue jobValue : candidates) {
+            if (claimedIds.contains(jobValue.getString("jobId"))) {
+                claimed.add(jobValue);
+            }
+        }
+        return claimed;
+    }
+
     public static List<GenericValue> getJobsToPurge(Delegator delegator, String poolId, String instanceId, int limit, Timestamp purgeTime)
             throws GenericEntityException {
         List<EntityCondition> purgeCondition = UtilMisc.toList(
@@ -495,10 +619,10 @@ public final class JobManager {
         String dataId = null;
         try {
             GenericValue runtimeData = delegator.makeValue("RuntimeData");
-            runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
+            JobUtil.setContext(runtimeData, context);
             runtimeData = delegator.createSetNextSeqId(runtimeData);
             dataId = runtimeData.getString("runtimeDataId");
-        } catch (GenericEntityException | SerializeException | IOException e) {
+        } catch (GenericEntityException | SerializeException e) {
             throw new JobManagerException(e.getMessage(), e);
         }
         // schedule the job
@@ -562,5 +686,39 @@ public final class JobManager {
         } catch (GenericEntityException e) {
             throw new JobManagerException(e.getMessage(), e);
         }
+        if (startTime <= System.currentTimeMillis()) {
+            notifyJobScheduled(jobV.getString("jobId"));
+        }
+    }
+
+    /**
+     * Tells the job poller about a persisted job due to run now, so that it is polled without waiting for the next
+     * poll interval. When a transaction is in place, the job poller is told once it commits, as the job is not visible
+     * to the poller before.
+     * @param jobId The JobSandbox.jobId of the job
+     */
+    public void notifyJobScheduled(String jobId) {
+        JobPoller jobPoller = JobPoller.getInstance();
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            jobPoller.jobScheduled(delegator, jobId);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning(e, "Unable to register the wake-up of the job poller for job " + jobId + ": ", MODULE);
+            return;
+        }
+        jobPoller.jobScheduled(delegator, jobId);
     }
 }
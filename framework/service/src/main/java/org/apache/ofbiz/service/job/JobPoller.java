@@ -28,15 +28,23 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.ofbiz.base.concurrent.ExecutionPool;
 import org.apache.ofbiz.base.config.GenericConfigException;
 import org.apache.ofbiz.base.start.Start;
 import org.apache.ofbiz.base.util.Assert;
 import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityConfException;
+import org.apache.ofbiz.entity.config.model.Datasource;
+import org.apache.ofbiz.entity.config.model.DelegatorElement;
+import org.apache.ofbiz.entity.config.model.EntityConfig;
 import org.apache.ofbiz.service.config.ServiceConfigListener;
 import org.apache.ofbiz.service.config.ServiceConfigUtil;
 import org.apache.ofbiz.service.config.model.ServiceConfig;
@@ -63,28 +71,70 @@ public final class JobPoller implements ServiceConfigListener {
     private static ThreadPoolExecutor createThreadPoolExecutor() {
         try {
             ThreadPool threadPool = ServiceConfigUtil.getServiceEngine(ServiceConfigUtil.getEngine()).getThreadPool();
-            return new ThreadPoolExecutor(
-                    threadPool.getMinThreads(),
-                    threadPool.getMaxThreads(),
-                    threadPool.getTtl(),
-                    TimeUnit.MILLISECONDS,
-                    new PriorityBlockingQueue<>(threadPool.getJobs(), createPriorityComparator()),
-                    new JobInvokerThreadFactory(),
-                    new ThreadPoolExecutor.AbortPolicy());
+            return createJobExecutor(threadPool.getExecutor(), threadPool.getMinThreads(), threadPool.getMaxThreads(),
+                    threadPool.getMaxVirtualThreads(), threadPool.getTtl(), threadPool.getJobs());
         } catch (GenericConfigException e) {
             Debug.logError(e, "Exception thrown while getting <thread-pool> model, using default <thread-pool> values: ", MODULE);
-            return new ThreadPoolExecutor(
-                    ThreadPool.MIN_THREADS,
-                    ThreadPool.MAX_THREADS,
-                    ThreadPool.THREAD_TTL,
-                    TimeUnit.MILLISECONDS,
-                    new PriorityBlockingQueue<>(ThreadPool.QUEUE_SIZE, createPriorityComparator()),
-                    new JobInvokerThreadFactory(),
-                    new ThreadPoolExecutor.AbortPolicy());
+            return createJobExecutor(ThreadPool.EXECUTOR_PLATFORM, ThreadPool.MIN_THREADS, ThreadPool.MAX_THREADS, 0,
+                    ThreadPool.THREAD_TTL, ThreadPool.QUEUE_SIZE);
         }
     }
 
-    private static Comparator<Runnable> createPriorityComparator() {
+    /**
+     * Creates an executor running {@link Job}s by descending priority then ascending start time.
+     * <p>With the <code>virtual</code> executor each job runs on a new virtual thread. The number of jobs running
+     * at the same time is bounded by a semaphore, which defaults to the connection pool size, so that the waiting
+     * jobs stay in the priority queue instead of waiting for a database connection.
+     * Falls back to the <code>platform</code> executor when the JVM does not support virtual threads, before Java 21.</p>
+     * @param executor <code>ThreadPool.EXECUTOR_PLATFORM</code> or <code>ThreadPool.EXECUTOR_VIRTUAL</code>
+     * @param minThreads The minimum number of platform threads
+     * @param maxThreads The maximum number of platform threads
+     * @param maxVirtualThreads The maximum number of running virtual threads, <code>0</code> for the connection pool size
+     * @param ttl The idle thread lifespan in milliseconds
+     * @param queueSize The initial capacity of the job queue
+     * @return The executor
+     */
+    public static ThreadPoolExecutor createJobExecutor(String executor, int minThreads, int maxThreads, int maxVirtualThreads,
+            long ttl, int queueSize) {
+        if (ThreadPool.EXECUTOR_VIRTUAL.equals(executor)) {
+            ThreadFactory virtualThreadFactory = ExecutionPool.getVirtualThreadFactory("OFBiz-JobQueue-virtual");
+            if (virtualThreadFactory != null) {
+                int maxRunningJobs = maxVirtualThreads > 0 ? maxVirtualThreads : connectionPoolSize();
+                return new VirtualThreadJobExecutor(maxRunningJobs, queueSize, createPriorityComparator(), virtualThreadFactory);
+            }
+            Debug.logWarning("Virtual threads are not supported by this JVM, using the platform <thread-pool> executor", MODULE);
+        }
+        return new ThreadPoolExecutor(
+                minThreads,
+                maxThreads,
+                ttl,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(queueSize, createPriorityComparator()),
+                new JobInvokerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // The pool-maxsize of the datasource of the default delegator.
+    private static int connectionPoolSize() {
+        try {
+            DelegatorElement delegatorInfo = EntityConfig.getInstance().getDelegator("default");
+            if (delegatorInfo != null) {
+                Datasource datasource = EntityConfig.getDatasource(delegatorInfo.getGroupDataSource("org.apache.ofbiz"));
+                if (datasource != null && datasource.getInlineJdbc() != null) {
+                    return datasource.getInlineJdbc().getPoolMaxsize();
+                }
+            }
+        } catch (GenericEntityConfException e) {
+            Debug.logWarning(e, "Unable to get the connection pool size: ", MODULE);
+        }
+        return ThreadPool.MAX_THREADS;
+    }
+
+    private static boolean isPlatformExecutor() {
+        return !(EXECUTOR instanceof VirtualThreadJobExecutor);
+    }
+
+    static Comparator<Runnable> createPriorityComparator() {
         return new Comparator<Runnable>() {
 
             /**
@@ -115,6 +165,22 @@ public final class JobPoller implements ServiceConfigListener {
         }
     }
 
+    private static JobWakeUpNotifier createWakeUpNotifier() {
+        String className = null;
+        try {
+            className = ServiceConfigUtil.getServiceEngine().getThreadPool().getWakeUpNotifier();
+            if (UtilValidate.isNotEmpty(className)) {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                return (JobWakeUpNotifier) loader.loadClass(className).getDeclaredConstructor().newInstance();
+            }
+        } catch (GenericConfigException e) {
+            Debug.logError(e, "Exception thrown while getting <thread-pool> model, using default <thread-pool> values: ", MODULE);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Debug.logError(e, "Unable to create the job wake-up notifier " + className + ", using the local notifier: ", MODULE);
+        }
+        return new LocalJobWakeUpNotifier();
+    }
+
     static int queueSize() {
         try {
             ThreadPool threadPool = ServiceConfigUtil.getServiceEngine(ServiceConfigUtil.getEngine()).getThreadPool();
@@ -138,6 +204,9 @@ public final class JobPoller implements ServiceConfigListener {
     // -------------------------------------- //
 
     private final Thread jobManagerPollerThread;
+    // Released to end the poll wait early, see wakeUp()
+    private final Semaphore wakeUpSignal = new Semaphore(0);
+    private final JobWakeUpNotifier wakeUpNotifier;
 
     private JobPoller() {
         if (pollEnabled()) {
@@ -147,14 +216,40 @@ public final class JobPoller implements ServiceConfigListener {
         } else {
             jobManagerPollerThread = null;
         }
+        wakeUpNotifier = createWakeUpNotifier();
+        wakeUpNotifier.start(this::wakeUp);
         ServiceConfigUtil.registerServiceConfigListener(this);
     }
 
+    /**
+     * Ends the current wait of the polling thread, so that the job managers are polled immediately.
+     * Does nothing when polling is disabled.
+     */
+    public void wakeUp() {
+        if (jobManagerPollerThread != null && wakeUpSignal.availablePermits() == 0) {
+            wakeUpSignal.release();
+        }
+    }
+
+    /**
+     * Tells the configured {@link JobWakeUpNotifier} that a job due to run now has been scheduled.
+     * @param delegator The delegator used to schedule the job
+     * @param jobId The JobSandbox.jobId of the scheduled job
+     */
+    void jobScheduled(Delegator delegator, String jobId) {
+        try {
+            wakeUpNotifier.jobScheduled(delegator, jobId);
+        } catch (RuntimeException e) {
+            Debug.logWarning(e, "Exception thrown while notifying the scheduling of job " + jobId + ": ", MODULE);
+        }
+    }
+
     /**
      * Returns a <code>Map</code> containing <code>JobPoller</code> statistics.
      */
     public Map<String, Object> getPoolState() {
         Map<String, Object> poolState = new HashMap<>();
+        poolState.put("executor", isPlatformExecutor() ? ThreadPool.EXECUTOR_PLATFORM : ThreadPool.EXECUTOR_VIRTUAL);
         poolState.put("keepAliveTimeInSeconds", EXECUTOR.getKeepAliveTime(TimeUnit.SECONDS));
         poolState.put("numberOfCoreInvokerThreads", EXECUTOR.getCorePoolSize());
         poolState.put("currentNumberOfInvokerThreads", EXECUTOR.getPoolSize());
@@ -162,6 +257,7 @@ public final class JobPoller implements ServiceConfigListener {
         poolState.put("maxNumberOfInvokerThreads", EXECUTOR.getMaximumPoolSize());
         poolState.put("greatestNumberOfInvokerThreads", EXECUTOR.getLargestPoolSize());
         poolState.put("numberOfCompletedTasks", EXECUTOR.getCompletedTaskCount());
+        poolState.putAll(JobManager.getClaimStatistics());
         BlockingQueue<Runnable> queue = EXECUTOR.getQueue();
         List<Map<String, Object>> taskList = new ArrayList<>();
         Map<String, Object> taskInfo = null;
@@ -185,7 +281,7 @@ public final class JobPoller implements ServiceConfigListener {
 
     @Override
     public void onServiceConfigChange(ServiceConfig serviceConfig) {
-        if (!EXECUTOR.isShutdown()) {
+        if (!EXECUTOR.isShutdown() && isPlatformExecutor()) {
             ThreadPool threadPool = serviceConfig.getServiceEngine(ServiceConfigUtil.getEngine()).getThreadPool();
             EXECUTOR.setCorePoolSize(threadPool.getMinThreads());
             EXECUTOR.setMaximumPoolSize(threadPool.getMaxThreads());
@@ -222,6 +318,7 @@ public final class JobPoller implements ServiceConfigListener {
      */
     public void stop() {
         Debug.logInfo("Shutting down JobPoller.", MODULE);
+        wakeUpNotifier.stop();
         if (jobManagerPollerThread != null) {
             jobManagerPollerThread.interrupt();
         }
@@ -295,7 +392,9 @@ public final class JobPoller implements ServiceConfigListener {
                             }
                         }
                     }
-                    Thread.sleep(pollWaitTime());
+                    // Wait for the poll interval or an earlier wake-up, coalescing the wake-ups received meanwhile
+                    wakeUpSignal.tryAcquire(pollWaitTime(), TimeUnit.MILLISECONDS);
+                    wakeUpSignal.drainPermits();
                 }
             } catch (InterruptedException e) {
                 // Happens when JobPoller shuts down - nothing to do.
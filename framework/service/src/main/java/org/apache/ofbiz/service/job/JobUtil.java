@@ -18,19 +18,88 @@
  *******************************************************************************/
 package org.apache.ofbiz.service.job;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.transaction.Transaction;
+import org.apache.ofbiz.base.config.GenericConfigException;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.SerializeException;
 import org.apache.ofbiz.entity.transaction.GenericTransactionException;
 import org.apache.ofbiz.entity.transaction.TransactionUtil;
 import org.apache.ofbiz.entity.util.EntityQuery;
+import org.apache.ofbiz.service.config.ServiceConfigUtil;
+import org.apache.ofbiz.service.config.model.ThreadPool;
 
 public final class JobUtil {
 
     private static final String MODULE = JobUtil.class.getName();
+    private static final JobContextCodec BINARY_CODEC = new BinaryJobContextCodec();
+    private static final JobContextCodec XML_CODEC = new XmlJobContextCodec();
+    private static final Map<String, JobContextCodec> CUSTOM_CODECS = new ConcurrentHashMap<>();
     protected JobUtil() { }
 
+    /**
+     * Returns the codec storing the context of new persisted jobs, set by the
+     * <code>job-context-codec</code> attribute of the <code>&lt;thread-pool&gt;</code> element.
+     */
+    public static JobContextCodec getContextCodec() {
+        String codecName = ThreadPool.CODEC_BINARY;
+        try {
+            codecName = ServiceConfigUtil.getServiceEngine().getThreadPool().getJobContextCodec();
+        } catch (GenericConfigException e) {
+            Debug.logError(e, "Exception thrown while getting <thread-pool> model, using the binary job context codec: ", MODULE);
+        }
+        if (ThreadPool.CODEC_BINARY.equals(codecName)) {
+            return BINARY_CODEC;
+        } else if (ThreadPool.CODEC_XML.equals(codecName)) {
+            return XML_CODEC;
+        }
+        JobContextCodec codec = CUSTOM_CODECS.get(codecName);
+        if (codec == null) {
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                codec = (JobContextCodec) loader.loadClass(codecName).getDeclaredConstructor().newInstance();
+                CUSTOM_CODECS.put(codecName, codec);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                Debug.logError(e, "Unable to create the job context codec " + codecName + ", using the binary codec: ", MODULE);
+                return BINARY_CODEC;
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * Stores a job context in a <code>RuntimeData</code> value with the configured codec.
+     * The value is neither created nor stored.
+     * @param runtimeData The <code>RuntimeData</code> value
+     * @param context The job context
+     * @throws SerializeException if a context entry cannot be encoded
+     */
+    public static void setContext(GenericValue runtimeData, Map<String, ? extends Object> context) throws SerializeException {
+        getContextCodec().encode(runtimeData, context);
+    }
+
+    /**
+     * Reads the job context stored in a <code>RuntimeData</code> value, whatever codec stored it.
+     * @param runtimeData The <code>RuntimeData</code> value
+     * @return the job context, or <code>null</code> if the value contains no context
+     * @throws SerializeException if the context cannot be decoded
+     */
+    public static Map<String, Object> getContext(GenericValue runtimeData) throws SerializeException {
+        JobContextCodec codec = getContextCodec();
+        if (codec.canDecode(runtimeData)) {
+            return codec.decode(runtimeData);
+        } else if (BINARY_CODEC.canDecode(runtimeData)) {
+            return BINARY_CODEC.decode(runtimeData);
+        } else if (XML_CODEC.canDecode(runtimeData)) {
+            return XML_CODEC.decode(runtimeData);
+        }
+        return null;
+    }
+
     public static void removeJob(GenericValue jobValue) {
         // always suspend the current transaction; use the one internally
         boolean beganTransaction = false;
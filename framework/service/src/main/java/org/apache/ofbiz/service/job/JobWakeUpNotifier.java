@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.service.job;
+
+import org.apache.ofbiz.entity.Delegator;
+
+/**
+ * Wakes up the {@link JobPoller} when a job is scheduled, so that the job does not have to
+ * wait for the next database poll.
+ * <p>The notifier is configured with the <code>wake-up-notifier</code> attribute of the
+ * <code>&lt;thread-pool&gt;</code> element. The default {@link LocalJobWakeUpNotifier} only wakes up
+ * the poller of the server scheduling the job; implementations relaying the event between servers
+ * (for example with database notifications) call the <code>wakeUp</code> task of each server
+ * when they receive it.</p>
+ */
+public interface JobWakeUpNotifier {
+
+    /**
+     * Starts the notifier. Called once when the <code>JobPoller</code> is created.
+     * @param wakeUp Wakes up the job poller of this server. Does not block and can be called from any thread.
+     */
+    void start(Runnable wakeUp);
+
+    /**
+     * Called after a job due to run now has been committed to the JobSandbox entity.
+     * @param delegator The delegator used to schedule the job
+     * @param jobId The JobSandbox.jobId of the scheduled job
+     */
+    void jobScheduled(Delegator delegator, String jobId);
+
+    /**
+     * Stops the notifier. Called when OFBiz shuts down.
+     */
+    void stop();
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.service.job;
+
+import org.apache.ofbiz.entity.Delegator;
+
+/**
+ * Default {@link JobWakeUpNotifier}: wakes up the job poller of this server only.
+ * Jobs scheduled on other servers are picked up at the next poll.
+ */
+public final class LocalJobWakeUpNotifier implements JobWakeUpNotifier {
+
+    private volatile Runnable wakeUp;
+
+    @Override
+    public void start(Runnable wakeUp) {
+        this.wakeUp = wakeUp;
+    }
+
+    @Override
+    public void jobScheduled(Delegator delegator, String jobId) {
+        Runnable wakeUp = this.wakeUp;
+        if (wakeUp != null) {
+            wakeUp.run();
+        }
+    }
+
+    @Override
+    public void stop() {
+        this.wakeUp = null;
+    }
+}
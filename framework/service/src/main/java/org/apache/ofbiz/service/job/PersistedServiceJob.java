@@ -18,7 +18,6 @@
  *******************************************************************************/
 package org.apache.ofbiz.service.job;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -31,19 +30,16 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.ofbiz.base.config.GenericConfigException;
 import org.apache.ofbiz.base.util.Debug;
 import org.apache.ofbiz.base.util.UtilDateTime;
-import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilValidate;
 import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.serialize.SerializeException;
-import org.apache.ofbiz.entity.serialize.XmlSerializer;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.service.DispatchContext;
 import org.apache.ofbiz.service.GenericRequester;
@@ -53,7 +49,6 @@ import org.apache.ofbiz.service.calendar.RecurrenceInfoException;
 import org.apache.ofbiz.service.calendar.TemporalExpression;
 import org.apache.ofbiz.service.calendar.TemporalExpressionWorker;
 import org.apache.ofbiz.service.config.ServiceConfigUtil;
-import org.xml.sax.SAXException;
 
 import com.ibm.icu.util.Calendar;
 import com.ibm.icu.util.TimeZone;
@@ -324,8 +319,7 @@ public class PersistedServiceJob extends GenericServiceJob {
             if (UtilValidate.isNotEmpty(jobValue.getString("runtimeDataId"))) {
                 GenericValue contextObj = jobValue.getRelatedOne("RuntimeData", false);
                 if (contextObj != null) {
-                    context = UtilGenerics.checkMap(XmlSerializer.deserialize(contextObj.getString("runtimeInfo"),
-                            delegator), String.class, Object.class);
+                    context = JobUtil.getContext(contextObj);
                 }
             }
             if (context == null) {
@@ -344,12 +338,6 @@ public class PersistedServiceJob extends GenericServiceJob {
             Debug.logError(e, "PersistedServiceJob.getContext(): Entity Exception", MODULE);
         } catch (SerializeException e) {
             Debug.logError(e, "PersistedServiceJob.getContext(): Serialize Exception", MODULE);
-        } catch (ParserConfigurationException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): Parse Exception", MODULE);
-        } catch (SAXException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): SAXException", MODULE);
-        } catch (IOException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): IOException", MODULE);
         }
         if (context == null) {
             Debug.logError("Job context is null", MODULE);
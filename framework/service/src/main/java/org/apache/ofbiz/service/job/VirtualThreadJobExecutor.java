@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ofbiz.base.util.Debug;
+
+/**
+ * Job executor starting one thread per job, meant for virtual threads.
+ * <p>The jobs wait in a priority queue. A single dispatcher thread takes a permit of a semaphore bounding the number
+ * of running jobs, then takes the first job of the queue and starts its thread, which releases the permit when the
+ * job ends. The highest priority job waiting is thus the next one started when a running job ends. A job whose thread
+ * cannot be started gives its permit back and is queued again.</p>
+ * <p>After {@link #shutdown()} the dispatcher keeps starting the queued jobs the same way, then waits for the running
+ * jobs to end before the executor terminates. After {@link #shutdownNow()} it starts no more jobs.</p>
+ * <p>The executor extends {@link ThreadPoolExecutor} to keep the queue, the pool statistics and
+ * {@link #shutdownNow()} of the platform executor, its only pool thread being the dispatcher.</p>
+ */
+final class VirtualThreadJobExecutor extends ThreadPoolExecutor {
+
+    private static final String MODULE = VirtualThreadJobExecutor.class.getName();
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final ThreadFactory jobThreadFactory;
+    private final int maxRunningJobs;
+    private final Semaphore permits;
+    private final Set<Thread> runningThreads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger largestRunningJobs = new AtomicInteger();
+    private final LongAdder completedJobs = new LongAdder();
+    // no job is queued while the executor shuts down, so the dispatcher starts every job accepted before
+    private final Object shutdownLock = new Object();
+    private volatile Thread dispatcher;
+    private volatile boolean stopped;
+
+    /**
+     * Creates the executor and starts its dispatcher thread.
+     * @param maxRunningJobs the maximum number of jobs running at the same time
+     * @param queueSize the initial capacity of the job queue
+     * @param comparator the order in which the queued jobs are started
+     * @param jobThreadFactory the factory of the thread of each job
+     */
+    VirtualThreadJobExecutor(int maxRunningJobs, int queueSize, Comparator<Runnable> comparator, ThreadFactory jobThreadFactory) {
+        super(1, 1, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(queueSize, comparator),
+                runnable -> new Thread(runnable, "OFBiz-JobQueue-dispatcher"), new ThreadPoolExecutor.AbortPolicy());
+        this.jobThreadFactory = jobThreadFactory;
+        this.maxRunningJobs = maxRunningJobs;
+        this.permits = new Semaphore(maxRunningJobs);
+        // the pool has no thread yet, so the dispatcher runs as the first task of its only thread instead of being queued
+        super.execute(this::dispatch);
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        synchronized (shutdownLock) {
+            if (!isShutdown()) {
+                getQueue().offer(job);
+                return;
+            }
+        }
+        getRejectedExecutionHandler().rejectedExecution(job, this);
+    }
+
+    private void dispatch() {
+        dispatcher = Thread.currentThread();
+        while (!stopped) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // woken up by a shutdown
+                continue;
+            }
+            Runnable job;
+            try {
+                job = isShutdown() ? getQueue().poll() : getQueue().take();
+            } catch (InterruptedException e) {
+                permits.release();
+                continue;
+            }
+            if (job == null) {
+                permits.release();
+                awaitRunningJobs();
+                return;
+            }
+            try {
+                jobThreadFactory.newThread(() -> runJob(job)).start();
+            } catch (Throwable t) {
+                // a dead dispatcher would be replaced by a pool thread running the queued jobs without a permit
+                permits.release();
+                getQueue().offer(job);
+                Debug.logError(t, "Unable to start the thread of job " + job + ", it is queued again: ", MODULE);
+                pauseDispatch();
+            }
+        }
+    }
+
+    private void pauseDispatch() {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            // woken up by a shutdown
+        }
+    }
+
+    private void awaitRunningJobs() {
+        while (!stopped) {
+            try {
+                permits.acquire(maxRunningJobs);
+                permits.release(maxRunningJobs);
+                return;
+            } catch (InterruptedException e) {
+                // woken up by a shutdown
+            }
+        }
+    }
+
+    private void runJob(Runnable job) {
+        runningThreads.add(Thread.currentThread());
+        largestRunningJobs.accumulateAndGet(runningThreads.size(), Math::max);
+        try {
+            job.run();
+        } finally {
+            runningThreads.remove(Thread.currentThread());
+            completedJobs.increment();
+            permits.release();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (shutdownLock) {
+            super.shutdown();
+        }
+        // the dispatcher may wait for a job which will never be queued
+        Thread thread = dispatcher;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopped = true;
+        List<Runnable> queuedJobs;
+        synchronized (shutdownLock) {
+            queuedJobs = super.shutdownNow();
+        }
+        for (Thread thread : runningThreads) {
+            thread.interrupt();
+        }
+        return queuedJobs;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return runningThreads.size();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return runningThreads.size();
+    }
+
+    @Override
+    public int getLargestPoolSize() {
+        return largestRunningJobs.get();
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return maxRunningJobs;
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return maxRunningJobs;
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return completedJobs.sum();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.service.job;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ofbiz.base.util.UtilGenerics;
+import org.apache.ofbiz.base.util.UtilValidate;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.SerializeException;
+import org.apache.ofbiz.entity.serialize.XmlSerializer;
+import org.xml.sax.SAXException;
+
+/**
+ * {@link JobContextCodec} storing the job context as an XML document, written by the {@link XmlSerializer},
+ * in the <code>RuntimeData.runtimeInfo</code> field. This is the format of the jobs defined in data files.
+ */
+public final class XmlJobContextCodec implements JobContextCodec {
+
+    @Override
+    public void encode(GenericValue runtimeData, Map<String, ? extends Object> context) throws SerializeException {
+        try {
+            runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
+        } catch (IOException e) {
+            throw new SerializeException("Unable to serialize the job context", e);
+        }
+    }
+
+    @Override
+    public boolean canDecode(GenericValue runtimeData) {
+        return UtilValidate.isNotEmpty(runtimeData.getString("runtimeInfo"));
+    }
+
+    @Override
+    public Map<String, Object> decode(GenericValue runtimeData) throws SerializeException {
+        try {
+            return UtilGenerics.checkMap(XmlSerializer.deserialize(runtimeData.getString("runtimeInfo"), runtimeData.getDelegator()),
+                    String.class, Object.class);
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new SerializeException("Unable to deserialize the job context", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilDateTime;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericPK;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.serialize.XmlSerializer;
+import org.apache.ofbiz.service.job.BinaryJobContextCodec;
+import org.apache.ofbiz.service.job.JobUtil;
+import org.apache.ofbiz.service.job.XmlJobContextCodec;
+import org.apache.ofbiz.service.testtools.OFBizTestCase;
+
+public class JobContextCodecTests extends OFBizTestCase {
+
+    public JobContextCodecTests(String name) {
+        super(name);
+    }
+
+    private Map<String, Object> createContext() {
+        Delegator delegator = getDelegator();
+        GenericValue testing = delegator.makeValue("Testing", "testingId", "JOB-CTX-1", "testingName", "job context",
+                "testingSize", 12L, "testingDate", UtilDateTime.nowTimestamp());
+        GenericPK testingPk = delegator.makePK("Testing", "testingId", "JOB-CTX-2");
+        Map<String, Object> context = new HashMap<>();
+        context.put("testing", testing);
+        context.put("testingPk", testingPk);
+        context.put("testingList", new ArrayList<>(Arrays.asList(testing, null, "text")));
+        context.put("amount", new BigDecimal("10.25"));
+        context.put("locale", Locale.FRANCE);
+        context.put("nothing", null);
+        return context;
+    }
+
+    /**
+     * Test that entity values round-trip with the binary codec.
+     * @throws Exception the exception
+     */
+    public void testBinaryCodecEntityValues() throws Exception {
+        Map<String, Object> context = createContext();
+        GenericValue runtimeData = getDelegator().makeValue("RuntimeData", "runtimeDataId", "JOB-CTX-BINARY");
+        BinaryJobContextCodec codec = new BinaryJobContextCodec();
+        codec.encode(runtimeData, context);
+        assertTrue(codec.canDecode(runtimeData));
+        Map<String, Object> decoded = codec.decode(runtimeData);
+        assertEquals(context, decoded);
+        assertTrue(decoded.get("testingPk") instanceof GenericPK);
+        assertSame(getDelegator(), ((GenericValue) decoded.get("testing")).getDelegator());
+        assertTrue(decoded.containsKey("nothing"));
+    }
+
+    /**
+     * Test that a context persisted in the runtimeBinary field survives a store and a read back.
+     * @throws Exception the exception
+     */
+    public void testBinaryCodecStoredContext() throws Exception {
+        Delegator delegator = getDelegator();
+        Map<String, Object> context = createContext();
+        GenericValue runtimeData = delegator.makeValue("RuntimeData", "runtimeDataId", "JOB-CTX-STORED");
+        new BinaryJobContextCodec().encode(runtimeData, context);
+        delegator.createOrStore(runtimeData);
+        try {
+            GenericValue stored = delegator.findOne("RuntimeData", false, "runtimeDataId", "JOB-CTX-STORED");
+            assertEquals(context, JobUtil.getContext(stored));
+        } finally {
+            delegator.removeValue(runtimeData);
+        }
+    }
+
+    /**
+     * Test that JobUtil.getContext falls back to the XML serialization of the jobs persisted before the binary codec,
+     * whatever codec is configured, and prefers the binary context when both fields are set with the default binary codec.
+     * @throws Exception the exception
+     */
+    public void testXmlFallback() throws Exception {
+        Map<String, Object> context = createContext();
+        GenericValue runtimeData = getDelegator().makeValue("RuntimeData", "runtimeDataId", "JOB-CTX-XML");
+        runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
+        assertFalse(new BinaryJobContextCodec().canDecode(runtimeData));
+        assertTrue(new XmlJobContextCodec().canDecode(runtimeData));
+        assertEquals(context, JobUtil.getContext(runtimeData));
+
+        Map<String, Object> newContext = new HashMap<>(context);
+        newContext.put("amount", new BigDecimal("20.50"));
+        new BinaryJobContextCodec().encode(runtimeData, newContext);
+        assertTrue("The binary job context codec is configured", JobUtil.getContextCodec() instanceof BinaryJobContextCodec);
+        assertEquals(newContext, JobUtil.getContext(runtimeData));
+    }
+
+    /**
+     * Test that a RuntimeData value without context gives a null context.
+     * @throws Exception the exception
+     */
+    public void testNoContext() throws Exception {
+        GenericValue runtimeData = getDelegator().makeValue("RuntimeData", "runtimeDataId", "JOB-CTX-EMPTY");
+        assertNull(JobUtil.getContext(runtimeData));
+    }
+}
@@ -18,10 +18,16 @@
  *******************************************************************************/
 package org.apache.ofbiz.service.test;
 
+import java.sql.Timestamp;
 import java.util.Map;
 
+import org.apache.ofbiz.base.util.UtilDateTime;
 import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.service.ModelService;
+import org.apache.ofbiz.service.config.ServiceConfigUtil;
 import org.apache.ofbiz.service.testtools.OFBizTestCase;
 
 public class ServiceEngineTests extends OFBizTestCase {
@@ -56,4 +62,26 @@ public class ServiceEngineTests extends OFBizTestCase {
         assertEquals("Service result success", ModelService.RESPOND_SUCCESS, result.get(ModelService.RESPONSE_MESSAGE));
     }
 
+    /**
+     * Test that a persisted asynchronous service is started before the next poll of the job poller
+     * @throws Exception the exception
+     */
+    public void testPersistedAsyncWakeUp() throws Exception {
+        long pollDbMillis = ServiceConfigUtil.getServiceEngine().getThreadPool().getPollDbMillis();
+        Timestamp queuedTime = UtilDateTime.nowTimestamp();
+        getDispatcher().runAsync("testScv", UtilMisc.toMap("message", "Unit Test"), true);
+        long deadline = System.currentTimeMillis() + pollDbMillis / 2;
+        GenericValue job = null;
+        while (System.currentTimeMillis() < deadline && (job == null || job.get("startDateTime") == null)) {
+            Thread.sleep(100);
+            job = from("JobSandbox")
+                    .where(EntityCondition.makeCondition("serviceName", "testScv"),
+                            EntityCondition.makeCondition("runTime", EntityOperator.GREATER_THAN_EQUAL_TO, queuedTime))
+                    .orderBy("-runTime")
+                    .queryFirst();
+        }
+        assertNotNull("The persisted job is queued", job);
+        assertNotNull("The persisted job starts before the poll interval", job.get("startDateTime"));
+    }
+
 }
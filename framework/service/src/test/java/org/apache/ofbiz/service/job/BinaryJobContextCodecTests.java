@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import org.apache.ofbiz.entity.serialize.SerializeException;
+import org.junit.Test;
+
+public class BinaryJobContextCodecTests {
+
+    private static Map<String, Object> roundTrip(Map<String, Object> context) throws SerializeException {
+        return BinaryJobContextCodec.decode(BinaryJobContextCodec.encode(context), null);
+    }
+
+    private static Object roundTripValue(Object value) throws SerializeException {
+        Map<String, Object> context = new HashMap<>();
+        context.put("value", value);
+        return roundTrip(context).get("value");
+    }
+
+    @Test
+    public void scalarValuesRoundTrip() throws SerializeException {
+        Timestamp timestamp = new Timestamp(1_700_000_000_123L);
+        timestamp.setNanos(123_456_789);
+        Timestamp beforeEpoch = new Timestamp(-1_500L);
+        List<Object> values = Arrays.asList("text", "", "été 文字", Boolean.TRUE, Boolean.FALSE,
+                0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0L, Long.MIN_VALUE, Long.MAX_VALUE,
+                1.5f, Float.NaN, -0.0d, Double.MAX_VALUE, new BigDecimal("-12345678901234567890.000123"), BigDecimal.ZERO,
+                new BigInteger("123456789012345678901234567890"), timestamp, beforeEpoch,
+                java.sql.Date.valueOf("2024-02-29"), java.sql.Time.valueOf("23:59:58"), new Date(1_600_000_000_000L),
+                Locale.US, Locale.forLanguageTag("zh-Hant-TW"), TimeZone.getTimeZone("Europe/Paris"));
+        for (Object value : values) {
+            Object decoded = roundTripValue(value);
+            assertEquals(value, decoded);
+            assertEquals(value.getClass(), decoded.getClass());
+        }
+    }
+
+    @Test
+    public void timestampKeepsItsNanoseconds() throws SerializeException {
+        Timestamp timestamp = new Timestamp(-1_999L);
+        timestamp.setNanos(1);
+        Timestamp decoded = (Timestamp) roundTripValue(timestamp);
+        assertEquals(timestamp.getTime(), decoded.getTime());
+        assertEquals(1, decoded.getNanos());
+    }
+
+    @Test
+    public void bytesRoundTrip() throws SerializeException {
+        byte[] bytes = {0, 1, -1, 127, -128};
+        assertArrayEquals(bytes, (byte[]) roundTripValue(bytes));
+    }
+
+    @Test
+    public void collectionsKeepTheirType() throws SerializeException {
+        List<Object> values = Arrays.asList(new HashMap<>(Collections.singletonMap("a", 1)),
+                new LinkedHashMap<>(Collections.singletonMap("b", 2L)), new TreeMap<>(Collections.singletonMap("c", "d")),
+                new ArrayList<>(Arrays.asList(1, "two")), new LinkedList<>(Arrays.asList(3L, 4L)),
+                new HashSet<>(Arrays.asList("x", "y")), new LinkedHashSet<>(Arrays.asList("z", "w")),
+                new TreeSet<>(Arrays.asList("q", "p")));
+        for (Object value : values) {
+            Object decoded = roundTripValue(value);
+            assertEquals(value, decoded);
+            assertEquals(value.getClass(), decoded.getClass());
+        }
+    }
+
+    @Test
+    public void orderIsKeptForOrderedCollections() throws SerializeException {
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        for (int i = 20; i > 0; i--) {
+            ordered.put("key" + i, i);
+        }
+        assertEquals(new ArrayList<>(ordered.keySet()), new ArrayList<>(((Map<?, ?>) roundTripValue(ordered)).keySet()));
+        LinkedHashSet<String> set = new LinkedHashSet<>(Arrays.asList("c", "a", "b"));
+        assertEquals(new ArrayList<>(set), new ArrayList<>((LinkedHashSet<?>) roundTripValue(set)));
+    }
+
+    @Test
+    public void collectionsWithBehaviorAreSerialized() throws SerializeException {
+        TreeMap<String, Object> reversed = new TreeMap<>(Comparator.reverseOrder());
+        reversed.put("a", 1);
+        reversed.put("b", 2);
+        TreeMap<?, ?> decoded = (TreeMap<?, ?>) roundTripValue(reversed);
+        assertEquals("b", decoded.firstKey());
+        Vector<String> vector = new Vector<>(Arrays.asList("v"));
+        assertEquals(vector, roundTripValue(vector));
+        assertEquals(Vector.class, roundTripValue(vector).getClass());
+    }
+
+    @Test
+    public void nestedMapsAndListsRoundTrip() throws SerializeException {
+        Map<String, Object> inner = new HashMap<>();
+        inner.put("amounts", new ArrayList<>(Arrays.asList(BigDecimal.ONE, null, new BigDecimal("2.50"))));
+        inner.put("empty", new HashMap<>());
+        List<Object> list = new ArrayList<>();
+        list.add(inner);
+        list.add(new ArrayList<>(Arrays.asList(new ArrayList<>(Arrays.asList("deep")), Collections.emptyList())));
+        Map<String, Object> context = new HashMap<>();
+        context.put("list", list);
+        context.put("map", new HashMap<>(Collections.singletonMap("inner", inner)));
+        assertEquals(context, roundTrip(context));
+    }
+
+    @Test
+    public void nullsRoundTrip() throws SerializeException {
+        Map<String, Object> context = new HashMap<>();
+        context.put("nullValue", null);
+        context.put(null, "nullKey");
+        context.put("listWithNulls", new ArrayList<>(Arrays.asList(null, "a", null)));
+        Map<String, Object> decoded = roundTrip(context);
+        assertEquals(context, decoded);
+        assertTrue(decoded.containsKey("nullValue"));
+        assertNull(decoded.get("nullValue"));
+    }
+
+    @Test
+    public void repeatedStringsAreWrittenOnce() throws SerializeException {
+        String repeated = "a rather long string repeated in the context";
+        Map<String, Object> once = new HashMap<>(Collections.singletonMap("key0", repeated));
+        Map<String, Object> twice = new HashMap<>(once);
+        twice.put("key1", repeated);
+        int overhead = BinaryJobContextCodec.encode(twice).length - BinaryJobContextCodec.encode(once).length;
+        assertTrue("Repeated string written again: " + overhead + " bytes", overhead < repeated.length());
+        assertEquals(twice, roundTrip(twice));
+    }
+
+    @Test
+    public void largeContextsAreDeflated() throws SerializeException {
+        Map<String, Object> context = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            context.put("key" + i, "value value value value " + i);
+        }
+        byte[] bytes = BinaryJobContextCodec.encode(context);
+        assertEquals(1, bytes[4]);
+        assertEquals(context, BinaryJobContextCodec.decode(bytes, null));
+    }
+
+    @Test
+    public void invalidContextsAreRejected() throws SerializeException {
+        assertThrows(SerializeException.class, () -> BinaryJobContextCodec.decode(null, null));
+        assertThrows(SerializeException.class, () -> BinaryJobContextCodec.decode(new byte[] {'<', 'o', 'f', 'b', 0}, null));
+        byte[] bytes = BinaryJobContextCodec.encode(new HashMap<>(Collections.singletonMap("key", "value")));
+        byte[] otherVersion = bytes.clone();
+        otherVersion[3] = (byte) (BinaryJobContextCodec.VERSION + 1);
+        assertThrows(SerializeException.class, () -> BinaryJobContextCodec.decode(otherVersion, null));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 2);
+        assertThrows(SerializeException.class, () -> BinaryJobContextCodec.decode(truncated, null));
+    }
+
+    @Test
+    public void nonSerializableValuesAreRejected() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("thread", new Object());
+        assertThrows(SerializeException.class, () -> BinaryJobContextCodec.encode(context));
+    }
+}
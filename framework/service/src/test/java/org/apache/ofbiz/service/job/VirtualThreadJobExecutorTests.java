@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.service.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VirtualThreadJobExecutorTests {
+    private VirtualThreadJobExecutor executor;
+
+    @After
+    public void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // The tests use platform threads so that they also run before Java 21.
+    private static VirtualThreadJobExecutor newExecutor(int maxRunningJobs) {
+        return new VirtualThreadJobExecutor(maxRunningJobs, 10, JobPoller.createPriorityComparator(),
+                Executors.defaultThreadFactory());
+    }
+
+    private static Job mockJob(String name, long priority, Runnable body) {
+        Job job = mock(Job.class);
+        when(job.getJobName()).thenReturn(name);
+        when(job.getPriority()).thenReturn(priority);
+        when(job.getStartTime()).thenReturn(new Date(0));
+        doAnswer(invocation -> {
+            body.run();
+            return null;
+        }).when(job).run();
+        return job;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void runningJobsAreBoundedBySemaphore() throws InterruptedException {
+        executor = newExecutor(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        for (int i = 0; i < 6; i++) {
+            executor.execute(mockJob("job" + i, 0, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                await(release);
+                running.decrementAndGet();
+                done.countDown();
+            }));
+        }
+        Thread.sleep(200);
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(4, executor.getQueue().size());
+        release.countDown();
+        await(done);
+        assertEquals(2, maxRunning.get());
+        assertEquals(2, executor.getLargestPoolSize());
+        assertEquals(2, executor.getMaximumPoolSize());
+    }
+
+    @Test
+    public void highestPriorityJobStartsWhenAPermitIsReleased() throws InterruptedException {
+        executor = newExecutor(1);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        executor.execute(mockJob("blocking", 0, () -> {
+            started.add("blocking");
+            await(release);
+            done.countDown();
+        }));
+        Thread.sleep(200);
+        for (long priority : new long[] {1, 9, 5}) {
+            String name = "priority" + priority;
+            executor.execute(mockJob(name, priority, () -> {
+                started.add(name);
+                done.countDown();
+            }));
+        }
+        release.countDown();
+        await(done);
+        assertEquals(List.of("blocking", "priority9", "priority5", "priority1"), started);
+    }
+
+    @Test
+    public void queuedJobsStartWithinTheBoundAfterShutdown() throws InterruptedException {
+        executor = newExecutor(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(mockJob("job" + i, 0, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                threadNames.add(Thread.currentThread().getName());
+                await(release);
+                running.decrementAndGet();
+            }));
+        }
+        Thread.sleep(200);
+        executor.shutdown();
+        assertEquals(3, executor.getQueue().size());
+        release.countDown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(4, threadNames.size());
+        assertEquals(1, maxRunning.get());
+        assertEquals(4, executor.getCompletedTaskCount());
+        assertTrue(threadNames.stream().noneMatch(name -> name.startsWith("OFBiz-JobQueue-dispatcher")));
+    }
+
+    @Test
+    public void jobIsQueuedAgainWhenItsThreadCannotStart() throws InterruptedException {
+        AtomicInteger threadRequests = new AtomicInteger();
+        ThreadFactory failingOnce = runnable -> {
+            if (threadRequests.getAndIncrement() == 0) {
+                throw new RejectedExecutionException("no thread");
+            }
+            return Executors.defaultThreadFactory().newThread(runnable);
+        };
+        executor = new VirtualThreadJobExecutor(1, 10, JobPoller.createPriorityComparator(), failingOnce);
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(mockJob("job" + i, 0, () -> {
+                threadNames.add(Thread.currentThread().getName());
+                done.countDown();
+            }));
+        }
+        await(done);
+        assertEquals(3, threadRequests.get());
+        assertTrue(threadNames.stream().noneMatch(name -> name.startsWith("OFBiz-JobQueue-dispatcher")));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.getCompletedTaskCount());
+    }
+}
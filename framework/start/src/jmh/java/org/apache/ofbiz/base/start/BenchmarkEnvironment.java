@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.base.start;
+
+import java.util.Collections;
+
+import org.apache.ofbiz.base.container.ComponentContainer;
+import org.apache.ofbiz.base.container.ContainerException;
+
+/**
+ * Prepares the JVM of a benchmark the way the OFBiz startup does, without starting the servers.
+ * <p>The startup configuration is read and the components are loaded, so the delegators and the dispatchers can be
+ * created from the entity engine and service engine configuration files. The benchmarks are run from the OFBiz home
+ * directory and use the <code>test</code> delegator.</p>
+ */
+public final class BenchmarkEnvironment {
+
+    /** The name of the delegator used by the benchmarks */
+    public static final String DELEGATOR_NAME = "test";
+
+    private static boolean started = false;
+
+    private BenchmarkEnvironment() { }
+
+    /**
+     * Loads the startup configuration and the components, once per JVM.
+     * @throws ContainerException if the components cannot be loaded
+     */
+    public static synchronized void start() throws ContainerException {
+        if (started) {
+            return;
+        }
+        Start.getInstance().setConfig(StartupControlPanel.init(Collections.emptyList()));
+        new ComponentContainer().init(Collections.emptyList(), "component-container", null);
+        started = true;
+    }
+}
@@ -117,7 +117,11 @@ public final class StartupCommandUtil {
                     + System.lineSeparator()
                     + "-l repair-columns"
                     + System.lineSeparator()
-                    + "-l continue-on-failure")
+                    + "-l continue-on-failure"
+                    + System.lineSeparator()
+                    + "-l parallel=4"
+                    + System.lineSeparator()
+                    + "-l fast-inserts")
             .numberOfArgs(2)
             .valueSeparator('=')
             .optionalArg(true)
@@ -31,13 +31,12 @@ import org.apache.ofbiz.base.util.UtilDateTime;
 import org.apache.ofbiz.base.util.UtilGenerics;
 import org.apache.ofbiz.base.util.UtilMisc;
 import org.apache.ofbiz.base.util.UtilValidate;
-import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
 import org.apache.ofbiz.entity.serialize.XmlSerializer;
 import org.apache.ofbiz.entity.transaction.TransactionUtil;
-import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.security.CsrfUtil;
+import org.apache.ofbiz.webapp.stats.ServerHitWriter;
 import org.apache.ofbiz.widget.model.ScriptLinkHelper;
 
 /**
@@ -85,12 +84,9 @@ public class ControlEventListener implements HttpSessionListener {
             // visit = VisitHandler.getVisit(session);
             GenericValue visit = (GenericValue) session.getAttribute("visit");
             if (visit != null) {
-                Delegator delegator = visit.getDelegator();
-                visit = EntityQuery.use(delegator).from("Visit").where("visitId", visit.get("visitId")).queryOne();
-                if (visit != null) {
-                    visit.set("thruDate", new Timestamp(session.getLastAccessedTime()));
-                    visit.store();
-                }
+                // through the writer, so the update follows the create of the Visit which may still be queued
+                visit.set("thruDate", new Timestamp(session.getLastAccessedTime()));
+                ServerHitWriter.store(visit);
             } else {
                 Debug.logInfo("Could not find visit value object in session [" + ControlActivationEventListener.showSessionId(session)
                         + "] that is being destroyed", MODULE);
@@ -230,11 +230,8 @@ public final class ServerHitBin {
                         serverHitBin.set("serverIpAddress", VisitHandler.ADDRESS.getHostAddress());
                         serverHitBin.set("serverHostName", VisitHandler.ADDRESS.getHostName());
                     }
-                    try {
-                        delegator.createSetNextSeqId(serverHitBin);
-                    } catch (GenericEntityException e) {
-                        Debug.logError(e, "Could not save ServerHitBin:", MODULE);
-                    }
+                    serverHitBin.setNextSeqId();
+                    ServerHitWriter.create(serverHitBin);
                 }
             } else {
                 binList.pollFirst();
@@ -496,16 +493,9 @@ public final class ServerHitBin {
                         + " persistance of visits you should also turn off persistence of hits.", MODULE);
                 return;
             }
+            // the Visit may still be waiting in the ServerHitWriter queue: the writer writes it first, then checks that it
+            // exists before writing the hits referring to it
             String visitId = visit.getString("visitId");
-            visit = EntityQuery.use(delegator).from("Visit").where("visitId", visitId).queryOne();
-            if (visit == null) {
-                // GenericValue stored in client session does not exist in database.
-                Debug.logInfo("The Visit GenericValue stored in the client session does not exist in the database, not storing server hit.", MODULE);
-                return;
-            }
-
-            Debug.logInfo("Visit delegatorName=" + visit.getDelegator().getDelegatorName() + ", ServerHitBin delegatorName="
-                    + this.delegator.getDelegatorName(), MODULE);
 
             GenericValue serverHit = delegator.makeValue("ServerHit");
 
@@ -535,7 +525,7 @@ public final class ServerHitBin {
                 serverHit.set("serverHostName", VisitHandler.ADDRESS.getHostName());
             }
 
-            serverHit.create();
+            ServerHitWriter.create(serverHit);
         }
     }
 }
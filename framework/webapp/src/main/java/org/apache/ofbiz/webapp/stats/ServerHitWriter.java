@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.webapp.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ofbiz.base.util.Debug;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericEntityException;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.apache.ofbiz.entity.condition.EntityOperator;
+
+/**
+ * Writes the <code>Visitor</code>, <code>Visit</code>, <code>ServerHitBin</code> and <code>ServerHit</code>
+ * records of the server statistics.
+ * <p>When <code>stats.persist.async</code> is on (the default) the records are put in a bounded queue and
+ * written by a background thread with batch inserts, once <code>stats.persist.async.batch.size</code> records
+ * are waiting or the oldest one has waited <code>stats.persist.async.flush.millis</code>. A request thread
+ * finding the queue full waits up to <code>stats.persist.async.offer.wait.millis</code> for room, then the
+ * record is dropped and counted. The queue is flushed when the server shuts down, see {@link #shutdown()}.</p>
+ */
+public final class ServerHitWriter {
+    private static final String MODULE = ServerHitWriter.class.getName();
+
+    // parents first, so the foreign keys of a batch always find their rows, whether the parents are created or stored
+    private static final List<String> WRITE_ORDER = Arrays.asList("Visitor", "Visit", "ServerHitBin", "ServerHit");
+
+    private static final ServerHitWriter INSTANCE = new ServerHitWriter();
+
+    private final boolean async;
+    private final BlockingQueue<PendingValue> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final long offerWaitMillis;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile Thread flusherThread;
+    private volatile boolean stopped;
+
+    private ServerHitWriter() {
+        this.async = UtilProperties.getPropertyAsBoolean("serverstats", "stats.persist.async", true);
+        int queueSize = UtilProperties.getPropertyAsInteger("serverstats", "stats.persist.async.queue.size", 10000);
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 1));
+        this.batchSize = Math.max(UtilProperties.getPropertyAsInteger("serverstats", "stats.persist.async.batch.size", 500), 1);
+        this.flushMillis = Math.max(UtilProperties.getPropertyAsLong("serverstats", "stats.persist.async.flush.millis", 1000), 1);
+        this.offerWaitMillis = UtilProperties.getPropertyAsLong("serverstats", "stats.persist.async.offer.wait.millis", 10);
+    }
+
+    public static ServerHitWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a value, from the writer thread when the writer is asynchronous.
+     * <p>A copy of the value is written, so the caller may keep changing the value, like the Visit of a session.</p>
+     * @param value the value to create, its primary key must be set
+     */
+    public static void create(GenericValue value) {
+        INSTANCE.write(new PendingValue((GenericValue) value.clone(), true));
+    }
+
+    /**
+     * Creates or updates a value, from the writer thread when the writer is asynchronous.
+     * <p>A copy of the value is written, as by {@link #create(GenericValue)}.</p>
+     * @param value the value to store, its primary key must be set
+     */
+    public static void store(GenericValue value) {
+        INSTANCE.write(new PendingValue((GenericValue) value.clone(), false));
+    }
+
+    private void write(PendingValue pending) {
+        if (!async || stopped) {
+            writeBatch(Arrays.asList(pending));
+            return;
+        }
+        if (flusherThread == null) {
+            startFlusher();
+        }
+        if (queue.offer(pending)) {
+            queued.increment();
+            return;
+        }
+        waited.increment();
+        boolean accepted = false;
+        if (offerWaitMillis > 0) {
+            try {
+                accepted = queue.offer(pending, offerWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (accepted) {
+            queued.increment();
+        } else {
+            dropped.increment();
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Server statistics queue full, dropping " + pending.value.getEntityName() + " record", MODULE);
+            }
+        }
+    }
+
+    private synchronized void startFlusher() {
+        if (flusherThread == null && !stopped) {
+            Thread thread = new Thread(this::flushLoop, "OFBiz-ServerHitWriter");
+            thread.setDaemon(true);
+            thread.start();
+            flusherThread = thread;
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingValue> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                PendingValue first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < batchSize && !stopped) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingValue next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Debug.logWarning("Server statistics writer interrupted, writing the queued records now", MODULE);
+                stopped = true;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<PendingValue> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stops the writer thread once it has written the queued records. Records written after this call
+     * are written right away on the calling thread. This method is called when OFBiz shuts down.
+     */
+    public static void shutdown() {
+        INSTANCE.stop();
+    }
+
+    private void stop() {
+        Thread thread;
+        synchronized (this) {
+            stopped = true;
+            thread = flusherThread;
+        }
+        if (thread != null) {
+            Debug.logInfo("Shutting down the server statistics writer, " + queue.size() + " records to write", MODULE);
+            try {
+                thread.join(flushMillis + 30000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                Debug.logWarning("Server statistics writer did not finish in time, " + queue.size() + " records not written", MODULE);
+            }
+        }
+    }
+
+    void writeBatch(List<PendingValue> batch) {
+        batches.increment();
+        // values by delegator then entity, in queue order
+        Map<Delegator, Map<String, List<PendingValue>>> valuesByDelegator = new LinkedHashMap<>();
+        for (PendingValue pending : batch) {
+            valuesByDelegator.computeIfAbsent(pending.value.getDelegator(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(pending.value.getEntityName(), k -> new ArrayList<>()).add(pending);
+        }
+        for (Map.Entry<Delegator, Map<String, List<PendingValue>>> entry : valuesByDelegator.entrySet()) {
+            Delegator delegator = entry.getKey();
+            Map<String, List<PendingValue>> valuesByEntity = entry.getValue();
+            Set<String> writtenVisitIds = new HashSet<>();
+            for (String entityName : WRITE_ORDER) {
+                List<PendingValue> values = valuesByEntity.remove(entityName);
+                if (values == null) {
+                    continue;
+                }
+                if ("ServerHit".equals(entityName)) {
+                    values = withExistingVisit(delegator, values, writtenVisitIds);
+                }
+                List<GenericValue> writtenValues = writeEntity(delegator, values);
+                if ("Visit".equals(entityName)) {
+                    for (GenericValue visit : writtenValues) {
+                        writtenVisitIds.add(visit.getString("visitId"));
+                    }
+                }
+            }
+            for (List<PendingValue> values : valuesByEntity.values()) {
+                writeEntity(delegator, values);
+            }
+        }
+    }
+
+    /**
+     * Writes the values of an entity: the values to create first, then the values to store, which may update them.
+     * @return the values written
+     */
+    private List<GenericValue> writeEntity(Delegator delegator, List<PendingValue> values) {
+        List<GenericValue> toCreate = new ArrayList<>(values.size());
+        List<GenericValue> toStore = new ArrayList<>();
+        for (PendingValue pending : values) {
+            (pending.create ? toCreate : toStore).add(pending.value);
+        }
+        List<GenericValue> writtenValues = createAll(delegator, toCreate);
+        if (!toStore.isEmpty()) {
+            try {
+                delegator.storeAll(toStore);
+                written.add(toStore.size());
+                writtenValues.addAll(toStore);
+            } catch (GenericEntityException e) {
+                failed.add(toStore.size());
+                Debug.logError(e, "Could not store " + toStore.size() + " " + toStore.get(0).getEntityName() + " records: ", MODULE);
+            }
+        }
+        return writtenValues;
+    }
+
+    private List<GenericValue> createAll(Delegator delegator, List<GenericValue> values) {
+        if (values.size() > 1) {
+            try {
+                delegator.createAllByBatchProcess(values, false);
+                written.add(values.size());
+                return new ArrayList<>(values);
+            } catch (GenericEntityException e) {
+                Debug.logWarning("Batch insert of " + values.size() + " " + values.get(0).getEntityName()
+                        + " records failed, inserting them one by one: " + e.getMessage(), MODULE);
+            }
+        }
+        // one bad record must not lose the others of the batch
+        List<GenericValue> writtenValues = new ArrayList<>(values.size());
+        for (GenericValue value : values) {
+            try {
+                delegator.create(value);
+                written.increment();
+                writtenValues.add(value);
+            } catch (GenericEntityException e) {
+                failed.increment();
+                Debug.logError(e, "Could not create " + value.getEntityName() + ": ", MODULE);
+            }
+        }
+        return writtenValues;
+    }
+
+    /**
+     * Returns the <code>ServerHit</code> values whose <code>Visit</code> exists, either written by this batch or found
+     * in the database. The Visit of a hit is queued before it, but may have been dropped or have failed to be written.
+     */
+    private List<PendingValue> withExistingVisit(Delegator delegator, List<PendingValue> hits, Set<String> writtenVisitIds) {
+        Set<String> existingVisitIds = new HashSet<>(writtenVisitIds);
+        Set<String> visitIdsToCheck = new HashSet<>();
+        for (PendingValue hit : hits) {
+            String visitId = hit.value.getString("visitId");
+            if (!existingVisitIds.contains(visitId)) {
+                visitIdsToCheck.add(visitId);
+            }
+        }
+        if (!visitIdsToCheck.isEmpty()) {
+            try {
+                List<GenericValue> visits = delegator.findList("Visit", EntityCondition.makeCondition("visitId", EntityOperator.IN, visitIdsToCheck),
+                        UtilMisc.toSet("visitId"), null, null, false);
+                for (GenericValue visit : visits) {
+                    existingVisitIds.add(visit.getString("visitId"));
+                }
+            } catch (GenericEntityException e) {
+                Debug.logError(e, "Could not check the Visit of " + hits.size() + " server hits, not storing them: ", MODULE);
+            }
+        }
+        List<PendingValue> hitsWithVisit = new ArrayList<>(hits.size());
+        for (PendingValue hit : hits) {
+            if (existingVisitIds.contains(hit.value.getString("visitId"))) {
+                hitsWithVisit.add(hit);
+            } else {
+                failed.increment();
+                Debug.logInfo("The Visit [" + hit.value.getString("visitId") + "] does not exist in the database, not storing server hit.",
+                        MODULE);
+            }
+        }
+        return hitsWithVisit;
+    }
+
+    /**
+     * Returns a <code>Map</code> containing the writer statistics: the queue size and capacity, and the number
+     * of records queued, dropped, written and failed, of writes that had to wait for room in the queue and of
+     * batches written since the server started.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("async", async);
+        statistics.put("queueSize", queue.size());
+        statistics.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        statistics.put("queued", queued.sum());
+        statistics.put("waited", waited.sum());
+        statistics.put("dropped", dropped.sum());
+        statistics.put("written", written.sum());
+        statistics.put("failed", failed.sum());
+        statistics.put("batches", batches.sum());
+        return statistics;
+    }
+
+    static final class PendingValue {
+        private final GenericValue value;
+        private final boolean create;
+
+        PendingValue(GenericValue value, boolean create) {
+            this.value = value;
+            this.create = create;
+        }
+    }
+}
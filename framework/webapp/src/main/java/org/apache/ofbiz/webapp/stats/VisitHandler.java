@@ -70,11 +70,7 @@ public class VisitHandler {
             if (modelUserLogin.isField("partyId")) {
                 visitor.set("partyId", userLogin.get("partyId"));
             }
-            try {
-                visitor.store();
-            } catch (GenericEntityException e) {
-                Debug.logError(e, "Could not update visitor: ", MODULE);
-            }
+            ServerHitWriter.store(visitor);
         }
 
         GenericValue visit = getVisit(session);
@@ -90,11 +86,7 @@ public class VisitHandler {
                 visit.set("visitorId", visitor.get("visitorId"));
             }
 
-            try {
-                visit.store();
-            } catch (GenericEntityException e) {
-                Debug.logError(e, "Could not update visit: ", MODULE);
-            }
+            ServerHitWriter.store(visit);
         }
     }
 
@@ -180,7 +172,9 @@ public class VisitHandler {
                                 try {
                                     GenericValue checkVisitor = EntityQuery.use(delegator).from("Visitor").where("visitorId", visitorId).queryOne();
                                     if (checkVisitor == null) {
-                                        GenericValue newVisitor = delegator.create("Visitor", "visitorId", visitorId);
+                                        // store rather than create, the visitor may still be waiting in the ServerHitWriter queue
+                                        GenericValue newVisitor = delegator.makeValue("Visitor", "visitorId", visitorId);
+                                        ServerHitWriter.store(newVisitor);
                                         session.setAttribute("visitor", newVisitor);
                                     }
                                     visit.set("visitorId", visitorId);
@@ -193,13 +187,9 @@ public class VisitHandler {
                                 visit.set("serverIpAddress", ADDRESS.getHostAddress());
                                 visit.set("serverHostName", ADDRESS.getHostName());
                             }
-                            try {
-                                visit = delegator.createSetNextSeqId(visit);
-                                session.setAttribute("visit", visit);
-                            } catch (GenericEntityException e) {
-                                Debug.logError(e, "Could not create new visit:", MODULE);
-                                visit = null;
-                            }
+                            visit.setNextSeqId();
+                            ServerHitWriter.create(visit);
+                            session.setAttribute("visit", visit);
                         }
                     }
                 }
@@ -255,21 +245,18 @@ public class VisitHandler {
                             if (UtilValidate.isEmpty(cookieVisitorId)) {
                                 // no visitor cookie? create visitor and send back cookie too
                                 visitor = delegator.makeValue("Visitor");
-                                try {
-                                    delegator.createSetNextSeqId(visitor);
-                                } catch (GenericEntityException e) {
-                                    Debug.logError(e, "Could not create new visitor:", MODULE);
-                                    visitor = null;
-                                }
+                                visitor.setNextSeqId();
+                                ServerHitWriter.create(visitor);
                             } else {
                                 try {
                                     visitor = EntityQuery.use(delegator).from("Visitor").where("visitorId", cookieVisitorId).queryOne();
                                     if (visitor == null) {
                                         // looks like we have an ID that doesn't exist in our database, so we'll create a new one
                                         visitor = delegator.makeValue("Visitor");
-                                        visitor = delegator.createSetNextSeqId(visitor);
+                                        visitor.setNextSeqId();
+                                        ServerHitWriter.create(visitor);
                                         if (Debug.infoOn()) {
-                                            String visitorId = visitor != null ? visitor.getString("visitorId") : "empty visitor";
+                                            String visitorId = visitor.getString("visitorId");
                                             Debug.logInfo("The visitorId [" + cookieVisitorId
                                                     + "] found in cookie was invalid, creating new Visitor with ID [" + visitorId + "]", MODULE);
                                         }
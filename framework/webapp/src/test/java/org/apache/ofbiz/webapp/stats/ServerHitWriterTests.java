@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ofbiz.webapp.stats;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ofbiz.entity.Delegator;
+import org.apache.ofbiz.entity.GenericValue;
+import org.apache.ofbiz.entity.condition.EntityCondition;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class ServerHitWriterTests {
+    private Delegator delegator;
+
+    @Before
+    public void setUp() {
+        delegator = mock(Delegator.class);
+    }
+
+    private GenericValue mockValue(String entityName, String visitId) {
+        GenericValue value = mock(GenericValue.class);
+        when(value.getDelegator()).thenReturn(delegator);
+        when(value.getEntityName()).thenReturn(entityName);
+        when(value.getString("visitId")).thenReturn(visitId);
+        return value;
+    }
+
+    @Test
+    public void newVisitorVisitAndHitAreWrittenInDependencyOrder() throws Exception {
+        GenericValue visitor = mockValue("Visitor", null);
+        GenericValue visit = mockValue("Visit", "10000");
+        GenericValue hit = mockValue("ServerHit", "10000");
+        // queued in reverse dependency order, the writer must not rely on the queue order
+        ServerHitWriter.getInstance().writeBatch(Arrays.asList(new ServerHitWriter.PendingValue(hit, true),
+                new ServerHitWriter.PendingValue(visit, true), new ServerHitWriter.PendingValue(visitor, false)));
+
+        InOrder inOrder = inOrder(delegator);
+        inOrder.verify(delegator).storeAll(Collections.singletonList(visitor));
+        inOrder.verify(delegator).create(visit);
+        inOrder.verify(delegator).create(hit);
+        // the Visit was written by the batch, no need to read it back
+        verify(delegator, never()).findList(eq("Visit"), any(EntityCondition.class), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void createdVisitorsAreWrittenBeforeTheirVisits() throws Exception {
+        GenericValue visitor1 = mockValue("Visitor", null);
+        GenericValue visitor2 = mockValue("Visitor", null);
+        GenericValue visit1 = mockValue("Visit", "10001");
+        GenericValue visit2 = mockValue("Visit", "10002");
+        ServerHitWriter.getInstance().writeBatch(Arrays.asList(new ServerHitWriter.PendingValue(visitor1, true),
+                new ServerHitWriter.PendingValue(visit1, true), new ServerHitWriter.PendingValue(visitor2, true),
+                new ServerHitWriter.PendingValue(visit2, true)));
+
+        InOrder inOrder = inOrder(delegator);
+        inOrder.verify(delegator).createAllByBatchProcess(Arrays.asList(visitor1, visitor2), false);
+        inOrder.verify(delegator).createAllByBatchProcess(Arrays.asList(visit1, visit2), false);
+    }
+
+    @Test
+    public void hitOfAMissingVisitIsNotWritten() throws Exception {
+        GenericValue storedVisitHit = mockValue("ServerHit", "10003");
+        GenericValue missingVisitHit = mockValue("ServerHit", "10004");
+        GenericValue storedVisit = mockValue("Visit", "10003");
+        when(delegator.findList(eq("Visit"), any(EntityCondition.class), any(), any(), any(), anyBoolean()))
+                .thenReturn(Collections.singletonList(storedVisit));
+        ServerHitWriter.getInstance().writeBatch(Arrays.asList(new ServerHitWriter.PendingValue(storedVisitHit, true),
+                new ServerHitWriter.PendingValue(missingVisitHit, true)));
+
+        verify(delegator).create(storedVisitHit);
+        verify(delegator, never()).create(missingVisitHit);
+        verify(delegator, never()).createAllByBatchProcess(anyList(), anyBoolean());
+    }
+}
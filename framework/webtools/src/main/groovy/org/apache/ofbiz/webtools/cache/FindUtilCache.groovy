@@ -64,3 +64,8 @@ memoryInfo = [
         totalCacheMemory: totalCacheMemory
 ]
 context.memoryInfo = memoryInfo
+
+entityListCacheStatistics = delegator.getCache().getEntityListCacheStatistics()
+context.entityListCacheStatistics = entityListCacheStatistics.collectEntries { key, value ->
+    [key, UtilFormatOut.formatQuantity(value)]
+}
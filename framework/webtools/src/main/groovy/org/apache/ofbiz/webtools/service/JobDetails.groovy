@@ -20,15 +20,14 @@ package org.apache.ofbiz.webtools.service
 
 import org.apache.ofbiz.entity.Delegator
 import org.apache.ofbiz.entity.GenericValue
-import org.apache.ofbiz.base.util.UtilGenerics
-import org.apache.ofbiz.entity.serialize.XmlSerializer
+import org.apache.ofbiz.service.job.JobUtil
 
 GenericValue job = ((Delegator) delegator).findOne('JobSandbox', [jobId: parameters.jobId], false)
 context.job = job
 if (job) {
     GenericValue runtimeData = job.getRelatedOne('RuntimeData', false)
     if (runtimeData) {
-        runtimeInfoMap = UtilGenerics.checkMap(XmlSerializer.deserialize(runtimeData.getString('runtimeInfo'), delegator), String, Object)
+        runtimeInfoMap = JobUtil.getContext(runtimeData) ?: [:]
         runtimeInfoList = []
         runtimeInfoMap.each { key, value ->
             valueMap = [key: key, value: value.toString()]
@@ -21,6 +21,7 @@ package org.apache.ofbiz.webtools.stats
 import org.apache.ofbiz.base.util.UtilFormatOut
 import org.apache.ofbiz.base.util.UtilMisc
 import org.apache.ofbiz.webapp.stats.ServerHitBin
+import org.apache.ofbiz.webapp.stats.ServerHitWriter
 
 clearBins = parameters.clear
 if (clearBins == 'true') {
@@ -65,6 +66,8 @@ while (iterator.hasNext()) {
 }
 context.viewList = viewList
 
+context.serverHitWriterStatistics = ServerHitWriter.getInstance().getStatistics()
+
 private Map<String, String> prepareRequestIdMap(Object bin) {
     return [
             requestId: bin.getId(),
@@ -18,24 +18,23 @@
  */
 package org.apache.ofbiz.webtools;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.sql.Timestamp;
 import java.text.NumberFormat;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -66,8 +65,6 @@ import org.apache.ofbiz.entity.Delegator;
 import org.apache.ofbiz.entity.DelegatorFactory;
 import org.apache.ofbiz.entity.GenericEntityException;
 import org.apache.ofbiz.entity.GenericValue;
-import org.apache.ofbiz.entity.condition.EntityCondition;
-import org.apache.ofbiz.entity.condition.EntityOperator;
 import org.apache.ofbiz.entity.model.ModelEntity;
 import org.apache.ofbiz.entity.model.ModelField;
 import org.apache.ofbiz.entity.model.ModelFieldType;
@@ -77,11 +74,11 @@ import org.apache.ofbiz.entity.model.ModelReader;
 import org.apache.ofbiz.entity.model.ModelRelation;
 import org.apache.ofbiz.entity.model.ModelUtil;
 import org.apache.ofbiz.entity.model.ModelViewEntity;
-import org.apache.ofbiz.entity.transaction.GenericTransactionException;
-import org.apache.ofbiz.entity.transaction.TransactionUtil;
 import org.apache.ofbiz.entity.util.EntityDataAssert;
+import org.apache.ofbiz.entity.util.EntityDataExporter;
+import org.apache.ofbiz.entity.util.EntityDataExporter.ExportFile;
+import org.apache.ofbiz.entity.util.EntityDataLoadPipeline;
 import org.apache.ofbiz.entity.util.EntityDataLoader;
-import org.apache.ofbiz.entity.util.EntityListIterator;
 import org.apache.ofbiz.entity.util.EntityQuery;
 import org.apache.ofbiz.entity.util.EntitySaxReader;
 import org.apache.ofbiz.entity.util.EntityUtilProperties;
@@ -248,6 +245,7 @@ public class WebToolsServices {
         String createDummyFks = (String) context.get("createDummyFks");
         boolean deleteFiles = (String) context.get("deleteFiles") != null;
         String checkDataOnly = (String) context.get("checkDataOnly");
+        boolean parallel = (String) context.get("parallel") != null;
         Map<String, Object> placeholderValues = UtilGenerics.cast(context.get("placeholderValues"));
 
         Integer txTimeout = (Integer) context.get("txTimeout");
@@ -272,10 +270,20 @@ public class WebToolsServices {
                     return null;
                 }
                 for (File file : fileArray) {
-                    if (file.getName().toUpperCase().endsWith("XML")) {
+                    String fileName = file.getName().toUpperCase();
+                    if ((fileName.endsWith("XML") || fileName.endsWith(".XML.GZ"))
+                            && !EntityDataExporter.MANIFEST_FILE_NAME.equals(file.getName())) {
                         files.add(file);
                     }
                 }
+                if (parallel) {
+                    if (onlyInserts == null && checkDataOnly == null && UtilValidate.isEmpty(placeholderValues)) {
+                        importDirInParallel(dctx.getDelegator(), baseDir, files, createDummyFks != null, maintainTimeStamps != null,
+                                txTimeout, deleteFiles, messages, locale);
+                        return UtilMisc.toMap("messages", (Object) messages);
+                    }
+                    messages.add(UtilProperties.getMessage(RESOURCE, "EntityImportParallelNotSupported", locale));
+                }
 
                 int passes = 0;
                 int initialListSize = files.size();
@@ -348,6 +356,81 @@ public class WebToolsServices {
         return resp;
     }
 
+    /**
+     * Imports the files of a directory at the same time through the entity data load pipeline. The files of an export
+     * having a manifest are checked against their checksum and loaded in the order of the manifest, so the values are
+     * written after the values they refer to, the other files are loaded by name.
+     */
+    private static void importDirInParallel(Delegator delegator, File baseDir, List<File> files, boolean createDummyFks,
+            boolean maintainTimeStamps, int txTimeout, boolean deleteFiles, List<String> messages, Locale locale) {
+        try {
+            Map<String, ExportFile> manifestFiles = new LinkedHashMap<>();
+            List<ExportFile> manifest = EntityDataExporter.readManifest(baseDir.toPath());
+            if (manifest != null) {
+                List<String> errorMessages = EntityDataExporter.checkFiles(baseDir.toPath(), manifest,
+                        Runtime.getRuntime().availableProcessors());
+                if (!errorMessages.isEmpty()) {
+                    messages.addAll(errorMessages);
+                    return;
+                }
+                for (ExportFile file : manifest) {
+                    manifestFiles.put(file.getFileName(), file);
+                }
+            }
+            List<File> orderedFiles = new LinkedList<>();
+            for (String fileName : manifestFiles.keySet()) {
+                orderedFiles.add(new File(baseDir, fileName));
+            }
+            List<File> otherFiles = new LinkedList<>();
+            for (File file : files) {
+                if (!manifestFiles.containsKey(file.getName())) {
+                    otherFiles.add(file);
+                }
+            }
+            otherFiles.sort(Comparator.comparing(File::getName));
+            orderedFiles.addAll(otherFiles);
+
+            List<URL> urls = new LinkedList<>();
+            for (File file : orderedFiles) {
+                urls.add(file.toURI().toURL());
+            }
+            EntityDataLoadPipeline pipeline = new EntityDataLoadPipeline(delegator);
+            pipeline.setCreateDummyFks(createDummyFks);
+            pipeline.setMaintainTxStamps(maintainTimeStamps);
+            pipeline.setTransactionTimeout(txTimeout);
+            Map<URL, Long> readCounts = pipeline.load(urls);
+            boolean allLoaded = true;
+            for (File file : orderedFiles) {
+                Long numberRead = readCounts.get(file.toURI().toURL());
+                if (numberRead == null) {
+                    // not loaded by the pipeline, keep the file to import it again
+                    messages.add(UtilProperties.getMessage(RESOURCE, "EntityImportFailedFile", UtilMisc.toMap("fileName", file.getName()),
+                            locale));
+                    allLoaded = false;
+                    continue;
+                }
+                messages.add(UtilProperties.getMessage(RESOURCE, "EntityImportNumberOfEntityToBeProcessed",
+                        UtilMisc.toMap("numberRead", numberRead.toString(), "fileName", file.getName()), locale));
+                ExportFile manifestFile = manifestFiles.get(file.getName());
+                if (manifestFile != null && manifestFile.getRows() != numberRead) {
+                    messages.add(UtilProperties.getMessage(RESOURCE, "EntityImportRowCountMismatch",
+                            UtilMisc.toMap("fileName", file.getName(), "rows", manifestFile.getRows()), locale));
+                }
+                if (deleteFiles) {
+                    messages.add(UtilProperties.getMessage(RESOURCE, "EntityImportDeletFile", UtilMisc.toMap("fileName", file.getName()),
+                            locale));
+                    file.delete();
+                }
+            }
+            if (deleteFiles && manifest != null && allLoaded) {
+                Files.delete(baseDir.toPath().resolve(EntityDataExporter.MANIFEST_FILE_NAME));
+            }
+        } catch (GenericEntityException | IOException e) {
+            Debug.logError(e, MODULE);
+            messages.add(e.getLocalizedMessage());
+        }
+    }
+
     public static Map<String, Object> entityImportReaders(DispatchContext dctx, Map<String, Object> context) {
         String readers = (String) context.get("readers");
         String overrideDelegator = (String) context.get("overrideDelegator");
@@ -509,6 +592,9 @@ public class WebToolsServices {
         if (txTimeout == null) {
             txTimeout = 7200;
         }
+        Boolean compress = (Boolean) context.get("compress");
+        Integer threads = (Integer) context.get("threads");
+        Integer chunkSize = (Integer) context.get("chunkSize");
 
         List<String> results = new LinkedList<>();
 
@@ -526,59 +612,53 @@ public class WebToolsServices {
                 } catch (Exception exc) {
                     return ServiceUtil.returnError(UtilProperties.getMessage(RESOURCE, "EntityImportErrorRetrievingEntityNames", locale));
                 }
-                int fileNumber = 1;
+                EntityDataExporter exporter = new EntityDataExporter(delegator);
+                exporter.setFromDate(fromDate);
+                exporter.setTransactionTimeout(txTimeout);
+                if (compress != null) {
+                    exporter.setCompress(compress);
+                }
+                if (threads != null) {
+                    exporter.setThreads(threads);
+                }
+                if (chunkSize != null) {
+                    exporter.setChunkSize(chunkSize);
+                }
+                Map<String, List<ExportFile>> filesByEntity = new HashMap<>();
+                try {
+                    for (ExportFile file : exporter.export(outdir.toPath(), passedEntityNames)) {
+                        filesByEntity.computeIfAbsent(file.getEntityName(), k -> new LinkedList<>()).add(file);
+                    }
+                } catch (GenericEntityException | IOException e) {
+                    Debug.logError(e, MODULE);
+                    results.add(e.getLocalizedMessage());
+                    return UtilMisc.<String, Object>toMap("results", results);
+                }
 
+                int fileNumber = 1;
                 for (String curEntityName : passedEntityNames) {
-                    long numberWritten = 0;
                     ModelEntity me = delegator.getModelEntity(curEntityName);
                     if (me instanceof ModelViewEntity) {
                         results.add("[" + fileNumber + "] [vvv] " + curEntityName + " skipping view entity");
                         continue;
                     }
-                    List<EntityCondition> conds = new LinkedList<>();
-                    if (UtilValidate.isNotEmpty(fromDate)) {
-                        conds.add(EntityCondition.makeCondition("createdStamp", EntityOperator.GREATER_THAN_EQUAL_TO, fromDate));
+                    String error = exporter.getErrors().get(curEntityName);
+                    if (error != null) {
+                        results.add("[" + fileNumber + "] [xxx] " + error);
+                        continue;
                     }
-                    EntityQuery eq = EntityQuery.use(delegator).from(curEntityName).where(conds).orderBy(me.getPkFieldNames());
-
-                    try {
-                        boolean beganTx = TransactionUtil.begin();
-                        // some databases don't support cursors, or other problems may happen, so if there is an error here log it and
-                        // move on to get as much as possible. Don't bother writing the file if there's nothing to put into it
-                        try (EntityListIterator values = eq.queryIterator()) {
-                            GenericValue value = values.next();
-                            if (value != null) {
-                                try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
-                                        new File(outdir, curEntityName + ".xml")), "UTF-8")))) {
-                                    writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                                    writer.println("<entity-engine-xml>");
-                                    do {
-                                        value.writeXmlText(writer, "");
-                                        numberWritten++;
-                                        if (numberWritten % 500 == 0) {
-                                            TransactionUtil.commit(beganTx);
-                                            beganTx = TransactionUtil.begin();
-                                        }
-                                        value = values.next();
-                                    } while (value != null);
-                                    writer.println("</entity-engine-xml>");
-                                } catch (UnsupportedEncodingException | FileNotFoundException e) {
-                                    results.add("[" + fileNumber + "] [xxx] Error when writing " + curEntityName + ": " + e);
-                                }
-                                results.add("[" + fileNumber + "] [" + numberWritten + "] " + curEntityName + " wrote " + numberWritten + " records");
-                            } else {
-                                results.add("[" + fileNumber + "] [---] " + curEntityName + " has no records, not writing file");
-                            }
-                            TransactionUtil.commit(beganTx);
-                        } catch (GenericEntityException entityEx) {
-                            results.add("[" + fileNumber + "] [xxx] Error when writing " + curEntityName + ": " + entityEx);
-                            continue;
+                    List<ExportFile> files = filesByEntity.get(curEntityName);
+                    if (files != null) {
+                        long numberWritten = 0;
+                        for (ExportFile file : files) {
+                            numberWritten += file.getRows();
                         }
-                        fileNumber++;
-                    } catch (GenericTransactionException e) {
-                        Debug.logError(e, MODULE);
-                        results.add(e.getLocalizedMessage());
+                        results.add("[" + fileNumber + "] [" + numberWritten + "] " + curEntityName + " wrote " + numberWritten + " records"
+                                + (files.size() > 1 ? " to " + files.size() + " files" : ""));
+                    } else {
+                        results.add("[" + fileNumber + "] [---] " + curEntityName + " has no records, not writing file");
                     }
+                    fileNumber++;
                 }
             } else {
                 results.add("Path not found or no write access.");
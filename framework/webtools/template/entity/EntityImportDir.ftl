@@ -46,6 +46,7 @@ under the License.
                     <label><input type="checkbox" name="createDummyFks" <#if createDummyFks??>checked="checked"</#if>/>${uiLabelMap.WebtoolsCreateDummyFks}</label>
                     <label><input type="checkbox" name="deleteFiles" <#if (deleteFiles??)>checked="checked"</#if>/>${uiLabelMap.WebtoolsDeleteFiles}</label>
                     <label><input type="checkbox" name="checkDataOnly" <#if checkDataOnly??>checked="checked"</#if>/>${uiLabelMap.WebtoolsCheckDataOnly}</label>
+                    <label><input type="checkbox" name="parallel" <#if parallel??>checked="checked"</#if>/>${uiLabelMap.WebtoolsParallelImport}</label>
                 </td>
             </tr>
             <tr>
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.renderer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ofbiz.base.util.GeneralException;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.base.util.collections.MapStack;
+import org.apache.ofbiz.entity.TestingState;
+import org.apache.ofbiz.security.Security;
+import org.apache.ofbiz.security.SecurityConfigurationException;
+import org.apache.ofbiz.security.SecurityFactory;
+import org.apache.ofbiz.service.LocalDispatcher;
+import org.apache.ofbiz.service.ServiceContainer;
+import org.apache.ofbiz.widget.model.ThemeFactory;
+import org.apache.ofbiz.widget.renderer.macro.MacroScreenRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import freemarker.template.TemplateException;
+
+/**
+ * Benchmark of the rendering of a screen listing the Testing values of a {@link TestingState}, from its actions to
+ * the HTML macros of the default theme.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class ScreenRendererBenchmark {
+
+    private static final String SCREEN_LOCATION = "classpath:org/apache/ofbiz/widget/renderer/BenchmarkScreens.xml#ListTestings";
+
+    private LocalDispatcher dispatcher;
+    private Security security;
+    private ScreenStringRenderer screenStringRenderer;
+
+    @Setup(Level.Trial)
+    public void setUp(TestingState testing) throws IOException, SecurityConfigurationException, TemplateException {
+        dispatcher = ServiceContainer.getLocalDispatcher("jmh", testing.getDelegator());
+        security = SecurityFactory.getInstance(testing.getDelegator());
+        VisualTheme visualTheme = ThemeFactory.resolveVisualTheme(null);
+        screenStringRenderer = new MacroScreenRenderer(visualTheme.getModelTheme(), "screen");
+    }
+
+    @Benchmark
+    public String render(TestingState testing) throws GeneralException, IOException, SAXException, ParserConfigurationException {
+        StringWriter writer = new StringWriter();
+        ScreenRenderer screens = new ScreenRenderer(writer, MapStack.create(), screenStringRenderer);
+        Map<String, Object> parameters = UtilMisc.toMap("testingTypeId", TestingState.TESTING_TYPE_ID);
+        screens.populateBasicContext(parameters, testing.getDelegator(), dispatcher, security, Locale.ENGLISH, null);
+        screens.render(SCREEN_LOCATION);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.renderer.macro;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ofbiz.base.container.ContainerException;
+import org.apache.ofbiz.base.start.BenchmarkEnvironment;
+import org.apache.ofbiz.base.util.UtilMisc;
+import org.apache.ofbiz.widget.model.ThemeFactory;
+import org.apache.ofbiz.widget.renderer.VisualTheme;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the calls of the form macros of the default theme, through the precompiled invoker templates or by
+ * parsing a new template for every call.
+ * <p>The macros are written to the same writer, as the fields of a form are, so the FreeMarker environment of the
+ * macro library is reused.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class FtlWriterBenchmark {
+
+    /** The parameters of each macro, as the form renderer passes them */
+    private static final Map<String, Map<String, Object>> MACRO_PARAMETERS = UtilMisc.toMap(
+            "renderFieldTitle", UtilMisc.toMap("style", "label", "title", "Order Id", "id", "ListOrders_orderId_title"),
+            "renderDisplayField", UtilMisc.toMap("imageLocation", "", "alert", "false", "type", "single", "idName", "ListOrders_orderId",
+                    "description", "WS10000", "title", "", "class", ""),
+            "renderTextField", UtilMisc.toMap("name", "orderId", "className", "", "type", "text", "pattern", "", "alert", "false",
+                    "value", "WS10000", "textSize", "25", "maxlength", "20", "id", "FindOrders_orderId", "event", "", "action", "",
+                    "disabled", false, "readonly", false, "required", false, "clientAutocomplete", "", "ajaxUrl", "", "ajaxEnabled", false,
+                    "mask", "", "placeholder", "", "tabindex", "", "delegatorName", "default"));
+
+    @Param({"true", "false"})
+    public boolean precompiled;
+
+    @Param({"renderFieldTitle", "renderDisplayField", "renderTextField"})
+    public String macroName;
+
+    private FtlWriter ftlWriter;
+    private StringWriter writer;
+    private Map<String, Object> parameters;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ContainerException, IOException {
+        BenchmarkEnvironment.start();
+        VisualTheme visualTheme = ThemeFactory.resolveVisualTheme(null);
+        ftlWriter = new FtlWriter(visualTheme.getModelTheme().getFormRendererLocation("screen"), visualTheme, precompiled);
+        writer = new StringWriter();
+        parameters = MACRO_PARAMETERS.get(macroName);
+    }
+
+    @Benchmark
+    public int processMacro() {
+        writer.getBuffer().setLength(0);
+        ftlWriter.processMacro(writer, Locale.ENGLISH, macroName, parameters);
+        return writer.getBuffer().length();
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *******************************************************************************/
+package org.apache.ofbiz.widget.renderer.macro;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.apache.ofbiz.base.util.UtilProperties;
+import org.apache.ofbiz.base.util.cache.UtilCache;
+import org.apache.ofbiz.base.util.template.FreeMarkerWorker;
+
+import freemarker.core.Environment;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+/**
+ * Invokes macros of a macro library without parsing a new FTL template for every call.
+ * <p>
+ * FreeMarker does not expose a public API to call a {@code Macro} from Java, so each macro gets a tiny invoker
+ * template ({@code <@macroName?with_args(args)/>}) which is parsed once and shared by all renderers. The macro
+ * arguments are handed over as a wrapped {@code Map}, keeping their Java types instead of being serialized to
+ * FTL literals.
+ * <p>
+ * The behaviour can be switched off with the {@code widget.macro.precompiled} property of widget.properties,
+ * in which case every call is parsed as before.
+ */
+public final class FtlMacroInvoker {
+
+    private static final String MODULE = FtlMacroInvoker.class.getName();
+    private static final String ARGS_PREFIX = "$args$";
+    private static final boolean PRECOMPILED = UtilProperties.getPropertyAsBoolean("widget", "widget.macro.precompiled", true);
+    private static final DefaultObjectWrapper ARGS_WRAPPER = new DefaultObjectWrapperBuilder(FreeMarkerWorker.VERSION).build();
+    private static final UtilCache<String, Template> INVOKER_TEMPLATES = UtilCache.createUtilCache("widget.macro.invoker", 0, 0);
+
+    private FtlMacroInvoker() { }
+
+    /**
+     * Checks if macros are invoked through precompiled templates.
+     * @return <code>true</code> if precompiled invocation is enabled
+     */
+    public static boolean isPrecompiled() {
+        return PRECOMPILED;
+    }
+
+    /**
+     * Calls the macro <code>macroName</code> in the given environment, passing <code>parameters</code> as arguments.
+     * @param environment the environment holding the macro library
+     * @param macroName the name of the macro to call
+     * @param parameters the macro arguments, may be <code>null</code>
+     * @throws TemplateException
+     * @throws IOException
+     */
+    public static void invoke(Environment environment, String macroName, Map<String, Object> parameters)
+            throws TemplateException, IOException {
+        invoke(environment, macroName, parameters, PRECOMPILED);
+    }
+
+    /**
+     * Calls the macro <code>macroName</code> in the given environment, passing <code>parameters</code> as arguments.
+     * @param environment the environment holding the macro library
+     * @param macroName the name of the macro to call
+     * @param parameters the macro arguments, may be <code>null</code>
+     * @param precompiled <code>false</code> to parse the invoker template again on every call
+     * @throws TemplateException
+     * @throws IOException
+     */
+    public static void invoke(Environment environment, String macroName, Map<String, Object> parameters, boolean precompiled)
+            throws TemplateException, IOException {
+        Template template = precompiled ? INVOKER_TEMPLATES.get(macroName) : null;
+        if (template == null) {
+            String invocation = "<@" + macroName + "?with_args(" + ARGS_PREFIX + macroName + ")/>";
+            template = parseTemplate(macroName, invocation);
+            if (precompiled) {
+                template = INVOKER_TEMPLATES.putIfAbsentAndGet(macroName, template);
+            }
+        }
+        environment.setVariable(ARGS_PREFIX + macroName, ARGS_WRAPPER.wrap(parameters != null ? parameters : Map.of()));
+        environment.include(template);
+    }
+
+    /**
+     * Processes an FTL string in the given environment. The string is parsed on every call since such strings
+     * carry the rendered data, macros should be called through {@link #invoke} instead.
+     * @param environment the environment holding the macro library
+     * @param ftlString the FTL to process
+     * @throws TemplateException
+     * @throws IOException
+     */
+    public static void process(Environment environment, String ftlString) throws TemplateException, IOException {
+        environment.include(parseTemplate(MODULE, ftlString));
+    }
+
+    private static Template parseTemplate(String name, String ftl) throws IOException {
+        try (Reader templateReader = new StringReader(ftl)) {
+            return new Template(name, templateReader, FreeMarkerWorker.getDefaultOfbizConfig());
+        }
+    }
+}
@@ -19,8 +19,6 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import freemarker.core.Environment;
-import freemarker.template.DefaultObjectWrapper;
-import freemarker.template.DefaultObjectWrapperBuilder;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import org.apache.ofbiz.base.util.Debug;
@@ -34,11 +32,8 @@ import org.apache.ofbiz.widget.renderer.macro.renderable.RenderableFtlString;
 import org.apache.ofbiz.widget.renderer.macro.renderable.RenderableFtlVisitor;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
 import java.util.WeakHashMap;
 
 /**
@@ -47,14 +42,28 @@ import java.util.WeakHashMap;
 public final class FtlWriter {
     private static final String MODULE = FtlWriter.class.getName();
 
-    private final DefaultObjectWrapper defaultObjectWrapper = new DefaultObjectWrapperBuilder(FreeMarkerWorker.VERSION).build();
     private final WeakHashMap<Appendable, Environment> environments = new WeakHashMap<>();
     private final Template macroLibrary;
     private final VisualTheme visualTheme;
+    private final boolean precompiled;
 
     public FtlWriter(final String macroLibraryPath, final VisualTheme visualTheme) throws IOException {
+        this(macroLibraryPath, visualTheme, FtlMacroInvoker.isPrecompiled());
+    }
+
+    /**
+     * Creates a writer choosing how macros are invoked.
+     *
+     * @param macroLibraryPath The location of the macro library.
+     * @param visualTheme      The visual theme made available to the macros.
+     * @param precompiled      <code>true</code> to call macros through precompiled invoker templates,
+     *                         <code>false</code> to parse every call as a new template.
+     */
+    public FtlWriter(final String macroLibraryPath, final VisualTheme visualTheme, final boolean precompiled)
+            throws IOException {
         this.macroLibrary = FreeMarkerWorker.getTemplate(macroLibraryPath);
         this.visualTheme = visualTheme;
+        this.precompiled = precompiled;
     }
 
     /**
@@ -76,20 +85,37 @@ public final class FtlWriter {
      */
     public void processFtlString(Appendable writer, Locale locale, String ftlString) {
         try {
-            final Environment environment = getEnvironment(writer, locale);
-            environment.setVariable("visualTheme", FreeMarkerWorker.autoWrap(visualTheme, environment));
-            environment.setVariable("modelTheme",
-                    FreeMarkerWorker.autoWrap(visualTheme.getModelTheme(), environment));
-            Reader templateReader = new StringReader(ftlString);
-            Template template = new Template(UUID.randomUUID().toString(), templateReader,
-                    FreeMarkerWorker.getDefaultOfbizConfig());
-            templateReader.close();
-            environment.include(template);
+            final Environment environment = getThemedEnvironment(writer, locale);
+            FtlMacroInvoker.process(environment, ftlString);
         } catch (TemplateException | IOException e) {
             Debug.logError(e, "Error rendering ftl, ftlString: " + ftlString, MODULE);
         }
     }
 
+    /**
+     * Call the given macro of the macro library and write the result to the Appendable.
+     *
+     * @param writer     The Appendable to write the result of the macro to.
+     * @param locale     The locale to render the macro with, the default locale when <code>null</code>.
+     * @param macroName  The name of the macro to call.
+     * @param parameters The macro arguments.
+     */
+    public void processMacro(Appendable writer, Locale locale, String macroName, Map<String, Object> parameters) {
+        try {
+            final Environment environment = getThemedEnvironment(writer, locale);
+            FtlMacroInvoker.invoke(environment, macroName, parameters, precompiled);
+        } catch (TemplateException | IOException e) {
+            Debug.logError(e, "Error rendering ftl macro: " + macroName, MODULE);
+        }
+    }
+
+    private Environment getThemedEnvironment(Appendable writer, Locale locale) throws TemplateException, IOException {
+        final Environment environment = getEnvironment(writer, locale);
+        environment.setVariable("visualTheme", FreeMarkerWorker.autoWrap(visualTheme, environment));
+        environment.setVariable("modelTheme", FreeMarkerWorker.autoWrap(visualTheme.getModelTheme(), environment));
+        return environment;
+    }
+
     private Environment getEnvironment(Appendable writer, Locale locale) throws TemplateException, IOException {
         Environment environment = environments.get(writer);
         if (environment == null) {
@@ -123,18 +149,7 @@ public final class FtlWriter {
 
         @Override
         public void visit(RenderableFtlMacroCall renderableFtlMacroCall) {
-            final String name = renderableFtlMacroCall.getName();
-
-            try {
-                final Environment environment = getEnvironment(writer, null);
-
-                environment.setVariable("$args$" + name,
-                        defaultObjectWrapper.wrap(renderableFtlMacroCall.getParameters()));
-
-                processFtlString(writer, null, String.format("<@%s?with_args($args$%s)/>", name, name));
-            } catch (TemplateException | IOException e) {
-                Debug.logError(e, "Error rendering ftl macro: " + name, MODULE);
-            }
+            processMacro(writer, null, renderableFtlMacroCall.getName(), renderableFtlMacroCall.getParameters());
         }
 
         @Override
@@ -19,11 +19,10 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,7 +58,6 @@ import org.apache.ofbiz.widget.renderer.html.HtmlWidgetRenderer;
 public class MacroMenuRenderer implements MenuStringRenderer {
 
     private static final String MODULE = MacroMenuRenderer.class.getName();
-    private int macroCount = 999;
     private final Map<Appendable, Environment> environments = new HashMap<>();
     private final Template macroLibrary;
     private final HttpServletRequest request;
@@ -102,40 +100,13 @@ public class MacroMenuRenderer implements MenuStringRenderer {
         return parameters;
     }
 
-    private void executeMacro(Appendable writer, String macro) throws IOException, TemplateException {
-        Environment environment = getEnvironment(writer);
-        environment.setVariable("visualTheme", FreeMarkerWorker.autoWrap(visualTheme, environment));
-        Reader templateReader = new StringReader(macro);
-        macroCount++;
-        String templateName = toString().concat("_") + macroCount;
-        Template template = new Template(templateName, templateReader, FreeMarkerWorker.getDefaultOfbizConfig());
-        templateReader.close();
-        environment.include(template);
-    }
-
     private void executeMacro(Appendable writer, String macroName, Map<String, Object> macroParameters) throws IOException, TemplateException {
-        StringBuilder sb = new StringBuilder("<@");
-        sb.append(macroName);
-        if (macroParameters != null) {
-            for (Map.Entry<String, Object> parameter : macroParameters.entrySet()) {
-                sb.append(' ');
-                sb.append(parameter.getKey());
-                sb.append("=");
-                Object value = parameter.getValue();
-                if (value instanceof String) {
-                    sb.append('"');
-                    sb.append(((String) value).replace("\"", "\\\""));
-                    sb.append('"');
-                } else {
-                    sb.append(value);
-                }
-            }
-        }
-        sb.append(" />");
         if (Debug.verboseOn()) {
-            Debug.logVerbose("Executing macro: " + sb, MODULE);
+            Debug.logVerbose("Executing macro: " + macroName + " " + macroParameters, MODULE);
         }
-        executeMacro(writer, sb.toString());
+        Environment environment = getEnvironment(writer);
+        environment.setVariable("visualTheme", FreeMarkerWorker.autoWrap(visualTheme, environment));
+        FtlMacroInvoker.invoke(environment, macroName, macroParameters);
     }
 
     private Environment getEnvironment(Appendable writer) throws TemplateException, IOException {
@@ -241,7 +212,7 @@ public class MacroMenuRenderer implements MenuStringRenderer {
         }
         parameters.put("linkType", linkType);
         String actionUrl = "";
-        StringBuilder targetParameters = new StringBuilder();
+        List<Map<String, String>> targetParameters = new ArrayList<>();
 
         String confirmationMessage = link.getLink().getConfirmationMsg(context);
         if (link.getLink().getRequestConfirmation() && UtilValidate.isEmpty(confirmationMessage)) {
@@ -258,30 +229,14 @@ public class MacroMenuRenderer implements MenuStringRenderer {
                     request, response);
             actionUrl = actionUri.toString();
 
-            targetParameters.append("[");
             // Callback propagation only if displaying a modal
             for (Map.Entry<String, String> parameter : link.getParameterMap(context, isModal).entrySet()) {
-                if (targetParameters.length() > 1) {
-                    targetParameters.append(",");
-                }
-                targetParameters.append("{'name':'");
-                targetParameters.append(parameter.getKey());
-                targetParameters.append("'");
-                targetParameters.append(",'value':'");
                 UtilCodec.SimpleEncoder simpleEncoder = (UtilCodec.SimpleEncoder) context.get("simpleEncoder");
-                if (simpleEncoder != null) {
-                    targetParameters.append(simpleEncoder.encode(parameter.getValue()));
-                } else {
-                    targetParameters.append(parameter.getValue());
-                }
-                targetParameters.append("'}");
+                String value = simpleEncoder != null ? simpleEncoder.encode(parameter.getValue()) : parameter.getValue();
+                targetParameters.add(UtilMisc.toMap("name", parameter.getKey(), "value", value));
             }
-            targetParameters.append("]");
 
         }
-        if (targetParameters.length() == 0) {
-            targetParameters.append("\"\"");
-        }
         parameters.put("linkUrl", MacroCommonRenderer.getLinkUrl(link.getLink(), linkType, context));
         parameters.put("actionUrl", actionUrl);
         parameters.put("parameterList", targetParameters);
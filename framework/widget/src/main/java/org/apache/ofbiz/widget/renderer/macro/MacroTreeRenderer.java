@@ -19,10 +19,9 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -68,14 +67,9 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         this.environment = FreeMarkerWorker.renderTemplate(this.macroLibrary, input, writer);
     }
 
-    private void executeMacro(String macro) {
+    private void executeMacro(String macroName, Map<String, Object> parameters) {
         try {
-            Reader templateReader = new StringReader(macro);
-            // FIXME: I am using a Date as an hack to provide a unique name for the template...
-            Template template = new Template((new java.util.Date()).toString(), templateReader,
-                    FreeMarkerWorker.getDefaultOfbizConfig());
-            templateReader.close();
-            this.environment.include(template);
+            FtlMacroInvoker.invoke(this.environment, macroName, parameters);
         } catch (TemplateException | IOException e) {
             Debug.logError(e, "Error rendering tree thru ftl", MODULE);
         }
@@ -88,16 +82,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderBeginningBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=\"");
-        sr.append("Begin");
-        sr.append("\" widgetType=\"");
-        sr.append(widgetType);
-        sr.append("\" widgetName=\"");
-        sr.append(modelWidget.getBoundaryCommentName());
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("boundaryType", "Begin");
+        parameters.put("widgetType", widgetType);
+        parameters.put("widgetName", modelWidget.getBoundaryCommentName());
+        executeMacro("formatBoundaryComment", parameters);
     }
 
     /**
@@ -107,16 +96,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderEndingBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=\"");
-        sr.append("End");
-        sr.append("\" widgetType=\"");
-        sr.append(widgetType);
-        sr.append("\" widgetName=\"");
-        sr.append(modelWidget.getBoundaryCommentName());
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("boundaryType", "End");
+        parameters.put("widgetType", widgetType);
+        parameters.put("widgetName", modelWidget.getBoundaryCommentName());
+        executeMacro("formatBoundaryComment", parameters);
     }
 
     @Override
@@ -133,12 +117,7 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             style = "basic-tree";
         }
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeBegin ");
-        sr.append(" style=\"");
-        sr.append(style);
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        executeMacro("renderNodeBegin", UtilMisc.toMap("style", style));
 
         String pkName = node.getPkName(context);
         String entityId = null;
@@ -200,14 +179,10 @@ public class MacroTreeRenderer implements TreeStringRenderer {
     @Override
     public void renderNodeEnd(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeEnd ");
-        sr.append(" processChildren=");
-        sr.append(Boolean.toString(processChildren));
-        sr.append(" isRootNode=");
-        sr.append(Boolean.toString(node.isRootNode()));
-        sr.append(" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("processChildren", Boolean.TRUE.equals(processChildren));
+        parameters.put("isRootNode", node.isRootNode());
+        executeMacro("renderNodeEnd", parameters);
         if (node.isRootNode()) {
             if (ModelWidget.widgetBoundaryCommentsEnabled(context)) {
                 renderEndingBoundaryComment(writer, "Tree Widget", node.getModelTree());
@@ -219,12 +194,7 @@ public class MacroTreeRenderer implements TreeStringRenderer {
     public void renderLastElement(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
         if (processChildren) {
-            StringWriter sr = new StringWriter();
-            sr.append("<@renderLastElement ");
-            sr.append("style=\"");
-            sr.append("basic-tree");
-            sr.append("\" />");
-            executeMacro(sr.toString());
+            executeMacro("renderLastElement", UtilMisc.toMap("style", "basic-tree"));
         }
     }
 
@@ -234,16 +204,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         String style = label.getStyle(context);
         String labelText = label.getText(context);
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLabel ");
-        sr.append("id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" labelText=\"");
-        sr.append(labelText);
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("labelText", labelText);
+        executeMacro("renderLabel", parameters);
     }
 
     @Override
@@ -275,26 +240,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             imgStr = sw.toString();
         }
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLink ");
-        sr.append("id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" name=\"");
-        sr.append(name);
-        sr.append("\" title=\"");
-        sr.append(title);
-        sr.append("\" targetWindow=\"");
-        sr.append(targetWindow);
-        sr.append("\" linkUrl=\"");
-        sr.append(linkUrl);
-        sr.append("\" linkText=\"");
-        sr.append(linkText);
-        sr.append("\" imgStr=\"");
-        sr.append(imgStr.replace("\"", "\\\""));
-        sr.append("\" />");
-        executeMacro(sr.toString().replace("|", "%7C")); // Fix for OFBIZ-9191
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("name", name);
+        parameters.put("title", title);
+        parameters.put("targetWindow", targetWindow);
+        parameters.put("linkUrl", linkUrl.toString().replace("|", "%7C")); // Fix for OFBIZ-9191
+        parameters.put("linkText", linkText);
+        parameters.put("imgStr", imgStr);
+        executeMacro("renderLink", parameters);
     }
 
     @Override
@@ -336,26 +291,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         } else {
             urlString = src;
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderImage ");
-        sr.append("src=\"");
-        sr.append(src);
-        sr.append("\" id=\"");
-        sr.append(id);
-        sr.append("\" style=\"");
-        sr.append(style);
-        sr.append("\" wid=\"");
-        sr.append(wid);
-        sr.append("\" hgt=\"");
-        sr.append(hgt);
-        sr.append("\" border=\"");
-        sr.append(border);
-        sr.append("\" alt=\"");
-        sr.append(alt);
-        sr.append("\" urlString=\"");
-        sr.append(urlString);
-        sr.append("\" />");
-        executeMacro(sr.toString());
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("src", src);
+        parameters.put("id", id);
+        parameters.put("style", style);
+        parameters.put("wid", wid);
+        parameters.put("hgt", hgt);
+        parameters.put("border", border);
+        parameters.put("alt", alt);
+        parameters.put("urlString", urlString);
+        executeMacro("renderImage", parameters);
     }
 
     @Override
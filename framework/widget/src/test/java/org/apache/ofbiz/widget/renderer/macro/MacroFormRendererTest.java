@@ -19,10 +19,9 @@
 package org.apache.ofbiz.widget.renderer.macro;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.not;
-import static org.hamcrest.Matchers.startsWith;
 
 import java.io.IOException;
 import java.io.StringWriter;
@@ -275,13 +274,13 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderCheckField(appendable, ImmutableMap.of(), checkField);
-        assertAndGetMacroString("renderCheckField", ImmutableMap.of(
+        assertAndGetMacroCall("renderCheckField", ImmutableMap.of(
                 "currentValue", "KEY2",
                 "items", ImmutableList.of(
-                        "{'value':'KEY1', 'description':'DESC1', 'checked':'false'}",
-                        "{'value':'KEY2', 'description':'DESC2', 'checked':'true'}",
-                        "{'value':'KEY3', 'description':'DESC3', 'checked':'false'}",
-                        "{'value':'KEY4', 'description':'DESC4', 'checked':'false'}")));
+                        ImmutableMap.of("value", "KEY1", "description", "DESC1", "checked", "false"),
+                        ImmutableMap.of("value", "KEY2", "description", "DESC2", "checked", "true"),
+                        ImmutableMap.of("value", "KEY3", "description", "DESC3", "checked", "false"),
+                        ImmutableMap.of("value", "KEY4", "description", "DESC4", "checked", "false"))));
         new Expectations() {
             {
                 modelFormField.getEntry(withNotNull());
@@ -305,12 +304,12 @@ public class MacroFormRendererTest {
             e.printStackTrace();
         }
 
-        assertAndGetMacroString("renderCheckField", ImmutableMap.of(
+        assertAndGetMacroCall("renderCheckField", ImmutableMap.of(
                 "items", ImmutableList.of(
-                        "{'value':'KEY1', 'description':'DESC1', 'checked':'true'}",
-                        "{'value':'KEY2', 'description':'DESC2', 'checked':'false'}",
-                        "{'value':'KEY3', 'description':'DESC3', 'checked':'true'}",
-                        "{'value':'KEY4', 'description':'DESC4', 'checked':'false'}")));
+                        ImmutableMap.of("value", "KEY1", "description", "DESC1", "checked", "true"),
+                        ImmutableMap.of("value", "KEY2", "description", "DESC2", "checked", "false"),
+                        ImmutableMap.of("value", "KEY3", "description", "DESC3", "checked", "true"),
+                        ImmutableMap.of("value", "KEY4", "description", "DESC4", "checked", "false"))));
 
     }
     @Test
@@ -330,10 +329,11 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderRadioField(appendable, ImmutableMap.of(), radioField);
-        assertAndGetMacroString("renderRadioField", ImmutableMap.of(
+        assertAndGetMacroCall("renderRadioField", ImmutableMap.of(
                 "currentValue", "KEY2",
-                "items", ImmutableList.of("{'key':'KEY1', 'description':'DESC1'}",
-                        "{'key':'KEY2', 'description':'DESC2'}")));
+                "items", ImmutableList.of(
+                        ImmutableMap.of("key", "KEY1", "description", "DESC1"),
+                        ImmutableMap.of("key", "KEY2", "description", "DESC2"))));
     }
 
     @Test
@@ -346,7 +346,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderSubmitField(appendable, ImmutableMap.of(), submitField);
-        assertAndGetMacroString("renderSubmitField", ImmutableMap.of("title", "BUTTONTITLE"));
+        assertAndGetMacroCall("renderSubmitField", ImmutableMap.of("title", "BUTTONTITLE"));
     }
 
     @Test
@@ -359,7 +359,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderResetField(appendable, ImmutableMap.of(), resetField);
-        assertAndGetMacroString("renderResetField", ImmutableMap.of("title", "BUTTONTITLE"));
+        assertAndGetMacroCall("renderResetField", ImmutableMap.of("title", "BUTTONTITLE"));
     }
 
     @Test
@@ -372,7 +372,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderHiddenField(appendable, ImmutableMap.of(), hiddenField);
-        assertAndGetMacroString("renderHiddenField", ImmutableMap.of("value", "HIDDENVALUE"));
+        assertAndGetMacroCall("renderHiddenField", ImmutableMap.of("value", "HIDDENVALUE"));
     }
 
     @Test
@@ -385,7 +385,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFieldTitle(appendable, ImmutableMap.of(), modelFormField);
-        assertAndGetMacroString("renderFormatEmptySpace");
+        assertAndGetMacroCall("renderFormatEmptySpace");
     }
 
     @Test
@@ -398,7 +398,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFieldTitle(appendable, ImmutableMap.of(), modelFormField);
-        assertAndGetMacroString("renderFieldTitle", ImmutableMap.of("title", "FIELDTITLE"));
+        assertAndGetMacroCall("renderFieldTitle", ImmutableMap.of("title", "FIELDTITLE"));
     }
 
     @Test
@@ -411,26 +411,26 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormOpen(appendable, ImmutableMap.of(), modelSingleForm);
-        assertAndGetMacroString("renderFormOpen", ImmutableMap.of("formType", "single"));
+        assertAndGetMacroCall("renderFormOpen", ImmutableMap.of("formType", "single"));
     }
 
     @Test
     public void formClosedMacroRendered(@Mocked ModelSingleForm modelSingleForm) throws IOException {
         macroFormRenderer.renderFormClose(appendable, ImmutableMap.of(), modelSingleForm);
-        assertAndGetMacroString("renderFormClose");
+        assertAndGetMacroCall("renderFormClose");
     }
 
     @Test
     public void multiFormClosedMacroRendered(@Mocked ModelForm modelForm) throws IOException {
         macroFormRenderer.renderMultiFormClose(appendable, ImmutableMap.of(), modelForm);
-        assertAndGetMacroString("renderMultiFormClose");
+        assertAndGetMacroCall("renderMultiFormClose");
     }
 
     @Test
     public void listWrapperOpenMacroRendered(@Mocked ModelSingleForm modelSingleForm) throws IOException {
         macroFormRenderer.setRenderPagination(false);
         macroFormRenderer.renderFormatListWrapperOpen(appendable, new HashMap<>(), modelSingleForm);
-        assertAndGetMacroString("renderFormatListWrapperOpen");
+        assertAndGetMacroCall("renderFormatListWrapperOpen");
     }
 
     @Test
@@ -443,14 +443,14 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderEmptyFormDataMessage(appendable, new HashMap<>(), modelSingleForm);
-        assertAndGetMacroString("renderEmptyFormDataMessage", ImmutableMap.of("message", "EMPTY"));
+        assertAndGetMacroCall("renderEmptyFormDataMessage", ImmutableMap.of("message", "EMPTY"));
     }
 
     @Test
     public void listWrapperCloseMacroRendered(@Mocked ModelSingleForm modelSingleForm) throws IOException {
         macroFormRenderer.setRenderPagination(false);
         macroFormRenderer.renderFormatListWrapperClose(appendable, new HashMap<>(), modelSingleForm);
-        assertAndGetMacroString("renderFormatListWrapperClose");
+        assertAndGetMacroCall("renderFormatListWrapperClose");
     }
 
     @Test
@@ -465,7 +465,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormatItemRowOpen(appendable, ImmutableMap.of("itemIndex", 2), modelForm);
-        assertAndGetMacroString("renderFormatItemRowOpen", ImmutableMap.of(
+        assertAndGetMacroCall("renderFormatItemRowOpen", ImmutableMap.of(
                 "formName", "FORMNAME",
                 "itemIndex", 2,
                 "evenRowStyle", "EVENSTYLE"));
@@ -484,7 +484,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormatItemRowCellOpen(appendable, ImmutableMap.of(), modelForm, modelFormField, 2);
-        assertAndGetMacroString("renderFormatItemRowCellOpen", ImmutableMap.of(
+        assertAndGetMacroCall("renderFormatItemRowCellOpen", ImmutableMap.of(
                 "fieldName", "FIELDNAME",
                 "positionSpan", 2,
                 "style", "AREASTYLE"));
@@ -500,7 +500,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormatItemRowFormCellOpen(appendable, ImmutableMap.of(), modelForm);
-        assertAndGetMacroString("renderFormatItemRowFormCellOpen", ImmutableMap.of("style", "AREASTYLE"));
+        assertAndGetMacroCall("renderFormatItemRowFormCellOpen", ImmutableMap.of("style", "AREASTYLE"));
     }
 
     @Test
@@ -515,7 +515,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormatSingleWrapperOpen(appendable, ImmutableMap.of("styleParam", "ABCD"), modelForm);
-        assertAndGetMacroString("renderFormatSingleWrapperOpen", ImmutableMap.of(
+        assertAndGetMacroCall("renderFormatSingleWrapperOpen", ImmutableMap.of(
                 "formName", "FORMNAME",
                 "style", "STYLEABCD"));
     }
@@ -530,7 +530,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderFormatFieldRowWidgetCellOpen(appendable, ImmutableMap.of(), modelFormField, 1, 1, null);
-        assertAndGetMacroString("renderFormatFieldRowWidgetCellOpen", ImmutableMap.of(
+        assertAndGetMacroCall("renderFormatFieldRowWidgetCellOpen", ImmutableMap.of(
                 "positionSpan", 1,
                 "style", "AREASTYLE"));
     }
@@ -559,7 +559,7 @@ public class MacroFormRendererTest {
 
         ImmutableMap<String, Object> context = ImmutableMap.of();
         macroFormRenderer.renderTextFindField(appendable, context, textFindField);
-        assertAndGetMacroString("renderTextFindField", ImmutableMap.of(
+        assertAndGetMacroCall("renderTextFindField", ImmutableMap.of(
                 "name", "FIELDNAME",
                 "className", "WIDGETSTYLE",
                 "alert", "true"));
@@ -595,7 +595,7 @@ public class MacroFormRendererTest {
 
         ImmutableMap<String, Object> context = ImmutableMap.of();
         macroFormRenderer.renderRangeFindField(appendable, context, rangeFindField);
-        assertAndGetMacroString("renderRangeFindField", ImmutableMap.of(
+        assertAndGetMacroCall("renderRangeFindField", ImmutableMap.of(
                 "name", "FIELDNAME",
                 "className", "WIDGETSTYLE",
                 "alert", "true",
@@ -627,7 +627,7 @@ public class MacroFormRendererTest {
 
         ImmutableMap<String, Object> context = ImmutableMap.of("session", httpSession);
         macroFormRenderer.renderLookupField(appendable, context, lookupField);
-        assertAndGetMacroString("renderLookupField", ImmutableMap.of(
+        assertAndGetMacroCall("renderLookupField", ImmutableMap.of(
                 "name", "FIELDNAME",
                 "value", "VALUE",
                 "id", "CONTAINERID"));
@@ -655,7 +655,7 @@ public class MacroFormRendererTest {
         context.put(paginateSizeField, 30);
         macroFormRenderer.renderNextPrev(appendable, context, modelForm);
 
-        assertAndGetMacroString("renderNextPrev");
+        assertAndGetMacroCall("renderNextPrev");
     }
 
     @Test
@@ -679,7 +679,7 @@ public class MacroFormRendererTest {
 
         macroFormRenderer.renderFileField(appendable, ImmutableMap.of(), fileField);
 
-        assertAndGetMacroString("renderFileField", ImmutableMap.of(
+        assertAndGetMacroCall("renderFileField", ImmutableMap.of(
                 "name", "FIELDNAME",
                 "value", "VALUE",
                 "className", "WIDGETSTYLE"));
@@ -706,7 +706,7 @@ public class MacroFormRendererTest {
 
         macroFormRenderer.renderPasswordField(appendable, ImmutableMap.of(), passwordField);
 
-        assertAndGetMacroString("renderPasswordField", ImmutableMap.of(
+        assertAndGetMacroCall("renderPasswordField", ImmutableMap.of(
                 "name", "FIELDNAME",
                 "value", "VALUE",
                 "className", "WIDGETSTYLE"));
@@ -727,7 +727,7 @@ public class MacroFormRendererTest {
 
         macroFormRenderer.renderImageField(appendable, ImmutableMap.of(), imageField);
 
-        assertAndGetMacroString("renderImageField", ImmutableMap.of("value", "VALUE"));
+        assertAndGetMacroCall("renderImageField", ImmutableMap.of("value", "VALUE"));
     }
 
     @Test
@@ -777,7 +777,7 @@ public class MacroFormRendererTest {
         final Map<String, Object> context = new HashMap<>();
         macroFormRenderer.renderSortField(appendable, context, modelFormField, "TITLE");
 
-        assertAndGetMacroString("renderSortField", ImmutableMap.of("title", "TITLE"));
+        assertAndGetMacroCall("renderSortField", ImmutableMap.of("title", "TITLE"));
     }
 
     @Test
@@ -838,7 +838,7 @@ public class MacroFormRendererTest {
         context.put("listSize", 100);
         macroFormRenderer.renderNextPrev(appendable, context, modelForm);
 
-        assertAndGetMacroString("renderNextPrev", ImmutableMap.of("nextUrl", linkFromQbeString));
+        assertAndGetMacroCall("renderNextPrev", ImmutableMap.of("nextUrl", linkFromQbeString));
     }
 
     @Test
@@ -867,8 +867,8 @@ public class MacroFormRendererTest {
         context.put("listSize", 100);
         macroFormRenderer.renderSortField(appendable, context, modelFormField, "");
 
-        assertAndGetMacroString("renderSortField", ImmutableMap.of(
-                "linkUrl", new FreemarkerRawString(linkFromQbeString)));
+        assertAndGetMacroCall("renderSortField", ImmutableMap.of(
+                "linkUrl", linkFromQbeString));
     }
 
     @Test
@@ -885,7 +885,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderHyperlinkField(appendable, new HashMap<>(), hyperlinkField);
-        assertAndGetMacroString("makeHyperlinkString", ImmutableMap.of("description", description, "title", title));
+        assertAndGetMacroCall("makeHyperlinkString", ImmutableMap.of("description", description, "title", title));
     }
 
     @Test
@@ -901,7 +901,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderHyperlinkField(appendable, new HashMap<>(), hyperlinkField);
-        assertAndGetMacroString("makeHyperlinkString", ImmutableMap.of("description", "DESCR…", "title", description));
+        assertAndGetMacroCall("makeHyperlinkString", ImmutableMap.of("description", "DESCR…", "title", description));
     }
 
     @Test
@@ -919,7 +919,7 @@ public class MacroFormRendererTest {
         };
 
         macroFormRenderer.renderHyperlinkField(appendable, new HashMap<>(), hyperlinkField);
-        assertAndGetMacroString("makeHyperlinkString", ImmutableMap.of("description", "DESCR…", "title", description));
+        assertAndGetMacroCall("makeHyperlinkString", ImmutableMap.of("description", "DESCR…", "title", description));
     }
 
     @Test
@@ -962,55 +962,42 @@ public class MacroFormRendererTest {
                 .put("description", description)
                 .put("linkUrl", "Encoded%20Target")
                 .put("id", id)
-                .put("targetParameters", "{'k1':'v1','k2':'v2'}")
+                .put("targetParameters", ImmutableMap.of("k1", "v1", "k2", "v2"))
                 .put("width", width)
                 .put("confirmation", confirmation)
                 .put("targetWindow", targetWindow)
                 .build();
-        assertAndGetMacroString("makeHyperlinkString", result);
+        assertAndGetMacroCall("makeHyperlinkString", result);
     }
 
-    private String assertAndGetMacroString(final String expectedName) {
-        return assertAndGetMacroString(expectedName, ImmutableMap.of());
+    private RenderableFtlMacroCall assertAndGetMacroCall(final String expectedName) {
+        return assertAndGetMacroCall(expectedName, ImmutableMap.of());
     }
 
-    private String assertAndGetMacroString(final String expectedName, final Map<String, Object> expectedAttributes) {
-        final String[] str = new String[1];
+    private RenderableFtlMacroCall assertAndGetMacroCall(final String expectedName,
+                                                         final Map<String, Object> expectedParameters) {
+        final RenderableFtlMacroCall[] macroCall = new RenderableFtlMacroCall[1];
 
         new Verifications() {
             {
-                List<String> macros = new ArrayList<>();
-                ftlWriter.processFtlString(withNotNull(), withNull(), withCapture(macros));
+                List<RenderableFtl> renderables = new ArrayList<>();
+                ftlWriter.processFtl(withNotNull(), withCapture(renderables));
 
-                assertThat(macros, not(empty()));
-                final String macro = macros.get(0);
-                assertThat(macro, startsWith("<@" + expectedName));
+                final List<RenderableFtlMacroCall> macroCalls = renderables.stream()
+                        .filter(RenderableFtlMacroCall.class::isInstance)
+                        .map(RenderableFtlMacroCall.class::cast)
+                        .filter(call -> expectedName.equals(call.getName()))
+                        .collect(Collectors.toList());
+                assertThat(macroCalls, not(empty()));
+                final RenderableFtlMacroCall macro = macroCalls.get(macroCalls.size() - 1);
 
-                expectedAttributes.forEach((name, value) -> assertMacroAttribute(macro, name, value));
+                expectedParameters.forEach((name, value) -> assertThat(macro.getParameters(), hasEntry(name, value)));
 
-                str[0] = macro;
+                macroCall[0] = macro;
             }
         };
 
-        return str[0];
-    }
-
-    private void assertMacroAttribute(final String macro, final String attributeName, final Object attributeValue) {
-        if (attributeValue instanceof Number) {
-            assertThat(macro, containsString(attributeName + "=" + attributeValue));
-        } else if (attributeValue instanceof List<?>) {
-            final String valueString = ((List<?>) attributeValue).stream()
-                    .map(Object::toString)
-                    .collect(Collectors.joining(",", "[", "]"));
-            assertThat(macro, containsString(attributeName + "=" + valueString));
-        } else if (attributeValue instanceof Boolean) {
-            assertThat(macro, containsString(attributeName + "=" + attributeValue));
-        } else if (attributeValue instanceof FreemarkerRawString) {
-            final String valueString = ((FreemarkerRawString) attributeValue).getRawString();
-            assertThat(macro, containsString(attributeName + "=\"" + valueString + "\""));
-        } else {
-            assertThat(macro, containsString(attributeName + "=\"" + attributeValue + "\""));
-        }
+        return macroCall[0];
     }
 
     /**
@@ -1101,16 +1088,4 @@ public class MacroFormRendererTest {
             return name + "_MESSAGE";
         }
     }
-
-    static class FreemarkerRawString {
-        private final String rawString;
-
-        FreemarkerRawString(final String rawString) {
-            this.rawString = rawString;
-        }
-
-        public String getRawString() {
-            return rawString;
-        }
-    }
 }
@@ -867,8 +867,8 @@ Parameter: delegatorName, String, optional - name of the delegator in context.
 <#macro makeHyperlinkString hiddenFormName imgSrc imgTitle title alternate linkUrl description text="" linkStyle="" event="" action="" targetParameters="" targetWindow="" confirmation="" uniqueItemName="" height="" width="" id="">
     <#if uniqueItemName?has_content>
         <#local params = "{&quot;presentation&quot;: &quot;layer&quot;">
-        <#if targetParameters?has_content && !targetParameters?is_hash>
-          <#local parameterMap = targetParameters?eval>
+        <#if targetParameters?has_content>
+          <#local parameterMap = targetParameters?is_hash?then(targetParameters, targetParameters?eval)>
           <#local parameterKeys = parameterMap?keys>
           <#list parameterKeys as key>
             <#local params += ",&quot;${key}&quot;: &quot;${parameterMap[key]}&quot;">